@@ -23,6 +23,7 @@ import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Arrays;
 import java.util.Timer;
 import java.util.TimerTask;
 import java.util.concurrent.atomic.AtomicLong;
@@ -37,6 +38,7 @@ import com.carrot.cache.controllers.ThroughputController;
 import com.carrot.cache.eviction.EvictionListener;
 import com.carrot.cache.index.IndexFormat;
 import com.carrot.cache.index.MemoryIndex;
+import com.carrot.cache.io.BlockCodec;
 import com.carrot.cache.io.FileIOEngine;
 import com.carrot.cache.io.IOEngine;
 import com.carrot.cache.io.IOEngine.IOEngineEvent;
@@ -359,6 +361,16 @@ public class Cache implements IOEngine.Listener, EvictionListener {
       return this;
     }
     
+    /**
+     * With data directories (one per device)
+     * @param dirs directories
+     * @return builder instance
+     */
+    public Builder withDataDirs(String... dirs) {
+      conf.setDataDirs(this.cacheName, dirs);
+      return this;
+    }
+    
     /**
      * With admission queue start size ratio
      * @param ratio start size ratio
@@ -661,6 +673,206 @@ public class Cache implements IOEngine.Listener, EvictionListener {
       return this;
     }
     
+    /**
+     * With index optimistic reads enabled
+     * @param v index optimistic reads enabled
+     * @return builder instance
+     */
+    public Builder withIndexOptimisticReadsEnabled(boolean v) {
+      conf.setIndexOptimisticReadsEnabled(cacheName, v);
+      return this;
+    }
+    
+    /**
+     * With index fingerprints enabled
+     * @param v index fingerprints enabled
+     * @return builder instance
+     */
+    public Builder withIndexFingerprintsEnabled(boolean v) {
+      conf.setIndexFingerprintsEnabled(cacheName, v);
+      return this;
+    }
+    
+    /**
+     * With index blocks slab allocator enabled
+     * @param v index blocks slab allocator enabled
+     * @return builder instance
+     */
+    public Builder withIndexSlabAllocatorEnabled(boolean v) {
+      conf.setIndexSlabAllocatorEnabled(cacheName, v);
+      return this;
+    }
+    
+    /**
+     * With index background rehash worker enabled
+     * @param v index background rehash worker enabled
+     * @return builder instance
+     */
+    public Builder withIndexRehashWorkerEnabled(boolean v) {
+      conf.setIndexRehashWorkerEnabled(cacheName, v);
+      return this;
+    }
+    
+    /**
+     * With index background rehash worker pace (slots per second)
+     * @param v index background rehash worker pace (slots per second)
+     * @return builder instance
+     */
+    public Builder withIndexRehashWorkerSlotsPerSecond(int v) {
+      conf.setIndexRehashWorkerSlotsPerSecond(cacheName, v);
+      return this;
+    }
+    
+    /**
+     * With number of segment flusher threads
+     * @param v number of segment flusher threads
+     * @return builder instance
+     */
+    public Builder withIOStorageFlushThreads(int v) {
+      conf.setIOStorageFlushThreads(cacheName, v);
+      return this;
+    }
+    
+    /**
+     * With direct I/O for data segment files enabled
+     * @param v direct I/O for data segment files enabled
+     * @return builder instance
+     */
+    public Builder withFileDirectIOEnabled(boolean v) {
+      conf.setFileDirectIOEnabled(cacheName, v);
+      return this;
+    }
+    
+    /**
+     * With single preallocated storage file mode enabled
+     * @param v single preallocated storage file mode enabled
+     * @return builder instance
+     */
+    public Builder withFileStoragePreallocated(boolean v) {
+      conf.setFileStoragePreallocated(cacheName, v);
+      return this;
+    }
+    
+    /**
+     * With maximum memory size of segment buffer pool
+     * @param v maximum memory size of segment buffer pool
+     * @return builder instance
+     */
+    public Builder withSegmentBufferPoolMaxSize(long v) {
+      conf.setSegmentBufferPoolMaxSize(cacheName, v);
+      return this;
+    }
+    
+    /**
+     * With number of write lanes per rank
+     * @param v number of write lanes per rank
+     * @return builder instance
+     */
+    public Builder withWriteLanes(int v) {
+      conf.setWriteLanes(cacheName, v);
+      return this;
+    }
+    
+    /**
+     * With file block cache maximum size in bytes
+     * @param v file block cache maximum size in bytes
+     * @return builder instance
+     */
+    public Builder withFileBlockCacheSize(long v) {
+      conf.setFileBlockCacheSize(cacheName, v);
+      return this;
+    }
+    
+    /**
+     * With block directory enabled
+     * @param v block directory enabled
+     * @return builder instance
+     */
+    public Builder withBlockWriterDirectoryEnabled(boolean v) {
+      conf.setBlockWriterDirectoryEnabled(cacheName, v);
+      return this;
+    }
+    
+    /**
+     * With block writer compression codec
+     * @param v block writer compression codec
+     * @return builder instance
+     */
+    public Builder withBlockWriterCompressionCodec(String v) {
+      conf.setBlockWriterCompressionCodec(cacheName, v);
+      return this;
+    }
+    
+    /**
+     * With block writer compression dictionary enabled
+     * @param v block writer compression dictionary enabled
+     * @return builder instance
+     */
+    public Builder withBlockWriterDictionaryEnabled(boolean v) {
+      conf.setBlockWriterDictionaryEnabled(cacheName, v);
+      return this;
+    }
+    
+    /**
+     * With block writer compression dictionary size
+     * @param v block writer compression dictionary size
+     * @return builder instance
+     */
+    public Builder withBlockWriterDictionarySize(int v) {
+      conf.setBlockWriterDictionarySize(cacheName, v);
+      return this;
+    }
+    
+    /**
+     * With block writer compression dictionary training data size
+     * @param v block writer compression dictionary training data size
+     * @return builder instance
+     */
+    public Builder withBlockWriterDictionaryTrainingSize(long v) {
+      conf.setBlockWriterDictionaryTrainingSize(cacheName, v);
+      return this;
+    }
+    
+    /**
+     * With block writer compression dictionary retrain interval
+     * @param v block writer compression dictionary retrain interval
+     * @return builder instance
+     */
+    public Builder withBlockWriterDictionaryRetrainInterval(long v) {
+      conf.setBlockWriterDictionaryRetrainInterval(cacheName, v);
+      return this;
+    }
+    
+    /**
+     * With scavenger number of worker threads
+     * @param v scavenger number of worker threads
+     * @return builder instance
+     */
+    public Builder withScavengerNumberOfThreads(int v) {
+      conf.setScavengerNumberOfThreads(cacheName, v);
+      return this;
+    }
+    
+    /**
+     * With scavenger index validation batch size
+     * @param v scavenger index validation batch size
+     * @return builder instance
+     */
+    public Builder withScavengerIndexBatchSize(int v) {
+      conf.setScavengerIndexBatchSize(cacheName, v);
+      return this;
+    }
+    
+    /**
+     * With number of file prefetch read - ahead buffers
+     * @param v number of file prefetch read - ahead buffers
+     * @return builder instance
+     */
+    public Builder withFilePrefetchReadAheadBuffers(int v) {
+      conf.setFilePrefetchReadAheadBuffers(cacheName, v);
+      return this;
+    }
+    
     private Cache build() throws IOException {
       Cache cache = new Cache(conf, cacheName);
       cache.setIOEngine(this.engine);
@@ -871,7 +1083,7 @@ public class Cache implements IOEngine.Listener, EvictionListener {
   void stopScavenger() {
     Scavenger scavenger = this.scavenger.get();
     if (scavenger != null && scavenger.isAlive()) {
-      scavenger.interrupt();
+      scavenger.stopScavenger();
       try {
         scavenger.join();
       } catch (InterruptedException e) {
@@ -1103,6 +1315,33 @@ public class Cache implements IOEngine.Listener, EvictionListener {
     return this.totalRejectedWrites.get();
   }
   
+  /**
+   * Get data block compression ratio
+   * @return compression ratio (1.0 if compression is disabled)
+   */
+  public double getCompressionRatio() {
+    BlockCodec codec = BlockCodec.getCodec(this.cacheName);
+    return codec == null? 1.0: codec.getCompressionRatio();
+  }
+  
+  /**
+   * Get total data block compression time
+   * @return compression time in ns
+   */
+  public long getCompressionTime() {
+    BlockCodec codec = BlockCodec.getCodec(this.cacheName);
+    return codec == null? 0: codec.getCompressionTime();
+  }
+  
+  /**
+   * Get total data block decompression time
+   * @return decompression time in ns
+   */
+  public long getDecompressionTime() {
+    BlockCodec codec = BlockCodec.getCodec(this.cacheName);
+    return codec == null? 0: codec.getDecompressionTime();
+  }
+  
   /**
    * Get cache hit rate
    * @return cache hit rate
@@ -1497,21 +1736,118 @@ public class Cache implements IOEngine.Listener, EvictionListener {
       }
     }
     if(result < 0 && this.victimCache != null) {
-      //TODO: optimize it
-      // getWithExpire and getWithExpireAndDelete API
-      // one call instead of three
-      result = this.victimCache.get(key, keyOffset, keySize, hit, buffer, bufOffset);
-      if (this.victimCachePromote && result >=0 && result <= buffer.length - bufOffset) {
-        // put k-v into this cache, remove it from the victim cache
-        MemoryIndex mi = this.victimCache.getEngine().getMemoryIndex();
-        long expire = mi.getExpire(key, bufOffset, keySize);
-        put(buffer, bufOffset, expire);
-        this.victimCache.delete(key, keyOffset, keySize);
-      } 
+      result = getFromVictimCache(key, keyOffset, keySize, hit, buffer, bufOffset);
     }
     return result;
   }
 
+  /**
+   * Get cached item from the victim cache, promotes item to this cache if 
+   * victim cache promotion is enabled
+   *
+   * @param key key buffer
+   * @param keyOffset key offset
+   * @param keySize key size
+   * @param hit if true - its a hit
+   * @param buffer buffer for item
+   * @param bufOffset buffer offset
+   * @return size of an item (-1 - not found), if is greater than bufSize - retry with a properly
+   *     adjusted buffer
+   * @throws IOException 
+   */
+  private long getFromVictimCache(byte[] key, int keyOffset, int keySize, boolean hit, 
+      byte[] buffer, int bufOffset) throws IOException {
+    //TODO: optimize it
+    // getWithExpire and getWithExpireAndDelete API
+    // one call instead of three
+    long result = this.victimCache.get(key, keyOffset, keySize, hit, buffer, bufOffset);
+    if (this.victimCachePromote && result >=0 && result <= buffer.length - bufOffset) {
+      // put k-v into this cache, remove it from the victim cache
+      MemoryIndex mi = this.victimCache.getEngine().getMemoryIndex();
+      long expire = mi.getExpire(key, keyOffset, keySize);
+      put(buffer, bufOffset, expire);
+      this.victimCache.delete(key, keyOffset, keySize);
+    } 
+    return result;
+  }
+  
+  /**
+   * Get multiple cached items (with hit == true)
+   *
+   * @param keys keys
+   * @param buffer buffer for items
+   * @param bufOffset buffer offset
+   * @param offsets offsets of items in the buffer (-1 - not found or does not fit the buffer)
+   * @param sizes sizes of items (-1 - not found)
+   * @return number of items copied into the buffer
+   * @throws IOException
+   */
+  public int getAll(byte[][] keys, byte[] buffer, int bufOffset, int[] offsets, int[] sizes) 
+      throws IOException {
+    return getAll(keys, true, buffer, bufOffset, offsets, sizes);
+  }
+  
+  /**
+   * Get multiple cached items. Keys are looked up in a batch: every index lock and every 
+   * data segment lock is taken only once per call. Items are copied into the buffer 
+   * one after another, offsets[i] is the offset of the item for keys[i] in the buffer. 
+   * Item which does not fit the buffer has offset -1 and its actual size - retry 
+   * with a properly adjusted buffer
+   *
+   * @param keys keys
+   * @param hit if true - its a hit
+   * @param buffer buffer for items
+   * @param bufOffset buffer offset
+   * @param offsets offsets of items in the buffer (-1 - not found or does not fit the buffer)
+   * @param sizes sizes of items (-1 - not found)
+   * @return number of items copied into the buffer
+   * @throws IOException
+   */
+  public int getAll(byte[][] keys, boolean hit, byte[] buffer, int bufOffset, int[] offsets, 
+      int[] sizes) throws IOException {
+    int found = 0;
+    try {
+      found = this.engine.getBatch(keys, hit, buffer, bufOffset, offsets, sizes);
+    } catch (IOException e) {
+      failedGets.incrementAndGet();
+      Arrays.fill(offsets, 0, keys.length, -1);
+      Arrays.fill(sizes, 0, keys.length, -1);
+      return 0;
+    }
+    int pos = bufOffset;
+    for (int i = 0; i < keys.length; i++) {
+      if (offsets[i] >= 0) {
+        pos = Math.max(pos, offsets[i] + sizes[i]);
+        access();
+        hit();
+        if (this.admissionController != null) {
+          this.admissionController.access(keys[i], 0, keys[i].length);
+        }
+      } else if (sizes[i] < 0) {
+        access();
+      }
+    }
+    if (this.victimCache == null || found == keys.length) {
+      return found;
+    }
+    for (int i = 0; i < keys.length; i++) {
+      if (sizes[i] >= 0) {
+        continue;
+      }
+      long result = getFromVictimCache(keys[i], 0, keys[i].length, hit, buffer, pos);
+      if (result < 0) {
+        continue;
+      }
+      sizes[i] = (int) result;
+      if (result <= buffer.length - pos) {
+        offsets[i] = pos;
+        pos += result;
+        found++;
+      }
+    }
+    return found;
+  }
+
   /**
    * Get cached item (if any)
    *
@@ -2099,6 +2435,45 @@ public class Cache implements IOEngine.Listener, EvictionListener {
     dos.close();
   }
   
+  /**
+   * Loads compression dictionaries
+   * @throws IOException
+   */
+  private void loadDictionaries() throws IOException {
+    BlockCodec codec = BlockCodec.getCodec(this.cacheName);
+    if (codec == null) {
+      return;
+    }
+    String snapshotDir = this.conf.getSnapshotDir(this.cacheName);
+    String file = CacheConfig.DICTIONARY_SNAPSHOT_NAME;
+    Path p = Paths.get(snapshotDir, file);
+    if (Files.exists(p) && Files.size(p) > 0) {
+      FileInputStream fis = new FileInputStream(p.toFile());
+      DataInputStream dis = new DataInputStream(fis);
+      codec.load(dis);
+      dis.close();
+    }
+  }
+  
+  /**
+   * Saves compression dictionaries
+   * @throws IOException
+   */
+  private void saveDictionaries() throws IOException {
+    BlockCodec codec = BlockCodec.getCodec(this.cacheName);
+    if (codec == null) {
+      return;
+    }
+    this.engine.releaseUnusedDictionaries();
+    String snapshotDir = this.conf.getSnapshotDir(this.cacheName);
+    String file = CacheConfig.DICTIONARY_SNAPSHOT_NAME;
+    Path p = Paths.get(snapshotDir, file);
+    FileOutputStream fos = new FileOutputStream(p.toFile());
+    DataOutputStream dos = new DataOutputStream(fos);
+    codec.save(dos);
+    dos.close();
+  }
+  
   /**
    * Save cache data and meta-data
    * @throws IOException
@@ -2110,6 +2485,7 @@ public class Cache implements IOEngine.Listener, EvictionListener {
     saveAdmissionController();
     saveThroughputController();
     saveEngine();
+    saveDictionaries();
     saveScavengerStats();
     long endTime = System.currentTimeMillis();
     LOG.info("Cache saved in {}ms", endTime - startTime);
@@ -2132,6 +2508,7 @@ public class Cache implements IOEngine.Listener, EvictionListener {
     loadAdmissionControlller();
     loadThroughputControlller();
     loadEngine();
+    loadDictionaries();
     loadScavengerStats();
     startThroughputController();
     initScavenger();
@@ -2170,6 +2547,7 @@ public class Cache implements IOEngine.Listener, EvictionListener {
     stopScavenger();
     
     this.engine.dispose();
+    BlockCodec.removeCodec(this.cacheName);
     if (this.victimCache != null) {
       this.victimCache.dispose();
     }
@@ -20,10 +20,12 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.text.DateFormat;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -58,47 +60,54 @@ public class Scavenger extends Thread {
   /** Logger */
   private static final Logger LOG = LogManager.getLogger(Scavenger.class);
   
+  /* Batch is validated early when its keys and values exceed this size */
+  private static final int MAX_BATCH_BUFFER_SIZE = 256 * 1024;
+  
+  /**
+   * Scavenger statistics. Statistics are shared by all scavenger workers of a cache,
+   * counters are thread - safe
+   */
   static class Stats implements Persistent {
     
     /** Cache name */
     String cacheName;
     
     /** Total times scavenger ran */
-    long totalRuns;
+    final LongAdder totalRuns = new LongAdder();
 
     /** Total empty segments */
-    long totalEmptySegments;
+    final LongAdder totalEmptySegments = new LongAdder();
     
     /** Total run time in ms; */
-    long totalRunTimes;
+    final LongAdder totalRunTimes = new LongAdder();
 
     /** Total items scanned */
-    long totalItemsScanned;
+    final LongAdder totalItemsScanned = new LongAdder();
 
     /** Total items freed */
-    long totalItemsFreed;
+    final LongAdder totalItemsFreed = new LongAdder();
 
     /** Total items expired */
-    long totalItemsExpired;
+    final LongAdder totalItemsExpired = new LongAdder();
 
     /** Total bytes scanned */
-    long totalBytesScanned;
+    final LongAdder totalBytesScanned = new LongAdder();
 
     /** Total bytes freed */
-    long totalBytesFreed;
+    final LongAdder totalBytesFreed = new LongAdder();
 
     /** Total bytes expired */
-    long totalBytesExpired;
+    final LongAdder totalBytesExpired = new LongAdder();
 
-    double dumpBelowRatioMin;
+    volatile double dumpBelowRatioMin;
     
-    double dumpBelowRatioMax;
+    volatile double dumpBelowRatioMax;
     
-    double dumpBelowRatio;
+    volatile double dumpBelowRatio;
 
-    double adjStep;
+    volatile double adjStep;
     
-    double stopRatio;
+    volatile double stopRatio;
     
     Stats(String cacheName) {
       this.cacheName = cacheName;
@@ -116,7 +125,7 @@ public class Scavenger extends Thread {
      * @return total runs
      */
     public long getTotalRuns() {
-      return totalRuns;
+      return totalRuns.sum();
     }
 
     /**
@@ -124,7 +133,7 @@ public class Scavenger extends Thread {
      * @return total number of empty segments
      */
     public long getTotalEmptySegments() {
-      return totalEmptySegments;
+      return totalEmptySegments.sum();
     }
     
     /**
@@ -133,7 +142,7 @@ public class Scavenger extends Thread {
      * @return total run time
      */
     public long getTotalRunTimes() {
-      return totalRunTimes;
+      return totalRunTimes.sum();
     }
 
     /**
@@ -142,7 +151,7 @@ public class Scavenger extends Thread {
      * @return total items scanned
      */
     public long getTotalItemsScanned() {
-      return totalItemsScanned;
+      return totalItemsScanned.sum();
     }
 
     /**
@@ -151,7 +160,7 @@ public class Scavenger extends Thread {
      * @return total items freed
      */
     public long getTotalItemsFreed() {
-      return totalItemsFreed;
+      return totalItemsFreed.sum();
     }
 
     /**
@@ -160,7 +169,7 @@ public class Scavenger extends Thread {
      * @return total items expired
      */
     public long getTotalItemsExpired() {
-      return totalItemsExpired;
+      return totalItemsExpired.sum();
     }
 
     /**
@@ -169,7 +178,7 @@ public class Scavenger extends Thread {
      * @return total bytes scanned
      */
     public long getTotalBytesScanned() {
-      return totalBytesScanned;
+      return totalBytesScanned.sum();
     }
 
     /**
@@ -178,7 +187,7 @@ public class Scavenger extends Thread {
      * @return total bytes freed
      */
     public long getTotalBytesFreed() {
-      return totalBytesFreed;
+      return totalBytesFreed.sum();
     }
 
     /**
@@ -187,22 +196,22 @@ public class Scavenger extends Thread {
      * @return total bytes expired
      */
     public long getTotalBytesExpired() {
-      return totalBytesExpired;
+      return totalBytesExpired.sum();
     }
     
     @Override
     public void save(OutputStream os) throws IOException {
       DataOutputStream dos = Utils.toDataOutputStream(os);
       dos.writeUTF(cacheName);
-      dos.writeLong(totalBytesExpired);
-      dos.writeLong(totalBytesFreed);
-      dos.writeLong(totalBytesScanned);
-      dos.writeLong(totalEmptySegments);
-      dos.writeLong(totalItemsExpired);
-      dos.writeLong(totalItemsFreed);
-      dos.writeLong(totalItemsScanned);
-      dos.writeLong(totalRuns);
-      dos.writeLong(totalRunTimes);
+      dos.writeLong(totalBytesExpired.sum());
+      dos.writeLong(totalBytesFreed.sum());
+      dos.writeLong(totalBytesScanned.sum());
+      dos.writeLong(totalEmptySegments.sum());
+      dos.writeLong(totalItemsExpired.sum());
+      dos.writeLong(totalItemsFreed.sum());
+      dos.writeLong(totalItemsScanned.sum());
+      dos.writeLong(totalRuns.sum());
+      dos.writeLong(totalRunTimes.sum());
       dos.writeDouble(dumpBelowRatioMin);
       dos.writeDouble(dumpBelowRatioMax);
       dos.writeDouble(dumpBelowRatio);
@@ -214,15 +223,24 @@ public class Scavenger extends Thread {
     public void load(InputStream is) throws IOException {
       DataInputStream dis = Utils.toDataInputStream(is);
       cacheName = dis.readUTF();
-      totalBytesExpired = dis.readLong();
-      totalBytesFreed = dis.readLong();
-      totalBytesScanned = dis.readLong();
-      totalEmptySegments = dis.readLong();
-      totalItemsExpired = dis.readLong();
-      totalItemsFreed = dis.readLong();
-      totalItemsScanned  = dis.readLong();
-      totalRuns = dis.readLong();
-      totalRunTimes = dis.readLong();
+      totalBytesExpired.reset();
+      totalBytesExpired.add(dis.readLong());
+      totalBytesFreed.reset();
+      totalBytesFreed.add(dis.readLong());
+      totalBytesScanned.reset();
+      totalBytesScanned.add(dis.readLong());
+      totalEmptySegments.reset();
+      totalEmptySegments.add(dis.readLong());
+      totalItemsExpired.reset();
+      totalItemsExpired.add(dis.readLong());
+      totalItemsFreed.reset();
+      totalItemsFreed.add(dis.readLong());
+      totalItemsScanned.reset();
+      totalItemsScanned.add(dis.readLong());
+      totalRuns.reset();
+      totalRuns.add(dis.readLong());
+      totalRunTimes.reset();
+      totalRunTimes.add(dis.readLong());
       dumpBelowRatioMin = dis.readDouble();
       dumpBelowRatioMax = dis.readDouble();
       dumpBelowRatio = dis.readDouble();
@@ -275,6 +293,10 @@ public class Scavenger extends Thread {
 
   private volatile long runStartTime = System.currentTimeMillis();
 
+  /* Stop request. Thread interrupt is not used to stop scavenger: it closes 
+   * file channels of data segments if it happens during a file read */
+  private volatile boolean stopped;
+
   private double dumpBelowRatioMin;
   
   private double dumpBelowRatioMax;
@@ -287,13 +309,30 @@ public class Scavenger extends Thread {
   
   private static AtomicInteger numInstances = new AtomicInteger();
   
-  private static int maxInstances = 1; // TODO: make it configurable
-  
-  /* Clean deleted only items - do not purge low ranks*/
-  private boolean cleanDeletedOnly = true;
+  /* Scavenger scales with a number of worker threads (see CacheConfig) */
+  private static int maxInstances = 1;
   
   private long maxSegmentsBeforeStallDetected;
   
+  /* Number of worker threads */
+  private int numThreads;
+  
+  /* Number of items validated in the memory index in one batch */
+  private int indexBatchSize;
+  
+  /* Number of segments processed by all workers during this run */
+  private final AtomicInteger segmentsProcessed = new AtomicInteger();
+  
+  /* Number of segments which are being recycled by workers */
+  private final AtomicInteger segmentsInProgress = new AtomicInteger();
+  
+  /**
+   * Request scavenger to stop, it exits after current segment is processed
+   */
+  public void stopScavenger() {
+    this.stopped = true;
+  }
+  
   public Scavenger(Cache cache) {
     super("c2 scavenger");
     this.cache = cache;
@@ -325,7 +364,9 @@ public class Scavenger extends Thread {
     }
     this.maxSegmentsBeforeStallDetected = 
         this.config.getScavengerMaxSegmentsBeforeStall(cacheName);
-    stats.totalRuns++;
+    this.numThreads = Math.max(1, this.config.getScavengerNumberOfThreads(cacheName));
+    this.indexBatchSize = Math.max(1, this.config.getScavengerIndexBatchSize(cacheName));
+    stats.totalRuns.increment();
     
   }
   
@@ -355,15 +396,58 @@ public class Scavenger extends Thread {
 //        "%d - scavenger started at %s allocated storage=%d maximum storage=%d num-instances=%d max-instances=%d\n", Thread.currentThread().getId(),
 //        format.format(new Date()), engine.getStorageAllocated(), engine.getMaximumStorageSize(), numInstances.get(), maxInstances);
       LOG.info(
-          "scavenger [{}] started at {} allocated storage={} maximum storage={}", cache.getName(),
-          format.format(new Date()), engine.getStorageAllocated(), engine.getMaximumStorageSize());
+          "scavenger [{}] started at {} allocated storage={} maximum storage={} workers={}", 
+          cache.getName(), format.format(new Date()), engine.getStorageAllocated(), 
+          engine.getMaximumStorageSize(), this.numThreads);
+      // Workers claim distinct segments, this thread is worker 0
+      Thread[] helpers = new Thread[this.numThreads - 1];
+      for (int i = 0; i < helpers.length; i++) {
+        helpers[i] = new Thread(new Worker(), getName() + "-" + (i + 1));
+        helpers[i].start();
+      }
+      new Worker().run();
+      for (Thread t: helpers) {
+        try {
+          t.join();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    } finally {
+      numInstances.decrementAndGet();
+      this.cache.finishScavenger(this);
+    }
+    long runEnd = System.currentTimeMillis();
+    // Update stats
+    stats.totalRunTimes.add(runEnd - runStart);
+    LOG.info(
+        "scavenger [{}] finished at {} allocated storage={} maximum storage=%{}", cache.getName(),
+        format.format(new Date()), engine.getStorageAllocated(), engine.getMaximumStorageSize());
+//    System.out.printf(
+//      "%d - scavenger finished at %s allocated storage=%d maximum storage=%d\n", Thread.currentThread().getId(),
+//      format.format(new Date()), engine.getStorageAllocated(), engine.getMaximumStorageSize());
+  }
 
+  /**
+   * Scavenger worker. Every worker claims segments for recycling with 
+   * {@link IOEngine#getSegmentForRecycling()}, so workers never process the same segment,
+   * and uses its own segment scanner.
+   */
+  private class Worker implements Runnable {
+    
+    /* Discard cached entry if it in this lower percentile */
+    private double dumpBelowRatio = Scavenger.this.dumpBelowRatio;
+    
+    /* Clean deleted only items - do not purge low ranks*/
+    private boolean cleanDeletedOnly = true;
+    
+    @Override
+    public void run() {
+      IOEngine engine = cache.getEngine();
       boolean finished = false;
       
-      int segmentsProcessed = 0;
-      
       while (!finished) {
-        if (Thread.currentThread().isInterrupted()) {
+        if (stopped || Thread.currentThread().isInterrupted()) {
           /*DEBUG*/ System.out.printf("Scavenger [%s] - interrupted - exited\n", cache.getName());
           break;
         }
@@ -374,10 +458,17 @@ public class Scavenger extends Thread {
           LOG.warn(Thread.currentThread().getName() + ": empty segment");
           return;
         }
+        if (!startProcessing(engine)) {
+          engine.releaseSegmentForRecycling(s);
+          break;
+        }
         if (shouldStopOn(s)) {
+          // Release claimed segment
+          engine.releaseSegmentForRecycling(s);
+          segmentsInProgress.decrementAndGet();
           break;
         }
-        if (segmentsProcessed >= maxSegmentsBeforeStallDetected) {
+        if (segmentsProcessed.get() >= maxSegmentsBeforeStallDetected) {
           dumpBelowRatio = 1.0;// improve scavenger's performance - dump everything
           cleanDeletedOnly = false;
         }
@@ -385,7 +476,7 @@ public class Scavenger extends Thread {
         long maxExpire = s.getInfo().getMaxExpireAt();
         if (s.getInfo().getTotalActiveItems() == 0
             || (maxExpire < System.currentTimeMillis() && maxExpire > 0)) {
-          stats.totalEmptySegments++;
+          stats.totalEmptySegments.increment();
         }
         try {
           finished = cleanSegment(s);
@@ -398,182 +489,209 @@ public class Scavenger extends Thread {
           engine.disposeDataSegment(s);
         } catch (IOException e) {
           LOG.error(e);
+          engine.releaseSegmentForRecycling(s);
           return;
+        } finally {
+          segmentsInProgress.decrementAndGet();
         }
         // Update admission controller statistics
         engine.finishRecycling(s);
-        segmentsProcessed++;
+        segmentsProcessed.incrementAndGet();
       }
-    } finally {
-      numInstances.decrementAndGet();
-      this.cache.finishScavenger(this);
     }
-    long runEnd = System.currentTimeMillis();
-    // Update stats
-    stats.totalRunTimes += (runEnd - runStart);
-    LOG.info(
-        "scavenger [{}] finished at {} allocated storage={} maximum storage=%{}", cache.getName(),
-        format.format(new Date()), engine.getStorageAllocated(), engine.getMaximumStorageSize());
-//    System.out.printf(
-//      "%d - scavenger finished at %s allocated storage=%d maximum storage=%d\n", Thread.currentThread().getId(),
-//      format.format(new Date()), engine.getStorageAllocated(), engine.getMaximumStorageSize());
-  }
 
-  private boolean shouldStopOn(Segment s) {
-    long expire = s.getInfo().getMaxExpireAt();
-    long n = s.getAliveItems();
-    long currentTime = System.currentTimeMillis();
-    IOEngine engine = cache.getEngine();
-    if (engine.size() == 0) {
-      return true;
-    }
-    if ((expire > 0 && expire <= currentTime) || n == 0) {
+    /**
+     * Start processing of a claimed segment. Segments are processed one at a time when:
+     * 1. Storage is full - live items of concurrently recycled segments compete 
+     *    for the same RAM buffers and can be lost
+     * 2. Stall detection threshold is close - stop condition must be checked after 
+     *    other workers finish, otherwise extra segments are purged completely
+     * @param engine I/O engine
+     * @return true - proceed, false - scavenger was stopped
+     */
+    private boolean startProcessing(IOEngine engine) {
+      while (!stopped) {
+        int n = segmentsInProgress.get();
+        boolean parallel = engine.hasFreeSegments() 
+            && segmentsProcessed.get() + n < maxSegmentsBeforeStallDetected;
+        if ((n == 0 || parallel) && segmentsInProgress.compareAndSet(n, n + 1)) {
+          return true;
+        }
+        try {
+          Thread.sleep(1);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          return false;
+        }
+      }
       return false;
     }
-    double sratio = (double) s.getAliveItems() / s.getTotalItems();    
-    double minActiveRatio = config.getMinimumActiveDatasetRatio(cache.getName());
-    if (sratio >= minActiveRatio) {
-      cleanDeletedOnly = false;
-    } else {
-      cleanDeletedOnly = true;
-    }
-    double usage = engine.getStorageAllocatedRatio();
-    double activeRatio = engine.activeSizeRatio();
-    cleanDeletedOnly = cleanDeletedOnly && usage < stopRatio;
-    return activeRatio >= minActiveRatio && usage < stopRatio;   
-  }
 
-  private boolean cleanSegment(Segment s) throws IOException {
-
-    Segment.Info info = s.getInfo();
-    long currentTime = System.currentTimeMillis();
-    long maxExpire = info.getMaxExpireAt();
-    boolean allExpired = maxExpire > 0 && maxExpire <= currentTime;
-    boolean empty = !allExpired && info.getTotalActiveItems() == 0;
-    if (allExpired || empty) {
-      // We can dump it completely w/o asking memory index
-      long dataSize = info.getSegmentDataSize();
-      // Update stats
-      stats.totalBytesFreed += dataSize;
-      stats.totalBytesScanned += dataSize;
-      return false; // not finished yet
-    } else {
-      return cleanSegmentInternal(s);
+    private boolean shouldStopOn(Segment s) {
+      long expire = s.getInfo().getMaxExpireAt();
+      long n = s.getAliveItems();
+      long currentTime = System.currentTimeMillis();
+      IOEngine engine = cache.getEngine();
+      if (engine.size() == 0) {
+        return true;
+      }
+      if ((expire > 0 && expire <= currentTime) || n == 0) {
+        return false;
+      }
+      double sratio = (double) s.getAliveItems() / s.getTotalItems();    
+      double minActiveRatio = config.getMinimumActiveDatasetRatio(cache.getName());
+      if (sratio >= minActiveRatio) {
+        cleanDeletedOnly = false;
+      } else {
+        cleanDeletedOnly = true;
+      }
+      // Segments being recycled by other workers will be released soon
+      double usage = engine.getStorageAllocatedRatio() - (double) (segmentsInProgress.get() - 1) 
+          * engine.getSegmentSize() / engine.getMaximumStorageSize();
+      double activeRatio = engine.activeSizeRatio();
+      cleanDeletedOnly = cleanDeletedOnly && usage < stopRatio;
+      return activeRatio >= minActiveRatio && usage < stopRatio;   
     }
-  }
 
-  private byte[] checkBuffer(byte[] buffer, int requiredSize, boolean isDirect) {
-    if (isDirect) {
-      return buffer;
-    }
-    if (buffer.length < requiredSize) {
-      buffer = new byte[requiredSize];
+    private boolean cleanSegment(Segment s) throws IOException {
+
+      Segment.Info info = s.getInfo();
+      long currentTime = System.currentTimeMillis();
+      long maxExpire = info.getMaxExpireAt();
+      boolean allExpired = maxExpire > 0 && maxExpire <= currentTime;
+      boolean empty = !allExpired && info.getTotalActiveItems() == 0;
+      if (allExpired || empty) {
+        // We can dump it completely w/o asking memory index
+        long dataSize = info.getSegmentDataSize();
+        // Update stats
+        stats.totalBytesFreed.add(dataSize);
+        stats.totalBytesScanned.add(dataSize);
+        return false; // not finished yet
+      } else {
+        return cleanSegmentInternal(s);
+      }
     }
-    return buffer;
-  }
-    
-  private boolean cleanSegmentInternal(Segment s) throws IOException {
-    IOEngine engine = this.cache.getEngine();
-    MemoryIndex index = engine.getMemoryIndex();
-    SegmentScanner sc = null;
-    @SuppressWarnings("unused")
-    int scanned = 0;
-    int deleted = 0;
-    int expired = 0;
-    int notFound = 0;
-    ResultWithRankAndExpire result = new ResultWithRankAndExpire();
 
-    try {
-      
-      sc = engine.getScanner(s); // acquires read lock
-      boolean isDirect =  sc.isDirect();
-      
-      byte[] keyBuffer = new byte[4096];
-      byte[] valueBuffer = new byte[4096];
+    private boolean cleanSegmentInternal(Segment s) throws IOException {
+      IOEngine engine = cache.getEngine();
+      MemoryIndex index = engine.getMemoryIndex();
+      SegmentScanner sc = null;
+      int sid = s.getId();
+      @SuppressWarnings("unused")
+      int scanned = 0;
+      int deleted = 0;
+      int expired = 0;
+      int notFound = 0;
+      long bytesScanned = 0;
+      long bytesFreed = 0;
+      long bytesExpired = 0;
+      // Items are validated in batches: keys and values of a scanner window
+      // are copied into a batch buffer, because scanner's addresses are not stable
+      // after next() (compressed blocks)
+      int batchSize = indexBatchSize;
+      long[] hashes = new long[batchSize];
+      int[] offsets = new int[batchSize];
+      int[] keySizes = new int[batchSize];
+      int[] valueSizes = new int[batchSize];
+      ResultWithRankAndExpire[] results = new ResultWithRankAndExpire[batchSize];
+      for (int i = 0; i < batchSize; i++) {
+        results[i] = new ResultWithRankAndExpire();
+      }
+      byte[] batchBuffer = new byte[MAX_BATCH_BUFFER_SIZE];
       
-      while (sc.hasNext()) {
-        // TODO: will it work for file based scanner? - FIXME
-        final long keyPtr = sc.keyAddress();
-        final int keySize = sc.keyLength();
-        final long valuePtr = sc.valueAddress();
-        final int valSize = sc.valueLength();
-        final int totalSize = Utils.kvSize(keySize, valSize);
-        stats.totalBytesScanned += totalSize;
+      try {
         
-        keyBuffer = checkBuffer(keyBuffer, keySize, isDirect);
-        valueBuffer = checkBuffer(valueBuffer, valSize, isDirect);
+        sc = engine.getScanner(s); // acquires read lock
+        int num = 0;
+        int batchBytes = 0;
+        boolean hasNext = sc.hasNext();
         
-        double ratio = cleanDeletedOnly? 0: dumpBelowRatio;
-        
-        if (isDirect) {
-          result = index.checkDeleteKeyForScavenger(keyPtr, keySize, result, ratio);
-        } else {
-          sc.getKey(keyBuffer, 0);
-          result = index.checkDeleteKeyForScavenger(keyBuffer, 0, keySize, result, ratio);
-        }
-
-        Result res = result.getResult();
-        int rank = result.getRank();
-        long expire = result.getExpire();
-        scanned++;
-        switch (res) {
-          case EXPIRED:
-            stats.totalBytesExpired += totalSize;
-            stats.totalBytesFreed += totalSize;
-            stats.totalItemsExpired += 1;
-            expired++;
-            break;
-          case NOT_FOUND:
-            stats.totalBytesFreed += totalSize;
-            notFound++;
-            break;
-          case DELETED:
-            // Update stats
-            stats.totalBytesFreed += totalSize;
-            // Return Item back to AQ
-            // TODO: fix this code. We need to move data to a victim cache on
-            // memory index eviction.
-            deleted++;
-            break;
-          case OK:
-            // Put value back into the cache - it has high popularity
-            if (isDirect) {
-              this.cache.put(keyPtr, keySize, valuePtr, valSize, expire, rank, true, true);
-            } else {
-              sc.getValue(valueBuffer, 0);
-              this.cache.put(keyBuffer, 0, keySize, valueBuffer, 0, valSize, expire, rank, true, true);
+        while (hasNext || num > 0) {
+          if (hasNext) {
+            final int keySize = sc.keyLength();
+            final int valSize = sc.valueLength();
+            bytesScanned += Utils.kvSize(keySize, valSize);
+            if (batchBuffer.length < batchBytes + keySize + valSize) {
+              batchBuffer = Arrays.copyOf(batchBuffer, batchBytes + keySize + valSize);
+            }
+            sc.getKey(batchBuffer, batchBytes);
+            sc.getValue(batchBuffer, batchBytes + keySize);
+            hashes[num] = Utils.hash64(batchBuffer, batchBytes, keySize);
+            offsets[num] = batchBytes;
+            keySizes[num] = keySize;
+            valueSizes[num] = valSize;
+            batchBytes += keySize + valSize;
+            num++;
+            sc.next();
+            hasNext = sc.hasNext();
+            if (hasNext && num < batchSize && batchBytes < MAX_BATCH_BUFFER_SIZE) {
+              continue;
             }
-            break;
+          }
+          double ratio = cleanDeletedOnly? 0: dumpBelowRatio;
+          // One lock acquisition per index lock stripe
+          index.checkDeleteKeysForScavenger(hashes, num, results, ratio);
+          
+          for (int i = 0; i < num; i++) {
+            final int keyOffset = offsets[i];
+            final int keySize = keySizes[i];
+            final int valSize = valueSizes[i];
+            final int totalSize = Utils.kvSize(keySize, valSize);
+            Result res = results[i].getResult();
+            int rank = results[i].getRank();
+            long expire = results[i].getExpire();
+            scanned++;
+            switch (res) {
+              case EXPIRED:
+                bytesExpired += totalSize;
+                bytesFreed += totalSize;
+                expired++;
+                break;
+              case NOT_FOUND:
+                bytesFreed += totalSize;
+                notFound++;
+                break;
+              case DELETED:
+                // Update stats
+                bytesFreed += totalSize;
+                // Return Item back to AQ
+                // TODO: fix this code. We need to move data to a victim cache on
+                // memory index eviction.
+                deleted++;
+                break;
+              case OK:
+                // Move item to a compaction segment - it has high popularity.
+                // Put it back into the cache if relocation failed
+                if (!engine.relocate(batchBuffer, keyOffset, keySize, batchBuffer,
+                  keyOffset + keySize, valSize, expire, rank, sid)) {
+                  cache.put(batchBuffer, keyOffset, keySize, batchBuffer, keyOffset + keySize,
+                    valSize, expire, rank, true, true);
+                }
+                break;
+            }
+          }
+          num = 0;
+          batchBytes = 0;
         }
-        sc.next();
-      }
-//      System.out.println(Thread.currentThread().getId() + 
-//          "- scavenger finished segment id ="
-//              + s.getId()
-//              + " scanned="
-//              + scanned
-//              + " deleted="
-//              + deleted
-//              + " not found="
-//              + notFound
-//              + " expired="
-//              + expired
-//              + " usageRatio="
-//              + engine.getStorageAllocatedRatio()
-//              + " allocated=" + engine.getStorageAllocated());
-    } catch (IOException e) {  
-      e.printStackTrace();
-      System.exit(-1);
-    } finally {
-      if (sc != null) {
-        sc.close();
+      } catch (IOException e) {  
+        e.printStackTrace();
+        System.exit(-1);
+      } finally {
+        if (sc != null) {
+          sc.close();
+        }
+        // Aggregate statistics once per segment
+        stats.totalBytesScanned.add(bytesScanned);
+        stats.totalBytesFreed.add(bytesFreed);
+        stats.totalBytesExpired.add(bytesExpired);
+        stats.totalItemsExpired.add(expired);
       }
+      // Returns true if could not clean anything
+      // means Scavenger MUST stop and log warning
+      // Mostly for testing - in a real application properly configured
+      // should never happen
+      return (deleted + expired + notFound) == 0;
     }
-    // Returns true if could not clean anything
-    // means Scavenger MUST stop and log warning
-    // Mostly for testing - in a real application properly configured
-    // should never happen
-    return (deleted + expired + notFound) == 0;
   }
 
   @SuppressWarnings("unused")
@@ -593,7 +711,7 @@ public class Scavenger extends Thread {
         final int keySize = sc.keyLength();
         final int valSize = sc.valueLength();
         final int totalSize = Utils.kvSize(keySize, valSize);
-        stats.totalBytesScanned += totalSize;
+        stats.totalBytesScanned.add(totalSize);
         if (!isDirect && buffer.length < keySize) {
           buffer = new byte[keySize];
         }
@@ -617,7 +735,7 @@ public class Scavenger extends Thread {
    * @return run rate
    */
   public long getScavengerRunRateAverage() {
-    return (long) stats.totalBytesFreed * 1000 / (System.currentTimeMillis() - runStartTime); 
+    return stats.getTotalBytesFreed() * 1000 / (System.currentTimeMillis() - runStartTime); 
   }
 
   public static boolean decreaseThroughput(String cacheName) {
@@ -0,0 +1,187 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.carrot.cache.controllers;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.Predicate;
+
+import com.carrot.cache.io.Segment;
+
+/**
+ * Base class for recycling selectors which keep sealed data segments in a priority heap
+ * instead of scanning all data segments on every selection.
+ *
+ * Heap is built on a first selection and then maintained incrementally: I/O engine reports 
+ * segments, which were sealed, released or whose statistics changed 
+ * ({@link #segmentUpdated(Segment)}). Updates are cheap
+ * (segment id is queued once until next selection), queued segments are re - scored
+ * during selection, so selection takes O(log n) per updated segment. Segments,
+ * which are fully expired, are selected first (they are kept in a separate heap
+ * ordered by maximum expiration time).
+ */
+public abstract class IndexedRecyclingSelector implements RecyclingSelector {
+
+  /* Segments ordered by score */
+  private SegmentHeap scores;
+
+  /* Segments ordered by maximum expiration time */
+  private SegmentHeap expires;
+
+  /* Update pending flags by segment id */
+  private volatile AtomicIntegerArray pending;
+
+  /* Ids of segments with pending updates */
+  private final ConcurrentLinkedQueue<Integer> updates = new ConcurrentLinkedQueue<Integer>();
+
+  /**
+   * Score of a segment, segment with a minimum score is selected for recycling
+   * @param info segment's info
+   * @return score
+   */
+  protected abstract double score(Segment.Info info);
+
+  /**
+   * Secondary score (resolves ties), by default - segment's creation time
+   * @param info segment's info
+   * @return secondary score
+   */
+  protected long tie(Segment.Info info) {
+    return info.getCreationTime();
+  }
+
+  private void init(int maxSegments) {
+    this.scores = new SegmentHeap(maxSegments);
+    this.expires = new SegmentHeap(maxSegments);
+    this.updates.clear();
+    this.pending = new AtomicIntegerArray(maxSegments);
+  }
+
+  @Override
+  public void segmentUpdated(Segment s) {
+    AtomicIntegerArray pending = this.pending;
+    if (pending == null) {
+      // Heap is built on a first selection
+      return;
+    }
+    int id = s.getId();
+    if (pending.compareAndSet(id, 0, 1)) {
+      this.updates.offer(id);
+    }
+  }
+
+  @Override
+  public Segment selectForRecycling(Segment[] segments) {
+    return selectForRecycling(segments, null);
+  }
+
+  @Override
+  public synchronized Segment selectForRecycling(Segment[] segments,
+      Predicate<Segment> filter) {
+    if (this.pending == null || this.pending.length() != segments.length) {
+      rebuild(segments);
+    } else {
+      applyUpdates(segments);
+    }
+    long now = System.currentTimeMillis();
+    Segment s = top(this.expires, segments, filter);
+    if (s != null && this.expires.getKey(s.getId()) < now) {
+      // All items are expired
+      return s;
+    }
+    return top(this.scores, segments, filter);
+  }
+
+  /**
+   * Number of segments in the index (for testing)
+   * @return number of segments
+   */
+  synchronized int size() {
+    return this.scores == null? 0: this.scores.size();
+  }
+
+  private void rebuild(Segment[] segments) {
+    init(segments.length);
+    for (Segment s: segments) {
+      if (s != null) {
+        update(s.getId(), s);
+      }
+    }
+  }
+
+  private void applyUpdates(Segment[] segments) {
+    Integer id;
+    while ((id = this.updates.poll()) != null) {
+      // Reset flag before reading segment's state, so concurrent updates are not lost
+      this.pending.set(id, 0);
+      update(id, segments[id]);
+    }
+  }
+
+  private void update(int id, Segment s) {
+    if (!isCandidate(s)) {
+      this.scores.remove(id);
+      this.expires.remove(id);
+      return;
+    }
+    Segment.Info info = s.getInfo();
+    this.scores.update(s, score(info), tie(info));
+    long maxExpire = info.getMaxExpireAt();
+    if (maxExpire > 0) {
+      this.expires.update(s, maxExpire, 0);
+    } else {
+      this.expires.remove(id);
+    }
+  }
+
+  private boolean isCandidate(Segment s) {
+    return s != null && s.isSealed() && !s.isRecycling();
+  }
+
+  /**
+   * Get the top candidate of a heap. Segments which were disposed or claimed
+   * for recycling since last update are removed from the index
+   * @param heap heap
+   * @param segments data segments
+   * @param filter segment filter (can be null)
+   * @return segment or null
+   */
+  private Segment top(SegmentHeap heap, Segment[] segments, Predicate<Segment> filter) {
+    Segment s;
+    Segment[] skipped = null;
+    int numSkipped = 0;
+    while ((s = heap.peek()) != null) {
+      int id = s.getId();
+      if (segments[id] != s || !isCandidate(s)) {
+        this.scores.remove(id);
+        this.expires.remove(id);
+        continue;
+      }
+      if (filter == null || filter.test(s)) {
+        break;
+      }
+      // Remove temporarily
+      if (skipped == null) {
+        skipped = new Segment[heap.size()];
+      }
+      skipped[numSkipped++] = s;
+      heap.remove(id);
+    }
+    for (int i = 0; i < numSkipped; i++) {
+      update(skipped[i].getId(), skipped[i]);
+    }
+    return s;
+  }
+}
@@ -44,6 +44,9 @@ public class LeastAccessedRecyclingSelector implements RecyclingSelector {
         notSealed++;
         continue;
       }
+      if (s.isRecycling()) {
+        continue;
+      }
       Segment.Info info = s.getInfo();
       long maxExpireAt = info.getMaxExpireAt();
       long currentTime = System.currentTimeMillis();
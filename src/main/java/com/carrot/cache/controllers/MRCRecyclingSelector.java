@@ -22,31 +22,14 @@ import com.carrot.cache.io.Segment;
  * Most Recently Created (MRC)
  *
  */
-public class MRCRecyclingSelector implements RecyclingSelector {
+public class MRCRecyclingSelector extends IndexedRecyclingSelector {
 
   public MRCRecyclingSelector() {
   }
   
   @Override
-  public Segment selectForRecycling(Segment[] segments) {
-    Segment selection = null;
-    long maxCreationTime = Long.MIN_VALUE;
-    for(int i = 0; i < segments.length; i++) {
-      Segment s = segments[i];
-      if (s == null || !s.isSealed()) continue;
-      Segment.Info info = s.getInfo();
-      long maxExpireAt = info.getMaxExpireAt();
-      long currentTime = System.currentTimeMillis();
-      if (info.getTotalActiveItems() == 0 || 
-          (maxExpireAt > 0 && maxExpireAt < currentTime)){
-        return s;
-      }
-      long time = info.getCreationTime();
-      if (time > maxCreationTime) {
-        maxCreationTime = time;
-        selection = s;
-      }
-    }
-    return selection;
+  protected double score(Segment.Info info) {
+    // Empty segments first
+    return info.getTotalActiveItems() == 0? -Double.MAX_VALUE: -info.getCreationTime();
   }
 }
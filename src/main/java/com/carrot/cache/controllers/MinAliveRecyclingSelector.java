@@ -19,44 +19,22 @@ import com.carrot.cache.io.Segment;
 /**
  * 
  * This selector selects a segment with a minimum number of alive items
+ * (segments with more than 99% of alive items are selected in a creation order)
  *
  */
-public class MinAliveRecyclingSelector implements RecyclingSelector {
+public class MinAliveRecyclingSelector extends IndexedRecyclingSelector {
 
   public MinAliveRecyclingSelector() {
   }
   
   @Override
-  public Segment selectForRecycling(Segment[] segments) {
-    Segment selection1 = null, selection2 = null;
-    double minRatio = 0.99;// little hack
-    long minCreationTime = Long.MAX_VALUE;
-    
-    for(int i = 0; i < segments.length; i++) {
-      Segment s = segments[i];
-      if (s == null || !s.isSealed()) {
-        continue;
-      }
-      Segment.Info info = s.getInfo();
-  
-      long maxExpire = info.getMaxExpireAt();
-      if (maxExpire > 0 && System.currentTimeMillis() > maxExpire) {
-        // All expired
-        return s;
-      }
-      int active = info.getTotalActiveItems();
-      int total = info.getTotalItems();
-      double r = (double) active / total;
-      if (r < minRatio) {
-        minRatio = r;
-        selection1  = s;
-      }
-      long creationTime = info.getCreationTime();
-      if (creationTime < minCreationTime) {
-        minCreationTime = creationTime;
-        selection2 = s;
-      }
+  protected double score(Segment.Info info) {
+    int total = info.getTotalItems();
+    if (total == 0) {
+      return 0;
     }
-    return selection1 != null? selection1: selection2;
+    double r = (double) info.getTotalActiveItems() / total;
+    // little hack
+    return r < 0.99? r: 1.0;
   }
 }
@@ -14,15 +14,43 @@
  */
 package com.carrot.cache.controllers;
 
+import java.util.function.Predicate;
+
 import com.carrot.cache.io.Segment;
 import com.carrot.cache.util.Persistent;
 
 public interface RecyclingSelector extends Persistent {
   
   /**
-   * Select best segment to recycle
+   * Select best segment to recycle. Segments which are not sealed or already claimed 
+   * for recycling ({@link Segment#isRecycling()}) must be skipped
    * @param segments all segments to chose from
    * @return segment to select
    */
   public Segment selectForRecycling(Segment[] segments);
+  
+  /**
+   * Select best segment to recycle among segments which satisfy a filter
+   * @param segments all segments to chose from
+   * @param filter segment filter
+   * @return segment to select
+   */
+  public default Segment selectForRecycling(Segment[] segments, Predicate<Segment> filter) {
+    Segment[] candidates = new Segment[segments.length];
+    for (int i = 0; i < segments.length; i++) {
+      Segment s = segments[i];
+      if (s != null && filter.test(s)) {
+        candidates[i] = s;
+      }
+    }
+    return selectForRecycling(candidates);
+  }
+  
+  /**
+   * Segment was sealed, released after recycling claim or its statistics changed
+   * (items were deleted or expired). Selectors which keep an index of segments update it
+   * @param s segment
+   */
+  public default void segmentUpdated(Segment s) {
+  }
 }
@@ -0,0 +1,197 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.carrot.cache.controllers;
+
+import java.util.Arrays;
+
+import com.carrot.cache.io.Segment;
+
+/**
+ * Indexed binary min - heap of data segments. Segments are ordered by a key, ties are resolved
+ * by a secondary key. Segment can be added, updated and removed by its id in O(log n).
+ * This class is not thread - safe.
+ */
+final class SegmentHeap {
+
+  /* Segment ids in a heap order */
+  private final int[] heap;
+
+  /* Positions in a heap by segment id (-1 - not in a heap) */
+  private final int[] positions;
+
+  /* Keys by segment id */
+  private final double[] keys;
+
+  /* Secondary keys by segment id */
+  private final long[] ties;
+
+  /* Segments by segment id */
+  private final Segment[] segments;
+
+  /* Heap size */
+  private int size;
+
+  /**
+   * Constructor
+   * @param capacity maximum number of segments (segment ids are less than capacity)
+   */
+  SegmentHeap(int capacity) {
+    this.heap = new int[capacity];
+    this.positions = new int[capacity];
+    this.keys = new double[capacity];
+    this.ties = new long[capacity];
+    this.segments = new Segment[capacity];
+    Arrays.fill(this.positions, -1);
+  }
+
+  /**
+   * Add segment or update its keys
+   * @param s segment
+   * @param key key
+   * @param tie secondary key
+   */
+  void update(Segment s, double key, long tie) {
+    int id = s.getId();
+    this.segments[id] = s;
+    this.keys[id] = key;
+    this.ties[id] = tie;
+    int pos = this.positions[id];
+    if (pos < 0) {
+      pos = this.size++;
+      this.heap[pos] = id;
+      this.positions[id] = pos;
+    }
+    if (!siftUp(pos)) {
+      siftDown(pos);
+    }
+  }
+
+  /**
+   * Remove segment
+   * @param id segment id
+   */
+  void remove(int id) {
+    int pos = this.positions[id];
+    if (pos < 0) {
+      return;
+    }
+    this.positions[id] = -1;
+    this.segments[id] = null;
+    int last = this.heap[--this.size];
+    if (pos == this.size) {
+      return;
+    }
+    this.heap[pos] = last;
+    this.positions[last] = pos;
+    if (!siftUp(pos)) {
+      siftDown(pos);
+    }
+  }
+
+  /**
+   * Is segment in a heap
+   * @param id segment id
+   * @return true or false
+   */
+  boolean contains(int id) {
+    return this.positions[id] >= 0;
+  }
+
+  /**
+   * Get segment with a minimum key
+   * @return segment or null (heap is empty)
+   */
+  Segment peek() {
+    return this.size == 0? null: this.segments[this.heap[0]];
+  }
+
+  /**
+   * Get minimum key
+   * @return minimum key (heap must not be empty)
+   */
+  double peekKey() {
+    return this.keys[this.heap[0]];
+  }
+
+  /**
+   * Get key of a segment
+   * @param id segment id
+   * @return key
+   */
+  double getKey(int id) {
+    return this.keys[id];
+  }
+
+  /**
+   * Get secondary key of a segment
+   * @param id segment id
+   * @return secondary key
+   */
+  long getTie(int id) {
+    return this.ties[id];
+  }
+
+  /**
+   * Heap size
+   * @return number of segments in a heap
+   */
+  int size() {
+    return this.size;
+  }
+
+  private boolean less(int id1, int id2) {
+    double k1 = this.keys[id1], k2 = this.keys[id2];
+    return k1 < k2 || (k1 == k2 && this.ties[id1] < this.ties[id2]);
+  }
+
+  private boolean siftUp(int pos) {
+    int id = this.heap[pos];
+    int start = pos;
+    while (pos > 0) {
+      int parent = (pos - 1) >>> 1;
+      int pid = this.heap[parent];
+      if (!less(id, pid)) {
+        break;
+      }
+      this.heap[pos] = pid;
+      this.positions[pid] = pos;
+      pos = parent;
+    }
+    this.heap[pos] = id;
+    this.positions[id] = pos;
+    return pos != start;
+  }
+
+  private void siftDown(int pos) {
+    int id = this.heap[pos];
+    int half = this.size >>> 1;
+    while (pos < half) {
+      int child = 2 * pos + 1;
+      int right = child + 1;
+      if (right < this.size && less(this.heap[right], this.heap[child])) {
+        child = right;
+      }
+      int cid = this.heap[child];
+      if (!less(cid, id)) {
+        break;
+      }
+      this.heap[pos] = cid;
+      this.positions[cid] = pos;
+      pos = child;
+    }
+    this.heap[pos] = id;
+    this.positions[id] = pos;
+  }
+}
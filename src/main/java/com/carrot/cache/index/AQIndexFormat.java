@@ -64,6 +64,11 @@ public class AQIndexFormat implements IndexFormat {
     return 0;
   }
 
+  @Override
+  public void setSegmentIdAndOffset(long buffer, int sid, int dataOffset) {
+    // Does not support
+  }
+
   @Override
   public long getExpire(long ibPtr, long buffer) {
     // Does not support
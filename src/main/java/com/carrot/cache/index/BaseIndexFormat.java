@@ -74,6 +74,15 @@ public class BaseIndexFormat implements IndexFormat {
     return ref & 0xffffffff;
   }
 
+  @Override
+  public void setSegmentIdAndOffset(long buffer, int sid, int dataOffset) {
+    long ptr = buffer + Utils.SIZEOF_INT + Utils.SIZEOF_LONG;
+    // Keep hit bit (high bit)
+    int ref = UnsafeAccess.toInt(ptr);
+    UnsafeAccess.putInt(ptr, (ref & 0xffff0000) | (sid & 0xffff));
+    UnsafeAccess.putInt(ptr + Utils.SIZEOF_INT, dataOffset);
+  }
+
   @Override
   public int getEmbeddedOffset() {
     return Utils.SIZEOF_LONG + Utils.SIZEOF_INT; 
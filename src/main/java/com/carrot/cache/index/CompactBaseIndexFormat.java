@@ -47,6 +47,11 @@ public class CompactBaseIndexFormat implements IndexFormat {
     return v == vv && s == ss;
   }
 
+  @Override
+  public int getFingerprint(long hash) {
+    return (int) ((hash >>> 16) & 0xff);
+  }
+
   @Override
   public int indexEntrySize() {
     return 16;
@@ -80,6 +85,12 @@ public class CompactBaseIndexFormat implements IndexFormat {
     return UnsafeAccess.toInt(buffer + off) & 0xffffffff;
   }
 
+  @Override
+  public void setSegmentIdAndOffset(long buffer, int sid, int dataOffset) {
+    UnsafeAccess.putShort(buffer + sidOffset(), (short) sid);
+    UnsafeAccess.putInt(buffer + dataOffsetOffset(), dataOffset);
+  }
+
   @Override
   public int getEmbeddedOffset() {
     //TODO
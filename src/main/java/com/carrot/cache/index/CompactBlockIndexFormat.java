@@ -64,6 +64,11 @@ public class CompactBlockIndexFormat implements IndexFormat {
     return v == hash;
   }
 
+  @Override
+  public int getFingerprint(long hash) {
+    return (int) ((hash >>> (32 - L + 1)) & 0xff);
+  }
+
   @Override
   public int indexEntrySize() {
     return Utils.SIZEOF_INT + 2 * Utils.SIZEOF_SHORT;
@@ -104,6 +109,13 @@ public class CompactBlockIndexFormat implements IndexFormat {
     return blockNumber * this.blockSize;
   }
 
+  @Override
+  public void setSegmentIdAndOffset(long buffer, int sid, int dataOffset) {
+    UnsafeAccess.putShort(buffer + sidOffset(), (short) (sid & 0xffff));
+    UnsafeAccess.putShort(buffer + dataOffsetOffset(), 
+      (short) ((dataOffset / this.blockSize) & 0xffff));
+  }
+
   @Override
   public int getIndexBlockHeaderSize() {
     return 3 * Utils.SIZEOF_SHORT;
@@ -0,0 +1,299 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.carrot.cache.index;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.carrot.cache.util.UnsafeAccess;
+
+/**
+ * Size class (slab) allocator for memory index blocks.
+ *
+ * Index blocks are allocated in a fixed set of sizes (see MemoryIndex.BASE_MULTIPLIERS)
+ * and every expand, shrink and rehash of a slot replaces one block with another. Instead
+ * of going to the system allocator on every such operation, blocks are carved from large
+ * slabs (one set of slabs per size class) and released blocks are kept in free lists
+ * for reuse. Small per - thread caches of free blocks avoid contention on a size class lock
+ * for the common free - then - allocate pattern of a single writer.
+ *
+ * Slabs are never returned to the system until allocator is disposed, this also means that
+ * memory of a released index block always stays mapped.
+ *
+ * Blocks of non - standard sizes and all blocks when allocator is disabled are served
+ * by the system allocator directly.
+ */
+public class IndexBlockAllocator {
+
+  /* Slab size in bytes */
+  public final static int SLAB_SIZE = 256 * 1024;
+
+  /* Minimum number of blocks in a slab */
+  final static int MIN_BLOCKS_PER_SLAB = 4;
+
+  /* Maximum number of bytes in a per - thread cache of a one size class */
+  final static int THREAD_CACHE_BYTES = 64 * 1024;
+
+  /* Maximum number of blocks in a per - thread cache of a one size class */
+  final static int THREAD_CACHE_MAX_BLOCKS = 16;
+
+  /**
+   * Size class: slabs, current slab allocation position and free list
+   */
+  static class SizeClass {
+    /* Block size */
+    final int blockSize;
+    /* Slab size */
+    final int slabSize;
+    /* Lock */
+    final ReentrantLock lock = new ReentrantLock();
+    /* Allocated slabs */
+    long[] slabs = new long[4];
+    /* Number of allocated slabs */
+    int numSlabs;
+    /* Allocation offset in a last slab */
+    int slabOffset;
+    /* Free list */
+    long[] freeList = new long[16];
+    /* Free list size */
+    int freeCount;
+
+    SizeClass(int blockSize) {
+      this.blockSize = blockSize;
+      int num = Math.max(MIN_BLOCKS_PER_SLAB, SLAB_SIZE / blockSize);
+      this.slabSize = num * blockSize;
+      // Forces slab allocation on a first request
+      this.slabOffset = this.slabSize;
+    }
+  }
+
+  /* Is slab allocation enabled */
+  private final boolean enabled;
+
+  /* Size classes */
+  private final SizeClass[] classes;
+
+  /* Maps size / BASE_SIZE to size class index */
+  private final int[] classIndex;
+
+  /* Maximum number of cached blocks per size class in a thread local cache */
+  private final int[] threadCacheLimits;
+
+  /*
+   * Per - thread free block caches, one array per size class,
+   * the first element of an array is the number of cached blocks
+   */
+  private final ThreadLocal<long[][]> threadCaches;
+
+  /* Total memory reserved (slabs and direct allocations) */
+  private final AtomicLong reserved = new AtomicLong();
+
+  /* Memory used by allocated index blocks */
+  private final AtomicLong used = new AtomicLong();
+
+  /* Total number of allocated slabs */
+  private final AtomicLong slabs = new AtomicLong();
+
+  /**
+   * Constructor
+   * @param enabled is slab allocation enabled
+   */
+  public IndexBlockAllocator(boolean enabled) {
+    this.enabled = enabled;
+    int[] multipliers = MemoryIndex.BASE_MULTIPLIERS;
+    this.classes = new SizeClass[multipliers.length];
+    this.threadCacheLimits = new int[multipliers.length];
+    this.classIndex = new int[multipliers[multipliers.length - 1] + 1];
+    Arrays.fill(this.classIndex, -1);
+    for (int i = 0; i < multipliers.length; i++) {
+      int size = MemoryIndex.BASE_SIZE * multipliers[i];
+      this.classes[i] = new SizeClass(size);
+      this.classIndex[multipliers[i]] = i;
+      this.threadCacheLimits[i] =
+          Math.max(1, Math.min(THREAD_CACHE_MAX_BLOCKS, THREAD_CACHE_BYTES / size));
+    }
+    this.threadCaches = ThreadLocal.withInitial(() -> new long[classes.length][]);
+  }
+
+  /**
+   * Is slab allocation enabled
+   * @return true or false
+   */
+  public boolean isEnabled() {
+    return this.enabled;
+  }
+
+  /**
+   * Allocate index block, memory is zeroed
+   * @param size block size
+   * @return block address
+   */
+  public long allocate(int size) {
+    int idx = sizeClass(size);
+    if (idx < 0) {
+      this.reserved.addAndGet(size);
+      this.used.addAndGet(size);
+      return UnsafeAccess.mallocZeroed(size);
+    }
+    long ptr = 0;
+    long[] cache = threadCaches.get()[idx];
+    if (cache != null && cache[0] > 0) {
+      ptr = cache[(int) cache[0]];
+      cache[0]--;
+    } else {
+      ptr = allocateFromClass(this.classes[idx]);
+    }
+    UnsafeAccess.setMemory(ptr, size, (byte) 0);
+    this.used.addAndGet(size);
+    return ptr;
+  }
+
+  /**
+   * Release index block
+   * @param ptr block address
+   * @param size block size (must be the same as the one was requested on allocation)
+   */
+  public void free(long ptr, int size) {
+    int idx = sizeClass(size);
+    if (idx < 0) {
+      UnsafeAccess.free(ptr);
+      this.reserved.addAndGet(-size);
+      this.used.addAndGet(-size);
+      return;
+    }
+    this.used.addAndGet(-size);
+    long[][] caches = threadCaches.get();
+    long[] cache = caches[idx];
+    if (cache == null) {
+      cache = new long[this.threadCacheLimits[idx] + 1];
+      caches[idx] = cache;
+    }
+    if (cache[0] < cache.length - 1) {
+      cache[0]++;
+      cache[(int) cache[0]] = ptr;
+      return;
+    }
+    // Thread cache is full - move half of it to the size class free list
+    SizeClass sc = this.classes[idx];
+    int toMove = (int) (cache[0] / 2);
+    sc.lock.lock();
+    try {
+      for (int i = 0; i < toMove; i++) {
+        pushFree(sc, cache[(int) cache[0]--]);
+      }
+      pushFree(sc, ptr);
+    } finally {
+      sc.lock.unlock();
+    }
+  }
+
+  /**
+   * Releases all slabs. Allocator can not be used after this call, all blocks
+   * allocated from slabs become invalid. Blocks of non - standard sizes must be released
+   * by a caller before this call
+   */
+  public void dispose() {
+    if (!this.enabled) {
+      return;
+    }
+    for (SizeClass sc: this.classes) {
+      sc.lock.lock();
+      try {
+        for (int i = 0; i < sc.numSlabs; i++) {
+          UnsafeAccess.free(sc.slabs[i]);
+          this.reserved.addAndGet(-sc.slabSize);
+        }
+        sc.numSlabs = 0;
+        sc.slabOffset = sc.slabSize;
+        sc.freeCount = 0;
+      } finally {
+        sc.lock.unlock();
+      }
+    }
+    this.slabs.set(0);
+    this.used.set(0);
+    this.threadCaches.remove();
+  }
+
+  /**
+   * Get total reserved memory (slabs and directly allocated blocks)
+   * @return reserved memory in bytes
+   */
+  public long getReservedMemory() {
+    return this.reserved.get();
+  }
+
+  /**
+   * Get memory used by allocated index blocks
+   * @return used memory in bytes
+   */
+  public long getUsedMemory() {
+    return this.used.get();
+  }
+
+  /**
+   * Get total number of allocated slabs
+   * @return number of slabs
+   */
+  public long getNumberOfSlabs() {
+    return this.slabs.get();
+  }
+
+  /**
+   * Get size class index for a given block size
+   * @param size block size
+   * @return size class index or -1 (not a slab allocation)
+   */
+  private int sizeClass(int size) {
+    if (!this.enabled || size % MemoryIndex.BASE_SIZE != 0) {
+      return -1;
+    }
+    int m = size / MemoryIndex.BASE_SIZE;
+    return m < this.classIndex.length? this.classIndex[m]: -1;
+  }
+
+  private long allocateFromClass(SizeClass sc) {
+    sc.lock.lock();
+    try {
+      if (sc.freeCount > 0) {
+        return sc.freeList[--sc.freeCount];
+      }
+      if (sc.slabOffset + sc.blockSize > sc.slabSize) {
+        // Allocate new slab
+        long slab = UnsafeAccess.malloc(sc.slabSize);
+        if (sc.numSlabs == sc.slabs.length) {
+          sc.slabs = Arrays.copyOf(sc.slabs, 2 * sc.slabs.length);
+        }
+        sc.slabs[sc.numSlabs++] = slab;
+        sc.slabOffset = 0;
+        this.reserved.addAndGet(sc.slabSize);
+        this.slabs.incrementAndGet();
+      }
+      long ptr = sc.slabs[sc.numSlabs - 1] + sc.slabOffset;
+      sc.slabOffset += sc.blockSize;
+      return ptr;
+    } finally {
+      sc.lock.unlock();
+    }
+  }
+
+  private void pushFree(SizeClass sc, long ptr) {
+    if (sc.freeCount == sc.freeList.length) {
+      sc.freeList = Arrays.copyOf(sc.freeList, 2 * sc.freeList.length);
+    }
+    sc.freeList[sc.freeCount++] = ptr;
+  }
+}
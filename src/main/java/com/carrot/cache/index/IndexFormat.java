@@ -100,6 +100,15 @@ public interface IndexFormat extends Persistent {
    */
   public long getOffset(long buffer);
   
+  /**
+   * Update segment id and offset of an index entry in place (item was moved to
+   * another segment). Hash, hit count, size and expiration time are preserved
+   * @param buffer address of an index entry
+   * @param sid new segment id
+   * @param dataOffset new offset in a segment
+   */
+  public void setSegmentIdAndOffset(long buffer, int sid, int dataOffset);
+  
   /**
    * For embedded into index key-value returns offset where data starts 
    * @return embedded data offset
@@ -135,6 +144,16 @@ public interface IndexFormat extends Persistent {
     return (int)(UnsafeAccess.toLong(ptr) >>> 64 - n) & 1;
   }
   
+  /**
+   * Get one byte fingerprint of a hashed key. Fingerprint must be computed 
+   * only from hash bits which are compared by equals(ptr, hash)
+   * @param hash hashed key
+   * @return fingerprint (0 - 255)
+   */
+  public default int getFingerprint(long hash) {
+    return (int) (hash & 0xff);
+  }
+  
   /**
    * Gets index block header size
    * @return size
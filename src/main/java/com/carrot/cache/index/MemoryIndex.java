@@ -21,8 +21,10 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.Arrays;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.IntConsumer;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -44,6 +46,9 @@ import com.carrot.cache.util.Utils;
  * 
  * This is fixed header size. Implementation of IndexFormat can increase header size, but first 
  * 6 bytes are always fixed. 
+ * 
+ * When fingerprints are enabled, header is followed by fixed size array of one byte 
+ * fingerprints (one per entry, in the same order as entries)
  */
 public final class MemoryIndex implements Persistent {
   /** Logger */
@@ -114,6 +119,20 @@ public final class MemoryIndex implements Persistent {
   /* Not found code */
   private static final int NOT_FOUND = -1;
   
+  /* Optimistic read failed - caller must retry under lock */
+  private static final int RETRY = -2;
+  
+  /* Distance (in longs) between two stripe version stamps - avoids false sharing */
+  private static final int VERSION_STRIDE = 8;
+  
+  /* Size of a fingerprints array (one byte per entry) in index block header */
+  private static final int FINGERPRINTS_SIZE = 256;
+  
+  /* SWAR constants */
+  private static final long LOW_BITS = 0x0101010101010101L;
+  
+  private static final long HIGH_BITS = 0x8080808080808080L;
+  
   /* Offsets in meta section of an index segment*/
   private static final int BLOCK_SIZE_OFFSET = 0;
   
@@ -176,6 +195,27 @@ public final class MemoryIndex implements Persistent {
   /* Global locks */
   private ReentrantLock[] locks = new ReentrantLock[1117];
   
+  /* 
+   * Version stamps for lock stripes. Stamp is odd while a writer holds the stripe lock,
+   * optimistic readers validate that the stamp did not change during the scan 
+   */
+  private AtomicLongArray versions = new AtomicLongArray(locks.length * VERSION_STRIDE);
+  
+  /* Are optimistic (lock - free) reads enabled */
+  private volatile boolean optimisticReadsEnabled;
+  
+  /* Number of optimistic reads which failed validation and were retried under lock */
+  private AtomicLong optimisticReadFailures = new AtomicLong();
+  
+  /* Are entries fingerprints enabled */
+  private volatile boolean fingerprintsEnabled;
+  
+  /* Fingerprints array offset in index block */
+  private volatile int fingerprintsOffset;
+  
+  /* Index blocks allocator */
+  private IndexBlockAllocator allocator;
+  
   /** Index base array 
    * TODO: use native memory */
   private AtomicReference<long[]> ref_index_base = new AtomicReference<long[]>();
@@ -225,6 +265,15 @@ public final class MemoryIndex implements Persistent {
   /* Number of rehashed slots so far */
   private AtomicLong rehashedSlots = new AtomicLong();
   
+  /* Current rehashing start time */
+  private volatile long rehashStartTime;
+  
+  /* Total time spent in slot rehashing in ns */
+  private AtomicLong rehashTime = new AtomicLong();
+  
+  /* Background rehash worker */
+  private volatile RehashWorker rehashWorker;
+  
   /* Number of popularity ranks*/
   private int numRanks;
   
@@ -285,10 +334,53 @@ public final class MemoryIndex implements Persistent {
    */
   public void dispose() {
     //FIXME: not a thread safe, can't be called twice
-    Arrays.stream(ref_index_base.get()).forEach( x -> {if (x != 0) UnsafeAccess.free(x);});
+    setRehashWorkerEnabled(false);
+    Arrays.stream(ref_index_base.get()).forEach( x -> {if (x != 0) freeBlock(x);});
     if (ref_index_base_rehash.get() != null) {
-      Arrays.stream(ref_index_base_rehash.get()).forEach( x -> {if (x != 0) UnsafeAccess.free(x);});
+      Arrays.stream(ref_index_base_rehash.get()).forEach( x -> {if (x != 0) freeBlock(x);});
     }
+    this.allocator.dispose();
+  }
+  
+  /**
+   * Get index block allocator
+   * @return index block allocator
+   */
+  public IndexBlockAllocator getBlockAllocator() {
+    return this.allocator;
+  }
+  
+  /**
+   * Get memory reserved for index blocks (including free blocks in allocator slabs)
+   * @return reserved memory in bytes
+   */
+  public long getReservedMemory() {
+    return this.allocator.getReservedMemory();
+  }
+  
+  /**
+   * Get memory used by index blocks
+   * @return used memory in bytes
+   */
+  public long getUsedMemory() {
+    return this.allocator.getUsedMemory();
+  }
+  
+  /**
+   * Allocate new index block (zeroed)
+   * @param size block size
+   * @return block address
+   */
+  private long allocateBlock(int size) {
+    return this.allocator.allocate(size);
+  }
+  
+  /**
+   * Release index block
+   * @param ptr block address
+   */
+  private void freeBlock(long ptr) {
+    this.allocator.free(ptr, blockSize(ptr));
   }
   
   /**
@@ -314,7 +406,54 @@ public final class MemoryIndex implements Persistent {
   public void setIndexFormat (IndexFormat format) {
     this.indexFormat = format;
     this.indexSize = this.indexFormat.indexEntrySize();
-    this.indexBlockHeaderSize = this.indexFormat.getIndexBlockHeaderSize();
+    this.fingerprintsOffset = this.indexFormat.getIndexBlockHeaderSize();
+    this.indexBlockHeaderSize = this.fingerprintsOffset + 
+        (this.fingerprintsEnabled? FINGERPRINTS_SIZE: 0);
+    ensureBlocksFitHeader();
+  }
+  
+  /**
+   * Enable/disable entries fingerprints. Fingerprints array (one byte per entry)
+   * is kept in index block header and allows to avoid linear scan of all entries 
+   * in a block on lookup. Must be called before index is populated.
+   * @param b true/false
+   */
+  public void setFingerprintsEnabled(boolean b) {
+    this.fingerprintsEnabled = b;
+    if (this.indexFormat != null) {
+      setIndexFormat(this.indexFormat);
+    }
+  }
+  
+  /**
+   * Are entries fingerprints enabled
+   * @return true - false
+   */
+  public boolean isFingerprintsEnabled() {
+    return this.fingerprintsEnabled;
+  }
+  
+  /**
+   * Initial index blocks are allocated before index format is known,
+   * make sure that all (empty) blocks can accommodate block header
+   */
+  private void ensureBlocksFitHeader() {
+    long[] index = ref_index_base.get();
+    if (index == null) {
+      return;
+    }
+    int minSize = getMinSizeGreaterOrEqualsThan(this.indexBlockHeaderSize);
+    for (int i = 0; i < index.length; i++) {
+      long ptr = index[i];
+      if (ptr == 0 || blockSize(ptr) >= minSize) {
+        continue;
+      }
+      long $ptr = allocateBlock(minSize);
+      UnsafeAccess.copy(ptr, $ptr, blockSize(ptr));
+      setBlockSize($ptr, minSize);
+      freeBlock(ptr);
+      index[i] = $ptr;
+    }
   }
   
   /**
@@ -465,6 +604,112 @@ public final class MemoryIndex implements Persistent {
   public boolean isEvictionEnabled() {
     return this.evictionEnabled;
   }
+  
+  /**
+   * Set optimistic (lock - free) reads enabled
+   * @param b true/false
+   */
+  public void setOptimisticReadsEnabled(boolean b) {
+    this.optimisticReadsEnabled = b;
+  }
+  
+  /**
+   * Are optimistic reads enabled
+   * @return true - false
+   */
+  public boolean isOptimisticReadsEnabled() {
+    return this.optimisticReadsEnabled;
+  }
+  
+  /**
+   * Start/stop background rehash worker. Worker migrates slots 
+   * to the rehash index once rehashing has started
+   * @param b true/false
+   */
+  public synchronized void setRehashWorkerEnabled(boolean b) {
+    if (b && this.rehashWorker == null) {
+      this.rehashWorker = new RehashWorker(this, 
+        this.cacheConfig.getIndexRehashWorkerSlotsPerSecond(this.cacheName));
+      this.rehashWorker.start();
+    } else if (!b && this.rehashWorker != null) {
+      this.rehashWorker.shutdown();
+      this.rehashWorker = null;
+    }
+  }
+  
+  /**
+   * Is background rehash worker enabled
+   * @return true - false
+   */
+  public boolean isRehashWorkerEnabled() {
+    return this.rehashWorker != null;
+  }
+  
+  /**
+   * Get background rehash worker
+   * @return rehash worker or null
+   */
+  public RehashWorker getRehashWorker() {
+    return this.rehashWorker;
+  }
+  
+  /**
+   * Get number of slots rehashed so far (current rehashing)
+   * @return number of slots
+   */
+  public long getRehashedSlots() {
+    return this.rehashedSlots.get();
+  }
+  
+  /**
+   * Get total number of slots to rehash (current rehashing)
+   * @return number of slots or 0 if rehashing is not in progress
+   */
+  public long getRehashTotalSlots() {
+    return this.rehashInProgress? this.ref_index_base.get().length: 0;
+  }
+  
+  /**
+   * Get total time spent in slots rehashing (by all threads)
+   * @return time in ns
+   */
+  public long getRehashTime() {
+    return this.rehashTime.get();
+  }
+  
+  /**
+   * Get estimated time to complete current rehashing, based on the progress 
+   * made since rehashing started
+   * @return time in ms, 0 - if rehashing is not in progress, -1 if unknown
+   */
+  public long getRehashEstimatedTimeToComplete() {
+    if (!this.rehashInProgress) {
+      return 0;
+    }
+    long done = this.rehashedSlots.get();
+    long total = this.ref_index_base.get().length;
+    if (done == 0 || done >= total) {
+      return -1;
+    }
+    long elapsed = System.currentTimeMillis() - this.rehashStartTime;
+    return elapsed * (total - done) / done;
+  }
+  
+  /**
+   * Get cache name
+   * @return cache name
+   */
+  public String getCacheName() {
+    return this.cacheName;
+  }
+  
+  /**
+   * Get number of optimistic reads which were retried under lock
+   * @return number of failed optimistic reads
+   */
+  public long getOptimisticReadFailures() {
+    return this.optimisticReadFailures.get();
+  }
 
   /**
    * Set type of an index - either AdmissionQueue index or Main Queue
@@ -506,18 +751,24 @@ public final class MemoryIndex implements Persistent {
   /** Index initializer */
   private void init() {
     this.numRanks = this.cacheConfig.getNumberOfPopularityRanks(this.cacheName);
+    this.fingerprintsEnabled = this.cacheConfig.getIndexFingerprintsEnabled(this.cacheName);
+    this.allocator = 
+        new IndexBlockAllocator(this.cacheConfig.getIndexSlabAllocatorEnabled(this.cacheName));
     int startNumberOfSlots = 1 << cacheConfig.getStartIndexNumberOfSlotsPower(this.cacheName);
     //TODO: must be positive 
     long[] index_base = new long[startNumberOfSlots];
     int size = BASE_SIZE * BASE_MULTIPLIERS[0];
     for (int i = 0; i < index_base.length; i++) {
-      index_base[i] = UnsafeAccess.mallocZeroed(size); // 256 bytes
+      index_base[i] = allocateBlock(size); // 256 bytes
       // Set block size
       UnsafeAccess.putShort(index_base[i], (short) (size));
       // Number of entries and data size are 0
     }
     ref_index_base.set(index_base);
+    this.optimisticReadsEnabled = 
+        cacheConfig.getIndexOptimisticReadsEnabled(this.cacheName);
     initLocks();
+    setRehashWorkerEnabled(cacheConfig.getIndexRehashWorkerEnabled(this.cacheName));
   }
   
   private void initLocks() {
@@ -543,12 +794,12 @@ public final class MemoryIndex implements Persistent {
     if (newSize == FAILED) {
       return FAILED;
     }
-    long ptr = UnsafeAccess.mallocZeroed(newSize);
+    long ptr = allocateBlock(newSize);
     int dataSize = dataSize(indexBlockPtr);
     UnsafeAccess.copy(indexBlockPtr, ptr, dataSize + indexBlockHeaderSize);
     // Update block size
     setBlockSize(ptr, newSize);
-    UnsafeAccess.free(indexBlockPtr);
+    freeBlock(indexBlockPtr);
     return ptr;
   }
 
@@ -565,11 +816,11 @@ public final class MemoryIndex implements Persistent {
     if (newSize == blockSize) {
       return indexBlockPtr;
     }
-    long ptr = UnsafeAccess.mallocZeroed(newSize);
+    long ptr = allocateBlock(newSize);
     UnsafeAccess.copy(indexBlockPtr, ptr, dataSize + indexBlockHeaderSize);
     // Update block size
     setBlockSize(ptr, newSize);
-    UnsafeAccess.free(indexBlockPtr);
+    freeBlock(indexBlockPtr);
     return ptr;
   }
 
@@ -613,7 +864,9 @@ public final class MemoryIndex implements Persistent {
    * @return size
    */
   final int blockSize(long indexBlockPtr) {
-    return UnsafeAccess.toShort(indexBlockPtr + BLOCK_SIZE_OFFSET);
+    // Stored as unsigned short, maximum block size (64K) is stored as 0
+    int size = UnsafeAccess.toShort(indexBlockPtr + BLOCK_SIZE_OFFSET) & 0xffff;
+    return size == 0? 1 << 16: size;
   }
 
   /**
@@ -676,33 +929,8 @@ public final class MemoryIndex implements Persistent {
    * @return slot number
    */
   public int lock(long keyPtr, int keySize) {
-    
     long hash = Utils.hash64(keyPtr, keySize);
-    long[] index = ref_index_base.get();
-    // Always != null - safe
-    int slot = getSlotNumber(hash, index.length);
-    ReentrantLock lock = locks[slot % locks.length];
-    lock.lock();
-    if(index[slot] == 0) {
-      // rehash is in progress
-      lock.unlock();
-      index = ref_index_base_rehash.get();
-      if (index == null) {
-        // Get main back - rare race condition
-        // when rehashing was completed during this method invocation
-        index = ref_index_base.get();
-      }
-      // index was not NULL ref_index_base_rehash.get();
-      // but now it can be?
-      // we will lock
-      slot = getSlotNumber(hash, index.length);
-      lock = locks[slot % locks.length];
-      lock.lock();
-      // NOTES: either we lock correct slot in a main index or a
-      // correct slot in rehash index (during rehashing)
-      // In both cases we are safe
-    }
-    return slot;
+    return lockHash(hash);
   }
 
   /**
@@ -713,7 +941,17 @@ public final class MemoryIndex implements Persistent {
    */
   public int lock(byte[] key, int off, int keySize) {
     long hash = Utils.hash64(key, off, keySize);
+    return lockHash(hash);
+  }
+  
+  /**
+   * Write lock on a key's hash
+   * @param hash key's hash
+   * @return slot number
+   */
+  private int lockHash(long hash) {
     long[] index = ref_index_base.get();
+    // Always != null - safe
     int slot = getSlotNumber(hash, index.length);
     ReentrantLock lock = locks[slot % locks.length];
     lock.lock();
@@ -733,6 +971,7 @@ public final class MemoryIndex implements Persistent {
       // correct slot in rehash index (during rehashing)
       // In both cases we are safe
     }
+    writeBegin(lock, slot);
     return slot;
   }
       
@@ -743,6 +982,7 @@ public final class MemoryIndex implements Persistent {
   public void lock(int slot) {
     ReentrantLock lock = locks[slot % locks.length];
     lock.lock();
+    writeBegin(lock, slot);
   }
   
   /**
@@ -752,10 +992,34 @@ public final class MemoryIndex implements Persistent {
   public void unlock(int slot) {
     ReentrantLock lock = locks[slot % locks.length];
     if (lock.isHeldByCurrentThread()) {
+      writeEnd(lock, slot);
       lock.unlock();
     }
   }
   
+  /**
+   * Marks beginning of a write section - makes stripe version odd
+   * Only the first (non - reentrant) acquisition changes the version
+   * @param lock stripe lock (held by the current thread)
+   * @param slot slot number
+   */
+  private void writeBegin(ReentrantLock lock, int slot) {
+    if (lock.getHoldCount() == 1) {
+      this.versions.incrementAndGet((slot % locks.length) * VERSION_STRIDE);
+    }
+  }
+  
+  /**
+   * Marks end of a write section - makes stripe version even
+   * @param lock stripe lock (held by the current thread)
+   * @param slot slot number
+   */
+  private void writeEnd(ReentrantLock lock, int slot) {
+    if (lock.getHoldCount() == 1) {
+      this.versions.incrementAndGet((slot % locks.length) * VERSION_STRIDE);
+    }
+  }
+  
   /**
    * Find index for a key
    *
@@ -765,6 +1029,13 @@ public final class MemoryIndex implements Persistent {
    * @return index size, -1 - not found
    */
   public int find(byte[] key, int off, int size, boolean hit, long buf, int bufSize) {
+    if (this.optimisticReadsEnabled) {
+      long hash = Utils.hash64(key, off, size);
+      int result = findOptimistic(hash, hit, buf, bufSize);
+      if (result != RETRY) {
+        return result;
+      }
+    }
     int slot = 0;
     try {
       slot = lock(key, off, size);
@@ -951,6 +1222,9 @@ public final class MemoryIndex implements Persistent {
    * @param expire item was expired - time
    */
   private void deleteAt(long ptr, long $ptr, int rank, long expire) {
+    if (this.fingerprintsEnabled) {
+      deleteFingerprint(ptr, entryNumber(ptr, $ptr));
+    }
     int dataSize = dataSize(ptr);
     int sid1 = this.indexFormat.getSegmentId($ptr);
     // delete entry
@@ -1009,6 +1283,20 @@ public final class MemoryIndex implements Persistent {
   // TODO: check return value
   private int findAndPromote(long ptr, long hash, boolean hit, long buf, int bufSize) {
     int numEntries = numEntries(ptr);
+    
+    if (this.fingerprintsEnabled && !this.indexFormat.isExpirationSupported()) {
+      // No expiration scan is required - lookup by fingerprint
+      int count = findEntry(ptr, hash);
+      if (count == NOT_FOUND) {
+        return NOT_FOUND;
+      }
+      long $ptr = ptr + offsetFor(ptr, count);
+      int indexSize = this.indexFormat.fullEntrySize($ptr);
+      if (indexSize <= bufSize) {
+        hitAndPromote(ptr, $ptr, count, numEntries, indexSize, hit, buf);
+      }
+      return indexSize;
+    }
 
     //TODO: this works ONLY when index size = item size (no embedded data)
     //TODO: Check count when delete
@@ -1043,24 +1331,7 @@ public final class MemoryIndex implements Persistent {
           if (indexSize > bufSize) {
             return indexSize;
           }
-          // Update hits
-          if (hit) {
-            this.indexFormat.hit($ptr);
-          }
-          // Save item size and item location to a buffer
-          UnsafeAccess.copy($ptr, buf, indexSize);
-
-          if (hit && count > 0) {
-            // ask parent where to move
-            int idx = this.evictionPolicy.getPromotionIndex(ptr, count, numEntries);
-            int off = offsetFor(ptr, idx);
-            int offc = offsetFor(ptr, count);
-            int toMove = offc - off;
-            // Move data between 'idx' (inclusive) and 'count' (exclusive)(count > idx must be)
-            UnsafeAccess.copy(ptr + off, ptr + off + indexSize, toMove);
-            // insert index into new place
-            UnsafeAccess.copy(buf, ptr + off, indexSize);
-          }
+          hitAndPromote(ptr, $ptr, count, numEntries, indexSize, hit, buf);
         }
         count++;
         $ptr += this.indexFormat.fullEntrySize($ptr);
@@ -1071,6 +1342,44 @@ public final class MemoryIndex implements Persistent {
     }
     return indexSize;
   }
+  
+  /**
+   * Copies found entry to a buffer, records hit and promotes entry if hit == true
+   * @param ptr address of index block
+   * @param $ptr address of an entry
+   * @param count entry number
+   * @param numEntries number of entries in the block
+   * @param indexSize entry size
+   * @param hit promote if true
+   * @param buf address to copy index part to
+   */
+  private void hitAndPromote(long ptr, long $ptr, int count, int numEntries, int indexSize, 
+      boolean hit, long buf) {
+    // Update hits
+    if (hit) {
+      this.indexFormat.hit($ptr);
+    }
+    // Save item size and item location to a buffer
+    UnsafeAccess.copy($ptr, buf, indexSize);
+
+    if (hit && count > 0) {
+      // ask parent where to move
+      int idx = this.evictionPolicy.getPromotionIndex(ptr, count, numEntries);
+      int off = offsetFor(ptr, idx);
+      int offc = offsetFor(ptr, count);
+      int toMove = offc - off;
+      // Move data between 'idx' (inclusive) and 'count' (exclusive)(count > idx must be)
+      UnsafeAccess.copy(ptr + off, ptr + off + indexSize, toMove);
+      // insert index into new place
+      UnsafeAccess.copy(buf, ptr + off, indexSize);
+      if (this.fingerprintsEnabled) {
+        long fptr = ptr + this.fingerprintsOffset;
+        byte fp = UnsafeAccess.toByte(fptr + count);
+        UnsafeAccess.copy(fptr + idx, fptr + idx + 1, count - idx);
+        UnsafeAccess.putByte(fptr + idx, fp);
+      }
+    }
+  }
 
   final int getSegmentIdForEntry(long ptr, int entryNumber) {
     long $ptr = ptr + this.indexBlockHeaderSize;
@@ -1108,6 +1417,13 @@ public final class MemoryIndex implements Persistent {
    * @return id or -1
    */
   public int getSegmentId(byte[] key, int keyOffset, int keySize) {
+    if (this.optimisticReadsEnabled) {
+      long hash = Utils.hash64(key, keyOffset, keySize);
+      int sid = getSegmentIdOptimistic(hash);
+      if (sid != RETRY) {
+        return sid;
+      }
+    }
     int slot = 0;
     try {
       slot = lock(key, keyOffset, keySize);
@@ -1125,6 +1441,13 @@ public final class MemoryIndex implements Persistent {
    * @return id or -1
    */
   public int getSegmentId(long keyPtr, int keySize) {
+    if (this.optimisticReadsEnabled) {
+      long hash = Utils.hash64(keyPtr, keySize);
+      int sid = getSegmentIdOptimistic(hash);
+      if (sid != RETRY) {
+        return sid;
+      }
+    }
     int slot = 0;
     try {
       slot = lock(keyPtr, keySize);
@@ -1135,8 +1458,163 @@ public final class MemoryIndex implements Persistent {
     }
   }
   
+  /**
+   * Lock - free version of getSegmentIdForHash
+   * @param hash key's hash
+   * @return segment id, NOT_FOUND or RETRY (conflict with a writer or rehashing)
+   */
+  private int getSegmentIdOptimistic(long hash) {
+    if (!isOptimisticReadPossible()) {
+      return RETRY;
+    }
+    long[] index = ref_index_base.get();
+    int slot = getSlotNumber(hash, index.length);
+    int stripe = (slot % locks.length) * VERSION_STRIDE;
+    long version = this.versions.get(stripe);
+    if ((version & 1) != 0) {
+      return retry();
+    }
+    long ptr = index[slot];
+    if (ptr == 0) {
+      // Rehashing is in progress
+      return retry();
+    }
+    long $ptr = scanOptimistic(ptr, hash);
+    if ($ptr == RETRY) {
+      return retry();
+    }
+    int sid = $ptr == NOT_FOUND? NOT_FOUND: this.indexFormat.getSegmentId($ptr);
+    return validate(index, stripe, version)? sid: retry();
+  }
+  
+  /**
+   * Lock - free version of find. Index block is scanned without taking the stripe lock, 
+   * then stripe version is validated. Operations which require modification of an 
+   * index block (promotion, deletion) are reported as RETRY and must be repeated under lock
+   * @param hash key's hash
+   * @param hit if true - promote item on hit
+   * @param buf buffer to copy index to
+   * @param bufSize buffer size
+   * @return found index size, NOT_FOUND or RETRY
+   */
+  private int findOptimistic(long hash, boolean hit, long buf, int bufSize) {
+    if (!isOptimisticReadPossible()) {
+      return RETRY;
+    }
+    long[] index = ref_index_base.get();
+    int slot = getSlotNumber(hash, index.length);
+    int stripe = (slot % locks.length) * VERSION_STRIDE;
+    long version = this.versions.get(stripe);
+    if ((version & 1) != 0) {
+      return retry();
+    }
+    long ptr = index[slot];
+    if (ptr == 0) {
+      // Rehashing is in progress
+      return retry();
+    }
+    long $ptr = scanOptimistic(ptr, hash);
+    if ($ptr == RETRY) {
+      return retry();
+    }
+    int indexSize = NOT_FOUND;
+    if ($ptr != NOT_FOUND) {
+      indexSize = this.indexFormat.fullEntrySize($ptr);
+      if (this.indexType == Type.AQ) {
+        if (hit) {
+          // AQ deletes key on hit
+          return RETRY;
+        }
+        UnsafeAccess.putLong(buf, hash);
+      } else if (indexSize <= bufSize) {
+        boolean first = $ptr == ptr + this.indexBlockHeaderSize;
+        if (hit && (!first || this.indexFormat.getHitCount($ptr) == 0)) {
+          // Promotion is required
+          return RETRY;
+        }
+        UnsafeAccess.copy($ptr, buf, indexSize);
+      }
+    }
+    return validate(index, stripe, version)? indexSize: retry();
+  }
+  
+  /**
+   * Scans index block for a given hash without lock. All reads are bounded by 
+   * the block size, because block can be modified (or even released) concurrently
+   * @param ptr index block address
+   * @param hash key's hash
+   * @return entry address, NOT_FOUND or RETRY
+   */
+  private long scanOptimistic(long ptr, long hash) {
+    int blockSize = blockSize(ptr);
+    if (blockSize <= 0 || blockSize > getMaximumBlockSize()) {
+      return RETRY;
+    }
+    int numEntries = numEntries(ptr);
+    int entrySize = this.indexFormat.indexEntrySize();
+    long limit = ptr + blockSize;
+    if (this.fingerprintsEnabled && this.indexFormat.isFixedSize()) {
+      if (numEntries < 0 || numEntries > FINGERPRINTS_SIZE
+          || ptr + this.indexBlockHeaderSize + numEntries * entrySize > limit) {
+        return RETRY;
+      }
+      int count = findEntry(ptr, hash, numEntries);
+      return count == NOT_FOUND? NOT_FOUND: ptr + this.indexBlockHeaderSize + count * entrySize;
+    }
+    long $ptr = ptr + this.indexBlockHeaderSize;
+    int count = 0;
+    while (count < numEntries) {
+      if ($ptr + entrySize > limit) {
+        return RETRY;
+      }
+      int size = this.indexFormat.fullEntrySize($ptr);
+      if (size <= 0 || $ptr + size > limit) {
+        return RETRY;
+      }
+      if (this.indexFormat.equals($ptr, hash)) {
+        return $ptr;
+      }
+      count++;
+      $ptr += size;
+    }
+    return NOT_FOUND;
+  }
+  
+  /**
+   * Is optimistic read possible now
+   * @return true or false
+   */
+  private boolean isOptimisticReadPossible() {
+    // Formats with expiration support modify index blocks on every scan,
+    // malloc debug mode verifies every memory access
+    return !this.rehashInProgress && !this.indexFormat.isExpirationSupported() 
+        && !UnsafeAccess.isMallocDebugEnabled();
+  }
+  
+  /**
+   * Validates optimistic read
+   * @param index index table used by reader
+   * @param stripe stripe version position
+   * @param version stripe version at the beginning of a read
+   * @return true if nobody modified stripe during the read
+   */
+  private boolean validate(long[] index, int stripe, long version) {
+    UnsafeAccess.loadFence();
+    return this.versions.get(stripe) == version && !this.rehashInProgress 
+        && ref_index_base.get() == index;
+  }
+  
+  private int retry() {
+    this.optimisticReadFailures.incrementAndGet();
+    return RETRY;
+  }
+  
   private int getSegmentIdForHash(long hash) {
     long ptr = getIndexBlockForHash(hash);
+    if (this.fingerprintsEnabled) {
+      int count = findEntry(ptr, hash);
+      return count == NOT_FOUND? NOT_FOUND: getSegmentIdForEntry(ptr, count);
+    }
     int numEntries = numEntries(ptr);
     long $ptr = ptr + this.indexBlockHeaderSize;
     int count = 0;
@@ -1164,11 +1642,22 @@ public final class MemoryIndex implements Persistent {
     int numEntries = numEntries(ptr);
     long $ptr = ptr + this.indexBlockHeaderSize;
     int count = 0;
+    if (this.fingerprintsEnabled) {
+      count = findEntry(ptr, hash);
+      if (count == NOT_FOUND) {
+        return NOT_FOUND;
+      }
+      $ptr = ptr + offsetFor(ptr, count);
+      numEntries = count + 1;
+    }
     int indexSize; // not found
     while (count < numEntries) {
       indexSize = this.indexFormat.fullEntrySize($ptr);
       if (this.indexFormat.equals($ptr, hash)) {
         if (delete) {
+          if (this.fingerprintsEnabled) {
+            deleteFingerprint(ptr, count);
+          }
           int dataSize = dataSize(ptr);
           int toMove =(int) (ptr + dataSize + this.indexBlockHeaderSize - $ptr - indexSize);
           // Move
@@ -1186,6 +1675,104 @@ public final class MemoryIndex implements Persistent {
     return NOT_FOUND;
   }
   
+  /**
+   * Find entry number for a given hash in an index block. When fingerprints are enabled 
+   * 8 fingerprints are compared at once and only matching entries are checked
+   * @param ptr index block address
+   * @param hash key's hash
+   * @return entry number or NOT_FOUND
+   */
+  private int findEntry(long ptr, long hash) {
+    return findEntry(ptr, hash, numEntries(ptr));
+  }
+  
+  /**
+   * Find entry number for a given hash among first numEntries entries of an index block
+   * @param ptr index block address
+   * @param hash key's hash
+   * @param numEntries number of entries to check
+   * @return entry number or NOT_FOUND
+   */
+  private int findEntry(long ptr, long hash, int numEntries) {
+    if (!this.fingerprintsEnabled) {
+      long $ptr = ptr + this.indexBlockHeaderSize;
+      for (int count = 0; count < numEntries; count++) {
+        if (this.indexFormat.equals($ptr, hash)) {
+          return count;
+        }
+        $ptr += this.indexFormat.fullEntrySize($ptr);
+      }
+      return NOT_FOUND;
+    }
+    long fptr = ptr + this.fingerprintsOffset;
+    long pattern = LOW_BITS * this.indexFormat.getFingerprint(hash);
+    boolean fixedSize = this.indexFormat.isFixedSize();
+    int entrySize = this.indexSize;
+    for (int i = 0; i < numEntries; i += Utils.SIZEOF_LONG) {
+      // Byte at fptr + i is the most significant one
+      long v = UnsafeAccess.toLong(fptr + i) ^ pattern;
+      // Highest bit is set in every zero byte (can have false positives above zero byte)
+      long matches = (v - LOW_BITS) & ~v & HIGH_BITS;
+      while (matches != 0) {
+        int bit = Long.numberOfLeadingZeros(matches);
+        int count = i + (bit >>> 3);
+        if (count >= numEntries) {
+          break;
+        }
+        long $ptr = fixedSize? ptr + this.indexBlockHeaderSize + count * entrySize: 
+          ptr + offsetFor(ptr, count);
+        if (this.indexFormat.equals($ptr, hash)) {
+          return count;
+        }
+        matches &= ~(Long.MIN_VALUE >>> bit);
+      }
+    }
+    return NOT_FOUND;
+  }
+  
+  /**
+   * Get entry number by its address
+   * @param ptr index block address
+   * @param $ptr entry address
+   * @return entry number
+   */
+  private int entryNumber(long ptr, long $ptr) {
+    long off = $ptr - ptr - this.indexBlockHeaderSize;
+    if (this.indexFormat.isFixedSize()) {
+      return (int) (off / this.indexFormat.indexEntrySize());
+    }
+    long p = ptr + this.indexBlockHeaderSize;
+    int count = 0;
+    while (p < $ptr) {
+      p += this.indexFormat.fullEntrySize(p);
+      count++;
+    }
+    return count;
+  }
+  
+  /**
+   * Inserts fingerprint for a new entry
+   * @param ptr index block address
+   * @param idx entry number
+   * @param numEntries number of entries before insert
+   * @param hash key's hash
+   */
+  private void insertFingerprint(long ptr, int idx, int numEntries, long hash) {
+    long fptr = ptr + this.fingerprintsOffset;
+    UnsafeAccess.copy(fptr + idx, fptr + idx + 1, numEntries - idx);
+    UnsafeAccess.putByte(fptr + idx, (byte) this.indexFormat.getFingerprint(hash));
+  }
+  
+  /**
+   * Deletes fingerprint of a deleted entry
+   * @param ptr index block address
+   * @param idx entry number
+   */
+  private void deleteFingerprint(long ptr, int idx) {
+    long fptr = ptr + this.fingerprintsOffset;
+    UnsafeAccess.copy(fptr + idx + 1, fptr + idx, numEntries(ptr) - idx - 1);
+  }
+  
   private int getSlotNumber(long hash, int indexSize) {
     int level = Integer.numberOfTrailingZeros(indexSize);
     int $slot = (int) (hash >>> (64 - level));
@@ -1228,6 +1815,13 @@ public final class MemoryIndex implements Persistent {
    * @return index size; -1 - not found
    */
   public int find(long ptr, int size, boolean hit, long buf, int bufSize) {
+    if (this.optimisticReadsEnabled) {
+      long hash = Utils.hash64(ptr, size);
+      int result = findOptimistic(hash, hit, buf, bufSize);
+      if (result != RETRY) {
+        return result;
+      }
+    }
     int slot = 0;
     try {
       slot = lock(ptr, size);
@@ -1238,6 +1832,91 @@ public final class MemoryIndex implements Persistent {
     }
   }
 
+  /**
+   * Batch find. Keys are grouped by index lock stripe, so every stripe is locked only once
+   * per batch. Index entry of a key hashes[i] is copied to buf + i * entrySize
+   *
+   * @param hashes keys hashes
+   * @param keys indexes of keys (in hashes array) to look up
+   * @param num number of keys to look up
+   * @param hit - perform promotion if true
+   * @param buf buffer for index entries
+   * @param entrySize size of an index entry slot in the buffer
+   * @param results index sizes (-1 - not found), if result is greater than entrySize - 
+   *    index entry was not copied 
+   */
+  public void findBatch(long[] hashes, int[] keys, int num, boolean hit, long buf, 
+      int entrySize, int[] results) {
+    forEachByStripe(hashes, keys, num, 
+      i -> results[i] = find(hashes[i], hit, buf + (long) i * entrySize, entrySize));
+  }
+  
+  /**
+   * Batch get segment ids. Keys are grouped by index lock stripe, so every stripe 
+   * is locked only once per batch
+   *
+   * @param hashes keys hashes
+   * @param keys indexes of keys (in hashes array) to look up
+   * @param num number of keys to look up
+   * @param sids segment ids (-1 - not found), sids[i] for a key hashes[i]
+   */
+  public void getSegmentIdBatch(long[] hashes, int[] keys, int num, int[] sids) {
+    forEachByStripe(hashes, keys, num, i -> sids[i] = getSegmentIdForHash(hashes[i]));
+  }
+  
+  /**
+   * Performs operation on every key under its slot's lock, locking every stripe once
+   * @param hashes keys hashes
+   * @param keys indexes of keys (in hashes array)
+   * @param num number of keys
+   * @param op operation (accepts index of a key in hashes array)
+   */
+  private void forEachByStripe(long[] hashes, int[] keys, int num, IntConsumer op) {
+    long[] index = ref_index_base.get();
+    // Sort keys by stripe: [stripe][key index] 
+    long[] order = new long[num];
+    for (int k = 0; k < num; k++) {
+      int i = keys[k];
+      int slot = getSlotNumber(hashes[i], index.length);
+      order[k] = ((long) (slot % locks.length) << 32) | i;
+    }
+    Arrays.sort(order);
+    int[] deferred = null;
+    int numDeferred = 0;
+    int k = 0;
+    while (k < num) {
+      int stripe = (int) (order[k] >>> 32);
+      // stripe is a valid slot number, which maps to the stripe's lock
+      lock(stripe);
+      try {
+        for (; k < num && (int) (order[k] >>> 32) == stripe; k++) {
+          int i = (int) order[k];
+          int slot = getSlotNumber(hashes[i], index.length);
+          if (ref_index_base.get() != index || index[slot] == 0) {
+            // Rehashing is in progress (or finished) - slot is protected by another lock
+            if (deferred == null) {
+              deferred = new int[num];
+            }
+            deferred[numDeferred++] = i;
+            continue;
+          }
+          op.accept(i);
+        }
+      } finally {
+        unlock(stripe);
+      }
+    }
+    for (int j = 0; j < numDeferred; j++) {
+      int i = deferred[j];
+      int slot = lockHash(hashes[i]);
+      try {
+        op.accept(i);
+      } finally {
+        unlock(slot);
+      }
+    }
+  }
+  
   /**
    * This method is used exclusively by the Scavenger
    * @param key key buffer
@@ -1278,8 +1957,28 @@ public final class MemoryIndex implements Persistent {
       unlock(slot);
     }
   }
-  
-  private ResultWithRankAndExpire checkDeleteKeyForScavenger(long ptr, long hash, 
+
+  /**
+   * Batch version of checkDeleteKeyForScavenger. Keys are grouped by index lock stripe,
+   * so every stripe is locked only once per batch. This method is used exclusively
+   * by the Scavenger
+   * @param hashes keys hashes
+   * @param num number of keys
+   * @param results results vector (OK, NOT_FOUND, EXPIRED, DELETED), results[i] for
+   *    a key hashes[i]
+   * @param dumpBelowRatio dump below popularity ratio
+   */
+  public void checkDeleteKeysForScavenger(long[] hashes, int num,
+      ResultWithRankAndExpire[] results, double dumpBelowRatio) {
+    int[] keys = new int[num];
+    for (int i = 0; i < num; i++) {
+      keys[i] = i;
+    }
+    forEachByStripe(hashes, keys, num, i -> checkDeleteKeyForScavenger(
+      getIndexBlockForHash(hashes[i]), hashes[i], results[i], dumpBelowRatio));
+  }
+
+  private ResultWithRankAndExpire checkDeleteKeyForScavenger(long ptr, long hash,
       ResultWithRankAndExpire result, double dumpBelowRatio) {
     int numEntries = numEntries(ptr);
     //ATTN: we do not check keys directly - only hashes, for small hashes this may result in 
@@ -1336,6 +2035,37 @@ public final class MemoryIndex implements Persistent {
     return result;
   }
 
+  /**
+   * Relocate item to another data segment. This method is used exclusively by the
+   * Scavenger (compaction): only segment id and offset of an existing index entry are
+   * updated in place, entry's position in the index block (rank), hit count
+   * and expiration time are preserved
+   * @param hash key's hash
+   * @param oldSid segment id item was copied from
+   * @param newSid new segment id
+   * @param newOffset new offset in a segment
+   * @return true on success, false - if entry was deleted or updated concurrently
+   */
+  public boolean relocate(long hash, int oldSid, int newSid, long newOffset) {
+    int slot = 0;
+    try {
+      slot = lockHash(hash);
+      long ptr = getIndexBlockForHash(hash);
+      int count = findEntry(ptr, hash);
+      if (count == NOT_FOUND) {
+        return false;
+      }
+      long $ptr = ptr + offsetFor(ptr, count);
+      if (this.indexFormat.getSegmentId($ptr) != oldSid) {
+        return false;
+      }
+      this.indexFormat.setSegmentIdAndOffset($ptr, newSid, (int) newOffset);
+      return true;
+    } finally {
+      unlock(slot);
+    }
+  }
+
   /**
    * Find index for a key's hash and copy its value to a buffer
    *
@@ -1487,6 +2217,15 @@ public final class MemoryIndex implements Persistent {
    */
   private int delete(long ptr, long hash) {
     int numEntries = numEntries(ptr);
+    if (this.fingerprintsEnabled) {
+      int count = findEntry(ptr, hash);
+      if (count == NOT_FOUND) {
+        return -1;
+      }
+      int rank = this.evictionPolicy.getRankForIndex(numRanks, count, numEntries);
+      deleteAt(ptr, ptr + offsetFor(ptr, count), rank);
+      return count;
+    }
     long $ptr = ptr + indexBlockHeaderSize;
     int count = 0;
     while (count < numEntries) {
@@ -1509,6 +2248,9 @@ public final class MemoryIndex implements Persistent {
    * @return true or false
    */
   private boolean exists(long ptr, long hash) {
+    if (this.fingerprintsEnabled) {
+      return findEntry(ptr, hash) != NOT_FOUND;
+    }
     int numEntries = numEntries(ptr);
     long $ptr = ptr + indexBlockHeaderSize;
     int count = 0;
@@ -1902,6 +2644,7 @@ public final class MemoryIndex implements Persistent {
   private long insert0(long ptr, long hash, long indexPtr, int indexSize, int rank) {
 
     long retPtr = ptr;
+    boolean slotRehashed = false;
 
     if (isEvictionEnabled()) {
       if (this.expiredEvictedBalance.get() <= 0) {
@@ -1917,8 +2660,11 @@ public final class MemoryIndex implements Persistent {
     int dataSize = dataSize(ptr);
     int requiredSize =
         dataSize + this.indexBlockHeaderSize + (isAQ ? Utils.SIZEOF_LONG : indexSize);
-    if (requiredSize > blockSize) {
-      long $ptr = expand(ptr, requiredSize);
+    // Fingerprints array has a fixed capacity - block must be rehashed when it is full
+    boolean full = this.fingerprintsEnabled && 
+        numEntries(ptr) >= MAX_INDEX_ENTRIES_PER_BLOCK;
+    if (requiredSize > blockSize || full) {
+      long $ptr = full? FAILED: expand(ptr, requiredSize);
       if ($ptr > 0) {
         ptr = $ptr;
         retPtr = ptr;
@@ -1946,19 +2692,16 @@ public final class MemoryIndex implements Persistent {
           ptr = $ptr;
           ref_index_base_rehash.get()[$slot] = ptr;
         }
-        
-        long rehashed = rehashedSlots.incrementAndGet();
-        if (rehashed == ref_index_base.get().length) {
-          // Rehash is complete
-          ref_index_base.set(ref_index_base_rehash.get());
-          // TODO: Do we really need to set this to NULL?
-          ref_index_base_rehash.set(null);
-          rehashedSlots.set(0);
-          this.rehashInProgress = false;
-        }
+        slotRehashed = true;
       }
     }
     boolean inserted = insertEntry(ptr, hash, indexPtr, indexSize, rank);
+    
+    if (slotRehashed) {
+      // Complete rehashing only after insert, because new index block
+      // is still protected by the parent slot's lock
+      slotRehashed();
+    }
     // We need to return address and info if it was INSERT or UPDATE
     
     return inserted? retPtr: makeUpdatePtr(retPtr);
@@ -2055,6 +2798,9 @@ public final class MemoryIndex implements Persistent {
     int toMove = dataSize(ptr) + this.indexBlockHeaderSize - off;
     int itemSize = this.indexType == Type.AQ? Utils.SIZEOF_LONG: indexSize;
     UnsafeAccess.copy(ptr + off, ptr + off + itemSize, toMove);
+    if (this.fingerprintsEnabled) {
+      insertFingerprint(ptr, insertIndex, numEntries, hash);
+    }
     // Insert new entry
     // Update number of elements
     incrNumEntries(ptr, 1);
@@ -2073,11 +2819,64 @@ public final class MemoryIndex implements Persistent {
   }
 
 
+  /**
+   * Counts rehashed slot, completes rehashing when all slots are done.
+   * Must be called under the parent slot's lock
+   */
+  private void slotRehashed() {
+    long rehashed = rehashedSlots.incrementAndGet();
+    if (rehashed == ref_index_base.get().length) {
+      // Rehash is complete
+      ref_index_base.set(ref_index_base_rehash.get());
+      // TODO: Do we really need to set this to NULL?
+      ref_index_base_rehash.set(null);
+      rehashedSlots.set(0);
+      this.rehashInProgress = false;
+    }
+  }
+  
+  /**
+   * Get main index table
+   * @return main index table
+   */
+  long[] getMainIndexTable() {
+    return ref_index_base.get();
+  }
+  
+  /**
+   * Migrate slot to the rehash index (used by background rehash worker)
+   * @param index main index table the slot belongs to
+   * @param slot slot number
+   * @return true if slot was migrated, false - if it has been already migrated or
+   *  rehashing has been completed
+   */
+  boolean migrateSlot(long[] index, int slot) {
+    lock(slot);
+    try {
+      if (!this.rehashInProgress || ref_index_base.get() != index || index[slot] == 0) {
+        return false;
+      }
+      rehashSlot(slot);
+      slotRehashed();
+      return true;
+    } finally {
+      unlock(slot);
+    }
+  }
+  
   private void rehashSlot(int slot) {
     // We keep write lock on parent slot - so we are safe to
     // work with rehash index
     // confirm rehashing
-    this.rehashInProgress = true;
+    long start = System.nanoTime();
+    if (!this.rehashInProgress) {
+      this.rehashStartTime = System.currentTimeMillis();
+      this.rehashInProgress = true;
+      RehashWorker worker = this.rehashWorker;
+      if (worker != null) {
+        worker.wakeUp();
+      }
+    }
     long ptr = ref_index_base.get()[slot];
     /*DEBUG*/
     if (ptr == 0) {
@@ -2101,11 +2900,11 @@ public final class MemoryIndex implements Persistent {
     int slot0 = slot << 1;
     int slot1 = slot0 + 1;
 
-    long ptr0 = UnsafeAccess.mallocZeroed(blockSize);
+    long ptr0 = allocateBlock(blockSize);
     UnsafeAccess.copy(ptr, ptr0, this.indexBlockHeaderSize);
     setBlockSize(ptr0, blockSize);
 
-    long ptr1 = UnsafeAccess.mallocZeroed(blockSize);
+    long ptr1 = allocateBlock(blockSize);
     UnsafeAccess.copy(ptr, ptr1, this.indexBlockHeaderSize);
     setBlockSize(ptr1, blockSize);
 
@@ -2131,11 +2930,19 @@ public final class MemoryIndex implements Persistent {
         // Copy to data to slot0 in new index
         // off = offsetFor(ptr, count);
         UnsafeAccess.copy($ptr, ptr0 + indexBlockHeaderSize + dataSize0, size);
+        if (this.fingerprintsEnabled) {
+          UnsafeAccess.copy(ptr + fingerprintsOffset + count, 
+            ptr0 + fingerprintsOffset + numSlot0, 1);
+        }
         numSlot0++;
         dataSize0 += size;
       } else if ($slot == slot1) {
         // Copy to data to slot0 in new index
         UnsafeAccess.copy($ptr, ptr1 + indexBlockHeaderSize + dataSize1, size);
+        if (this.fingerprintsEnabled) {
+          UnsafeAccess.copy(ptr + fingerprintsOffset + count, 
+            ptr1 + fingerprintsOffset + numSlot1, 1);
+        }
         numSlot1++;
         dataSize1 += size;
       }
@@ -2155,11 +2962,12 @@ public final class MemoryIndex implements Persistent {
     // Free previous index block
     // It is safe, because this index block is under write lock
     
-    UnsafeAccess.free(ptr);
+    freeBlock(ptr);
     ref_index_base.get()[slot] = 0;
     // Update index format meta sections
     this.indexFormat.updateMetaSection(ptr0);
     this.indexFormat.updateMetaSection(ptr1);
+    this.rehashTime.addAndGet(System.nanoTime() - start);
   }
 
   /*
@@ -2170,29 +2978,14 @@ public final class MemoryIndex implements Persistent {
 
     if (isRehashingInProgress() == false) return;
 
-    int currentSlot = 0;
-    try {
-      
-      long start = System.currentTimeMillis();
-      long[] index = ref_index_base.get();
-      for (int i = 0; i < index.length; i++) {
-        if (index[i] == 0) continue;
-        currentSlot = i;
-        lock(i);
-        rehashSlot(i);
-        unlock(i);
-      }
-
-      // Finalize
-      this.ref_index_base.set(this.ref_index_base_rehash.get());
-      this.ref_index_base_rehash.set(null);
-      this.rehashedSlots.set(0);
-      this.rehashInProgress = false;
-      long end = System.currentTimeMillis();
-      /*DEBUG*/ System.err.printf("Completed rehashing in %d ms\n", (end - start));
-    } finally {
-      unlock(currentSlot);
+    long start = System.currentTimeMillis();
+    long[] index = ref_index_base.get();
+    for (int i = 0; i < index.length; i++) {
+      // Completes rehashing on the last slot
+      migrateSlot(index, i);
     }
+    long end = System.currentTimeMillis();
+    /*DEBUG*/ System.err.printf("Completed rehashing in %d ms\n", (end - start));
   }
 
   /**
@@ -2285,6 +3078,8 @@ public final class MemoryIndex implements Persistent {
     dos.writeInt(this.indexType.ordinal());
     /* Save index format implementation */
     dos.writeUTF(this.indexFormat.getClass().getCanonicalName());
+    /* Are fingerprints enabled (index block layout) */
+    dos.writeBoolean(this.fingerprintsEnabled);
     /* Index format */
     indexFormat.save(dos);
     /* Hash table size */
@@ -2319,9 +3114,13 @@ public final class MemoryIndex implements Persistent {
     DataInputStream dis = Utils.toDataInputStream(is);
  // Read index type
     this.cacheName = dis.readUTF();
+    this.allocator = 
+        new IndexBlockAllocator(this.cacheConfig.getIndexSlabAllocatorEnabled(this.cacheName));
     int ord = dis.readInt();
     Type type = Type.values()[ord];
     String formatImpl = dis.readUTF();
+    // Must be known before index format is set
+    this.fingerprintsEnabled = dis.readBoolean();
     if (type == Type.AQ || this.engine != null) {
       setType(type);
     } else {
@@ -2359,10 +3158,11 @@ public final class MemoryIndex implements Persistent {
       // index segment size
       int len = dis.readInt();
       dis.readFully(buffer, 0, len);
-      long ptr = UnsafeAccess.malloc(len);
+      long ptr = allocateBlock(len);
       UnsafeAccess.copy(buffer, 0, ptr, len);
       table[i] = ptr;
     }
     this.ref_index_base.set(table);
+    setRehashWorkerEnabled(cacheConfig.getIndexRehashWorkerEnabled(this.cacheName));
   }
 }
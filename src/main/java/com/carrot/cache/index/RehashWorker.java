@@ -0,0 +1,149 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.carrot.cache.index;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Background rehash worker. Once rehashing of a memory index has started, worker
+ * migrates remaining slots from the main index to the rehash index at a configured pace
+ * (slots per second), so that foreground operations split a slot only when they hit
+ * a full block which has not been migrated yet.
+ */
+public class RehashWorker extends Thread {
+  /** Logger */
+  private static final Logger LOG = LogManager.getLogger(RehashWorker.class);
+
+  /* Pacing interval in ns */
+  final static long TICK_NS = TimeUnit.MILLISECONDS.toNanos(10);
+
+  /* Memory index */
+  private final MemoryIndex index;
+
+  /* Pace - slots per second */
+  private volatile int slotsPerSecond;
+
+  /* Shutdown flag */
+  private volatile boolean shutdown;
+
+  /* Number of slots migrated by this worker */
+  private volatile long migratedSlots;
+
+  /* Total time spent migrating slots in ns */
+  private volatile long migrationTime;
+
+  /**
+   * Constructor
+   * @param index memory index
+   * @param slotsPerSecond pace (slots per second)
+   */
+  public RehashWorker(MemoryIndex index, int slotsPerSecond) {
+    super("rehash-worker-" + index.getCacheName());
+    this.index = index;
+    this.slotsPerSecond = slotsPerSecond;
+    setDaemon(true);
+  }
+
+  /**
+   * Set pace
+   * @param slotsPerSecond slots per second
+   */
+  public void setSlotsPerSecond(int slotsPerSecond) {
+    this.slotsPerSecond = slotsPerSecond;
+  }
+
+  /**
+   * Get pace
+   * @return slots per second
+   */
+  public int getSlotsPerSecond() {
+    return this.slotsPerSecond;
+  }
+
+  /**
+   * Get number of slots migrated by this worker
+   * @return number of slots
+   */
+  public long getMigratedSlots() {
+    return this.migratedSlots;
+  }
+
+  /**
+   * Get total time spent by this worker migrating slots
+   * @return time in ns
+   */
+  public long getMigrationTime() {
+    return this.migrationTime;
+  }
+
+  /**
+   * Wake up worker (rehashing has started)
+   */
+  public void wakeUp() {
+    LockSupport.unpark(this);
+  }
+
+  /**
+   * Stop worker and wait until it finishes current slot
+   */
+  public void shutdown() {
+    this.shutdown = true;
+    LockSupport.unpark(this);
+    try {
+      join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  @Override
+  public void run() {
+    LOG.info(String.format("Rehash worker started for cache [%s]", index.getCacheName()));
+    while (!shutdown) {
+      if (!index.isRehashingInProgress()) {
+        LockSupport.parkNanos(this, TICK_NS);
+        continue;
+      }
+      long[] table = index.getMainIndexTable();
+      int slot = 0;
+      while (!shutdown && slot < table.length) {
+        long tickStart = System.nanoTime();
+        int batch = Math.max(1, (int) (((long) this.slotsPerSecond) * TICK_NS / 1_000_000_000L));
+        int migrated = 0;
+        for (; migrated < batch && slot < table.length; slot++) {
+          if (index.migrateSlot(table, slot)) {
+            migrated++;
+          }
+        }
+        long tickEnd = System.nanoTime();
+        this.migratedSlots += migrated;
+        this.migrationTime += tickEnd - tickStart;
+        if (!index.isRehashingInProgress() || index.getMainIndexTable() != table) {
+          // Rehashing has been completed
+          break;
+        }
+        long pause = TICK_NS - (tickEnd - tickStart);
+        if (pause > 0 && migrated > 0) {
+          LockSupport.parkNanos(this, pause);
+        }
+      }
+    }
+    LOG.info(String.format("Rehash worker stopped for cache [%s]", index.getCacheName()));
+  }
+}
@@ -55,6 +55,11 @@ public class SubCompactBaseIndexFormat implements IndexFormat {
     return v == hash;
   }
 
+  @Override
+  public int getFingerprint(long hash) {
+    return (int) ((hash >>> (32 - L)) & 0xff);
+  }
+
   @Override
   public int indexEntrySize() {
     return 14;
@@ -88,6 +93,12 @@ public class SubCompactBaseIndexFormat implements IndexFormat {
     return UnsafeAccess.toInt(buffer + off) & 0xffffffff;
   }
 
+  @Override
+  public void setSegmentIdAndOffset(long buffer, int sid, int dataOffset) {
+    UnsafeAccess.putShort(buffer + sidOffset(), (short) sid);
+    UnsafeAccess.putInt(buffer + dataOffsetOffset(), dataOffset);
+  }
+
   @Override
   public int getEmbeddedOffset() {
     //TODO
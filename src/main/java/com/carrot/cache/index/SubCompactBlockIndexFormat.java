@@ -62,6 +62,11 @@ public class SubCompactBlockIndexFormat implements IndexFormat {
     return v == hash;
   }
 
+  @Override
+  public int getFingerprint(long hash) {
+    return (int) ((hash >>> (64 - L - 16)) & 0xff);
+  }
+
   @Override
   public int indexEntrySize() {
     return  3 * Utils.SIZEOF_SHORT;
@@ -102,6 +107,15 @@ public class SubCompactBlockIndexFormat implements IndexFormat {
     return blockNumber * this.blockSize;
   }
 
+  @Override
+  public void setSegmentIdAndOffset(long buffer, int sid, int dataOffset) {
+    int off = sidOffset();
+    // Keep hit bit (high bit)
+    int v = UnsafeAccess.toShort(buffer + off) & 0x8000;
+    UnsafeAccess.putShort(buffer + off, (short) (v | (sid & 0x7fff)));
+    UnsafeAccess.putShort(buffer + dataOffsetOffset(), (short) (dataOffset / this.blockSize));
+  }
+
   @Override
   public int getIndexBlockHeaderSize() {
     return 3 * Utils.SIZEOF_SHORT;
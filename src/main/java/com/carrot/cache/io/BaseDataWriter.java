@@ -25,10 +25,11 @@ public class BaseDataWriter implements DataWriter {
   @Override
   public long append(Segment s, long keyPtr, int keySize, long itemPtr, int itemSize) {
     int requiredSize = Utils.requiredSize(keySize, itemSize);
-    if (requiredSize + s.getSegmentDataSize() > s.size()) {
+    long offset = s.reserveDataSize(requiredSize);
+    if (offset < 0) {
       return -1;
     }
-    long addr = s.getAddress() + s.getSegmentDataSize();
+    long addr = s.getAddress() + offset;
     // Key size
     Utils.writeUVInt(addr, keySize);
     int kSizeSize = Utils.sizeUVInt(keySize);
@@ -42,9 +43,7 @@ public class BaseDataWriter implements DataWriter {
     addr += keySize;
     // Copy value (item)
     UnsafeAccess.copy(itemPtr, addr, itemSize);  
-    long retValue = s.getSegmentDataSize();
-    s.incrDataSize(requiredSize);
-    return retValue;
+    return offset;
   }
 
   @Override
@@ -57,7 +56,8 @@ public class BaseDataWriter implements DataWriter {
       int valueOffset,
       int valueSize) {
     int requiredSize = Utils.requiredSize(keySize, valueSize);
-    if (requiredSize + s.getSegmentDataSize() > s.size()) {
+    long offset = s.reserveDataSize(requiredSize);
+    if (offset < 0) {
       return -1;
     }
     if (s.getAddress() == 0){
@@ -65,7 +65,7 @@ public class BaseDataWriter implements DataWriter {
             s.getId(), s.getSegmentDataSize(), Boolean.toString(s.isSealed()), Boolean.toString(s.isValid()),
             Boolean.toString(s.isOffheap()));
     }
-    long addr = s.getAddress() + s.getSegmentDataSize();
+    long addr = s.getAddress() + offset;
     // Key size
     Utils.writeUVInt(addr, keySize);
     int kSizeSize = Utils.sizeUVInt(keySize);
@@ -79,11 +79,18 @@ public class BaseDataWriter implements DataWriter {
     addr += keySize;
     // Copy value (item)
     UnsafeAccess.copy(value, valueOffset, addr, valueSize);
-    long retValue = s.getSegmentDataSize();
-    s.incrDataSize(requiredSize);
-    return retValue;
+    return offset;
   }
 
+  /**
+   * Space for a new entry is reserved atomically, hence - appends 
+   * do not require segment's write lock
+   */
+  @Override
+  public boolean isLockFreeAppendSupported() {
+    return true;
+  }
+  
   @Override
   public void init(String cacheName) {
     // do nothing
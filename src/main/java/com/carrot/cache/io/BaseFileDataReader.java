@@ -63,6 +63,8 @@ public class BaseFileDataReader implements DataReader {
     if (file == null) {
       return IOEngine.NOT_FOUND;
     }
+    // Segment's base offset in a storage file
+    offset += fileEngine.getFileOffsetFor(sid);
     boolean loaded = false;
     if (size < 0) {
       int toRead = (int) Math.min(blockSize, file.length() - offset);
@@ -138,6 +140,8 @@ public class BaseFileDataReader implements DataReader {
     if (file == null) {
       return IOEngine.NOT_FOUND;
     }
+    // Segment's base offset in a storage file
+    offset += fileEngine.getFileOffsetFor(sid);
     boolean loaded = false;
 
     if (size < 0) {
@@ -209,6 +213,8 @@ public class BaseFileDataReader implements DataReader {
     if (file == null) {
       return IOEngine.NOT_FOUND;
     }
+    // Segment's base offset in a storage file
+    offset += fileEngine.getFileOffsetFor(sid);
     boolean loaded = false;
     if (size < 0) {
       int toRead = (int) Math.min(blockSize, file.length() - offset);
@@ -266,6 +272,8 @@ public class BaseFileDataReader implements DataReader {
     if (file == null) {
       return IOEngine.NOT_FOUND;
     }
+    // Segment's base offset in a storage file
+    offset += fileEngine.getFileOffsetFor(sid);
     boolean loaded = false;
 
     if (size < 0) {
@@ -308,7 +316,9 @@ public class BaseFileDataReader implements DataReader {
   @Override
   public SegmentScanner getSegmentScanner(IOEngine engine, Segment s) throws IOException {
     RandomAccessFile file = ((FileIOEngine)engine).getFileFor(s.getId());
+    long fileOffset = ((FileIOEngine)engine).getFileOffsetFor(s.getId());
     int prefetchBuferSize = ((FileIOEngine)engine).getFilePrefetchBufferSize();
-    return new BaseFileSegmentScanner(s, file, prefetchBuferSize);
+    int readAhead = ((FileIOEngine)engine).getFilePrefetchReadAheadBuffers();
+    return new BaseFileSegmentScanner(s, file, fileOffset, prefetchBuferSize, readAhead);
   }
 }
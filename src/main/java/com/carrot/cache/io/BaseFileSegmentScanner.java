@@ -37,6 +37,20 @@ public final class BaseFileSegmentScanner implements SegmentScanner {
       this.pBuffer = new PrefetchBuffer(file, bufSize);
     }
     
+    public BaseFileSegmentScanner(Segment s, RandomAccessFile file, long fileOffset,
+        int prefetchBufferSize) throws IOException{
+      this(s, file, fileOffset, prefetchBufferSize, 0);
+    }
+    
+    public BaseFileSegmentScanner(Segment s, RandomAccessFile file, long fileOffset,
+        int prefetchBufferSize, int readAhead) throws IOException{
+      this.segment = s;
+      this.numEntries = s.getInfo().getTotalItems();
+      long length = Math.min(file.length() - fileOffset, Segment.META_SIZE + s.size());
+      this.pBuffer = 
+          new PrefetchBuffer(file, fileOffset, length, prefetchBufferSize, readAhead);
+    }
+    
     @Override
     public boolean hasNext() throws IOException {
       if (currentEntry <= numEntries - 1) {
@@ -80,6 +94,8 @@ public final class BaseFileSegmentScanner implements SegmentScanner {
 
     @Override
     public void close() throws IOException {
+      // Wait for background reads
+      this.pBuffer.close();
      // file.close();
     }
 
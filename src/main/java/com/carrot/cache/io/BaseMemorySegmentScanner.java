@@ -50,15 +50,29 @@ import com.carrot.cache.util.Utils;
      */
     int offset = 0;
     
+    /*
+     * Address of a segment's data
+     */
+    long address;
+    
     /*
      * Private constructor
      */
     BaseMemorySegmentScanner(Segment s){
+      this(s, s.getAddress());
+    }
+    
+    /*
+     * Constructor for a segment which data is located at a given address
+     * (memory mapped file)
+     */
+    BaseMemorySegmentScanner(Segment s, long address){
       // Make sure it is sealed
       if (s.isSealed() == false) {
         throw new RuntimeException("segment is not sealed");
       }
       this.segment = s;
+      this.address = address;
       s.readLock();
     }
     
@@ -67,7 +81,7 @@ import com.carrot.cache.util.Utils;
     }
     
     public boolean next() {
-      long ptr = segment.getAddress();
+      long ptr = this.address;
       
       int keySize = Utils.readUVInt(ptr + offset);
       int keySizeSize = Utils.sizeUVInt(keySize);
@@ -95,7 +109,7 @@ import com.carrot.cache.util.Utils;
      * @return key size
      */
     public final int keyLength() {
-      long ptr = segment.getAddress();
+      long ptr = this.address;
       return Utils.readUVInt(ptr + offset);
     }
     
@@ -105,7 +119,7 @@ import com.carrot.cache.util.Utils;
      */
     
     public final int valueLength() {
-      long ptr = segment.getAddress();
+      long ptr = this.address;
       int off = offset;
       int keySize = Utils.readUVInt(ptr + off);
       int keySizeSize = Utils.sizeUVInt(keySize);
@@ -118,7 +132,7 @@ import com.carrot.cache.util.Utils;
      * @return keys address
      */
     public final long keyAddress() {
-      long ptr = segment.getAddress();
+      long ptr = this.address;
       int off = offset;
       int keySize = Utils.readUVInt(ptr + off);
       int keySizeSize = Utils.sizeUVInt(keySize);
@@ -134,7 +148,7 @@ import com.carrot.cache.util.Utils;
      * @return values address
      */
     public final long valueAddress() {
-      long ptr = segment.getAddress();
+      long ptr = this.address;
       int off = offset;
       int keySize = Utils.readUVInt(ptr + off);
       int keySizeSize = Utils.sizeUVInt(keySize);
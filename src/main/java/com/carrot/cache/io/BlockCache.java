@@ -0,0 +1,223 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.carrot.cache.io;
+
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.carrot.cache.util.UnsafeAccess;
+
+/**
+ * Size - bounded off-heap cache of data blocks read from segment files.
+ *
+ * Cache is set - associative: block key (segment id, segment generation, block offset)
+ * is hashed to a set of WAYS slots, a victim in a set is selected by CLOCK
+ * (second chance) algorithm. Every slot is protected by a sequence lock, so lookups
+ * are lock - free: reader copies block data and validates slot's version afterwards.
+ *
+ * Segment generation is incremented when a segment is disposed, this invalidates
+ * all cached blocks of a segment in O(1), including blocks which are read from
+ * a file concurrently with a disposal.
+ */
+public class BlockCache {
+
+  /* Number of slots in a set */
+  public final static int WAYS = 8;
+
+  /* Empty slot key */
+  private final static long EMPTY = -1;
+
+  /* Block size */
+  private final int blockSize;
+
+  /* Number of sets (power of 2) */
+  private final int numSets;
+
+  /* Slot keys */
+  private final AtomicLongArray keys;
+
+  /* Slot versions (sequence locks), odd - slot is being updated */
+  private final AtomicIntegerArray versions;
+
+  /* Slot reference bits */
+  private final AtomicIntegerArray referenced;
+
+  /* CLOCK hands (one per set) */
+  private final AtomicIntegerArray hands;
+
+  /* Segment generations */
+  private final AtomicIntegerArray generations;
+
+  /* Blocks memory */
+  private final long address;
+
+  /* Number of hits */
+  private final LongAdder hits = new LongAdder();
+
+  /* Number of misses */
+  private final LongAdder misses = new LongAdder();
+
+  /**
+   * Constructor
+   * @param maxSize maximum cache size in bytes
+   * @param blockSize block size
+   * @param numSegments maximum number of data segments
+   */
+  public BlockCache(long maxSize, int blockSize, int numSegments) {
+    this.blockSize = blockSize;
+    long sets = Math.max(1, maxSize / blockSize / WAYS);
+    this.numSets = (int) Long.highestOneBit(Math.min(sets, 1 << 24));
+    int numSlots = this.numSets * WAYS;
+    this.keys = new AtomicLongArray(numSlots);
+    for (int i = 0; i < numSlots; i++) {
+      this.keys.set(i, EMPTY);
+    }
+    this.versions = new AtomicIntegerArray(numSlots);
+    this.referenced = new AtomicIntegerArray(numSlots);
+    this.hands = new AtomicIntegerArray(this.numSets);
+    this.generations = new AtomicIntegerArray(numSegments);
+    this.address = UnsafeAccess.mallocZeroed((long) numSlots * blockSize);
+  }
+
+  /**
+   * Get block key
+   * @param sid segment id
+   * @param offset block offset in a segment
+   * @return block key
+   */
+  public long getKey(int sid, int offset) {
+    long gen = this.generations.get(sid) & 0xffff;
+    return ((long) (sid & 0x7fff) << 48) | (gen << 32) | (offset & 0xffffffffL);
+  }
+
+  /**
+   * Get block from the cache
+   * @param key block key
+   * @param buffer buffer to copy block to
+   * @param bufOffset buffer offset
+   * @return true - hit, false - miss
+   */
+  public boolean get(long key, byte[] buffer, int bufOffset) {
+    int base = getSet(key) * WAYS;
+    for (int slot = base; slot < base + WAYS; slot++) {
+      int v = this.versions.get(slot);
+      if ((v & 1) != 0 || this.keys.get(slot) != key) {
+        continue;
+      }
+      UnsafeAccess.copy(this.address + (long) slot * this.blockSize, buffer, bufOffset,
+        this.blockSize);
+      VarHandle.acquireFence();
+      if (this.versions.get(slot) == v) {
+        this.referenced.set(slot, 1);
+        this.hits.increment();
+        return true;
+      }
+    }
+    this.misses.increment();
+    return false;
+  }
+
+  /**
+   * Put block into the cache
+   * @param key block key
+   * @param buffer buffer which contains block
+   * @param bufOffset buffer offset
+   */
+  public void put(long key, byte[] buffer, int bufOffset) {
+    int set = getSet(key);
+    int base = set * WAYS;
+    // CLOCK: skip (and clear) recently referenced slots, at most two rounds
+    for (int i = 0; i < 2 * WAYS; i++) {
+      int slot = base + (this.hands.getAndIncrement(set) & (WAYS - 1));
+      if (this.keys.get(slot) == key) {
+        return; // cached by another thread
+      }
+      if (this.referenced.get(slot) != 0 && i < WAYS) {
+        this.referenced.set(slot, 0);
+        continue;
+      }
+      int v = this.versions.get(slot);
+      if ((v & 1) != 0 || !this.versions.compareAndSet(slot, v, v + 1)) {
+        continue; // slot is being updated
+      }
+      VarHandle.releaseFence();
+      this.keys.set(slot, key);
+      UnsafeAccess.copy(buffer, bufOffset, this.address + (long) slot * this.blockSize,
+        this.blockSize);
+      this.referenced.set(slot, 0);
+      this.versions.set(slot, v + 2);
+      return;
+    }
+  }
+
+  /**
+   * Invalidate all cached blocks of a segment
+   * @param sid segment id
+   */
+  public void invalidate(int sid) {
+    this.generations.incrementAndGet(sid);
+  }
+
+  /**
+   * Get block size
+   * @return block size
+   */
+  public int getBlockSize() {
+    return this.blockSize;
+  }
+
+  /**
+   * Get cache capacity in blocks
+   * @return capacity
+   */
+  public int getCapacity() {
+    return this.numSets * WAYS;
+  }
+
+  /**
+   * Get number of hits
+   * @return number of hits
+   */
+  public long getHits() {
+    return this.hits.sum();
+  }
+
+  /**
+   * Get number of misses
+   * @return number of misses
+   */
+  public long getMisses() {
+    return this.misses.sum();
+  }
+
+  /**
+   * Release memory
+   */
+  public void dispose() {
+    UnsafeAccess.free(this.address);
+  }
+
+  private int getSet(long key) {
+    // 64 bit mix (murmur3 finalizer)
+    key ^= key >>> 33;
+    key *= 0xff51afd7ed558ccdL;
+    key ^= key >>> 33;
+    key *= 0xc4ceb9fe1a85ec53L;
+    key ^= key >>> 33;
+    return (int) key & (this.numSets - 1);
+  }
+}
@@ -0,0 +1,387 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.carrot.cache.io;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.carrot.cache.util.CacheConfig;
+import com.carrot.cache.util.Persistent;
+import com.carrot.cache.util.Utils;
+
+/**
+ * Data block compression codec. Codecs are thread - safe, one instance is shared by
+ * a data writer and data readers of a cache, so it keeps compression statistics
+ * of a cache: compression ratio and compression/decompression CPU time.
+ * 
+ * Codecs which support preset dictionaries can train dictionaries on sampled blocks 
+ * (see {@link DictionaryTrainer}). Every dictionary has an id, data segment keeps id of
+ * a dictionary its blocks were compressed with, so segments stay readable after retraining.
+ * Dictionaries are saved and loaded with a cache snapshot.
+ */
+public abstract class BlockCodec implements Persistent {
+
+  /* No compression */
+  public final static String NONE = "none";
+
+  /* LZ4 block format */
+  public final static String LZ4 = "lz4";
+
+  /* Deflate (zlib) */
+  public final static String DEFLATE = "deflate";
+
+  /* Maximum dictionary size (deflate window size) */
+  public final static int MAX_DICTIONARY_SIZE = 32 * 1024;
+
+  /* Codecs per cache */
+  private static ConcurrentHashMap<String, BlockCodec> codecs = new ConcurrentHashMap<>();
+
+  /* Total raw (uncompressed) bytes */
+  private final LongAdder rawBytes = new LongAdder();
+
+  /* Total compressed bytes */
+  private final LongAdder compressedBytes = new LongAdder();
+
+  /* Total compression time in ns */
+  private final LongAdder compressionTime = new LongAdder();
+
+  /* Total decompression time in ns */
+  private final LongAdder decompressionTime = new LongAdder();
+
+  /* Number of decompressed blocks */
+  private final LongAdder decompressedBlocks = new LongAdder();
+
+  /* Dictionaries by id */
+  private final Map<Integer, byte[]> dictionaries = new ConcurrentHashMap<>();
+
+  /* Current dictionary id (0 - no dictionary) */
+  private volatile int dictionaryId;
+
+  /* Dictionary trainer (null - dictionaries are disabled) */
+  private DictionaryTrainer trainer;
+
+  /**
+   * Get codec for a cache
+   * @param cacheName cache name
+   * @return codec or null (compression is disabled)
+   */
+  public static BlockCodec getCodec(String cacheName) {
+    String name = CacheConfig.getInstance().getBlockWriterCompressionCodec(cacheName);
+    if (name == null || NONE.equalsIgnoreCase(name)) {
+      return null;
+    }
+    return codecs.compute(cacheName,
+      (k, v) -> v != null && v.getName().equalsIgnoreCase(name)? v: newCodec(name, cacheName));
+  }
+
+  /**
+   * Remove codec of a cache (when cache is disposed)
+   * @param cacheName cache name
+   */
+  public static void removeCodec(String cacheName) {
+    codecs.remove(cacheName);
+  }
+
+  private static BlockCodec newCodec(String name, String cacheName) {
+    BlockCodec codec = newCodec(name);
+    CacheConfig conf = CacheConfig.getInstance();
+    if (codec.isDictionarySupported() && conf.getBlockWriterDictionaryEnabled(cacheName)) {
+      int dictSize = Math.min(conf.getBlockWriterDictionarySize(cacheName), MAX_DICTIONARY_SIZE);
+      int trainingSize = (int) conf.getBlockWriterDictionaryTrainingSize(cacheName);
+      long interval = conf.getBlockWriterDictionaryRetrainInterval(cacheName);
+      codec.trainer = new DictionaryTrainer(dictSize, trainingSize, interval);
+    }
+    return codec;
+  }
+
+  /**
+   * Create new codec
+   * @param name codec name
+   * @return codec
+   */
+  public static BlockCodec newCodec(String name) {
+    switch (name.toLowerCase()) {
+      case LZ4:
+        return new LZ4BlockCodec();
+      case DEFLATE:
+        return new DeflateBlockCodec();
+      default:
+        throw new IllegalArgumentException(String.format("Unsupported codec: %s", name));
+    }
+  }
+
+  /**
+   * Compress data
+   * @param src source buffer
+   * @param srcOffset source offset
+   * @param len data length
+   * @param dst destination buffer
+   * @param dstOffset destination offset
+   * @param capacity destination capacity
+   * @return compressed length or -1 (data does not fit destination)
+   */
+  public final int compress(byte[] src, int srcOffset, int len, byte[] dst, int dstOffset,
+      int capacity) {
+    return compress(0, src, srcOffset, len, dst, dstOffset, capacity);
+  }
+
+  /**
+   * Compress data with a dictionary
+   * @param dictId dictionary id (0 - no dictionary)
+   * @param src source buffer
+   * @param srcOffset source offset
+   * @param len data length
+   * @param dst destination buffer
+   * @param dstOffset destination offset
+   * @param capacity destination capacity
+   * @return compressed length or -1 (data does not fit destination)
+   */
+  public final int compress(int dictId, byte[] src, int srcOffset, int len, byte[] dst, 
+      int dstOffset, int capacity) {
+    byte[] dict = getDictionary(dictId);
+    long start = System.nanoTime();
+    int compressedLen = doCompress(dict, src, srcOffset, len, dst, dstOffset, capacity);
+    this.compressionTime.add(System.nanoTime() - start);
+    this.rawBytes.add(len);
+    this.compressedBytes.add(compressedLen < 0? len: compressedLen);
+    return compressedLen;
+  }
+
+  /**
+   * Decompress data
+   * @param src source buffer
+   * @param srcOffset source offset
+   * @param len compressed data length
+   * @param dst destination buffer
+   * @param dstOffset destination offset
+   * @param rawLen decompressed data length
+   */
+  public final void decompress(byte[] src, int srcOffset, int len, byte[] dst, int dstOffset,
+      int rawLen) {
+    decompress(0, src, srcOffset, len, dst, dstOffset, rawLen);
+  }
+
+  /**
+   * Decompress data with a dictionary
+   * @param dictId dictionary id (0 - no dictionary)
+   * @param src source buffer
+   * @param srcOffset source offset
+   * @param len compressed data length
+   * @param dst destination buffer
+   * @param dstOffset destination offset
+   * @param rawLen decompressed data length
+   */
+  public final void decompress(int dictId, byte[] src, int srcOffset, int len, byte[] dst, 
+      int dstOffset, int rawLen) {
+    byte[] dict = getDictionary(dictId);
+    if (dictId != 0 && dict == null) {
+      throw new IllegalArgumentException(String.format("Unknown dictionary: %d", dictId));
+    }
+    long start = System.nanoTime();
+    doDecompress(dict, src, srcOffset, len, dst, dstOffset, rawLen);
+    this.decompressionTime.add(System.nanoTime() - start);
+    this.decompressedBlocks.increment();
+  }
+
+  /**
+   * Codec name
+   * @return name
+   */
+  public abstract String getName();
+
+  /**
+   * Does this codec support preset dictionaries
+   * @return true or false
+   */
+  public boolean isDictionarySupported() {
+    return false;
+  }
+
+  /**
+   * Compress data
+   * @param dict dictionary (can be null)
+   * @param src source buffer
+   * @param srcOffset source offset
+   * @param len data length
+   * @param dst destination buffer
+   * @param dstOffset destination offset
+   * @param capacity destination capacity
+   * @return compressed length or -1 (data does not fit destination)
+   */
+  protected abstract int doCompress(byte[] dict, byte[] src, int srcOffset, int len, byte[] dst,
+      int dstOffset, int capacity);
+
+  /**
+   * Decompress data
+   * @param dict dictionary (can be null)
+   * @param src source buffer
+   * @param srcOffset source offset
+   * @param len compressed data length
+   * @param dst destination buffer
+   * @param dstOffset destination offset
+   * @param rawLen decompressed data length
+   */
+  protected abstract void doDecompress(byte[] dict, byte[] src, int srcOffset, int len, byte[] dst,
+      int dstOffset, int rawLen);
+
+  /**
+   * Get total raw (uncompressed) bytes
+   * @return raw bytes
+   */
+  public long getRawBytes() {
+    return this.rawBytes.sum();
+  }
+
+  /**
+   * Get total compressed bytes (incompressible data is counted as is)
+   * @return compressed bytes
+   */
+  public long getCompressedBytes() {
+    return this.compressedBytes.sum();
+  }
+
+  /**
+   * Get compression ratio
+   * @return compression ratio
+   */
+  public double getCompressionRatio() {
+    long compressed = getCompressedBytes();
+    return compressed == 0? 1.0: (double) getRawBytes() / compressed;
+  }
+
+  /**
+   * Get total compression time
+   * @return compression time in ns
+   */
+  public long getCompressionTime() {
+    return this.compressionTime.sum();
+  }
+
+  /**
+   * Get total decompression time
+   * @return decompression time in ns
+   */
+  public long getDecompressionTime() {
+    return this.decompressionTime.sum();
+  }
+
+  /**
+   * Get number of decompressed blocks
+   * @return number of decompressed blocks
+   */
+  public long getDecompressedBlocks() {
+    return this.decompressedBlocks.sum();
+  }
+
+  /**
+   * Add sample for dictionary training (if training is enabled). When enough data
+   * is sampled, a new dictionary is trained and becomes current
+   * @param buf buffer
+   * @param off offset
+   * @param len length
+   */
+  public void addSample(byte[] buf, int off, int len) {
+    if (this.trainer == null) {
+      return;
+    }
+    byte[] dict = this.trainer.addSample(buf, off, len);
+    if (dict != null && dict.length > 0) {
+      int id = this.dictionaryId + 1;
+      this.dictionaries.put(id, dict);
+      this.dictionaryId = id;
+    }
+  }
+
+  /**
+   * Is dictionary training enabled
+   * @return true or false
+   */
+  public boolean isDictionaryEnabled() {
+    return this.trainer != null;
+  }
+
+  /**
+   * Get current dictionary id
+   * @return dictionary id (0 - no dictionary)
+   */
+  public int getDictionaryId() {
+    return this.dictionaryId;
+  }
+
+  /**
+   * Get dictionary by id
+   * @param id dictionary id
+   * @return dictionary or null
+   */
+  public byte[] getDictionary(int id) {
+    return id == 0? null: this.dictionaries.get(id);
+  }
+
+  /**
+   * Get number of dictionaries
+   * @return number of dictionaries
+   */
+  public int getNumberOfDictionaries() {
+    return this.dictionaries.size();
+  }
+
+  /**
+   * Release dictionaries which are not used anymore. Current and previous dictionaries
+   * are always kept: a new segment can be assigned one of them concurrently.
+   * @param ids ids of dictionaries which are used by data segments
+   */
+  public void retainDictionaries(Set<Integer> ids) {
+    int current = this.dictionaryId;
+    this.dictionaries.keySet().removeIf(id -> id < current - 1 && !ids.contains(id));
+  }
+
+  @Override
+  public void save(OutputStream os) throws IOException {
+    DataOutputStream dos = Utils.toDataOutputStream(os);
+    dos.writeInt(this.dictionaryId);
+    dos.writeInt(this.dictionaries.size());
+    for (Map.Entry<Integer, byte[]> e: this.dictionaries.entrySet()) {
+      dos.writeInt(e.getKey());
+      dos.writeInt(e.getValue().length);
+      dos.write(e.getValue());
+    }
+    dos.flush();
+  }
+
+  @Override
+  public void load(InputStream is) throws IOException {
+    DataInputStream dis = Utils.toDataInputStream(is);
+    int id = dis.readInt();
+    int num = dis.readInt();
+    for (int i = 0; i < num; i++) {
+      int dictId = dis.readInt();
+      byte[] dict = new byte[dis.readInt()];
+      dis.readFully(dict);
+      this.dictionaries.put(dictId, dict);
+    }
+    this.dictionaryId = id;
+    if (this.trainer != null && id > 0) {
+      // Do not train a new dictionary until retrain interval is reached
+      this.trainer.setSampling(false);
+    }
+  }
+}
@@ -14,9 +14,28 @@
  */
 package com.carrot.cache.io;
 
+import static com.carrot.cache.io.BlockReaderWriterSupport.BLOCK_HEADER_SIZE;
+import static com.carrot.cache.io.BlockReaderWriterSupport.COMPRESSED_FLAG;
+import static com.carrot.cache.io.BlockReaderWriterSupport.DIR_COUNT_SIZE;
+import static com.carrot.cache.io.BlockReaderWriterSupport.DIR_ENTRY_SIZE;
+import static com.carrot.cache.io.BlockReaderWriterSupport.MAX_DIR_BLOCK_SIZE;
+import static com.carrot.cache.io.BlockReaderWriterSupport.MAX_BLOCKS;
 import static com.carrot.cache.io.BlockReaderWriterSupport.META_SIZE;
 import static com.carrot.cache.io.BlockReaderWriterSupport.SIZE_OFFSET;
+import static com.carrot.cache.io.BlockReaderWriterSupport.fingerprint;
+import static com.carrot.cache.io.BlockReaderWriterSupport.getBlockBuffer;
+import static com.carrot.cache.io.BlockReaderWriterSupport.getBlockDataSize;
+import static com.carrot.cache.io.BlockReaderWriterSupport.getBlockTableSize;
+import static com.carrot.cache.io.BlockReaderWriterSupport.getDirectorySize;
 import static com.carrot.cache.io.BlockReaderWriterSupport.getFullDataSize;
+import static com.carrot.cache.io.BlockReaderWriterSupport.getNumberOfBlocks;
+import static com.carrot.cache.io.BlockReaderWriterSupport.getRawBlockSize;
+import static com.carrot.cache.io.BlockReaderWriterSupport.hasDirectory;
+import static com.carrot.cache.io.BlockReaderWriterSupport.putBlockTableEntry;
+import static com.carrot.cache.io.BlockReaderWriterSupport.putDirectoryEntry;
+import static com.carrot.cache.io.BlockReaderWriterSupport.setNumberOfBlocks;
+
+import java.util.Arrays;
 
 import com.carrot.cache.util.CacheConfig;
 import com.carrot.cache.util.UnsafeAccess;
@@ -38,10 +57,26 @@ import com.carrot.cache.util.Utils;
  * 
  * Each block starts with 6 bytes meta where block data size is stored (4) and number of items in the block (2)
  * Upon opening new block, writer must guarantee that meta section is clear (all 0)  
+ * 
+ * Optionally, writer maintains hash directory (key fingerprint and item offset) at the end
+ * of every block, see {@link BlockReaderWriterSupport}. Space for a directory is reserved when 
+ * items are added to a block, so readers can locate an item with a single key comparison.
+ * 
+ * Optionally, blocks are compressed when they are full (see {@link BlockCodec}), compressed 
+ * blocks are packed one after another, which allows to keep more data in a segment.
+ * Codec can train a compression dictionary on sampled blocks, id of a dictionary is kept 
+ * in segment's meta, all blocks of a segment are compressed with the same dictionary.
+ * Compressed segment format is described in {@link BlockReaderWriterSupport}.
  */
 public class BlockDataWriter implements DataWriter {
   
   private int blockSize;
+  
+  /* Maintain block directories */
+  private boolean directory;
+  
+  /* Block compression codec (null - compression is disabled) */
+  private BlockCodec codec;
       
   public BlockDataWriter() {
   }
@@ -51,6 +86,17 @@ public class BlockDataWriter implements DataWriter {
     
     processEmptySegment(s);
     
+    if (this.codec != null) {
+      int requiredSize = Utils.requiredSize(keySize, valueSize);
+      long addr = getCompressedAppendAddress(s, requiredSize);
+      if (addr < 0) {
+        return IOEngine.NOT_FOUND;
+      }
+      writeItem(addr, keyPtr, keySize, valuePtr, valueSize);
+      return finishCompressedAppend(s, addr, requiredSize, 
+        this.directory? fingerprint(keyPtr, keySize): 0);
+    }
+    
     long addr = getAppendAddress(s, keySize, valueSize);
     if (addr < 0) {
       return IOEngine.NOT_FOUND;
@@ -62,6 +108,7 @@ public class BlockDataWriter implements DataWriter {
     long retValue = crossedBlockBoundary? addr - META_SIZE - s.getSegmentBlockDataSize() - s.getAddress(): 0;
     int currentBlock = crossedBlockBoundary? (int) (addr - s.getAddress()) / this.blockSize:
       (int) (s.getSegmentBlockDataSize() / this.blockSize);
+    long itemAddr = addr;
     
     // Key size
     Utils.writeUVInt(addr, keySize);
@@ -77,6 +124,13 @@ public class BlockDataWriter implements DataWriter {
     // Copy value (item)
     UnsafeAccess.copy(valuePtr, addr, valueSize);   
     int requiredSize = Utils.requiredSize(keySize, valueSize);
+    if (crossedBlockBoundary) {
+      clearBlockMeta(s, currentBlock);
+    }
+    if (this.directory) {
+      addToDirectory(s.getAddress() + currentBlock * blockSize, itemAddr, requiredSize, 
+        fingerprint(keyPtr, keySize));
+    }
     incrBlockDataSize(s, currentBlock, requiredSize);
     s.incrBlockDataSize((int) retValue);
     return s.getSegmentBlockDataSize();//retValue;
@@ -96,7 +150,8 @@ public class BlockDataWriter implements DataWriter {
     }
     
     boolean crossedBlockBoundary = fullDataSize > 0 && !fullBlocks && 
-        fullDataSize / this.blockSize < (fullDataSize + requiredSize) /this.blockSize ;
+        fullDataSize / this.blockSize < (fullDataSize + requiredSize + getDirectoryReserve(s)) 
+        / this.blockSize ;
     
     if (crossedBlockBoundary) {
       // next block starts with
@@ -130,6 +185,17 @@ public class BlockDataWriter implements DataWriter {
       int valueSize) {
 
     processEmptySegment(s);
+    
+    if (this.codec != null) {
+      int requiredSize = Utils.requiredSize(keySize, valueSize);
+      long addr = getCompressedAppendAddress(s, requiredSize);
+      if (addr < 0) {
+        return IOEngine.NOT_FOUND;
+      }
+      writeItem(addr, key, keyOffset, keySize, value, valueOffset, valueSize);
+      return finishCompressedAppend(s, addr, requiredSize, 
+        this.directory? fingerprint(key, keyOffset, keySize): 0);
+    }
     long addr = getAppendAddress(s, keySize, valueSize);
     if (addr < 0) {
       return IOEngine.NOT_FOUND;
@@ -142,6 +208,7 @@ public class BlockDataWriter implements DataWriter {
     
     int currentBlock = crossedBlockBoundary? (int) (addr - s.getAddress()) / this.blockSize:
       (int) (s.getSegmentBlockDataSize() / this.blockSize);
+    long itemAddr = addr;
     
     // Key size
     Utils.writeUVInt(addr, keySize);
@@ -157,11 +224,140 @@ public class BlockDataWriter implements DataWriter {
     // Copy value (item)
     UnsafeAccess.copy(value, valueOffset, addr, valueSize);
     int requiredSize = Utils.requiredSize(keySize, valueSize);
+    if (crossedBlockBoundary) {
+      clearBlockMeta(s, currentBlock);
+    }
+    if (this.directory) {
+      addToDirectory(s.getAddress() + currentBlock * blockSize, itemAddr, requiredSize, 
+        fingerprint(key, keyOffset, keySize));
+    }
     incrBlockDataSize(s, currentBlock, requiredSize);
     s.incrBlockDataSize((int) retValue);
     return s.getSegmentBlockDataSize();
   }
   
+  /**
+   * Get address for a new item in a compressed segment. When current block is full,
+   * it is compressed and a new block is opened
+   * @param s segment
+   * @param requiredSize item size
+   * @return address or -1 (not enough space in the segment)
+   */
+  private long getCompressedAppendAddress(Segment s, int requiredSize) {
+    long ptr = s.getAddress();
+    long size = s.size();
+    if (s.getTotalItems() == 0) {
+      if (Math.max(this.blockSize, META_SIZE + requiredSize) + getBlockTableSize(1) > size) {
+        return IOEngine.NOT_FOUND;
+      }
+      setNumberOfBlocks(ptr, size, 1);
+      putBlockTableEntry(ptr, size, 0, 0);
+      // All blocks of a segment are compressed with the same dictionary
+      s.setDictionaryId(this.codec.getDictionaryId());
+      return ptr + META_SIZE;
+    }
+    long blockOffset = s.getSegmentBlockDataSize();
+    long blockPtr = ptr + blockOffset;
+    int dataSize = getBlockDataSize(blockPtr);
+    if (META_SIZE + dataSize + requiredSize + getDirectoryReserve(s) <= this.blockSize) {
+      return blockPtr + META_SIZE + dataSize;
+    }
+    int n = getNumberOfBlocks(ptr, size);
+    if (n == MAX_BLOCKS) {
+      return IOEngine.NOT_FOUND;
+    }
+    // Compress current block
+    int rawSize = getRawBlockSize(dataSize, this.blockSize, this.directory);
+    int capacity = rawSize - BLOCK_HEADER_SIZE - 1;
+    byte[] buffer = getBlockBuffer(2 * rawSize);
+    UnsafeAccess.copy(blockPtr, buffer, 0, rawSize);
+    if (rawSize > META_SIZE + dataSize) {
+      // Segment buffers are not zeroed, clear space between data and directory
+      int dirStart = rawSize - DIR_COUNT_SIZE - getDirectorySize(blockPtr, this.blockSize) * DIR_ENTRY_SIZE;
+      Arrays.fill(buffer, META_SIZE + dataSize, dirStart, (byte) 0);
+    }
+    this.codec.addSample(buffer, META_SIZE, dataSize);
+    int compressedSize = capacity > 0? this.codec.compress(s.getDictionaryId(), buffer, 0, 
+      rawSize, buffer, rawSize, capacity): -1;
+    int storedSize = compressedSize > 0? BLOCK_HEADER_SIZE + compressedSize: rawSize;
+    long newOffset = blockOffset + storedSize;
+    if (newOffset + Math.max(this.blockSize, META_SIZE + requiredSize) + getBlockTableSize(n + 1) 
+        > size) {
+      // Not enough space for a new block
+      return IOEngine.NOT_FOUND;
+    }
+    if (compressedSize > 0) {
+      UnsafeAccess.putInt(blockPtr, rawSize);
+      UnsafeAccess.putInt(blockPtr + Utils.SIZEOF_INT, compressedSize);
+      UnsafeAccess.copy(buffer, rawSize, blockPtr + BLOCK_HEADER_SIZE, compressedSize);
+      putBlockTableEntry(ptr, size, n - 1, (int) blockOffset | COMPRESSED_FLAG);
+    }
+    // Open new block
+    putBlockTableEntry(ptr, size, n, (int) newOffset);
+    setNumberOfBlocks(ptr, size, n + 1);
+    UnsafeAccess.putInt(ptr + newOffset + SIZE_OFFSET, 0);
+    s.incrBlockDataSize(storedSize);
+    return ptr + newOffset + META_SIZE;
+  }
+  
+  /**
+   * Update current block of a compressed segment after a new item was written
+   * @param s segment
+   * @param itemAddr item address
+   * @param requiredSize item size
+   * @param fingerprint key fingerprint
+   * @return logical offset of the current block 
+   */
+  private long finishCompressedAppend(Segment s, long itemAddr, int requiredSize, 
+      short fingerprint) {
+    long blockPtr = s.getAddress() + s.getSegmentBlockDataSize();
+    if (this.directory) {
+      addToDirectory(blockPtr, itemAddr, requiredSize, fingerprint);
+    }
+    UnsafeAccess.putInt(blockPtr + SIZE_OFFSET, getBlockDataSize(blockPtr) + requiredSize);
+    s.incrDataSize(requiredSize);
+    return (long) (getNumberOfBlocks(s.getAddress(), s.size()) - 1) * this.blockSize;
+  }
+  
+  /**
+   * Write item
+   * @param addr address
+   * @param keyPtr key address
+   * @param keySize key size
+   * @param valuePtr value address
+   * @param valueSize value size
+   */
+  private void writeItem(long addr, long keyPtr, int keySize, long valuePtr, int valueSize) {
+    Utils.writeUVInt(addr, keySize);
+    addr += Utils.sizeUVInt(keySize);
+    Utils.writeUVInt(addr, valueSize);
+    addr += Utils.sizeUVInt(valueSize);
+    UnsafeAccess.copy(keyPtr, addr, keySize);
+    addr += keySize;
+    UnsafeAccess.copy(valuePtr, addr, valueSize);
+  }
+  
+  /**
+   * Write item
+   * @param addr address
+   * @param key key buffer
+   * @param keyOffset key offset
+   * @param keySize key size
+   * @param value value buffer
+   * @param valueOffset value offset
+   * @param valueSize value size
+   */
+  private void writeItem(long addr, byte[] key, int keyOffset, int keySize, byte[] value, 
+      int valueOffset, int valueSize) {
+    Utils.writeUVInt(addr, keySize);
+    addr += Utils.sizeUVInt(keySize);
+    Utils.writeUVInt(addr, valueSize);
+    addr += Utils.sizeUVInt(valueSize);
+    UnsafeAccess.copy(key, keyOffset, addr, keySize);
+    addr += keySize;
+    UnsafeAccess.copy(value, valueOffset, addr, valueSize);
+  }
+  
   /**
    * Increment block data size
    * @param s segment
@@ -175,17 +371,62 @@ public class BlockDataWriter implements DataWriter {
     s.incrDataSize(incr);
   }
   
+  /**
+   * Get space which must be reserved in a current block for the directory 
+   * (including a new entry)
+   * @param s segment
+   * @return space to reserve
+   */
+  private int getDirectoryReserve(Segment s) {
+    if (!this.directory) {
+      return 0;
+    }
+    long blockPtr = s.getAddress() + s.getSegmentBlockDataSize();
+    int dataSize = getBlockDataSize(blockPtr);
+    if (dataSize == 0 || !hasDirectory(dataSize, this.blockSize)) {
+      return 0;
+    }
+    return (getDirectorySize(blockPtr, this.blockSize) + 1) * DIR_ENTRY_SIZE + DIR_COUNT_SIZE;
+  }
+  
+  /**
+   * Add new item to a block directory. Must be called before block data size is updated
+   * @param blockPtr block address
+   * @param itemAddr item address
+   * @param requiredSize item size
+   * @param fingerprint key fingerprint
+   */
+  private void addToDirectory(long blockPtr, long itemAddr, int requiredSize, 
+      short fingerprint) {
+    int dataSize = getBlockDataSize(blockPtr);
+    if (!hasDirectory(dataSize + requiredSize, this.blockSize)) {
+      // Block with a single large item
+      return;
+    }
+    int index = dataSize == 0? 0: getDirectorySize(blockPtr, this.blockSize);
+    putDirectoryEntry(blockPtr, this.blockSize, index, fingerprint, (int) (itemAddr - blockPtr));
+  }
+  
   /**
    * Processes empty segment
    * @param s segment
    */
   private void processEmptySegment(Segment s) {
     if (s.getTotalItems() == 0) {
-      long ptr = s.getAddress();
-      UnsafeAccess.putShort(ptr, (short) 0);
+      clearBlockMeta(s, 0);
     }
   }
   
+  /**
+   * Clears meta section of a new block. Segment memory buffers are reused 
+   * and are not zeroed
+   * @param s segment
+   * @param n block number
+   */
+  private void clearBlockMeta(Segment s, int n) {
+    UnsafeAccess.putInt(s.getAddress() + n * blockSize + SIZE_OFFSET, 0);
+  }
+  
   /**
    * Get block size
    * @return block size
@@ -202,8 +443,43 @@ public class BlockDataWriter implements DataWriter {
     this.blockSize = size;
   }
   
+  /**
+   * Get block compression codec
+   * @return codec or null (compression is disabled)
+   */
+  public BlockCodec getCodec() {
+    return this.codec;
+  }
+  
+  /**
+   * Sets block compression codec
+   * @param codec codec or null (disable compression)
+   */
+  public void setCodec(BlockCodec codec) {
+    this.codec = codec;
+  }
+  
+  /**
+   * Is block directory enabled
+   * @return true or false
+   */
+  public boolean isDirectoryEnabled() {
+    return this.directory;
+  }
+  
+  /**
+   * Enables/disables block directory
+   * @param b true or false
+   */
+  public void setDirectoryEnabled(boolean b) {
+    this.directory = b && this.blockSize <= MAX_DIR_BLOCK_SIZE;
+  }
+  
   @Override
   public void init(String cacheName) {
-    this.blockSize = CacheConfig.getInstance().getBlockWriterBlockSize(cacheName);
+    CacheConfig config = CacheConfig.getInstance();
+    this.blockSize = config.getBlockWriterBlockSize(cacheName);
+    setDirectoryEnabled(config.getBlockWriterDirectoryEnabled(cacheName));
+    this.codec = BlockCodec.getCodec(cacheName);
   }
 }
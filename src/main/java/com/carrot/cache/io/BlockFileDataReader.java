@@ -14,15 +14,27 @@
  */
 package com.carrot.cache.io;
 
+import static com.carrot.cache.io.BlockReaderWriterSupport.MAX_BLOCKS;
 import static com.carrot.cache.io.BlockReaderWriterSupport.META_SIZE;
+import static com.carrot.cache.io.BlockReaderWriterSupport.TABLE_COUNT_SIZE;
+import static com.carrot.cache.io.BlockReaderWriterSupport.TABLE_ENTRY_SIZE;
+import static com.carrot.cache.io.BlockReaderWriterSupport.decompressBlock;
 import static com.carrot.cache.io.BlockReaderWriterSupport.findInBlock;
+import static com.carrot.cache.io.BlockReaderWriterSupport.getBlockBuffer;
+import static com.carrot.cache.io.BlockReaderWriterSupport.getBlockOffset;
+import static com.carrot.cache.io.BlockReaderWriterSupport.getBlockTableSize;
+import static com.carrot.cache.io.BlockReaderWriterSupport.getCompressedBlockSize;
+import static com.carrot.cache.io.BlockReaderWriterSupport.isCompressedBlock;
+import static com.carrot.cache.io.BlockReaderWriterSupport.setBlockBuffer;
 import static com.carrot.cache.util.IOUtils.readFully;
+import static com.carrot.cache.util.IOUtils.readFullyDirect;
 import static com.carrot.cache.util.Utils.getKeyOffset;
 import static com.carrot.cache.util.Utils.getItemSize;
 
 import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.concurrent.ConcurrentLinkedQueue;
 
 import com.carrot.cache.util.CacheConfig;
@@ -35,9 +47,19 @@ public class BlockFileDataReader implements DataReader {
   
   private int blockSize;
   
+  /* Blocks have hash directories */
+  private boolean directory;
+  
+  /* Block compression codec (null - compression is disabled) */
+  private BlockCodec codec;
+  
   @Override
   public void init(String cacheName) {
-    this.blockSize = CacheConfig.getInstance().getBlockWriterBlockSize(cacheName);      
+    CacheConfig config = CacheConfig.getInstance();
+    this.blockSize = config.getBlockWriterBlockSize(cacheName);
+    this.directory = config.getBlockWriterDirectoryEnabled(cacheName) && 
+        this.blockSize <= BlockReaderWriterSupport.MAX_DIR_BLOCK_SIZE;      
+    this.codec = BlockCodec.getCodec(cacheName);
   }
 
   @Override
@@ -53,6 +75,10 @@ public class BlockFileDataReader implements DataReader {
       int bufOffset)
       throws IOException {
 
+    if (this.codec != null) {
+      return readCompressed((FileIOEngine) engine, sid, offset, key, keyOffset, 0L, keySize, buffer, 
+        bufOffset, null);
+    }
     // FIXME: Dirty hack
     offset += Segment.META_SIZE; // add 8 bytes to the file offset
     // every segment in a file system has 8 bytes meta prefix
@@ -74,6 +100,8 @@ public class BlockFileDataReader implements DataReader {
       // TODO: what kind of error is it?
       return IOEngine.NOT_FOUND;
     }
+    // Segment's base offset in a storage file
+    offset += fileEngine.getFileOffsetFor(sid);
     if (size > 0 && file.length() < offset + size) {
       // Rare situation - wrong segment - hash collision
       return IOEngine.NOT_FOUND;
@@ -81,7 +109,7 @@ public class BlockFileDataReader implements DataReader {
 
     int off = 0;
     // Read first block
-    readFully(file, offset, buffer, bufOffset, blockSize);
+    readBlock(fileEngine, sid, file, offset, buffer, bufOffset, blockSize);
 
     int dataSize = UnsafeAccess.toInt(buffer, bufOffset);
     if (dataSize > blockSize - META_SIZE) {
@@ -89,10 +117,11 @@ public class BlockFileDataReader implements DataReader {
       if (dataSize + META_SIZE > avail) {
         return dataSize + META_SIZE;
       }
-      readFully(file, offset + blockSize, buffer, bufOffset + blockSize, dataSize - blockSize + META_SIZE);
+      readBlock(fileEngine, sid, file, offset + blockSize, buffer, bufOffset + blockSize, dataSize - blockSize + META_SIZE);
     }
 
-    off = (int) findInBlock(buffer, bufOffset, key, keyOffset, keySize);
+    off = (int) (this.directory? findInBlock(buffer, bufOffset, blockSize, key, keyOffset, keySize):
+      findInBlock(buffer, bufOffset, key, keyOffset, keySize));
     if (off < 0) {
       return IOEngine.NOT_FOUND;
     }
@@ -114,6 +143,10 @@ public class BlockFileDataReader implements DataReader {
       int size,
       ByteBuffer buffer)
       throws IOException {
+    if (this.codec != null) {
+      return readCompressed((FileIOEngine) engine, sid, offset, key, keyOffset, 0L, keySize, null, 0, 
+        buffer);
+    }
     // FIXME: Dirty hack
     offset += Segment.META_SIZE; // add 8 bytes to
 
@@ -129,6 +162,8 @@ public class BlockFileDataReader implements DataReader {
       // TODO: what kind of error is it?
       return IOEngine.NOT_FOUND;
     }
+    // Segment's base offset in a storage file
+    offset += fileEngine.getFileOffsetFor(sid);
     if (size > 0 && file.length() < offset + size) {
       // Rare situation - wrong segment - hash collision
       return IOEngine.NOT_FOUND;
@@ -140,7 +175,7 @@ public class BlockFileDataReader implements DataReader {
     boolean releaseBuffer = true;
     try {
       // TODO: make file read a separate method
-      readFully(file, offset, buf, 0, buf.length);
+      readBlock(fileEngine, sid, file, offset, buf, 0, buf.length);
 
       int dataSize = UnsafeAccess.toInt(buf, 0);
       if (dataSize > blockSize - META_SIZE) {
@@ -156,11 +191,12 @@ public class BlockFileDataReader implements DataReader {
         releaseBuffer(buf);
         releaseBuffer = false;
         buf = bbuf;
-        readFully(file, offset + blockSize, buf, blockSize, dataSize - blockSize + META_SIZE);
+        readBlock(fileEngine, sid, file, offset + blockSize, buf, blockSize, dataSize - blockSize + META_SIZE);
       }
       // Now buffer contains both: key and value, we need to compare keys
       // Format of a key-value pair in a buffer: key-size, value-size, key, value
-      off = (int) findInBlock(buf, 0, key, keyOffset, keySize);
+      off = (int) (this.directory? findInBlock(buf, 0, blockSize, key, keyOffset, keySize):
+        findInBlock(buf, 0, key, keyOffset, keySize));
       if (off < 0) {
         return IOEngine.NOT_FOUND;
       }
@@ -198,6 +234,10 @@ public class BlockFileDataReader implements DataReader {
       int size,
       byte[] buffer,
       int bufOffset) throws IOException {
+    if (this.codec != null) {
+      return readCompressed((FileIOEngine) engine, sid, offset, null, 0, keyPtr, keySize, buffer, 
+        bufOffset, null);
+    }
     // FIXME: Dirty hack
     offset += Segment.META_SIZE; // add 8 bytes to the file offset
     // every segment in a file system has 8 bytes meta prefix
@@ -219,6 +259,8 @@ public class BlockFileDataReader implements DataReader {
       // TODO: what kind of error is it?
       return IOEngine.NOT_FOUND;
     }
+    // Segment's base offset in a storage file
+    offset += fileEngine.getFileOffsetFor(sid);
     if (size > 0 && file.length() < offset + size) {
       // Rare situation - wrong segment - hash collision
       return IOEngine.NOT_FOUND;
@@ -226,7 +268,7 @@ public class BlockFileDataReader implements DataReader {
 
     int off = 0;
     // Read first block
-    readFully(file, offset, buffer, bufOffset, blockSize);
+    readBlock(fileEngine, sid, file, offset, buffer, bufOffset, blockSize);
 
     int dataSize = UnsafeAccess.toInt(buffer, bufOffset);
     if (dataSize > blockSize - META_SIZE) {
@@ -234,10 +276,11 @@ public class BlockFileDataReader implements DataReader {
       if (dataSize + META_SIZE > avail) {
         return dataSize + META_SIZE;
       }
-      readFully(file, offset + blockSize, buffer, bufOffset + blockSize, dataSize - blockSize + META_SIZE);
+      readBlock(fileEngine, sid, file, offset + blockSize, buffer, bufOffset + blockSize, dataSize - blockSize + META_SIZE);
     }
 
-    off = (int) findInBlock(buffer, bufOffset, keyPtr, keySize);
+    off = (int) (this.directory? findInBlock(buffer, bufOffset, blockSize, keyPtr, keySize):
+      findInBlock(buffer, bufOffset, keyPtr, keySize));
     if (off < 0) {
       return IOEngine.NOT_FOUND;
     }
@@ -251,6 +294,9 @@ public class BlockFileDataReader implements DataReader {
   public int read(
       IOEngine engine, long keyPtr, int keySize, int sid, long offset, int size, ByteBuffer buffer)
       throws IOException {
+    if (this.codec != null) {
+      return readCompressed((FileIOEngine) engine, sid, offset, null, 0, keyPtr, keySize, null, 0, buffer);
+    }
     // FIXME: Dirty hack
     offset += Segment.META_SIZE; // add 8 bytes to
     int avail = buffer.remaining();
@@ -265,6 +311,8 @@ public class BlockFileDataReader implements DataReader {
       // TODO: what kind of error is it?
       return IOEngine.NOT_FOUND;
     }
+    // Segment's base offset in a storage file
+    offset += fileEngine.getFileOffsetFor(sid);
     if (file.length() < offset + size) {
       // Rare situation - wrong segment - hash collision
       return IOEngine.NOT_FOUND;
@@ -276,7 +324,7 @@ public class BlockFileDataReader implements DataReader {
     boolean releaseBuffer = true;
     try {
       // TODO: make file read a separate method
-      readFully(file, offset, buf, 0, buf.length);
+      readBlock(fileEngine, sid, file, offset, buf, 0, buf.length);
       int dataSize = UnsafeAccess.toInt(buf, 0);
       if (dataSize > blockSize - META_SIZE) {
         // means that this is a single item larger than a block
@@ -289,11 +337,12 @@ public class BlockFileDataReader implements DataReader {
         releaseBuffer(buf);
         releaseBuffer = false;
         buf = bbuf;
-        readFully(file, offset + blockSize, buf, blockSize, dataSize - blockSize + META_SIZE);
+        readBlock(fileEngine, sid, file, offset + blockSize, buf, blockSize, dataSize - blockSize + META_SIZE);
       }
       // Now buffer contains both: key and value, we need to compare keys
       // Format of a key-value pair in a buffer: key-size, value-size, key, value
-      off = (int) findInBlock(buf, 0, keyPtr, keySize);
+      off = (int) (this.directory? findInBlock(buf, 0, blockSize, keyPtr, keySize):
+        findInBlock(buf, 0, keyPtr, keySize));
       if (off < 0) {
         return IOEngine.NOT_FOUND;
       }
@@ -337,6 +386,166 @@ public class BlockFileDataReader implements DataReader {
   public SegmentScanner getSegmentScanner(IOEngine engine, Segment s) throws IOException {
     String cacheName = engine.getCacheName();
     int blockSize = CacheConfig.getInstance().getBlockWriterBlockSize(cacheName);
+    if (this.codec != null) {
+      return new CompressedBlockSegmentScanner(s, (FileIOEngine) engine, blockSize, this.codec);
+    }
     return new BlockFileSegmentScanner(s, (FileIOEngine) engine, blockSize);
   }
+
+  /**
+   * Read item from a compressed segment. Key is either in a byte array or in memory,
+   * item is read either into a byte array or into a byte buffer
+   * @param engine I/O engine
+   * @param sid segment id
+   * @param offset item's block logical offset
+   * @param key key buffer (null - key is in memory)
+   * @param keyOffset key offset
+   * @param keyPtr key address
+   * @param keySize key size
+   * @param buffer buffer to read into (null - read into a byte buffer)
+   * @param bufOffset buffer offset
+   * @param bb byte buffer to read into
+   * @return item size, required buffer size or -1 (not found)
+   * @throws IOException
+   */
+  private int readCompressed(FileIOEngine engine, int sid, long offset, byte[] key,
+      int keyOffset, long keyPtr, int keySize, byte[] buffer, int bufOffset, ByteBuffer bb)
+      throws IOException {
+    int avail = buffer != null? buffer.length - bufOffset: bb.remaining();
+    RandomAccessFile file = engine.getFileFor(sid);
+    Segment s = engine.getSegmentById(sid);
+    if (file == null || s == null) {
+      return IOEngine.NOT_FOUND;
+    }
+    int[] table = getBlockTable(engine, s, file);
+    int n = (int) (offset / this.blockSize);
+    if (n >= table.length) {
+      // Rare situation - wrong segment - hash collision
+      return IOEngine.NOT_FOUND;
+    }
+    int entry = table[n];
+    long blockOffset = engine.getFileOffsetFor(sid) + Segment.META_SIZE + getBlockOffset(entry);
+    byte[] buf = getBuffer();
+    byte[] block = null;
+    try {
+      readBlock(engine, sid, file, blockOffset, buf, 0, this.blockSize);
+      // Compressed or raw block size
+      int size = isCompressedBlock(entry)? getCompressedBlockSize(buf, 0): 
+        META_SIZE + UnsafeAccess.toInt(buf, 0);
+      byte[] data = buf;
+      if (size > this.blockSize) {
+        data = new byte[size];
+        System.arraycopy(buf, 0, data, 0, this.blockSize);
+        readBlock(engine, sid, file, blockOffset + this.blockSize, data, this.blockSize, 
+          size - this.blockSize);
+      }
+      if (isCompressedBlock(entry)) {
+        block = decompressBlock(this.codec, s.getDictionaryId(), data, 0, 
+          getBlockBuffer(this.blockSize));
+        setBlockBuffer(block);
+      } else {
+        block = data;
+      }
+      int off;
+      if (key != null) {
+        off = (int) (this.directory? findInBlock(block, 0, blockSize, key, keyOffset, keySize):
+          findInBlock(block, 0, key, keyOffset, keySize));
+      } else {
+        off = (int) (this.directory? findInBlock(block, 0, blockSize, keyPtr, keySize):
+          findInBlock(block, 0, keyPtr, keySize));
+      }
+      if (off < 0) {
+        return IOEngine.NOT_FOUND;
+      }
+      int itemSize = getItemSize(block, off);
+      if (itemSize > avail) {
+        return itemSize;
+      }
+      if (buffer != null) {
+        System.arraycopy(block, off, buffer, bufOffset, itemSize);
+      } else {
+        int pos = bb.position();
+        bb.put(block, off, itemSize);
+        bb.position(pos);
+      }
+      return itemSize;
+    } finally {
+      releaseBuffer(buf);
+    }
+  }
+  
+  /**
+   * Get block table of a compressed segment, which is stored in a file. Table is loaded 
+   * on a first call
+   * @param engine I/O engine
+   * @param s segment
+   * @param file segment file
+   * @return block table
+   * @throws IOException
+   */
+  static int[] getBlockTable(FileIOEngine engine, Segment s, RandomAccessFile file) 
+      throws IOException {
+    int[] table = s.getBlockTable();
+    if (table != null) {
+      return table;
+    }
+    long end = engine.getFileOffsetFor(s.getId()) + Segment.META_SIZE + s.size();
+    byte[] buf = new byte[TABLE_COUNT_SIZE];
+    int n = 0;
+    if (s.getTotalItems() > 0) {
+      readFully(file, end - TABLE_COUNT_SIZE, buf, 0, TABLE_COUNT_SIZE);
+      n = UnsafeAccess.toInt(buf, 0);
+      if (n < 0 || n > MAX_BLOCKS) {
+        n = 0;
+      }
+    }
+    table = new int[n];
+    if (n > 0) {
+      buf = new byte[n * TABLE_ENTRY_SIZE];
+      readFully(file, end - getBlockTableSize(n), buf, 0, buf.length);
+      for (int i = 0; i < n; i++) {
+        // Entries are stored in a reverse order
+        table[i] = UnsafeAccess.toInt(buf, (n - 1 - i) * TABLE_ENTRY_SIZE);
+      }
+    }
+    s.setBlockTable(table);
+    return table;
+  }
+
+  /**
+   * Read data from a segment file, uses aligned direct I/O (O_DIRECT) if it is enabled.
+   * Blocks are looked up in (and added to) engine's block cache if it is enabled
+   * @param engine file I/O engine
+   * @param sid segment id
+   * @param file segment file
+   * @param offset offset at a file
+   * @param buffer buffer to read into
+   * @param bufOffset offset at a buffer
+   * @param len how many bytes to read
+   * @throws IOException
+   */
+  private static void readBlock(FileIOEngine engine, int sid, RandomAccessFile file, long offset,
+      byte[] buffer, int bufOffset, int len) throws IOException {
+    BlockCache cache = engine.getBlockCache();
+    long key = 0;
+    if (cache != null && len == cache.getBlockSize()) {
+      // Block offset in a segment
+      int blockOffset = (int) (offset - engine.getFileOffsetFor(sid) - Segment.META_SIZE);
+      key = cache.getKey(sid, blockOffset);
+      if (cache.get(key, buffer, bufOffset)) {
+        return;
+      }
+    } else {
+      cache = null;
+    }
+    FileChannel fc = engine.getDirectChannelFor(sid);
+    if (fc != null) {
+      readFullyDirect(fc, offset, buffer, bufOffset, len, engine.getIOAlignment());
+    } else {
+      readFully(file, offset, buffer, bufOffset, len);
+    }
+    if (cache != null) {
+      cache.put(key, buffer, bufOffset);
+    }
+  }
 }
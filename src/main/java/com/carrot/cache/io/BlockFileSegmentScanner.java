@@ -61,7 +61,10 @@ public final class BlockFileSegmentScanner implements SegmentScanner {
     this.file = engine.getOrCreateFileFor(s.getId());
     this.numEntries = s.getInfo().getTotalItems();
     int bufSize = this.engine.getFilePrefetchBufferSize();
-    this.pBuffer = new PrefetchBuffer(file, bufSize);
+    long fileOffset = engine.getFileOffsetFor(s.getId());
+    long length = Math.min(file.length() - fileOffset, Segment.META_SIZE + s.size());
+    int readAhead = this.engine.getFilePrefetchReadAheadBuffers();
+    this.pBuffer = new PrefetchBuffer(file, fileOffset, length, bufSize, readAhead);
     this.blockSize = blockSize;
     initNextBlock();
 
@@ -137,6 +140,8 @@ public final class BlockFileSegmentScanner implements SegmentScanner {
 
   @Override
   public void close() throws IOException {
+    // Wait for background reads before file is closed
+    this.pBuffer.close();
     file.close();
   }
 
@@ -26,13 +26,23 @@ import static com.carrot.cache.util.Utils.getItemSize;
 public class BlockMemoryDataReader implements DataReader {
 
   private int blockSize;
+  
+  /* Blocks have hash directories */
+  private boolean directory;
+  
+  /* Block compression codec (null - compression is disabled) */
+  private BlockCodec codec;
 
   public BlockMemoryDataReader() {
   }
 
   @Override
   public void init(String cacheName) {
-    this.blockSize = CacheConfig.getInstance().getBlockWriterBlockSize(cacheName);
+    CacheConfig config = CacheConfig.getInstance();
+    this.blockSize = config.getBlockWriterBlockSize(cacheName);
+    this.directory = config.getBlockWriterDirectoryEnabled(cacheName) && 
+        this.blockSize <= BlockReaderWriterSupport.MAX_DIR_BLOCK_SIZE;
+    this.codec = BlockCodec.getCodec(cacheName);
   }
 
   @Override
@@ -55,13 +65,17 @@ public class BlockMemoryDataReader implements DataReader {
     if (!s.isOffheap()) {
       return IOEngine.NOT_FOUND;
     }
+    if (this.codec != null) {
+      return readCompressed(s, offset, key, keyOffset, 0L, keySize, buffer, bufOffset, null);
+    }
     long dataSize = getFullDataSize(s, blockSize);
     if (size > 0 && dataSize < offset + size) {
       // Rare situation - wrong segment - hash collision
       return IOEngine.NOT_FOUND;
     }
     long ptr = s.getAddress() + offset;
-    ptr = findInBlock(ptr, key, keyOffset, keySize);
+    ptr = this.directory? findInBlock(ptr, blockSize, key, keyOffset, keySize):
+      findInBlock(ptr, key, keyOffset, keySize);
     if (ptr < 0) {
       return IOEngine.NOT_FOUND;
     } else {
@@ -93,13 +107,17 @@ public class BlockMemoryDataReader implements DataReader {
     if (!s.isOffheap()) {
       return IOEngine.NOT_FOUND;
     }
+    if (this.codec != null) {
+      return readCompressed(s, offset, key, keyOffset, 0L, keySize, null, 0, buffer);
+    }
     long dataSize = getFullDataSize(s, blockSize);
     if (size > 0 && dataSize < offset + size) {
       // Rare situation - wrong segment - hash collision
       return IOEngine.NOT_FOUND;
     }
     long ptr = s.getAddress() + offset;
-    ptr = findInBlock(ptr, key, keyOffset, keySize);
+    ptr = this.directory? findInBlock(ptr, blockSize, key, keyOffset, keySize):
+      findInBlock(ptr, key, keyOffset, keySize);
     if (ptr < 0) {
       return IOEngine.NOT_FOUND;
     } else {
@@ -133,13 +151,17 @@ public class BlockMemoryDataReader implements DataReader {
     if (!s.isOffheap()) {
       return IOEngine.NOT_FOUND;
     }
+    if (this.codec != null) {
+      return readCompressed(s, offset, null, 0, keyPtr, keySize, buffer, bufOffset, null);
+    }
     long dataSize = getFullDataSize(s, blockSize);
     if (size > 0 && dataSize < offset + size) {
       // Rare situation - wrong segment - hash collision
       return IOEngine.NOT_FOUND;
     }
     long ptr = s.getAddress() + offset;
-    ptr = findInBlock(ptr, keyPtr, keySize);
+    ptr = this.directory? findInBlock(ptr, blockSize, keyPtr, keySize):
+      findInBlock(ptr, keyPtr, keySize);
     if (ptr < 0) {
       return IOEngine.NOT_FOUND;
     } else {
@@ -171,13 +193,17 @@ public class BlockMemoryDataReader implements DataReader {
     if (!s.isOffheap()) {
       return IOEngine.NOT_FOUND;
     }
+    if (this.codec != null) {
+      return readCompressed(s, offset, null, 0, keyPtr, keySize, null, 0, buffer);
+    }
     long dataSize = getFullDataSize(s, blockSize);
     if (size > 0 && dataSize < offset + size) {
       // Rare situation - wrong segment - hash collision
       return IOEngine.NOT_FOUND;
     }
     long ptr = s.getAddress() + offset;
-    ptr = findInBlock(ptr, keyPtr, keySize);
+    ptr = this.directory? findInBlock(ptr, blockSize, keyPtr, keySize):
+      findInBlock(ptr, keyPtr, keySize);
     if (ptr < 0) {
       return IOEngine.NOT_FOUND;
     } else {
@@ -192,11 +218,93 @@ public class BlockMemoryDataReader implements DataReader {
     }
   }
 
+  /**
+   * Read item from a compressed segment. Key is either in a byte array or in memory,
+   * item is read either into a byte array or into a byte buffer
+   * @param s segment
+   * @param offset item's block logical offset
+   * @param key key buffer (null - key is in memory)
+   * @param keyOffset key offset
+   * @param keyPtr key address
+   * @param keySize key size
+   * @param buffer buffer to read into (null - read into a byte buffer)
+   * @param bufOffset buffer offset
+   * @param bb byte buffer to read into
+   * @return item size, required buffer size or -1 (not found)
+   */
+  private int readCompressed(Segment s, long offset, byte[] key, int keyOffset, long keyPtr,
+      int keySize, byte[] buffer, int bufOffset, ByteBuffer bb) {
+    int avail = buffer != null? buffer.length - bufOffset: bb.remaining();
+    long ptr = s.getAddress();
+    long size = s.size();
+    int n = (int) (offset / this.blockSize);
+    if (s.getTotalItems() == 0 || n >= getNumberOfBlocks(ptr, size)) {
+      // Rare situation - wrong segment - hash collision
+      return IOEngine.NOT_FOUND;
+    }
+    int entry = getBlockTableEntry(ptr, size, n);
+    long blockPtr = ptr + getBlockOffset(entry);
+    if (!isCompressedBlock(entry)) {
+      long itemPtr;
+      if (key != null) {
+        itemPtr = this.directory? findInBlock(blockPtr, blockSize, key, keyOffset, keySize):
+          findInBlock(blockPtr, key, keyOffset, keySize);
+      } else {
+        itemPtr = this.directory? findInBlock(blockPtr, blockSize, keyPtr, keySize):
+          findInBlock(blockPtr, keyPtr, keySize);
+      }
+      if (itemPtr < 0) {
+        return IOEngine.NOT_FOUND;
+      }
+      int requiredSize = getItemSize(itemPtr);
+      if (requiredSize > avail) {
+        return requiredSize;
+      }
+      if (buffer != null) {
+        UnsafeAccess.copy(itemPtr, buffer, bufOffset, requiredSize);
+      } else {
+        int pos = bb.position();
+        UnsafeAccess.copy(itemPtr, bb, requiredSize);
+        bb.position(pos);
+      }
+      return requiredSize;
+    }
+    byte[] block = decompressBlock(this.codec, s.getDictionaryId(), blockPtr, 
+      getBlockBuffer(this.blockSize));
+    setBlockBuffer(block);
+    int off;
+    if (key != null) {
+      off = (int) (this.directory? findInBlock(block, 0, blockSize, key, keyOffset, keySize):
+        findInBlock(block, 0, key, keyOffset, keySize));
+    } else {
+      off = (int) (this.directory? findInBlock(block, 0, blockSize, keyPtr, keySize):
+        findInBlock(block, 0, keyPtr, keySize));
+    }
+    if (off < 0) {
+      return IOEngine.NOT_FOUND;
+    }
+    int requiredSize = getItemSize(block, off);
+    if (requiredSize > avail) {
+      return requiredSize;
+    }
+    if (buffer != null) {
+      System.arraycopy(block, off, buffer, bufOffset, requiredSize);
+    } else {
+      int pos = bb.position();
+      bb.put(block, off, requiredSize);
+      bb.position(pos);
+    }
+    return requiredSize;
+  }
+
   @Override
   public SegmentScanner getSegmentScanner(IOEngine engine, Segment s) throws IOException {
     CacheConfig config = CacheConfig.getInstance();
     String cacheName = engine.getCacheName();
     int blockSize = config.getBlockWriterBlockSize(cacheName);
+    if (this.codec != null) {
+      return new CompressedBlockSegmentScanner(s, blockSize, this.codec);
+    }
     return new BlockMemorySegmentScanner(s, blockSize);
   }
 }
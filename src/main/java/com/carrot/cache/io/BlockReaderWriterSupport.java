@@ -17,10 +17,285 @@ package com.carrot.cache.io;
 import com.carrot.cache.util.UnsafeAccess;
 import com.carrot.cache.util.Utils;
 
+/**
+ * Block format support.
+ * 
+ * Block format: block data size (4), cached items. 
+ * 
+ * Blocks can have optional hash directory, which allows readers to locate an item without
+ * decoding all item headers of a block. Directory is stored at the end of a block 
+ * (it grows backwards):
+ * 
+ * ... items ... free space ... entry[N-1] ... entry[0] number of entries (2)
+ * 
+ * Directory entry: key fingerprint (2), item offset in a block (2). Block which contains 
+ * a single large item (block data size > block size - META_SIZE - DIR_ENTRY_SIZE - DIR_COUNT_SIZE)
+ * does not have a directory.
+ * 
+ * Segments can be compressed (block compression codec is enabled). Blocks of a compressed 
+ * segment are packed one after another, a block is compressed when it is full and stored
+ * as: raw block size (4), compressed size (4), compressed block. The last (open) block 
+ * of a segment and blocks which do not compress are stored as is. Memory index keeps logical 
+ * block offsets (block number * block size), block table at the end of a segment maps 
+ * block numbers to physical offsets:
+ * 
+ * ... blocks ... free space ... offset[N-1] ... offset[0] number of blocks (4)
+ * 
+ * Offset of a compressed block has the sign bit set.
+ */
 public class BlockReaderWriterSupport {
   public final static int SIZE_OFFSET = 0;
   public final static int META_SIZE = Utils.SIZEOF_INT;
   
+  /* Directory entry size: key fingerprint (2) and item offset (2) */
+  public final static int DIR_ENTRY_SIZE = 2 * Utils.SIZEOF_SHORT;
+  
+  /* Directory number of entries size */
+  public final static int DIR_COUNT_SIZE = Utils.SIZEOF_SHORT;
+  
+  /* Maximum block size which supports directory (item offsets are 2 bytes) */
+  public final static int MAX_DIR_BLOCK_SIZE = 1 << 16;
+  
+  /* Compressed block header size: raw size (4) and compressed size (4) */
+  public final static int BLOCK_HEADER_SIZE = 2 * Utils.SIZEOF_INT;
+  
+  /* Block table entry size */
+  public final static int TABLE_ENTRY_SIZE = Utils.SIZEOF_INT;
+  
+  /* Block table number of entries size */
+  public final static int TABLE_COUNT_SIZE = Utils.SIZEOF_INT;
+  
+  /* Compressed block flag in a block table entry */
+  public final static int COMPRESSED_FLAG = 0x80000000;
+  
+  /* Maximum number of blocks in a compressed segment (index keeps 2 bytes block numbers) */
+  public final static int MAX_BLOCKS = 1 << 16;
+  
+  /* Block buffers for decompression */
+  private static ThreadLocal<byte[]> blockBuffers = new ThreadLocal<>();
+  
+  /**
+   * Does block have a directory
+   * @param blockDataSize block data size
+   * @param blockSize block size
+   * @return true - yes, false - no (single large item)
+   */
+  public static boolean hasDirectory(int blockDataSize, int blockSize) {
+    return blockDataSize <= blockSize - META_SIZE - DIR_ENTRY_SIZE - DIR_COUNT_SIZE;
+  }
+  
+  /**
+   * Get number of directory entries
+   * @param ptr block address
+   * @param blockSize block size
+   * @return number of entries
+   */
+  public static int getDirectorySize(long ptr, int blockSize) {
+    return UnsafeAccess.toShort(ptr + blockSize - DIR_COUNT_SIZE) & 0xffff;
+  }
+  
+  /**
+   * Add directory entry
+   * @param ptr block address
+   * @param blockSize block size
+   * @param index entry index
+   * @param fingerprint key fingerprint
+   * @param offset item offset in a block
+   */
+  public static void putDirectoryEntry(long ptr, int blockSize, int index, short fingerprint, 
+      int offset) {
+    long entryPtr = ptr + blockSize - DIR_COUNT_SIZE - (index + 1) * DIR_ENTRY_SIZE;
+    UnsafeAccess.putShort(entryPtr, fingerprint);
+    UnsafeAccess.putShort(entryPtr + Utils.SIZEOF_SHORT, (short) offset);
+    UnsafeAccess.putShort(ptr + blockSize - DIR_COUNT_SIZE, (short) (index + 1));
+  }
+  
+  /**
+   * Get number of blocks in a compressed segment
+   * @param ptr segment address
+   * @param segmentSize segment size
+   * @return number of blocks
+   */
+  public static int getNumberOfBlocks(long ptr, long segmentSize) {
+    return UnsafeAccess.toInt(ptr + segmentSize - TABLE_COUNT_SIZE);
+  }
+  
+  /**
+   * Set number of blocks in a compressed segment
+   * @param ptr segment address
+   * @param segmentSize segment size
+   * @param n number of blocks
+   */
+  public static void setNumberOfBlocks(long ptr, long segmentSize, int n) {
+    UnsafeAccess.putInt(ptr + segmentSize - TABLE_COUNT_SIZE, n);
+  }
+  
+  /**
+   * Get block table entry of a compressed segment
+   * @param ptr segment address
+   * @param segmentSize segment size
+   * @param n block number
+   * @return block table entry (block offset and compressed flag)
+   */
+  public static int getBlockTableEntry(long ptr, long segmentSize, int n) {
+    return UnsafeAccess.toInt(getBlockTableEntryAddress(ptr, segmentSize, n));
+  }
+  
+  /**
+   * Set block table entry of a compressed segment
+   * @param ptr segment address
+   * @param segmentSize segment size
+   * @param n block number
+   * @param entry block table entry (block offset and compressed flag)
+   */
+  public static void putBlockTableEntry(long ptr, long segmentSize, int n, int entry) {
+    UnsafeAccess.putInt(getBlockTableEntryAddress(ptr, segmentSize, n), entry);
+  }
+  
+  private static long getBlockTableEntryAddress(long ptr, long segmentSize, int n) {
+    return ptr + segmentSize - TABLE_COUNT_SIZE - (long) (n + 1) * TABLE_ENTRY_SIZE;
+  }
+  
+  /**
+   * Get block table size
+   * @param numBlocks number of blocks
+   * @return size
+   */
+  public static int getBlockTableSize(int numBlocks) {
+    return TABLE_COUNT_SIZE + numBlocks * TABLE_ENTRY_SIZE;
+  }
+  
+  /**
+   * Is block compressed
+   * @param entry block table entry
+   * @return true or false
+   */
+  public static boolean isCompressedBlock(int entry) {
+    return (entry & COMPRESSED_FLAG) != 0;
+  }
+  
+  /**
+   * Get block offset in a segment
+   * @param entry block table entry
+   * @return block offset
+   */
+  public static int getBlockOffset(int entry) {
+    return entry & ~COMPRESSED_FLAG;
+  }
+  
+  /**
+   * Get size of a block which is stored as is
+   * @param dataSize block data size
+   * @param blockSize block size
+   * @param directory blocks have directories
+   * @return block size
+   */
+  public static int getRawBlockSize(int dataSize, int blockSize, boolean directory) {
+    return directory && hasDirectory(dataSize, blockSize)? blockSize: META_SIZE + dataSize;
+  }
+  
+  /**
+   * Get stored size of a compressed block (including header)
+   * @param ptr block address
+   * @return size
+   */
+  public static int getCompressedBlockSize(long ptr) {
+    return BLOCK_HEADER_SIZE + UnsafeAccess.toInt(ptr + Utils.SIZEOF_INT);
+  }
+  
+  /**
+   * Get stored size of a compressed block (including header)
+   * @param buffer buffer
+   * @param off block offset in a buffer
+   * @return size
+   */
+  public static int getCompressedBlockSize(byte[] buffer, int off) {
+    return BLOCK_HEADER_SIZE + UnsafeAccess.toInt(buffer, off + Utils.SIZEOF_INT);
+  }
+  
+  /**
+   * Decompress block
+   * @param codec codec
+   * @param dictId dictionary id (0 - no dictionary)
+   * @param ptr compressed block address
+   * @param buffer buffer to decompress to (can be null)
+   * @return buffer which contains raw block (can be a new one, if a given one is too small)
+   */
+  public static byte[] decompressBlock(BlockCodec codec, int dictId, long ptr, byte[] buffer) {
+    int rawSize = UnsafeAccess.toInt(ptr);
+    int compressedSize = UnsafeAccess.toInt(ptr + Utils.SIZEOF_INT);
+    if (buffer == null || buffer.length < rawSize + compressedSize) {
+      buffer = new byte[rawSize + compressedSize];
+    }
+    // Compressed data is placed after raw block
+    UnsafeAccess.copy(ptr + BLOCK_HEADER_SIZE, buffer, rawSize, compressedSize);
+    codec.decompress(dictId, buffer, rawSize, compressedSize, buffer, 0, rawSize);
+    return buffer;
+  }
+  
+  /**
+   * Decompress block
+   * @param codec codec
+   * @param dictId dictionary id (0 - no dictionary)
+   * @param src buffer which contains compressed block
+   * @param off compressed block offset
+   * @param buffer buffer to decompress to (can be null)
+   * @return buffer which contains raw block (can be a new one, if a given one is too small)
+   */
+  public static byte[] decompressBlock(BlockCodec codec, int dictId, byte[] src, int off, 
+      byte[] buffer) {
+    int rawSize = UnsafeAccess.toInt(src, off);
+    int compressedSize = UnsafeAccess.toInt(src, off + Utils.SIZEOF_INT);
+    if (buffer == null || buffer.length < rawSize) {
+      buffer = new byte[rawSize];
+    }
+    codec.decompress(dictId, src, off + BLOCK_HEADER_SIZE, compressedSize, buffer, 0, rawSize);
+    return buffer;
+  }
+  
+  /**
+   * Get thread - local block buffer
+   * @param size minimum size
+   * @return buffer
+   */
+  public static byte[] getBlockBuffer(int size) {
+    byte[] buffer = blockBuffers.get();
+    if (buffer == null || buffer.length < size) {
+      buffer = new byte[size];
+      blockBuffers.set(buffer);
+    }
+    return buffer;
+  }
+  
+  /**
+   * Set thread - local block buffer
+   * @param buffer buffer
+   */
+  public static void setBlockBuffer(byte[] buffer) {
+    blockBuffers.set(buffer);
+  }
+  
+  /**
+   * Key fingerprint
+   * @param key key buffer
+   * @param keyOffset key offset
+   * @param keySize key size
+   * @return fingerprint
+   */
+  public static short fingerprint(byte[] key, int keyOffset, int keySize) {
+    return (short) Utils.hash64(key, keyOffset, keySize);
+  }
+  
+  /**
+   * Key fingerprint
+   * @param keyPtr key address
+   * @param keySize key size
+   * @return fingerprint
+   */
+  public static short fingerprint(long keyPtr, int keySize) {
+    return (short) Utils.hash64(keyPtr, keySize);
+  }
+  
   /**
    * Get data size in block n
    * @param s segment
@@ -176,7 +451,7 @@ public class BlockReaderWriterSupport {
     int off = META_SIZE + blockOff;
     long found = IOEngine.NOT_FOUND;
 
-    while (off < blockDataSize) {
+    while (off < blockOff + blockDataSize) {
       // Format of a key-value pair in a buffer: key-size, value-size, key, value
       int kSize = Utils.readUVInt(block, off);
       int kSizeSize = Utils.sizeUVInt(kSize);
@@ -209,7 +484,7 @@ public class BlockReaderWriterSupport {
     int off = META_SIZE + blockOff;
     long found = IOEngine.NOT_FOUND;
 
-    while (off < blockDataSize) {
+    while (off < blockOff + blockDataSize) {
       // Format of a key-value pair in a buffer: key-size, value-size, key, value
       int kSize = Utils.readUVInt(block, off);
       int kSizeSize = Utils.sizeUVInt(kSize);
@@ -228,4 +503,168 @@ public class BlockReaderWriterSupport {
     }
     return found;
   }
+  
+  /**
+   * Find key in a memory block using block's directory
+   * @param ptr block address
+   * @param blockSize block size
+   * @param key key buffer
+   * @param keyOffset key offset
+   * @param keySize key size
+   * @return address of a K-V pair or -1 (not found)
+   */
+  public static long findInBlock(long ptr, int blockSize, byte[] key, int keyOffset, int keySize) {
+    int blockDataSize = getBlockDataSize(ptr);
+    if (!hasDirectory(blockDataSize, blockSize)) {
+      return findInBlock(ptr, key, keyOffset, keySize);
+    }
+    short fp = fingerprint(key, keyOffset, keySize);
+    int count = getDirectorySize(ptr, blockSize);
+    long dirPtr = ptr + blockSize - DIR_COUNT_SIZE;
+    // Last entry wins (the same key can be present more than once)
+    for (int i = count - 1; i >= 0; i--) {
+      long entryPtr = dirPtr - (i + 1) * DIR_ENTRY_SIZE;
+      if (UnsafeAccess.toShort(entryPtr) != fp) {
+        continue;
+      }
+      int off = UnsafeAccess.toShort(entryPtr + Utils.SIZEOF_SHORT) & 0xffff;
+      if (off < META_SIZE || off >= META_SIZE + blockDataSize) {
+        continue;
+      }
+      long $ptr = ptr + off;
+      int kSize = Utils.readUVInt($ptr);
+      if (kSize != keySize) {
+        continue;
+      }
+      int kSizeSize = Utils.sizeUVInt(kSize);
+      int vSizeSize = Utils.sizeUVInt(Utils.readUVInt($ptr + kSizeSize));
+      if (Utils.compareTo(key, keyOffset, keySize, $ptr + kSizeSize + vSizeSize, kSize) == 0) {
+        return $ptr;
+      }
+    }
+    return IOEngine.NOT_FOUND;
+  }
+  
+  /**
+   * Find key in a memory block using block's directory
+   * @param ptr block address
+   * @param blockSize block size
+   * @param keyPtr key address
+   * @param keySize key size
+   * @return address of a K-V pair or -1 (not found)
+   */
+  public static long findInBlock(long ptr, int blockSize, long keyPtr, int keySize) {
+    int blockDataSize = getBlockDataSize(ptr);
+    if (!hasDirectory(blockDataSize, blockSize)) {
+      return findInBlock(ptr, keyPtr, keySize);
+    }
+    short fp = fingerprint(keyPtr, keySize);
+    int count = getDirectorySize(ptr, blockSize);
+    long dirPtr = ptr + blockSize - DIR_COUNT_SIZE;
+    for (int i = count - 1; i >= 0; i--) {
+      long entryPtr = dirPtr - (i + 1) * DIR_ENTRY_SIZE;
+      if (UnsafeAccess.toShort(entryPtr) != fp) {
+        continue;
+      }
+      int off = UnsafeAccess.toShort(entryPtr + Utils.SIZEOF_SHORT) & 0xffff;
+      if (off < META_SIZE || off >= META_SIZE + blockDataSize) {
+        continue;
+      }
+      long $ptr = ptr + off;
+      int kSize = Utils.readUVInt($ptr);
+      if (kSize != keySize) {
+        continue;
+      }
+      int kSizeSize = Utils.sizeUVInt(kSize);
+      int vSizeSize = Utils.sizeUVInt(Utils.readUVInt($ptr + kSizeSize));
+      if (Utils.compareTo(keyPtr, keySize, $ptr + kSizeSize + vSizeSize, kSize) == 0) {
+        return $ptr;
+      }
+    }
+    return IOEngine.NOT_FOUND;
+  }
+  
+  /**
+   * Find key in a block buffer using block's directory
+   * @param block data block
+   * @param blockOff block offset
+   * @param blockSize block size
+   * @param key key buffer
+   * @param keyOffset key offset
+   * @param keySize key size
+   * @return offset of a K-V pair or -1 (not found)
+   */
+  public static long findInBlock(byte[] block, int blockOff, int blockSize, byte[] key, 
+      int keyOffset, int keySize) {
+    int blockDataSize = getBlockDataSize(block, blockOff);
+    if (!hasDirectory(blockDataSize, blockSize)) {
+      return findInBlock(block, blockOff, key, keyOffset, keySize);
+    }
+    short fp = fingerprint(key, keyOffset, keySize);
+    int dirOff = blockOff + blockSize - DIR_COUNT_SIZE;
+    int count = UnsafeAccess.toShort(block, dirOff) & 0xffff;
+    for (int i = count - 1; i >= 0; i--) {
+      int entryOff = dirOff - (i + 1) * DIR_ENTRY_SIZE;
+      if (UnsafeAccess.toShort(block, entryOff) != fp) {
+        continue;
+      }
+      int off = UnsafeAccess.toShort(block, entryOff + Utils.SIZEOF_SHORT) & 0xffff;
+      if (off < META_SIZE || off >= META_SIZE + blockDataSize) {
+        continue;
+      }
+      off += blockOff;
+      int kSize = Utils.readUVInt(block, off);
+      if (kSize != keySize) {
+        continue;
+      }
+      int kSizeSize = Utils.sizeUVInt(kSize);
+      int vSizeSize = Utils.sizeUVInt(Utils.readUVInt(block, off + kSizeSize));
+      if (Utils.compareTo(key, keyOffset, keySize, block, off + kSizeSize + vSizeSize, 
+        kSize) == 0) {
+        return off;
+      }
+    }
+    return IOEngine.NOT_FOUND;
+  }
+  
+  /**
+   * Find key in a block buffer using block's directory
+   * @param block data block
+   * @param blockOff block offset
+   * @param blockSize block size
+   * @param keyPtr key address
+   * @param keySize key size
+   * @return offset of a K-V pair or -1 (not found)
+   */
+  public static long findInBlock(byte[] block, int blockOff, int blockSize, long keyPtr, 
+      int keySize) {
+    int blockDataSize = getBlockDataSize(block, blockOff);
+    if (!hasDirectory(blockDataSize, blockSize)) {
+      return findInBlock(block, blockOff, keyPtr, keySize);
+    }
+    short fp = fingerprint(keyPtr, keySize);
+    int dirOff = blockOff + blockSize - DIR_COUNT_SIZE;
+    int count = UnsafeAccess.toShort(block, dirOff) & 0xffff;
+    for (int i = count - 1; i >= 0; i--) {
+      int entryOff = dirOff - (i + 1) * DIR_ENTRY_SIZE;
+      if (UnsafeAccess.toShort(block, entryOff) != fp) {
+        continue;
+      }
+      int off = UnsafeAccess.toShort(block, entryOff + Utils.SIZEOF_SHORT) & 0xffff;
+      if (off < META_SIZE || off >= META_SIZE + blockDataSize) {
+        continue;
+      }
+      off += blockOff;
+      int kSize = Utils.readUVInt(block, off);
+      if (kSize != keySize) {
+        continue;
+      }
+      int kSizeSize = Utils.sizeUVInt(kSize);
+      int vSizeSize = Utils.sizeUVInt(Utils.readUVInt(block, off + kSizeSize));
+      if (Utils.compareTo(block, off + kSizeSize + vSizeSize, kSize, keyPtr, keySize) == 0) {
+        return off;
+      }
+    }
+    return IOEngine.NOT_FOUND;
+  }
 }
@@ -0,0 +1,310 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.carrot.cache.io;
+
+import static com.carrot.cache.io.BlockReaderWriterSupport.META_SIZE;
+import static com.carrot.cache.io.BlockReaderWriterSupport.decompressBlock;
+import static com.carrot.cache.io.BlockReaderWriterSupport.getBlockDataSize;
+import static com.carrot.cache.io.BlockReaderWriterSupport.getBlockOffset;
+import static com.carrot.cache.io.BlockReaderWriterSupport.getBlockTableEntry;
+import static com.carrot.cache.io.BlockReaderWriterSupport.getNumberOfBlocks;
+import static com.carrot.cache.io.BlockReaderWriterSupport.isCompressedBlock;
+import static com.carrot.cache.util.IOUtils.readFully;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+
+import com.carrot.cache.util.UnsafeAccess;
+import com.carrot.cache.util.Utils;
+
+/**
+ * Scanner of a compressed segment (in memory or in a file). Blocks are decompressed
+ * one by one into a scanner's memory buffer, so scanner provides direct access
+ * to keys and values.
+ */
+public final class CompressedBlockSegmentScanner implements SegmentScanner {
+
+  /* Data segment */
+  private Segment segment;
+
+  /* I/O engine (for a segment in a file) */
+  private FileIOEngine engine;
+
+  /* Segment file */
+  private RandomAccessFile file;
+
+  /* Block table (for a segment in a file) */
+  private int[] table;
+
+  /* Codec */
+  private BlockCodec codec;
+
+  /* Block size */
+  private int blockSize;
+
+  /* Number of blocks */
+  private int numBlocks;
+
+  /* Current block number */
+  private int currentBlockIndex = -1;
+
+  /* Current block address */
+  private long blockPtr;
+
+  /* Current block data size */
+  private int blockDataSize;
+
+  /* Offset in a current block */
+  private int blockOffset;
+
+  /* Current item index */
+  private int currentItemIndex = 0;
+
+  /* Total number of items */
+  private int totalItems;
+
+  /* Block memory buffer */
+  private long buffer;
+
+  /* Block memory buffer size */
+  private int bufferSize;
+
+  /* Buffer for block reads and decompression */
+  private byte[] blockBuffer;
+
+  /**
+   * Constructor for a segment in memory
+   * @param s segment
+   * @param blockSize block size
+   * @param codec codec
+   */
+  CompressedBlockSegmentScanner(Segment s, int blockSize, BlockCodec codec) {
+    // Make sure it is sealed
+    if (s.isSealed() == false) {
+      throw new RuntimeException("segment is not sealed");
+    }
+    this.segment = s;
+    this.blockSize = blockSize;
+    this.codec = codec;
+    this.totalItems = s.getTotalItems();
+    s.readLock();
+    this.numBlocks = this.totalItems > 0? getNumberOfBlocks(s.getAddress(), s.size()): 0;
+    initNextBlock();
+  }
+
+  /**
+   * Constructor for a segment in a file
+   * @param s segment
+   * @param engine I/O engine
+   * @param blockSize block size
+   * @param codec codec
+   * @throws IOException
+   */
+  CompressedBlockSegmentScanner(Segment s, FileIOEngine engine, int blockSize, BlockCodec codec)
+      throws IOException {
+    this.segment = s;
+    this.engine = engine;
+    this.blockSize = blockSize;
+    this.codec = codec;
+    this.totalItems = s.getTotalItems();
+    this.file = engine.getOrCreateFileFor(s.getId());
+    this.table = BlockFileDataReader.getBlockTable(engine, s, this.file);
+    this.numBlocks = this.table.length;
+    initNextBlock();
+  }
+
+  private void initNextBlock() {
+    this.currentBlockIndex++;
+    this.blockOffset = META_SIZE;
+    if (this.currentBlockIndex >= this.numBlocks) {
+      this.blockDataSize = 0;
+      return;
+    }
+    try {
+      if (this.engine == null) {
+        loadMemoryBlock();
+      } else {
+        loadFileBlock();
+      }
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+    this.blockDataSize = getBlockDataSize(this.blockPtr);
+  }
+
+  private void loadMemoryBlock() {
+    long ptr = this.segment.getAddress();
+    int entry = getBlockTableEntry(ptr, this.segment.size(), this.currentBlockIndex);
+    long blockPtr = ptr + getBlockOffset(entry);
+    if (!isCompressedBlock(entry)) {
+      this.blockPtr = blockPtr;
+      return;
+    }
+    this.blockBuffer = decompressBlock(this.codec, this.segment.getDictionaryId(), blockPtr,
+      this.blockBuffer);
+    copyToBuffer(this.blockBuffer);
+  }
+
+  private void loadFileBlock() throws IOException {
+    int entry = this.table[this.currentBlockIndex];
+    long base = this.engine.getFileOffsetFor(this.segment.getId()) + Segment.META_SIZE;
+    long offset = base + getBlockOffset(entry);
+    int len;
+    if (this.currentBlockIndex < this.numBlocks - 1) {
+      // Blocks are packed
+      len = getBlockOffset(this.table[this.currentBlockIndex + 1]) - getBlockOffset(entry);
+    } else {
+      // Last block is stored as is
+      byte[] meta = new byte[META_SIZE];
+      readFully(this.file, offset, meta, 0, META_SIZE);
+      len = META_SIZE + getBlockDataSize(meta, 0);
+    }
+    byte[] data = new byte[len];
+    readFully(this.file, offset, data, 0, len);
+    if (isCompressedBlock(entry)) {
+      this.blockBuffer = decompressBlock(this.codec, this.segment.getDictionaryId(), data, 0,
+        this.blockBuffer);
+      copyToBuffer(this.blockBuffer);
+    } else {
+      copyToBuffer(data);
+    }
+  }
+
+  private void copyToBuffer(byte[] block) {
+    int size = META_SIZE + getBlockDataSize(block, 0);
+    if (this.bufferSize < size) {
+      if (this.buffer != 0) {
+        UnsafeAccess.free(this.buffer);
+      }
+      this.bufferSize = Math.max(size, this.blockSize);
+      this.buffer = UnsafeAccess.malloc(this.bufferSize);
+    }
+    UnsafeAccess.copy(block, 0, this.buffer, size);
+    this.blockPtr = this.buffer;
+  }
+
+  @Override
+  public boolean hasNext() {
+    return this.currentItemIndex < this.totalItems;
+  }
+
+  @Override
+  public boolean next() {
+    this.currentItemIndex++;
+    if (this.currentItemIndex == this.totalItems) {
+      return false;
+    }
+    long ptr = this.blockPtr + this.blockOffset;
+    int keySize = Utils.readUVInt(ptr);
+    int valueSize = Utils.readUVInt(ptr + Utils.sizeUVInt(keySize));
+    this.blockOffset += Utils.kvSize(keySize, valueSize);
+    if (this.blockOffset == this.blockDataSize + META_SIZE) {
+      initNextBlock();
+    }
+    return true;
+  }
+
+  @Override
+  public int keyLength() {
+    return Utils.readUVInt(this.blockPtr + this.blockOffset);
+  }
+
+  @Override
+  public int valueLength() {
+    long ptr = this.blockPtr + this.blockOffset;
+    int keySize = Utils.readUVInt(ptr);
+    return Utils.readUVInt(ptr + Utils.sizeUVInt(keySize));
+  }
+
+  @Override
+  public long keyAddress() {
+    long ptr = this.blockPtr + this.blockOffset;
+    int keySize = Utils.readUVInt(ptr);
+    ptr += Utils.sizeUVInt(keySize);
+    int valueSize = Utils.readUVInt(ptr);
+    return ptr + Utils.sizeUVInt(valueSize);
+  }
+
+  @Override
+  public long valueAddress() {
+    return keyAddress() + keyLength();
+  }
+
+  @Override
+  public long getExpire() {
+    return -1;
+  }
+
+  @Override
+  public int getKey(ByteBuffer b) {
+    int keySize = keyLength();
+    if (keySize <= b.remaining()) {
+      UnsafeAccess.copy(keyAddress(), b, keySize);
+    }
+    return keySize;
+  }
+
+  @Override
+  public int getValue(ByteBuffer b) {
+    int valueSize = valueLength();
+    if (valueSize <= b.remaining()) {
+      UnsafeAccess.copy(valueAddress(), b, valueSize);
+    }
+    return valueSize;
+  }
+
+  @Override
+  public int getKey(byte[] buffer, int offset) {
+    int keySize = keyLength();
+    if (keySize > buffer.length - offset) {
+      return keySize;
+    }
+    UnsafeAccess.copy(keyAddress(), buffer, offset, keySize);
+    return keySize;
+  }
+
+  @Override
+  public int getValue(byte[] buffer, int offset) {
+    int valueSize = valueLength();
+    if (valueSize > buffer.length - offset) {
+      return valueSize;
+    }
+    UnsafeAccess.copy(valueAddress(), buffer, offset, valueSize);
+    return valueSize;
+  }
+
+  @Override
+  public Segment getSegment() {
+    return this.segment;
+  }
+
+  @Override
+  public long getOffset() {
+    // Logical offset
+    return (long) this.currentBlockIndex * this.blockSize + this.blockOffset;
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (this.buffer != 0) {
+      UnsafeAccess.free(this.buffer);
+      this.buffer = 0;
+    }
+    if (this.engine == null) {
+      this.segment.readUnlock();
+    }
+  }
+}
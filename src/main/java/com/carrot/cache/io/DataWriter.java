@@ -52,4 +52,14 @@ public interface DataWriter {
    */
   public long append(Segment s, byte[] key, int keyOffset, int keySize, byte[] value, int valueOffset, int valueSize);
 
+  /**
+   * Does writer support lock - free appends. Such a writer reserves space 
+   * in a segment atomically (see {@link Segment#reserveDataSize(int)}) and then copies 
+   * data without holding segment's write lock, so many threads can append to the same 
+   * segment concurrently
+   * @return true - yes, false - no
+   */
+  public default boolean isLockFreeAppendSupported() {
+    return false;
+  }
 }
@@ -0,0 +1,79 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.carrot.cache.io;
+
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Deflate codec (JDK zlib). Slower than LZ4, but has a better compression ratio.
+ * Supports preset dictionaries.
+ */
+public class DeflateBlockCodec extends BlockCodec {
+
+  private static ThreadLocal<Deflater> deflaters =
+      ThreadLocal.withInitial(() -> new Deflater(Deflater.DEFAULT_COMPRESSION));
+
+  private static ThreadLocal<Inflater> inflaters =
+      ThreadLocal.withInitial(() -> new Inflater());
+
+  @Override
+  public String getName() {
+    return DEFLATE;
+  }
+
+  @Override
+  public boolean isDictionarySupported() {
+    return true;
+  }
+
+  @Override
+  protected int doCompress(byte[] dict, byte[] src, int srcOffset, int len, byte[] dst,
+      int dstOffset, int capacity) {
+    Deflater deflater = deflaters.get();
+    deflater.reset();
+    if (dict != null) {
+      deflater.setDictionary(dict);
+    }
+    deflater.setInput(src, srcOffset, len);
+    deflater.finish();
+    int n = deflater.deflate(dst, dstOffset, capacity);
+    return deflater.finished()? n: -1;
+  }
+
+  @Override
+  protected void doDecompress(byte[] dict, byte[] src, int srcOffset, int len, byte[] dst,
+      int dstOffset, int rawLen) {
+    Inflater inflater = inflaters.get();
+    inflater.reset();
+    inflater.setInput(src, srcOffset, len);
+    try {
+      int n = inflater.inflate(dst, dstOffset, rawLen);
+      if (n == 0 && inflater.needsDictionary()) {
+        if (dict == null) {
+          throw new IllegalArgumentException("Dictionary is required");
+        }
+        inflater.setDictionary(dict);
+        n = inflater.inflate(dst, dstOffset, rawLen);
+      }
+      if (n != rawLen) {
+        throw new IllegalArgumentException("Corrupted deflate block");
+      }
+    } catch (DataFormatException e) {
+      throw new IllegalArgumentException("Corrupted deflate block", e);
+    }
+  }
+}
@@ -0,0 +1,196 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.carrot.cache.io;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Compression dictionary trainer. Trainer samples data blocks until it has enough
+ * training data, then builds a dictionary from the most frequent segments of samples
+ * (simplified COVER algorithm: training data is split into epochs, the best segment of 
+ * every epoch is selected, d-mers of a selected segment do not contribute 
+ * to scores of segments selected later). 
+ * 
+ * After a dictionary is built, trainer counts data bytes and starts sampling again 
+ * when retrain interval is reached.
+ */
+public class DictionaryTrainer {
+
+  /* Size of a dictionary segment */
+  final static int SEGMENT_SIZE = 64;
+
+  /* Size of a d-mer */
+  private final static int DMER_SIZE = 8;
+
+  /* Size of d-mer frequency table (log2) */
+  private final static int TABLE_LOG = 18;
+
+  /* Dictionary size */
+  private final int dictionarySize;
+
+  /* Training data buffer */
+  private final byte[] samples;
+
+  /* Retrain interval in bytes (0 - never) */
+  private final long retrainInterval;
+
+  /* Sampled data size */
+  private int sampled;
+
+  /* Is sampling in progress */
+  private boolean sampling = true;
+
+  /* Bytes since last training */
+  private long bytesSinceTraining;
+
+  /* Trainer is busy (sampling or training) */
+  private final AtomicBoolean busy = new AtomicBoolean();
+
+  /**
+   * Constructor
+   * @param dictionarySize dictionary size
+   * @param trainingSize training data size
+   * @param retrainInterval retrain interval in bytes (0 - never)
+   */
+  public DictionaryTrainer(int dictionarySize, int trainingSize, long retrainInterval) {
+    this.dictionarySize = dictionarySize;
+    this.samples = new byte[Math.max(trainingSize, dictionarySize)];
+    this.retrainInterval = retrainInterval;
+  }
+
+  /**
+   * Add data sample. Thread - safe: if trainer is busy, sample is skipped
+   * @param buf buffer
+   * @param off offset
+   * @param len length
+   * @return new dictionary or null
+   */
+  public byte[] addSample(byte[] buf, int off, int len) {
+    if (!this.busy.compareAndSet(false, true)) {
+      return null;
+    }
+    try {
+      if (!this.sampling) {
+        this.bytesSinceTraining += len;
+        if (this.retrainInterval > 0 && this.bytesSinceTraining >= this.retrainInterval) {
+          this.sampling = true;
+          this.sampled = 0;
+        }
+        return null;
+      }
+      int toCopy = Math.min(len, this.samples.length - this.sampled);
+      System.arraycopy(buf, off, this.samples, this.sampled, toCopy);
+      this.sampled += toCopy;
+      if (this.sampled < this.samples.length) {
+        return null;
+      }
+      this.sampling = false;
+      this.bytesSinceTraining = 0;
+      return train(this.samples, this.sampled, this.dictionarySize);
+    } finally {
+      this.busy.set(false);
+    }
+  }
+
+  /**
+   * Is sampling in progress
+   * @return true or false
+   */
+  public boolean isSampling() {
+    return this.sampling;
+  }
+
+  /**
+   * Start or stop sampling
+   * @param b true - start, false - stop
+   */
+  public void setSampling(boolean b) {
+    this.sampling = b;
+    this.sampled = 0;
+    this.bytesSinceTraining = 0;
+  }
+
+  /**
+   * Train dictionary
+   * @param data training data
+   * @param len training data size
+   * @param dictSize dictionary size
+   * @return dictionary
+   */
+  public static byte[] train(byte[] data, int len, int dictSize) {
+    if (len <= dictSize) {
+      return Arrays.copyOf(data, len);
+    }
+    // D-mer frequencies
+    int[] freqs = new int[1 << TABLE_LOG];
+    int numDmers = len - DMER_SIZE + 1;
+    int[] hashes = new int[numDmers];
+    for (int i = 0; i < numDmers; i++) {
+      hashes[i] = hash(data, i);
+      freqs[hashes[i]]++;
+    }
+    int numSegments = Math.max(1, dictSize / SEGMENT_SIZE);
+    int epochSize = len / numSegments;
+    int window = Math.min(SEGMENT_SIZE, epochSize) - DMER_SIZE + 1;
+    List<long[]> selected = new ArrayList<>(); // {score, start}
+    for (int epoch = 0; epoch < numSegments && window > 0; epoch++) {
+      int start = epoch * epochSize;
+      int end = Math.min(start + epochSize, len) - DMER_SIZE + 1;
+      long score = 0, bestScore = 0;
+      int bestStart = -1;
+      // Sliding window of d-mers
+      for (int i = start; i < end; i++) {
+        score += freqs[hashes[i]];
+        if (i - window >= start) {
+          score -= freqs[hashes[i - window]];
+        }
+        if (i - start + 1 >= window && score > bestScore) {
+          bestScore = score;
+          bestStart = i - window + 1;
+        }
+      }
+      if (bestStart < 0) {
+        continue;
+      }
+      selected.add(new long[] { bestScore, bestStart });
+      // D-mers of a selected segment are covered
+      for (int i = bestStart; i < bestStart + window; i++) {
+        freqs[hashes[i]] = 0;
+      }
+    }
+    // The best segments go to the end of a dictionary (the shortest match distances)
+    selected.sort((a, b) -> Long.compare(a[0], b[0]));
+    int segSize = window + DMER_SIZE - 1;
+    byte[] dict = new byte[selected.size() * segSize];
+    int off = 0;
+    for (long[] seg: selected) {
+      System.arraycopy(data, (int) seg[1], dict, off, segSize);
+      off += segSize;
+    }
+    return dict;
+  }
+
+  private static int hash(byte[] data, int off) {
+    long v = 0;
+    for (int i = 0; i < DMER_SIZE; i++) {
+      v = (v << 8) | (data[off + i] & 0xff);
+    }
+    v *= 0x9E3779B97F4A7C15L;
+    return (int) (v >>> (64 - TABLE_LOG));
+  }
+}
@@ -25,20 +25,29 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.stream.Stream;
 
+import com.sun.nio.file.ExtendedOpenOption;
+
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import com.carrot.cache.util.CacheConfig;
+import com.carrot.cache.util.IOUtils;
 import com.carrot.cache.util.UnsafeAccess;
+import com.carrot.cache.util.Utils;
 
 public class FileIOEngine extends IOEngine {
   /** Logger */
@@ -49,11 +58,121 @@ public class FileIOEngine extends IOEngine {
    */
   Map<Integer, RandomAccessFile> dataFiles = new ConcurrentHashMap<Integer, RandomAccessFile>();
 
+  /**
+   * Memory mapped (read - only) sealed data segment file
+   */
+  public static final class MappedFile {
+    /* Mapped buffer */
+    final MappedByteBuffer buffer;
+    /* Address of a mapping */
+    final long address;
+    /* Mapping size */
+    final long size;
+    
+    MappedFile(MappedByteBuffer buffer, long address) {
+      this.buffer = buffer;
+      this.address = address;
+      this.size = buffer.capacity();
+    }
+    
+    /**
+     * Get address of a segment data (after segment's meta section)
+     * @return address
+     */
+    public long getDataAddress() {
+      return this.address + Segment.META_SIZE;
+    }
+    
+    /**
+     * Get segment data size
+     * @return size
+     */
+    public long getDataSize() {
+      return this.size - Segment.META_SIZE;
+    }
+  }
+  
+  /* Memory mapped sealed data segment files: segment id -> mapping */
+  Map<Integer, MappedFile> mappedFiles = new ConcurrentHashMap<Integer, MappedFile>();
+  
+  /* Direct I/O (O_DIRECT) mode */
+  private volatile boolean directIO;
+  
+  /* Direct I/O alignment (file system block size) */
+  private int ioAlignment = 4096;
+  
+  /* Data segment files opened for direct I/O: segment id -> channel */
+  Map<Integer, FileChannel> directChannels = new ConcurrentHashMap<Integer, FileChannel>();
+  
+  /* Storage file name (preallocated storage mode) */
+  static final String STORAGE_FILE_NAME = "storage.data";
+  
+  /* Storage file magic */
+  static final long STORAGE_MAGIC = 0x4341525253544F52L;
+  
+  /* Storage file format version */
+  static final int STORAGE_VERSION = 1;
+  
+  /* Storage file header meta: magic, version, segment size, number of slots, slot size */
+  static final int STORAGE_HEADER_META = 32;
+  
+  /* Minimum alignment of storage file slots */
+  static final int STORAGE_ALIGNMENT = 4096;
+  
+  /* Data directory is overloaded if its free space is less than this fraction of the 
+   * maximum free space among data directories */
+  static final double DATA_DIR_IMBALANCE_RATIO = 0.5;
+  
+  /* 
+   * Preallocated storage mode: all data segments are kept in a single storage file
+   * per data directory. With N data directories segment with id K occupies slot K / N
+   * in a storage file of a data directory K % N. File layout:
+   * 
+   * HEADER: magic (8), version (4), segment size (8), number of slots (4), slot size (8),
+   *         slot table - 8 bytes per slot: size of a stored segment, 0 - slot is free
+   * SLOT 0
+   * SLOT 1
+   * ...
+   * 
+   * Header and slots are aligned. Recycled slots are reused in place, 
+   * storage file is never deleted. Slot table is used on a warm restart.
+   */
+  private boolean preallocated;
+  
+  /* Storage files, one per data directory (preallocated storage mode) */
+  private RandomAccessFile[] storageFiles;
+  
+  /* Storage file channels opened for direct I/O (preallocated storage mode) */
+  private FileChannel[] storageDirectChannels;
+  
+  /* Number of slots in a storage file */
+  private int numSlots;
+  
+  /* Storage file header size */
+  private long storageHeaderSize;
+  
+  /* Storage file slot size */
+  private long slotSize;
+  
   protected DataReader fileDataReader;
 
-  private AtomicInteger activeSaveTasks = new AtomicInteger(0);
+  /* Data directories (one per device), data segments are striped across them */
+  private String[] dataDirs;
+  
+  /* Data directory index for a data segment id, -1 - not assigned */
+  private int[] segmentDirs;
+  
+  /* Number of data segments stored in each data directory */
+  private AtomicIntegerArray dirSegments;
   
-  private int ioStoragePoolSize = 32; 
+  /* Number of bytes read from each data directory */
+  private LongAdder[] dirBytesRead;
+  
+  /* Segment flush pipelines, one per data directory */
+  private SegmentFlusher[] flushers;
+  
+  /* Off-heap cache of data blocks read from files, null - disabled */
+  private BlockCache blockCache;
     
   /**
    * Constructor
@@ -79,13 +198,371 @@ public class FileIOEngine extends IOEngine {
     try {
       this.fileDataReader = this.config.getFileDataReader(this.cacheName);
       this.fileDataReader.init(this.cacheName);
-      this.ioStoragePoolSize = this.config.getIOStoragePoolSize(this.cacheName);
-    } catch (ClassNotFoundException | InstantiationException | IllegalAccessException e) {
+      this.dataDirs = this.config.getDataDirs(this.cacheName);
+      int numDirs = this.dataDirs.length;
+      this.segmentDirs = new int[this.numSegments];
+      Arrays.fill(this.segmentDirs, -1);
+      this.dirSegments = new AtomicIntegerArray(numDirs);
+      this.dirBytesRead = new LongAdder[numDirs];
+      this.flushers = new SegmentFlusher[numDirs];
+      int queueSize = this.config.getIOStoragePoolSize(this.cacheName);
+      int numThreads = this.config.getIOStorageFlushThreads(this.cacheName);
+      for (int i = 0; i < numDirs; i++) {
+        this.dirBytesRead[i] = new LongAdder();
+        // Data directories are flushed in parallel
+        this.flushers[i] = 
+            new SegmentFlusher(this.cacheName + "-" + i, numThreads, queueSize, this::flush);
+      }
+      this.directIO = this.config.getFileDirectIOEnabled(this.cacheName);
+      if (this.directIO) {
+        initDirectIO();
+      }
+      this.preallocated = this.config.getFileStoragePreallocated(this.cacheName);
+      if (this.preallocated) {
+        initStorage();
+      }
+      long blockCacheSize = this.config.getFileBlockCacheSize(this.cacheName);
+      if (blockCacheSize > 0) {
+        int blockSize = this.config.getBlockWriterBlockSize(this.cacheName);
+        this.blockCache = new BlockCache(blockCacheSize, blockSize, this.numSegments);
+      }
+    } catch (ClassNotFoundException | InstantiationException | IllegalAccessException
+        | IOException e) {
       LOG.fatal(e);
       throw new RuntimeException(e);
     }
   }
   
+  private void initDirectIO() {
+    try {
+      // Use the largest block size among data directories
+      for (String dir: this.dataDirs) {
+        int blockSize = (int) Files.getFileStore(Paths.get(dir)).getBlockSize();
+        this.ioAlignment = Math.max(this.ioAlignment, blockSize);
+      }
+    } catch (IOException | UnsupportedOperationException e) {
+      LOG.warn(String.format("Direct I/O is disabled for cache [%s]: %s", this.cacheName, e));
+      this.directIO = false;
+    }
+  }
+  
+  /**
+   * Open (or create) storage files, formats a file if it does not exist
+   * or its layout does not match the current configuration
+   * @throws IOException
+   */
+  private void initStorage() throws IOException {
+    int numDirs = this.dataDirs.length;
+    int alignment = Math.max(this.ioAlignment, STORAGE_ALIGNMENT);
+    this.numSlots = (this.numSegments + numDirs - 1) / numDirs;
+    this.slotSize = IOUtils.alignUp(this.segmentSize + Segment.META_SIZE, alignment);
+    this.storageHeaderSize = IOUtils.alignUp(
+      STORAGE_HEADER_META + (long) Utils.SIZEOF_LONG * this.numSlots, alignment);
+    this.storageFiles = new RandomAccessFile[numDirs];
+    this.storageDirectChannels = new FileChannel[numDirs];
+    for (int i = 0; i < numDirs; i++) {
+      Path p = Paths.get(this.dataDirs[i], STORAGE_FILE_NAME);
+      this.storageFiles[i] = new RandomAccessFile(p.toFile(), "rw");
+      if (!checkStorageHeader(this.storageFiles[i])) {
+        formatStorage(this.storageFiles[i]);
+      }
+      if (this.directIO) {
+        this.storageDirectChannels[i] = openDirectChannel(p);
+      }
+    }
+  }
+  
+  /**
+   * Check if storage file header matches the current configuration
+   * @param file storage file
+   * @return true or false
+   * @throws IOException
+   */
+  private boolean checkStorageHeader(RandomAccessFile file) throws IOException {
+    if (file.length() != this.storageHeaderSize + this.numSlots * this.slotSize) {
+      return false;
+    }
+    ByteBuffer buf = ByteBuffer.allocate(STORAGE_HEADER_META);
+    IOUtils.readFully(file.getChannel(), 0, buf);
+    return buf.getLong(0) == STORAGE_MAGIC && buf.getInt(8) == STORAGE_VERSION
+        && buf.getLong(12) == this.segmentSize && buf.getInt(20) == this.numSlots
+        && buf.getLong(24) == this.slotSize;
+  }
+  
+  /**
+   * Format storage file: write header with empty slot table and allocate slots
+   * @param file storage file
+   * @throws IOException
+   */
+  private void formatStorage(RandomAccessFile file) throws IOException {
+    LOG.info(String.format("Formatting storage file for cache [%s]: %d slots of %d bytes",
+      this.cacheName, this.numSlots, this.slotSize));
+    // Truncate first, so that extension fills header and slots with zeros
+    file.setLength(0);
+    file.setLength(this.storageHeaderSize + this.numSlots * this.slotSize);
+    ByteBuffer buf = ByteBuffer.allocate(STORAGE_HEADER_META);
+    buf.putLong(STORAGE_MAGIC);
+    buf.putInt(STORAGE_VERSION);
+    buf.putLong(this.segmentSize);
+    buf.putInt(this.numSlots);
+    buf.putLong(this.slotSize);
+    buf.flip();
+    FileChannel fc = file.getChannel();
+    long pos = 0;
+    while (buf.hasRemaining()) {
+      pos += fc.write(buf, pos);
+    }
+  }
+  
+  /**
+   * Update slot table entry in a storage file header
+   * @param id segment id
+   * @param size size of a stored segment, 0 - slot is free
+   * @throws IOException
+   */
+  private void setSlotState(int id, long size) throws IOException {
+    ByteBuffer buf = ByteBuffer.allocate(Utils.SIZEOF_LONG);
+    buf.putLong(0, size);
+    FileChannel fc = this.storageFiles[id % this.dataDirs.length].getChannel();
+    long pos = STORAGE_HEADER_META + (long) (id / this.dataDirs.length) * Utils.SIZEOF_LONG;
+    while (buf.hasRemaining()) {
+      pos += fc.write(buf, pos);
+    }
+  }
+  
+  /**
+   * Is preallocated storage (single storage file) mode enabled
+   * @return true or false
+   */
+  public boolean isStoragePreallocated() {
+    return this.preallocated;
+  }
+  
+  /**
+   * Get offset of a data segment in its file: offset of the segment's slot
+   * in preallocated storage mode, 0 - otherwise
+   * @param id segment id
+   * @return offset
+   */
+  public long getFileOffsetFor(int id) {
+    return this.preallocated? 
+        this.storageHeaderSize + (id / this.dataDirs.length) * this.slotSize: 0;
+  }
+  
+  /**
+   * Get number of data directories
+   * @return number of data directories
+   */
+  public int getNumberOfDataDirs() {
+    return this.dataDirs.length;
+  }
+  
+  /**
+   * Get data directory index of a data segment
+   * @param id segment id
+   * @return data directory index or -1 (segment is not stored in a file)
+   */
+  public int getDataDirFor(int id) {
+    return this.segmentDirs[id];
+  }
+  
+  /**
+   * Get number of data segments stored in a data directory
+   * @param dir data directory index
+   * @return number of data segments
+   */
+  public int getDataDirSegments(int dir) {
+    return this.dirSegments.get(dir);
+  }
+  
+  /**
+   * Get number of bytes read from a data directory
+   * @param dir data directory index
+   * @return number of bytes
+   */
+  public long getDataDirBytesRead(int dir) {
+    return this.dirBytesRead[dir].sum();
+  }
+  
+  /**
+   * Get free space of a data directory
+   * @param dir data directory index
+   * @return usable space in bytes
+   */
+  public long getDataDirUsableSpace(int dir) {
+    return new File(this.dataDirs[dir]).getUsableSpace();
+  }
+  
+  /**
+   * Select data directory for a new data segment: the one with the shortest
+   * write queue, ties are broken by free space and then by number 
+   * of stored segments
+   * @param id segment id
+   * @return data directory index
+   */
+  private int selectDataDir(int id) {
+    int numDirs = this.dataDirs.length;
+    if (numDirs == 1) {
+      return 0;
+    }
+    if (this.preallocated) {
+      // Static striping - segment's slot is fixed
+      return id % numDirs;
+    }
+    int best = 0;
+    long bestPending = Long.MAX_VALUE;
+    long bestFree = -1;
+    int bestSegments = Integer.MAX_VALUE;
+    for (int i = 0; i < numDirs; i++) {
+      long pending = this.flushers[i].getPendingFlushes();
+      // Free space in segments
+      long free = getDataDirUsableSpace(i) / this.segmentSize;
+      int segments = this.dirSegments.get(i);
+      if (free == 0) {
+        // Directory is full
+        continue;
+      }
+      if (pending < bestPending || (pending == bestPending && (free > bestFree 
+          || (free == bestFree && segments < bestSegments)))) {
+        best = i;
+        bestPending = pending;
+        bestFree = free;
+        bestSegments = segments;
+      }
+    }
+    return best;
+  }
+  
+  /**
+   * Get overloaded data directory: the one with the least free space if its
+   * free space is much smaller than the free space of others
+   * @return data directory index or -1
+   */
+  private int getOverloadedDataDir() {
+    int numDirs = this.dataDirs.length;
+    if (numDirs == 1 || this.preallocated) {
+      return -1;
+    }
+    int minDir = -1;
+    long min = Long.MAX_VALUE, max = 0;
+    for (int i = 0; i < numDirs; i++) {
+      long free = getDataDirUsableSpace(i);
+      if (free < min) {
+        min = free;
+        minDir = i;
+      }
+      max = Math.max(max, free);
+    }
+    return min < max * DATA_DIR_IMBALANCE_RATIO? minDir: -1;
+  }
+  
+  /**
+   * Recycling prefers segments stored in an overloaded data directory
+   */
+  @Override
+  public synchronized Segment getSegmentForRecycling() {
+    int dir = getOverloadedDataDir();
+    if (dir >= 0) {
+      Segment s = this.recyclingSelector.selectForRecycling(this.dataSegments, 
+        x -> this.segmentDirs[x.getId()] == dir);
+      if (s != null) {
+        s.setRecycling(true);
+        return s;
+      }
+    }
+    return super.getSegmentForRecycling();
+  }
+  
+  /**
+   * Is direct I/O (O_DIRECT) mode enabled
+   * @return true or false
+   */
+  public boolean isDirectIOEnabled() {
+    return this.directIO;
+  }
+  
+  /**
+   * Get direct I/O alignment
+   * @return alignment (file system block size)
+   */
+  public int getIOAlignment() {
+    return this.ioAlignment;
+  }
+  
+  /**
+   * Get off-heap cache of file data blocks
+   * @return block cache or null (disabled)
+   */
+  public BlockCache getBlockCache() {
+    return this.blockCache;
+  }
+  
+  /**
+   * Get data segment file channel opened for direct I/O (O_DIRECT)
+   * @param id segment id
+   * @return file channel or null (direct I/O is disabled or file does not exist)
+   * @throws IOException
+   */
+  public FileChannel getDirectChannelFor(int id) throws IOException {
+    if (!this.directIO) {
+      return null;
+    }
+    FileChannel fc = this.directChannels.get(id);
+    if (fc != null) {
+      return fc;
+    }
+    RandomAccessFile file = getFileFor(id);
+    if (file == null) {
+      return null;
+    }
+    if (this.preallocated) {
+      return this.storageDirectChannels[id % this.dataDirs.length];
+    }
+    synchronized (file) {
+      fc = this.directChannels.get(id);
+      if (fc != null) {
+        return fc;
+      }
+      fc = openDirectChannel(getPathForDataSegment(id));
+      if (fc != null) {
+        this.directChannels.put(id, fc);
+      }
+      return fc;
+    }
+  }
+  
+  /**
+   * Open file for direct I/O, disables direct I/O mode on failure
+   * @param p file path
+   * @return file channel or null
+   */
+  private FileChannel openDirectChannel(Path p) {
+    try {
+      return FileChannel.open(p, StandardOpenOption.READ, StandardOpenOption.WRITE,
+        ExtendedOpenOption.DIRECT);
+    } catch (IOException | UnsupportedOperationException e) {
+      // File system does not support O_DIRECT
+      LOG.warn(String.format("Direct I/O is disabled for cache [%s]: %s", this.cacheName, e));
+      this.directIO = false;
+      return null;
+    }
+  }
+  
+  /**
+   * Close data segment file channel opened for direct I/O
+   * @param id segment id
+   */
+  private void closeDirectChannel(int id) {
+    FileChannel fc = this.directChannels.remove(id);
+    if (fc != null) {
+      try {
+        fc.close();
+      } catch (IOException e) {
+        LOG.error(e);
+      }
+    }
+  }
+  
   /**
    * IOEngine subclass can override this method
    *
@@ -93,91 +570,111 @@ public class FileIOEngine extends IOEngine {
    * @throws FileNotFoundException
    */
   protected void saveInternal(Segment data) throws IOException {
-    Runnable r = () -> {
-      int id = data.getId();
+    int id = data.getId();
+    int dir = this.segmentDirs[id];
+    if (dir < 0) {
+      dir = selectDataDir(id);
+      this.segmentDirs[id] = dir;
+      this.dirSegments.incrementAndGet(dir);
+    }
+    // Blocks if flush queue of the data directory is full
+    this.flushers[dir].submit(data);
+  }
+
+  /**
+   * Flush data segment to a file and release its memory buffer
+   * @param data data segment
+   * @return number of bytes written
+   * @throws IOException
+   */
+  private long flush(Segment data) throws IOException {
+    int id = data.getId();
+    // WRITE_LOCK
+    data.writeLock();
+    try {
+      if (data.isSealed()) {
+        return 0;
+      }
+      RandomAccessFile file = getFileFor(id);
+      if (file != null) {
+        return 0;
+      }
+      file = getOrCreateFileFor(id);
+      // Wait for lock - free appends in progress
+      data.closeAppends();
+      long size = data.getSegmentDataSize();
+      data.writeUnlock();
+      // WRITE_UNLOCK
       try {
-        // WRITE_LOCK
-        data.writeLock();
-        if (data.isSealed()) {
-          return;
+        // Save to file without locking
+        FileChannel fc = getDirectChannelFor(id);
+        if (fc != null) {
+          data.save(fc, getFileOffsetFor(id), this.ioAlignment);
+        } else if (this.preallocated) {
+          data.save(file.getChannel(), getFileOffsetFor(id), this.ioAlignment);
+        } else {
+          data.save(file);
         }
-        RandomAccessFile file = getFileFor(id);
-        if (file != null) {
-          return;
+        if (this.preallocated) {
+          setSlotState(id, data.size());
         }
-        file = getOrCreateFileFor(id);
-        data.writeUnlock();
-        // WRITE_UNLOCK
-
-        // Save to file without locking
-        data.save(file);
-
+      } finally {
         // LOCK AGAIN
         data.writeLock();
-        // Release segment
-        data.setOffheap(false);
-        // release memory buffer
-        long ptr = data.getAddress();
-        data.setAddress(0);
-        data.seal();
-        UnsafeAccess.free(ptr);
-      } catch (IOException e) {
-        LOG.error("saveInternal segmentId=" + data.getId() + " s=" + data, e);
-      } finally {
-        data.writeUnlock();
-        activeSaveTasks.decrementAndGet();
       }
-    };
-    submitTask(r);
+      // Release segment
+      data.setOffheap(false);
+      // return memory buffer to the pool
+      long ptr = data.getAddress();
+      data.setAddress(0);
+      data.seal();
+      segmentUpdated(data);
+      this.bufferPool.release(ptr);
+      return size;
+    } finally {
+      data.writeUnlock();
+    }
   }
 
-  private void submitTask(Runnable r) {
-    while(activeSaveTasks.get() >= ioStoragePoolSize) {
-      Thread.onSpinWait();
+  /**
+   * Get segment flush pipeline (metrics) of the first data directory
+   * @return segment flusher
+   */
+  public SegmentFlusher getSegmentFlusher() {
+    return this.flushers[0];
+  }
+  
+  /**
+   * Get segment flush pipeline (metrics) of a data directory
+   * @param dir data directory index
+   * @return segment flusher
+   */
+  public SegmentFlusher getSegmentFlusher(int dir) {
+    return this.flushers[dir];
+  }
+  
+  /**
+   * Wait until all submitted segments are flushed
+   */
+  public void waitForFlushes() {
+    for (SegmentFlusher f: this.flushers) {
+      f.waitForCompletion();
     }
-    activeSaveTasks.incrementAndGet();
-    new Thread(r).start();
   }
-
-
-//  @Override
-//  protected Segment getRAMSegmentByRank(int rank) {
-//    Segment s = this.ramBuffers[rank];
-//    if (s == null) {
-//      synchronized (this.ramBuffers) {
-//        s = this.ramBuffers[rank];
-//        if (s != null) {
-//          return s;
-//        }
-//        int id = getAvailableId();
-//        if (id < 0) {
-//          return null;
-//        }
-//        if (this.dataSegments[id] == null) {
-//          Long ptr = this.bufferPool.poll();
-//          if (ptr == null) {
-//            ptr = UnsafeAccess.mallocZeroed(this.segmentSize);
-//          }
-//          s = Segment.newSegment(ptr, (int) this.segmentSize, id, rank);
-//          s.init(this.cacheName);
-//          // Set data appender
-//
-//          s.setDataWriter(this.dataWriter);
-//          this.dataSegments[id] = s;
-//          reportAllocation(this.segmentSize);
-//          created.incrementAndGet();
-//          // LOG.error("created "+ id + " s=" + s);
-//        } else {
-//          // TODO: is it normal path of an execution?
-//          // FIXME: check Scavenger
-//          s = this.dataSegments[id];
-//          s.reuse(id, rank, System.currentTimeMillis());
-//        }
-//        this.ramBuffers[rank] = s;
-//      }
-//    }
-//    return s;
-//  }
+  
+  /**
+   * Account bytes read from a data segment file
+   * @param sid segment id
+   * @param result read result
+   * @return read result
+   */
+  private int reportRead(int sid, int result) {
+    int dir = this.segmentDirs[sid];
+    if (result > 0 && dir >= 0) {
+      this.dirBytesRead[dir].add(result);
+    }
+    return result;
+  }
 
   @Override
   protected int getInternal(
@@ -200,8 +697,8 @@ public class FileIOEngine extends IOEngine {
        return this.memoryDataReader.read(
          this, key, keyOffset, keySize, sid, offset, size, buffer, bufOffset); 
     } else {
-      return this.fileDataReader.read(
-        this, key, keyOffset, keySize, sid, offset, size, buffer, bufOffset);
+      return reportRead(sid, this.fileDataReader.read(
+        this, key, keyOffset, keySize, sid, offset, size, buffer, bufOffset));
     }
   }
 
@@ -217,7 +714,8 @@ public class FileIOEngine extends IOEngine {
     if (s.isOffheap()) {
       return this.memoryDataReader.read(this, key, keyOffset, keySize, sid, offset, size, buffer);
     } else {
-      return this.fileDataReader.read(this, key, keyOffset, keySize, sid, offset, size, buffer);
+      return reportRead(sid, 
+        this.fileDataReader.read(this, key, keyOffset, keySize, sid, offset, size, buffer));
     }
   }
 
@@ -233,7 +731,8 @@ public class FileIOEngine extends IOEngine {
     if (s.isOffheap()) {
       return this.memoryDataReader.read(this, keyPtr, keySize, sid, offset, size, buffer, bufOffset);
     } else {
-      return this.fileDataReader.read(this, keyPtr, keySize, sid, offset, size, buffer, bufOffset);
+      return reportRead(sid, 
+        this.fileDataReader.read(this, keyPtr, keySize, sid, offset, size, buffer, bufOffset));
     }
   }
 
@@ -249,7 +748,8 @@ public class FileIOEngine extends IOEngine {
     if (s.isOffheap()) {
       return this.memoryDataReader.read(this, keyPtr, keySize, sid, offset, size, buffer);
     } else {
-      return this.fileDataReader.read(this, keyPtr, keySize, sid, offset, size, buffer);
+      return reportRead(sid, 
+        this.fileDataReader.read(this, keyPtr, keySize, sid, offset, size, buffer));
     }
   }
 
@@ -261,7 +761,11 @@ public class FileIOEngine extends IOEngine {
 
   RandomAccessFile getOrCreateFileFor(int id) throws FileNotFoundException {
     RandomAccessFile file = dataFiles.get(id);
-    if (file == null) {
+    if (file == null && this.preallocated) {
+      // Segment is stored in its slot
+      file = this.storageFiles[id % this.dataDirs.length];
+      dataFiles.put(id, file);
+    } else if (file == null) {
       // open
       Path p = getPathForDataSegment(id);
       file = new RandomAccessFile(p.toFile(), "rw");
@@ -282,6 +786,59 @@ public class FileIOEngine extends IOEngine {
     return file;
   }
 
+  /**
+   * Get memory mapping of a sealed data segment file, maps file on a first call.
+   * Caller must hold segment's read lock while accessing the mapping: mapping is 
+   * released when the segment is disposed (under segment's write lock) 
+   * @param id segment id
+   * @return mapped file or null (no file or memory mapping is not supported)
+   * @throws IOException
+   */
+  public MappedFile getMappedFile(int id) throws IOException {
+    MappedFile mf = this.mappedFiles.get(id);
+    if (mf != null) {
+      return mf;
+    }
+    RandomAccessFile file = getFileFor(id);
+    if (file == null) {
+      return null;
+    }
+    synchronized (file) {
+      mf = this.mappedFiles.get(id);
+      if (mf != null) {
+        return mf;
+      }
+      FileChannel fc = file.getChannel();
+      long offset = getFileOffsetFor(id);
+      long size = fc.size() - offset;
+      Segment s = getSegmentById(id);
+      if (s != null) {
+        size = Math.min(size, Segment.META_SIZE + s.size());
+      }
+      MappedByteBuffer buf = fc.map(FileChannel.MapMode.READ_ONLY, offset, size);
+      long address = UnsafeAccess.address(buf);
+      if (address <= 0) {
+        // Direct buffers are not accessible
+        UnsafeAccess.invokeCleaner(buf);
+        return null;
+      }
+      mf = new MappedFile(buf, address);
+      this.mappedFiles.put(id, mf);
+      return mf;
+    }
+  }
+  
+  /**
+   * Release memory mapping of a data segment file 
+   * @param id segment id
+   */
+  private void unmap(int id) {
+    MappedFile mf = this.mappedFiles.remove(id);
+    if (mf != null) {
+      UnsafeAccess.invokeCleaner(mf.buffer);
+    }
+  }
+  
   @Override
   public void disposeDataSegment(Segment data) {
     // TODO: is it a good idea to lock on file I/O?
@@ -292,9 +849,24 @@ public class FileIOEngine extends IOEngine {
     if (f != null) {
       try {
         data.writeLock();
-        f.close();
-        Files.deleteIfExists(getPathForDataSegment(data.getId()));
+        unmap(data.getId());
+        if (this.preallocated) {
+          // Slot will be reused in place
+          setSlotState(data.getId(), 0);
+        } else {
+          closeDirectChannel(data.getId());
+          f.close();
+          Files.deleteIfExists(getPathForDataSegment(data.getId()));
+        }
         dataFiles.remove(data.getId());
+        if (this.blockCache != null) {
+          this.blockCache.invalidate(data.getId());
+        }
+        int dir = this.segmentDirs[data.getId()];
+        if (dir >= 0) {
+          this.segmentDirs[data.getId()] = -1;
+          this.dirSegments.decrementAndGet(dir);
+        }
         super.disposeDataSegment(data);
       } catch (IOException e) {
         LOG.error(e);
@@ -312,6 +884,15 @@ public class FileIOEngine extends IOEngine {
   public int getFilePrefetchBufferSize() {
     return this.config.getFilePrefetchBufferSize(this.cacheName);
   }
+  
+  /**
+   * Get number of file prefetch read - ahead buffers
+   *
+   * @return number of read - ahead buffers (0 - read - ahead is disabled)
+   */
+  public int getFilePrefetchReadAheadBuffers() {
+    return this.config.getFilePrefetchReadAheadBuffers(this.cacheName);
+  }
   /**
    * Get file path for a data segment
    *
@@ -319,7 +900,8 @@ public class FileIOEngine extends IOEngine {
    * @return path to a file
    */
   private Path getPathForDataSegment(int id) {
-    return Paths.get(dataDir, getSegmentFileName(id));
+    int dir = this.segmentDirs[id];
+    return Paths.get(this.dataDirs[dir < 0? 0: dir], getSegmentFileName(id));
   }
 
   private int getSegmentIdFromFileName(String name) {
@@ -334,7 +916,7 @@ public class FileIOEngine extends IOEngine {
 
   @Override
   public void save(OutputStream os) throws IOException {
-    waitForIoStoragePool();
+    waitForFlushes();
     super.save(os);
   }
 
@@ -345,33 +927,83 @@ public class FileIOEngine extends IOEngine {
   }
 
   private void loadSegments() throws IOException {
-    try (Stream<Path> list = Files.list(Paths.get(dataDir)); ) {
-      Iterator<Path> it = list.iterator();
-      while (it.hasNext()) {
-        Path p = it.next();
-        File f = p.toFile();
-        String fileName = f.getName();
-        int sid = getSegmentIdFromFileName(fileName);
-        RandomAccessFile raf = new RandomAccessFile(f, "r");
-        this.dataFiles.put(sid, raf);
+    if (this.preallocated) {
+      loadStorageSlots();
+      return;
+    }
+    for (int dir = 0; dir < this.dataDirs.length; dir++) {
+      try (Stream<Path> list = Files.list(Paths.get(this.dataDirs[dir])); ) {
+        Iterator<Path> it = list.iterator();
+        while (it.hasNext()) {
+          Path p = it.next();
+          File f = p.toFile();
+          String fileName = f.getName();
+          if (!fileName.startsWith(FILE_NAME)) {
+            continue;
+          }
+          int sid = getSegmentIdFromFileName(fileName);
+          RandomAccessFile raf = new RandomAccessFile(f, "r");
+          this.dataFiles.put(sid, raf);
+          this.segmentDirs[sid] = dir;
+          this.dirSegments.incrementAndGet(dir);
+        }
       }
     }
   }
   
-  private void waitForIoStoragePool() {
-    while(this.activeSaveTasks.get() > 0) {
-      try {
-        Thread.sleep(10);
-      } catch (InterruptedException e) {
-        // TODO Auto-generated catch block
+  /**
+   * Attach stored data segments to their slots in storage files (warm restart)
+   * @throws IOException
+   */
+  private void loadStorageSlots() throws IOException {
+    int numDirs = this.dataDirs.length;
+    for (int dir = 0; dir < numDirs; dir++) {
+      RandomAccessFile file = this.storageFiles[dir];
+      ByteBuffer buf = ByteBuffer.allocate(this.numSlots * Utils.SIZEOF_LONG);
+      IOUtils.readFully(file.getChannel(), STORAGE_HEADER_META, buf);
+      for (int slot = 0; slot < this.numSlots; slot++) {
+        int id = slot * numDirs + dir;
+        if (id >= this.numSegments) {
+          break;
+        }
+        long size = buf.getLong(slot * Utils.SIZEOF_LONG);
+        Segment s = this.dataSegments[id];
+        if (size > 0 && s != null && !s.isOffheap() && s.size() == size) {
+          this.dataFiles.put(id, file);
+          this.segmentDirs[id] = dir;
+          this.dirSegments.incrementAndGet(dir);
+        }
       }
     }
   }
   
   @Override
   public void dispose() {
-    waitForIoStoragePool();
+    for (SegmentFlusher f: this.flushers) {
+      f.shutdown();
+    }
     super.dispose();
+    for (Integer id: this.mappedFiles.keySet()) {
+      unmap(id);
+    }
+    for (Integer id: this.directChannels.keySet()) {
+      closeDirectChannel(id);
+    }
+    if (this.blockCache != null) {
+      this.blockCache.dispose();
+    }
+    if (this.preallocated) {
+      for (int i = 0; i < this.storageFiles.length; i++) {
+        try {
+          if (this.storageDirectChannels[i] != null) {
+            this.storageDirectChannels[i].close();
+          }
+          this.storageFiles[i].close();
+        } catch (IOException e) {
+          LOG.error(e);
+        }
+      }
+    }
     int count = 0;
     for (RandomAccessFile f: this.dataFiles.values()) {
       try {
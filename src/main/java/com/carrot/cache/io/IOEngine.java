@@ -23,8 +23,11 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -98,6 +101,22 @@ public abstract class IOEngine implements Persistent {
    */
 
   protected Segment[] ramBuffers;
+  
+  /* Number of popularity ranks */
+  protected int numRanks;
+  
+  /* 
+   * Number of write lanes per rank: every rank has numLanes open RAM segments,
+   * writer thread appends to a lane selected by its thread id. RAM buffer of
+   * lane L of rank R is ramBuffers[R * numLanes + L] 
+   */
+  protected int numLanes;
+
+  /*
+   * Compaction segments (one per rank): Scavenger copies live items of recycled
+   * segments into them
+   */
+  protected Segment[] compactionBuffers;
 
   /* Keeps tracks of all segments*/
   protected Segment[] dataSegments;
@@ -125,6 +144,39 @@ public abstract class IOEngine implements Persistent {
 
   List<Scavenger.Listener> scavengerListeners = new LinkedList<>();
 
+  /* 
+   * Data segments epoch, incremented (under segment's write lock) every time 
+   * a data segment is disposed. Get operation captures epoch before index lookup 
+   * and checks it under segment's read lock: if it has not changed, the segment 
+   * found in the index was not recycled and second index lookup is not needed 
+   */
+  private AtomicLong segmentsEpoch = new AtomicLong();
+  
+  /* Pool of free RAM segment buffers */
+  protected SegmentBufferPool bufferPool;
+  
+  /* Per - thread buffer for index entries: [address, size] */
+  private static ThreadLocal<long[]> indexEntryBuffers = 
+      ThreadLocal.withInitial(() -> new long[2]);
+  
+  /**
+   * Get per - thread buffer for an index entry. Buffer is reused by all get operations 
+   * of a thread, so get operation does not allocate memory at steady state
+   * @param size required size
+   * @return buffer address
+   */
+  private static long getIndexEntryBuffer(int size) {
+    long[] buf = indexEntryBuffers.get();
+    if (buf[1] < size) {
+      if (buf[0] != 0) {
+        UnsafeAccess.free(buf[0]);
+      }
+      buf[0] = UnsafeAccess.mallocZeroed(size);
+      buf[1] = size;
+    }
+    return buf[0];
+  }
+
   /**
    * Initialize engine for a given cache
    *
@@ -176,9 +228,13 @@ public abstract class IOEngine implements Persistent {
     this.segmentSize = this.config.getCacheSegmentSize(this.cacheName);
     this.maxStorageSize = this.config.getCacheMaximumSize(this.cacheName);
     this.numSegments = (int) (this.maxStorageSize / this.segmentSize);
-    int num = this.config.getNumberOfPopularityRanks(this.cacheName);
-    this.ramBuffers = new Segment[num];
+    this.numRanks = this.config.getNumberOfPopularityRanks(this.cacheName);
+    this.numLanes = Math.max(1, this.config.getWriteLanes(this.cacheName));
+    this.ramBuffers = new Segment[this.numRanks * this.numLanes];
+    this.compactionBuffers = new Segment[this.numRanks];
     this.dataSegments = new Segment[this.numSegments];
+    this.bufferPool = new SegmentBufferPool(this.segmentSize, 
+      this.config.getSegmentBufferPoolMaxSize(this.cacheName));
     this.index = new MemoryIndex(this, MemoryIndex.Type.MQ);
     this.dataDir = this.config.getDataDir(this.cacheName);
     this.defaultRank = this.index.getEvictionPolicy().getDefaultRankForInsert();
@@ -209,9 +265,13 @@ public abstract class IOEngine implements Persistent {
     this.segmentSize = this.config.getCacheSegmentSize(this.cacheName);
     this.maxStorageSize = this.config.getCacheMaximumSize(this.cacheName);
     this.numSegments = (int) (this.maxStorageSize / this.segmentSize);
-    int num = this.config.getNumberOfPopularityRanks(this.cacheName);
-    this.ramBuffers = new Segment[num];
+    this.numRanks = this.config.getNumberOfPopularityRanks(this.cacheName);
+    this.numLanes = Math.max(1, this.config.getWriteLanes(this.cacheName));
+    this.ramBuffers = new Segment[this.numRanks * this.numLanes];
+    this.compactionBuffers = new Segment[this.numRanks];
     this.dataSegments = new Segment[this.numSegments];
+    this.bufferPool = new SegmentBufferPool(this.segmentSize, 
+      this.config.getSegmentBufferPoolMaxSize(this.cacheName));
     this.index = new MemoryIndex(this, MemoryIndex.Type.MQ);
     this.dataDir = this.config.getDataDir(this.cacheName);
     this.defaultRank = this.index.getEvictionPolicy().getDefaultRankForInsert();
@@ -365,7 +425,16 @@ public abstract class IOEngine implements Persistent {
    * @return number of ranks
    */
   public int getNumberOfRanks() {
-    return ramBuffers.length;
+    return this.numRanks;
+  }
+  
+  /**
+   * Get number of write lanes per rank
+   *
+   * @return number of write lanes
+   */
+  public int getNumberOfWriteLanes() {
+    return this.numLanes;
   }
 
   /**
@@ -394,61 +463,63 @@ public abstract class IOEngine implements Persistent {
     IndexFormat format = this.index.getIndexFormat();
     // TODO: embedded entry case
     int entrySize = format.indexEntrySize();
-    long buf = UnsafeAccess.mallocZeroed(entrySize);
-    try {
-
-      long result = index.find(keyPtr, keySize, hit, buf, entrySize);
-      
+    long buf = getIndexEntryBuffer(entrySize);
+    // Validity stamp for the index lookup
+    long epoch = this.segmentsEpoch.get();
+
+    long result = index.find(keyPtr, keySize, hit, buf, entrySize);
+    
+    if (result < 0) {
+      return NOT_FOUND;
+    } else if (result > entrySize) {
+      entrySize = (int) result;
+      buf = getIndexEntryBuffer(entrySize);
+      result = index.find(keyPtr, keySize, hit, buf, entrySize);
       if (result < 0) {
         return NOT_FOUND;
-      } else if (result > entrySize) {
-        UnsafeAccess.free(buf);
-        entrySize = (int) result;
-        buf = UnsafeAccess.mallocZeroed(entrySize);
-        result = index.find(keyPtr, keySize, hit, buf, entrySize);
-        if (result < 0) {
-          return NOT_FOUND;
-        }
       }
-      // This call returns TOTAL size: key + value + kSize + vSize
-      int keyValueSize = format.getKeyValueSize(buf);
-      // TODO: actually, not correct IT CAN RETURN -1
-      if (keyValueSize > buffer.length - bufOffset) {
-        return keyValueSize;
+    }
+    // This call returns TOTAL size: key + value + kSize + vSize
+    int keyValueSize = format.getKeyValueSize(buf);
+    // TODO: actually, not correct IT CAN RETURN -1
+    if (keyValueSize > buffer.length - bufOffset) {
+      return keyValueSize;
+    }
+    boolean dataEmbedded = this.dataEmbedded && (keyValueSize < this.maxEmbeddedSize);
+    if (dataEmbedded) {
+      // Return embedded data
+      int off = format.getEmbeddedOffset();
+      int kSize = Utils.readUVInt(buf + off);
+      if (kSize != keySize) {
+        return NOT_FOUND;
       }
-      boolean dataEmbedded = this.dataEmbedded && (keyValueSize < this.maxEmbeddedSize);
-      if (dataEmbedded) {
-        // Return embedded data
-        int off = format.getEmbeddedOffset();
-        int kSize = Utils.readUVInt(buf + off);
-        if (kSize != keySize) {
-          return NOT_FOUND;
-        }
-        int kSizeSize = Utils.sizeUVInt(kSize);
-        off += kSizeSize;
-        int vSize = Utils.readUVInt(buf + off);
-        int vSizeSize = Utils.sizeUVInt(vSize);
-        off += vSizeSize;
-        if (Utils.compareTo(keyPtr, keySize, buf + off, kSize) != 0) {
-          return NOT_FOUND;
-        }
-        off -= kSizeSize + vSizeSize;
-        // Copy data to buffer
-        UnsafeAccess.copy(buf + off, buffer, bufOffset, keyValueSize);
-        return keyValueSize;
-      } else {
-        // Cached item offset in a data segment
-        long offset = format.getOffset(buf);
-        // Segment id
-        int sid = (int) format.getSegmentId(buf);
-        // Read the data
-        Segment s = this.dataSegments[sid];
-        if (s == null || !s.isValid()) {
-          return NOT_FOUND;
-        }
-        
-        try {
-          s.readLock();
+      int kSizeSize = Utils.sizeUVInt(kSize);
+      off += kSizeSize;
+      int vSize = Utils.readUVInt(buf + off);
+      int vSizeSize = Utils.sizeUVInt(vSize);
+      off += vSizeSize;
+      if (Utils.compareTo(keyPtr, keySize, buf + off, kSize) != 0) {
+        return NOT_FOUND;
+      }
+      off -= kSizeSize + vSizeSize;
+      // Copy data to buffer
+      UnsafeAccess.copy(buf + off, buffer, bufOffset, keyValueSize);
+      return keyValueSize;
+    } else {
+      // Cached item offset in a data segment
+      long offset = format.getOffset(buf);
+      // Segment id
+      int sid = (int) format.getSegmentId(buf);
+      // Read the data
+      Segment s = this.dataSegments[sid];
+      if (s == null || !s.isValid()) {
+        return NOT_FOUND;
+      }
+      
+      try {
+        s.readLock();
+        if (this.segmentsEpoch.get() != epoch) {
+          // Segment could have been recycled after index lookup - check again
           int id = this.index.getSegmentId(keyPtr, keySize);
           if (id < 0) {
             return NOT_FOUND;
@@ -457,16 +528,14 @@ public abstract class IOEngine implements Persistent {
             s.readUnlock();
             return get(keyPtr, keySize, hit, buffer, bufOffset);
           }
-          // Read the data
-          int res = get(sid, offset, keyValueSize, keyPtr, keySize, buffer, bufOffset);
-          access(s, res, hit);
-          return res;
-        } finally {
-          s.readUnlock();
         }
+        // Read the data
+        int res = get(sid, offset, keyValueSize, keyPtr, keySize, buffer, bufOffset);
+        access(s, res, hit);
+        return res;
+      } finally {
+        s.readUnlock();
       }
-    } finally {
-      UnsafeAccess.free(buf);
     }
   }
 
@@ -487,82 +556,282 @@ public abstract class IOEngine implements Persistent {
     IndexFormat format = this.index.getIndexFormat();
     // TODO: embedded entry case
     int entrySize = format.indexEntrySize();
-    long buf = UnsafeAccess.mallocZeroed(entrySize);
+    long buf = getIndexEntryBuffer(entrySize);
     int bufferAvail = buffer.length - bufOffset;
-    try {
-
-      long result = index.find(key, keyOffset, keySize, hit, buf, entrySize);
+    // Validity stamp for the index lookup
+    long epoch = this.segmentsEpoch.get();
+
+    long result = index.find(key, keyOffset, keySize, hit, buf, entrySize);
+    if (result < 0) {
+      return NOT_FOUND;
+    } else if (result > entrySize) {
+      entrySize = (int) result;
+      buf = getIndexEntryBuffer(entrySize);
+      result = index.find(key, keyOffset, keySize, hit, buf, entrySize);
       if (result < 0) {
         return NOT_FOUND;
-      } else if (result > entrySize) {
-        UnsafeAccess.free(buf);
-        entrySize = (int) result;
-        buf = UnsafeAccess.mallocZeroed(entrySize);
-        result = index.find(key, keyOffset, keySize, hit, buf, entrySize);
-        if (result < 0) {
-          return NOT_FOUND;
-        }
       }
-      // This call returns TOTAL size: key + value + kSize + vSize
-      int keyValueSize = format.getKeyValueSize(buf);
-      // can be negative
-      if (keyValueSize > bufferAvail) {
-        return keyValueSize;
+    }
+    // This call returns TOTAL size: key + value + kSize + vSize
+    int keyValueSize = format.getKeyValueSize(buf);
+    // can be negative
+    if (keyValueSize > bufferAvail) {
+      return keyValueSize;
+    }
+    boolean dataEmbedded = this.dataEmbedded && (keyValueSize < this.maxEmbeddedSize);
+    if (dataEmbedded) {
+      // For index formats which supports embedding
+      // Return embedded data
+      int off = format.getEmbeddedOffset();
+      int kSize = Utils.readUVInt(buf + off);
+      if (kSize != keySize) {
+        return NOT_FOUND;
       }
-      boolean dataEmbedded = this.dataEmbedded && (keyValueSize < this.maxEmbeddedSize);
-      if (dataEmbedded) {
-        // For index formats which supports embedding
-        // Return embedded data
-        int off = format.getEmbeddedOffset();
-        int kSize = Utils.readUVInt(buf + off);
-        if (kSize != keySize) {
-          return NOT_FOUND;
+      int kSizeSize = Utils.sizeUVInt(kSize);
+      off += kSizeSize;
+      int vSize = Utils.readUVInt(buf + off);
+      int vSizeSize = Utils.sizeUVInt(vSize);
+      off += vSizeSize;
+      if (Utils.compareTo(key, keyOffset, keySize, buf + off, kSize) != 0) {
+        return NOT_FOUND;
+      }
+      off -= kSizeSize + vSizeSize;
+      // Copy data to buffer
+      UnsafeAccess.copy(buf + off, buffer, bufOffset, keyValueSize);
+      return keyValueSize;
+    } else {
+      // Cached item offset in a data segment
+      long offset = format.getOffset(buf);
+      // segment id
+      int sid = (int) format.getSegmentId(buf);
+      Segment s = this.dataSegments[sid];
+      if (s == null || !s.isValid()) {
+        return NOT_FOUND;
+      }
+      
+      try {
+        s.readLock();
+        if (this.segmentsEpoch.get() != epoch) {
+          // Segment could have been recycled after index lookup - check again
+          int id = this.index.getSegmentId(key, keyOffset, keySize);
+          if (id < 0) {
+            return NOT_FOUND;
+          }
+          if (id != sid) {
+            s.readUnlock();
+            return get(key, keyOffset, keySize, hit, buffer, bufOffset);
+          }
         }
-        int kSizeSize = Utils.sizeUVInt(kSize);
-        off += kSizeSize;
-        int vSize = Utils.readUVInt(buf + off);
-        int vSizeSize = Utils.sizeUVInt(vSize);
-        off += vSizeSize;
-        if (Utils.compareTo(key, keyOffset, keySize, buf + off, kSize) != 0) {
-          return NOT_FOUND;
+        // Read the data
+        int res = get(sid, offset, keyValueSize, key, keyOffset, keySize, buffer, bufOffset);
+        access(s, res, hit);
+        return res;
+      } finally {
+        s.readUnlock();
+      }
+    }
+  }
+
+  /**
+   * Batch get. All keys are hashed and looked up in the index first (every index lock stripe
+   * is locked once), then items are read grouped by data segment (every segment read lock
+   * is taken once). Items are copied into the buffer one after another (not necessarily 
+   * in the order of keys), offsets[i] is the offset of the item for keys[i] in the buffer.
+   *
+   * @param keys keys
+   * @param hit if true - its a hit
+   * @param buffer buffer for items
+   * @param bufOffset buffer offset
+   * @param offsets offsets of items in the buffer (-1 - not found or does not fit the buffer)
+   * @param sizes sizes of items (-1 - not found). Item which does not fit the buffer
+   *     has offset -1 and its actual size
+   * @return number of items copied into the buffer
+   * @throws IOException
+   */
+  public int getBatch(byte[][] keys, boolean hit, byte[] buffer, int bufOffset, int[] offsets,
+      int[] sizes) throws IOException {
+    int num = keys.length;
+    Arrays.fill(offsets, 0, num, NOT_FOUND);
+    Arrays.fill(sizes, 0, num, NOT_FOUND);
+    if (num == 0) {
+      return 0;
+    }
+    IndexFormat format = this.index.getIndexFormat();
+    int entrySize = format.indexEntrySize();
+    long[] hashes = new long[num];
+    int[] keyIndexes = new int[num];
+    for (int i = 0; i < num; i++) {
+      hashes[i] = Utils.hash64(keys[i], 0, keys[i].length);
+      keyIndexes[i] = i;
+    }
+    int[] results = new int[num];
+    // [segment id][key index] for items to read from data segments
+    long[] order = new long[num];
+    int numToRead = 0;
+    int pos = bufOffset;
+    long buf = UnsafeAccess.mallocZeroed((long) num * entrySize);
+    // Validity stamp for the index lookup
+    long epoch = this.segmentsEpoch.get();
+    try {
+      this.index.findBatch(hashes, keyIndexes, num, hit, buf, entrySize, results);
+      for (int i = 0; i < num; i++) {
+        if (results[i] < 0) {
+          continue;
+        }
+        if (results[i] > entrySize) {
+          // Index entry does not fit - regular read
+          pos = getOne(keys[i], i, hit, buffer, pos, offsets, sizes);
+          continue;
+        }
+        long ptr = buf + (long) i * entrySize;
+        // This call returns TOTAL size: key + value + kSize + vSize, can be -1 (unknown)
+        int keyValueSize = format.getKeyValueSize(ptr);
+        if (keyValueSize > buffer.length - pos) {
+          sizes[i] = keyValueSize;
+          continue;
+        }
+        boolean dataEmbedded = this.dataEmbedded && keyValueSize >= 0 
+            && keyValueSize < this.maxEmbeddedSize;
+        if (dataEmbedded) {
+          if (getEmbedded(ptr, format, keys[i], buffer, pos, keyValueSize) > 0) {
+            offsets[i] = pos;
+            sizes[i] = keyValueSize;
+            pos += keyValueSize;
+          }
+          continue;
+        }
+        int sid = (int) format.getSegmentId(ptr);
+        order[numToRead++] = ((long) sid << 32) | i;
+      }
+      Arrays.sort(order, 0, numToRead);
+      int[] group = new int[numToRead];
+      int[] sids = new int[num];
+      int k = 0;
+      while (k < numToRead) {
+        int sid = (int) (order[k] >>> 32);
+        int groupSize = 0;
+        for (; k < numToRead && (int) (order[k] >>> 32) == sid; k++) {
+          group[groupSize++] = (int) order[k];
         }
-        off -= kSizeSize + vSizeSize;
-        // Copy data to buffer
-        UnsafeAccess.copy(buf + off, buffer, bufOffset, keyValueSize);
-        return keyValueSize;
-      } else {
-        // Cached item offset in a data segment
-        long offset = format.getOffset(buf);
-        // segment id
-        int sid = (int) format.getSegmentId(buf);
         Segment s = this.dataSegments[sid];
         if (s == null || !s.isValid()) {
-          return NOT_FOUND;
+          continue;
         }
-        
         try {
           s.readLock();
-          int id = this.index.getSegmentId(key, keyOffset, keySize);
-          if (id < 0) {
-            return NOT_FOUND;
+          if (this.segmentsEpoch.get() == epoch) {
+            // Segment was not recycled after index lookup
+            for (int j = 0; j < groupSize; j++) {
+              sids[group[j]] = sid;
+            }
+          } else {
+            // Items could have been moved to another segment by Scavenger
+            this.index.getSegmentIdBatch(hashes, group, groupSize, sids);
           }
-          if (id != sid) {
-            s.readUnlock();
-            return get(key, keyOffset, keySize, hit, buffer, bufOffset);
+          for (int j = 0; j < groupSize; j++) {
+            int i = group[j];
+            if (sids[i] != sid) {
+              continue;
+            }
+            long ptr = buf + (long) i * entrySize;
+            int keyValueSize = format.getKeyValueSize(ptr);
+            if (keyValueSize > buffer.length - pos) {
+              sizes[i] = keyValueSize;
+              continue;
+            }
+            long offset = format.getOffset(ptr);
+            int res = get(sid, offset, keyValueSize, keys[i], 0, keys[i].length, buffer, pos);
+            if (res < 0) {
+              continue;
+            } else if (res > buffer.length - pos) {
+              // Reader needs more space
+              sizes[i] = res;
+              continue;
+            }
+            access(s, res, hit);
+            offsets[i] = pos;
+            sizes[i] = res;
+            pos += res;
           }
-          // Read the data
-          int res = get(sid, offset, keyValueSize, key, keyOffset, keySize, buffer, bufOffset);
-          access(s, res, hit);
-          return res;
         } finally {
           s.readUnlock();
         }
+        for (int j = 0; j < groupSize; j++) {
+          int i = group[j];
+          if (sids[i] >= 0 && sids[i] != sid) {
+            // Moved - regular read
+            pos = getOne(keys[i], i, hit, buffer, pos, offsets, sizes);
+          }
+        }
       }
     } finally {
       UnsafeAccess.free(buf);
     }
+    int found = 0;
+    for (int i = 0; i < num; i++) {
+      if (offsets[i] >= 0) {
+        found++;
+      }
+    }
+    return found;
   }
-
+  
+  /**
+   * Get one item for a batch get
+   * @param key key
+   * @param i key index in a batch
+   * @param hit if true - its a hit
+   * @param buffer buffer for items
+   * @param pos current position in the buffer
+   * @param offsets offsets of items
+   * @param sizes sizes of items
+   * @return new position in the buffer
+   * @throws IOException
+   */
+  private int getOne(byte[] key, int i, boolean hit, byte[] buffer, int pos, int[] offsets,
+      int[] sizes) throws IOException {
+    long res = get(key, 0, key.length, hit, buffer, pos);
+    if (res < 0) {
+      return pos;
+    }
+    sizes[i] = (int) res;
+    if (res > buffer.length - pos) {
+      return pos;
+    }
+    offsets[i] = pos;
+    return pos + (int) res;
+  }
+  
+  /**
+   * Copy item embedded into index entry to a buffer
+   * @param ptr index entry address
+   * @param format index format
+   * @param key key
+   * @param buffer buffer
+   * @param bufOffset buffer offset
+   * @param keyValueSize size of an item
+   * @return size of an item or NOT_FOUND
+   */
+  private int getEmbedded(long ptr, IndexFormat format, byte[] key, byte[] buffer, 
+      int bufOffset, int keyValueSize) {
+    int off = format.getEmbeddedOffset();
+    int kSize = Utils.readUVInt(ptr + off);
+    if (kSize != key.length) {
+      return NOT_FOUND;
+    }
+    int kSizeSize = Utils.sizeUVInt(kSize);
+    off += kSizeSize;
+    int vSize = Utils.readUVInt(ptr + off);
+    int vSizeSize = Utils.sizeUVInt(vSize);
+    off += vSizeSize;
+    if (Utils.compareTo(key, 0, kSize, ptr + off, kSize) != 0) {
+      return NOT_FOUND;
+    }
+    off -= kSizeSize + vSizeSize;
+    UnsafeAccess.copy(ptr + off, buffer, bufOffset, keyValueSize);
+    return keyValueSize;
+  }
+  
   private void access(Segment s, int result, boolean hit) {
     if (result > 0 && hit) {
       if (s != null) {
@@ -584,77 +853,78 @@ public abstract class IOEngine implements Persistent {
   public long get(long keyPtr, int keySize, boolean hit, ByteBuffer buffer) throws IOException {
     IndexFormat format = this.index.getIndexFormat();
     int entrySize = format.indexEntrySize();
-    long buf = UnsafeAccess.mallocZeroed(entrySize);
-    //int slot = 0;
-    try {
-      // TODO: double locking?
-      // Index locking  that segment will not be recycled
-      //
-      //slot = this.index.lock(keyPtr, keySize);
-      long result = index.find(keyPtr, keySize, true, buf, entrySize);
-      // result can be negative - OK
-      // positive - OK b/c we hold read lock on key and key can't be deleted from index
-      // until we release read lock, hence data segment can't be reused until this operation
-      // finishes
-      // false positive - BAD, in this case there is no guarantee that found segment won' be reused
-      // during this operation.
-      // HOW TO HANDLE FALSE POSITIVES in MemoryIndex.find?
-      // Make sure that Utils.readUInt is stable and does not break on an arbitrary sequence of
-      // bytes
-      // It looks safe to me, therefore in case of a rare situation of a false positive and
-      // segment ID reuse during this operation we will detect this by comparing keys
-
+    long buf = getIndexEntryBuffer(entrySize);
+    // Validity stamp for the index lookup
+    long epoch = this.segmentsEpoch.get();
+    // TODO: double locking?
+    // Index locking  that segment will not be recycled
+    //
+    //slot = this.index.lock(keyPtr, keySize);
+    long result = index.find(keyPtr, keySize, true, buf, entrySize);
+    // result can be negative - OK
+    // positive - OK b/c we hold read lock on key and key can't be deleted from index
+    // until we release read lock, hence data segment can't be reused until this operation
+    // finishes
+    // false positive - BAD, in this case there is no guarantee that found segment won' be reused
+    // during this operation.
+    // HOW TO HANDLE FALSE POSITIVES in MemoryIndex.find?
+    // Make sure that Utils.readUInt is stable and does not break on an arbitrary sequence of
+    // bytes
+    // It looks safe to me, therefore in case of a rare situation of a false positive and
+    // segment ID reuse during this operation we will detect this by comparing keys
+
+    if (result < 0) {
+      return NOT_FOUND;
+    } else if (result > entrySize) {
+      entrySize = (int) result;
+      buf = getIndexEntryBuffer(entrySize);
+      result = index.find(keyPtr, keySize, true, buf, entrySize);
       if (result < 0) {
         return NOT_FOUND;
-      } else if (result > entrySize) {
-        UnsafeAccess.free(buf);
-        entrySize = (int) result;
-        buf = UnsafeAccess.mallocZeroed(entrySize);
-        result = index.find(keyPtr, keySize, true, buf, entrySize);
-        if (result < 0) {
-          return NOT_FOUND;
-        }
-      }
-      // This call returns TOTAL size: key + value + kSize + vSize
-      int keyValueSize = format.getKeyValueSize(buf);
-      // TODO: actually, not correct
-      if (keyValueSize > buffer.remaining()) {
-        return keyValueSize;
       }
+    }
+    // This call returns TOTAL size: key + value + kSize + vSize
+    int keyValueSize = format.getKeyValueSize(buf);
+    // TODO: actually, not correct
+    if (keyValueSize > buffer.remaining()) {
+      return keyValueSize;
+    }
 
-      boolean dataEmbedded = this.dataEmbedded && (keyValueSize < this.maxEmbeddedSize);
-      if (dataEmbedded) {
-        // Return embedded data
-        int off = format.getEmbeddedOffset();
-        int kSize = Utils.readUVInt(buf + off);
-        if (kSize != keySize) {
-          return NOT_FOUND;
-        }
-        int kSizeSize = Utils.sizeUVInt(kSize);
-        off += kSizeSize;
-        int vSize = Utils.readUVInt(buf + off);
-        int vSizeSize = Utils.sizeUVInt(vSize);
-        off += vSizeSize;
-        if (Utils.compareTo(keyPtr, keySize, buf + off, kSize) != 0) {
-          return NOT_FOUND;
-        }
-        off -= kSizeSize + vSizeSize;
-        // Copy data to buffer
-        UnsafeAccess.copy(buf + off, buffer, keyValueSize);
-        return keyValueSize;
-      } else {
-        // Cached item offset in a data segment
-        long offset = format.getOffset(buf);
-        // Segment id
-        int sid = (int) format.getSegmentId(buf);
-        // Finally, read the cached item
-        Segment s = this.dataSegments[sid];
-        if (s == null || !s.isValid()) {
-          return NOT_FOUND;
-        }
-        
-        try {
-          s.readLock();
+    boolean dataEmbedded = this.dataEmbedded && (keyValueSize < this.maxEmbeddedSize);
+    if (dataEmbedded) {
+      // Return embedded data
+      int off = format.getEmbeddedOffset();
+      int kSize = Utils.readUVInt(buf + off);
+      if (kSize != keySize) {
+        return NOT_FOUND;
+      }
+      int kSizeSize = Utils.sizeUVInt(kSize);
+      off += kSizeSize;
+      int vSize = Utils.readUVInt(buf + off);
+      int vSizeSize = Utils.sizeUVInt(vSize);
+      off += vSizeSize;
+      if (Utils.compareTo(keyPtr, keySize, buf + off, kSize) != 0) {
+        return NOT_FOUND;
+      }
+      off -= kSizeSize + vSizeSize;
+      // Copy data to buffer
+      UnsafeAccess.copy(buf + off, buffer, keyValueSize);
+      return keyValueSize;
+    } else {
+      // Cached item offset in a data segment
+      long offset = format.getOffset(buf);
+      // Segment id
+      int sid = (int) format.getSegmentId(buf);
+      // Finally, read the cached item
+      Segment s = this.dataSegments[sid];
+      if (s == null || !s.isValid()) {
+        return NOT_FOUND;
+      }
+      
+      try {
+        s.readLock();
+        if (this.segmentsEpoch.get() != epoch) {
+          // Segment could have been recycled after index lookup - check again
           int id = this.index.getSegmentId(keyPtr, keySize);
           if (id < 0) {
             return NOT_FOUND;
@@ -663,17 +933,14 @@ public abstract class IOEngine implements Persistent {
             s.readUnlock();
             return get(keyPtr, keySize, hit, buffer);
           }
-          // Read the data
-          int res = get(sid, offset, keyValueSize, keyPtr, keySize, buffer);
-          access(s, res, hit);
-          return res;
-        } finally {
-          s.readUnlock();
         }
+        // Read the data
+        int res = get(sid, offset, keyValueSize, keyPtr, keySize, buffer);
+        access(s, res, hit);
+        return res;
+      } finally {
+        s.readUnlock();
       }
-    } finally {
-      UnsafeAccess.free(buf);
-     // this.index.unlock(slot);
     }
   }
 
@@ -692,59 +959,61 @@ public abstract class IOEngine implements Persistent {
 
     IndexFormat format = this.index.getIndexFormat();
     int entrySize = format.indexEntrySize();
-    long buf = UnsafeAccess.mallocZeroed(entrySize);
-    try {
-      long result = index.find(key, keyOffset, keySize, hit, buf, entrySize);
+    long buf = getIndexEntryBuffer(entrySize);
+    // Validity stamp for the index lookup
+    long epoch = this.segmentsEpoch.get();
+    long result = index.find(key, keyOffset, keySize, hit, buf, entrySize);
+    if (result < 0) {
+      return NOT_FOUND;
+    } else if (result > entrySize) {
+      entrySize = (int) result;
+      buf = getIndexEntryBuffer(entrySize);
+      result = index.find(key, keyOffset, keySize, hit, buf, entrySize);
       if (result < 0) {
         return NOT_FOUND;
-      } else if (result > entrySize) {
-        UnsafeAccess.free(buf);
-        entrySize = (int) result;
-        buf = UnsafeAccess.mallocZeroed(entrySize);
-        result = index.find(key, keyOffset, keySize, hit, buf, entrySize);
-        if (result < 0) {
-          return NOT_FOUND;
-        }
       }
-      // This call returns TOTAL size: key + value + kSize + vSize
-      int keyValueSize = format.getKeyValueSize(buf);
-      // TODO: actually, not correct
-      if (keyValueSize > buffer.remaining()) {
-        return keyValueSize;
+    }
+    // This call returns TOTAL size: key + value + kSize + vSize
+    int keyValueSize = format.getKeyValueSize(buf);
+    // TODO: actually, not correct
+    if (keyValueSize > buffer.remaining()) {
+      return keyValueSize;
+    }
+    boolean dataEmbedded = this.dataEmbedded && (keyValueSize < this.maxEmbeddedSize);
+    if (dataEmbedded) {
+      // Return embedded data
+      int off = format.getEmbeddedOffset();
+      int kSize = Utils.readUVInt(buf + off);
+      if (kSize != keySize) {
+        return NOT_FOUND;
+      }
+      int kSizeSize = Utils.sizeUVInt(kSize);
+      off += kSizeSize;
+      int vSize = Utils.readUVInt(buf + off);
+      int vSizeSize = Utils.sizeUVInt(vSize);
+      off += vSizeSize;
+      if (Utils.compareTo(key, keyOffset, keySize, buf + off, kSize) != 0) {
+        return NOT_FOUND;
+      }
+      off -= kSizeSize + vSizeSize;
+      // Copy data to buffer
+      UnsafeAccess.copy(buf + off, buffer, keyValueSize);
+      return keyValueSize;
+    } else {
+      // Cached item offset in a data segment
+      long offset = format.getOffset(buf);
+      // segment id
+      int sid = (int) format.getSegmentId(buf);
+      // Read the data
+      Segment s = this.dataSegments[sid];
+      if (s == null || !s.isValid()) {
+        return NOT_FOUND;
       }
-      boolean dataEmbedded = this.dataEmbedded && (keyValueSize < this.maxEmbeddedSize);
-      if (dataEmbedded) {
-        // Return embedded data
-        int off = format.getEmbeddedOffset();
-        int kSize = Utils.readUVInt(buf + off);
-        if (kSize != keySize) {
-          return NOT_FOUND;
-        }
-        int kSizeSize = Utils.sizeUVInt(kSize);
-        off += kSizeSize;
-        int vSize = Utils.readUVInt(buf + off);
-        int vSizeSize = Utils.sizeUVInt(vSize);
-        off += vSizeSize;
-        if (Utils.compareTo(key, keyOffset, keySize, buf + off, kSize) != 0) {
-          return NOT_FOUND;
-        }
-        off -= kSizeSize + vSizeSize;
-        // Copy data to buffer
-        UnsafeAccess.copy(buf + off, buffer, keyValueSize);
-        return keyValueSize;
-      } else {
-        // Cached item offset in a data segment
-        long offset = format.getOffset(buf);
-        // segment id
-        int sid = (int) format.getSegmentId(buf);
-        // Read the data
-        Segment s = this.dataSegments[sid];
-        if (s == null || !s.isValid()) {
-          return NOT_FOUND;
-        }
 
-        try {
-          s.readLock();
+      try {
+        s.readLock();
+        if (this.segmentsEpoch.get() != epoch) {
+          // Segment could have been recycled after index lookup - check again
           int id = this.index.getSegmentId(key, keyOffset, keySize);
           if (id < 0) {
             return NOT_FOUND;
@@ -753,16 +1022,14 @@ public abstract class IOEngine implements Persistent {
             s.readUnlock();
             return get(key, keyOffset, keySize, hit, buffer);
           }
-          // Read the data
-          int res = get(sid, offset, keyValueSize, key, keyOffset, keySize, buffer);
-          access(s, res, hit);
-          return res;
-        } finally {
-          s.readUnlock();
         }
+        // Read the data
+        int res = get(sid, offset, keyValueSize, key, keyOffset, keySize, buffer);
+        access(s, res, hit);
+        return res;
+      } finally {
+        s.readUnlock();
       }
-    } finally {
-      UnsafeAccess.free(buf);
     }
   }
 
@@ -1108,12 +1375,13 @@ public abstract class IOEngine implements Persistent {
       }
       // TODO: remove this. Move data to a main storage
       this.dataSegments[data.getId()] = data;
-      this.ramBuffers[data.getInfo().getRank()] = null;
+      removeRAMBuffer(data);
       // }
       // Call IOEngine - specific (FileIOEngine overrides it)
       // Can be costly - executed in a separate thread
       saveInternal(data);
       // seal only after we materialize segment in a file system
+      segmentUpdated(data);
       // Notify listener
       if (this.aListener != null) {
         aListener.onEvent(this, IOEngineEvent.DATA_SIZE_CHANGED);
@@ -1158,6 +1426,14 @@ public abstract class IOEngine implements Persistent {
     long dataSize = seg.getInfo().getSegmentDataSize();
     try {
       seg.writeLock();
+      this.segmentsEpoch.incrementAndGet();
+      if (seg.isOffheap() && seg.getAddress() != 0) {
+        // Return memory buffer to the pool
+        long ptr = seg.getAddress();
+        seg.setAddress(0);
+        seg.setOffheap(false);
+        this.bufferPool.release(ptr);
+      }
       seg.dispose();
       dataSegments[seg.getId()] = null;
       reportAllocation(-this.segmentSize);
@@ -1165,6 +1441,24 @@ public abstract class IOEngine implements Persistent {
     } finally {
       seg.writeUnlock();
     }
+    releaseUnusedDictionaries();
+  }
+  
+  /**
+   * Release compression dictionaries which are not used by data segments anymore
+   */
+  public void releaseUnusedDictionaries() {
+    BlockCodec codec = BlockCodec.getCodec(this.cacheName);
+    if (codec == null || codec.getNumberOfDictionaries() == 0) {
+      return;
+    }
+    Set<Integer> ids = new HashSet<Integer>();
+    for (Segment s : this.dataSegments) {
+      if (s != null) {
+        ids.add(s.getDictionaryId());
+      }
+    }
+    codec.retainDictionaries(ids);
   }
   /**
    * Update statistics for a segment with a given id for eviction, deletion
@@ -1183,19 +1477,52 @@ public abstract class IOEngine implements Persistent {
     } else {
       s.updateExpired(expire);
     }
+    segmentUpdated(s);
+  }
+
+  /**
+   * Notify recycling selector that segment was sealed, released or its statistics changed
+   *
+   * @param s data segment
+   */
+  protected void segmentUpdated(Segment s) {
+    this.recyclingSelector.segmentUpdated(s);
+  }
+
+  /**
+   * Release segment, which was claimed for recycling but was not recycled
+   *
+   * @param s data segment
+   */
+  public void releaseSegmentForRecycling(Segment s) {
+    s.setRecycling(false);
+    segmentUpdated(s);
   }
 
   /**
-   * Get best segment for recycling MUST be sealed TODO: need synchronized?
+   * Get best segment for recycling MUST be sealed. Selected segment is claimed 
+   * for recycling, so concurrent scavenger workers always get distinct segments
    *
    * @return segment
    */
   public synchronized Segment getSegmentForRecycling() {
     Segment s = this.recyclingSelector.selectForRecycling(dataSegments);
     if (s != null && !s.isSealed()) throw new RuntimeException("Segment for recycling must be sealed");
+    if (s != null) {
+      s.setRecycling(true);
+    }
     return s;
   }
 
+  /**
+   * Are there free data segments (storage is not fully allocated)
+   *
+   * @return true or false
+   */
+  public boolean hasFreeSegments() {
+    return getAvailableId() >= 0;
+  }
+
   /**
    * Scans and finds available id for a new data segment
    *
@@ -1422,34 +1749,172 @@ public abstract class IOEngine implements Persistent {
     return true;
   }
 
+  /**
+   * Relocate live item of a recycled segment to a compaction segment (used by Scavenger).
+   * Item is copied as is and its index entry is updated in place, so the item keeps
+   * its rank, hit count and expiration time. When there are no free segments, item
+   * is copied to a RAM buffer of a rank
+   *
+   * @param key key buffer
+   * @param keyOff key offset
+   * @param keyLength key length
+   * @param value value buffer
+   * @param valueOff value offset
+   * @param valueLength value length
+   * @param expire expiration time
+   * @param rank rank of a compaction segment
+   * @param sid id of a recycled segment
+   * @return true on success (or if item was deleted or updated concurrently),
+   *         false - no free segments
+   * @throws IOException
+   */
+  public boolean relocate(
+      byte[] key,
+      int keyOff,
+      int keyLength,
+      byte[] value,
+      int valueOff,
+      int valueLength,
+      long expire,
+      int rank,
+      int sid)
+      throws IOException {
+    Segment s = getRelocationSegment(rank);
+    if (s == null) {
+      return false;
+    }
+    long offset = s.append(key, keyOff, keyLength, value, valueOff, valueLength, expire);
+    if (offset < 0) {
+      sealRelocationSegment(s);
+      s = getRelocationSegment(rank);
+      if (s == null) {
+        return false;
+      }
+      offset = s.append(key, keyOff, keyLength, value, valueOff, valueLength, expire);
+      if (offset < 0) {
+        return false;
+      }
+    }
+    reportUsage(Utils.kvSize(keyLength, valueLength));
+    long hash = Utils.hash64(key, keyOff, keyLength);
+    if (!this.index.relocate(hash, sid, s.getId(), offset)) {
+      // Copy is not referenced by the index
+      s.updateEvictedDeleted();
+      segmentUpdated(s);
+    }
+    return true;
+  }
+
+  /**
+   * Relocate live item of a recycled segment to a compaction segment (used by Scavenger).
+   * Item is copied as is and its index entry is updated in place, so the item keeps
+   * its rank, hit count and expiration time. When there are no free segments, item
+   * is copied to a RAM buffer of a rank
+   *
+   * @param keyPtr key address
+   * @param keyLength key length
+   * @param valuePtr value address
+   * @param valueLength value length
+   * @param expire expiration time
+   * @param rank rank of a compaction segment
+   * @param sid id of a recycled segment
+   * @return true on success (or if item was deleted or updated concurrently),
+   *         false - no free segments
+   * @throws IOException
+   */
+  public boolean relocate(
+      long keyPtr, int keyLength, long valuePtr, int valueLength, long expire, int rank, int sid)
+      throws IOException {
+    Segment s = getRelocationSegment(rank);
+    if (s == null) {
+      return false;
+    }
+    long offset = s.append(keyPtr, keyLength, valuePtr, valueLength, expire);
+    if (offset < 0) {
+      sealRelocationSegment(s);
+      s = getRelocationSegment(rank);
+      if (s == null) {
+        return false;
+      }
+      offset = s.append(keyPtr, keyLength, valuePtr, valueLength, expire);
+      if (offset < 0) {
+        return false;
+      }
+    }
+    reportUsage(Utils.kvSize(keyLength, valueLength));
+    long hash = Utils.hash64(keyPtr, keyLength);
+    if (!this.index.relocate(hash, sid, s.getId(), offset)) {
+      // Copy is not referenced by the index
+      s.updateEvictedDeleted();
+      segmentUpdated(s);
+    }
+    return true;
+  }
+
   protected ReentrantLock ramBufferLock = new ReentrantLock();
   
+  /**
+   * Remove sealed segment from RAM buffers (write lanes) of its rank
+   * @param data segment
+   */
+  private void removeRAMBuffer(Segment data) {
+    int base = data.getInfo().getRank() * this.numLanes;
+    for (int i = base; i < base + this.numLanes; i++) {
+      if (this.ramBuffers[i] == data) {
+        this.ramBuffers[i] = null;
+        return;
+      }
+    }
+  }
+  
+  /**
+   * Get RAM buffer index (write lane) for a rank for the current thread
+   * @param rank rank
+   * @return index in RAM buffers
+   */
+  private int getRAMBufferIndex(int rank) {
+    if (this.numLanes == 1) {
+      return rank;
+    }
+    int lane = (int) (Thread.currentThread().getId() % this.numLanes);
+    return rank * this.numLanes + lane;
+  }
+  
   protected Segment getRAMSegmentByRank(int rank) {
-    Segment s = this.ramBuffers[rank];
+    int index = getRAMBufferIndex(rank);
+    Segment s = this.ramBuffers[index];
     if (s == null) {
       try {
         ramBufferLock.lock();
-        s = this.ramBuffers[rank];
+        s = this.ramBuffers[index];
         if (s != null) {
           return s;
         }
-        int id = getAvailableId();
-        if (id < 0) {
-          return null;
-        }
-        if (this.dataSegments[id] == null) {
-          s = Segment.newSegment((int) this.segmentSize, id, rank);
-          s.init(this.cacheName);
-          reportAllocation(this.segmentSize);
-          // Set data appender
-          s.setDataWriter(this.dataWriter);
-          this.dataSegments[id] = s;
-
-        } else {
-          s = this.dataSegments[id];
-          s.reuse(id, rank, System.currentTimeMillis());
+        s = newSegment(rank);
+        this.ramBuffers[index] = s;
+      } finally {
+        ramBufferLock.unlock();
+      }
+    }
+    return s;
+  }
+
+  /**
+   * Get compaction segment for a rank
+   * @param rank rank
+   * @return segment or null (no free segments)
+   */
+  protected Segment getCompactionSegmentByRank(int rank) {
+    Segment s = this.compactionBuffers[rank];
+    if (s == null) {
+      try {
+        ramBufferLock.lock();
+        s = this.compactionBuffers[rank];
+        if (s != null) {
+          return s;
         }
-        this.ramBuffers[rank] = s;
+        s = newSegment(rank);
+        this.compactionBuffers[rank] = s;
       } finally {
         ramBufferLock.unlock();
       }
@@ -1457,8 +1922,65 @@ public abstract class IOEngine implements Persistent {
     return s;
   }
 
+  /**
+   * Get segment to relocate items of a rank to: compaction segment or
+   * RAM buffer of a rank, if there are no free segments
+   * @param rank rank
+   * @return segment or null
+   */
+  private Segment getRelocationSegment(int rank) {
+    Segment s = getCompactionSegmentByRank(rank);
+    return s != null? s: getRAMSegmentByRank(rank);
+  }
+
+  /**
+   * Seal full relocation segment
+   * @param s segment
+   * @throws IOException
+   */
+  private void sealRelocationSegment(Segment s) throws IOException {
+    int rank = s.getInfo().getRank();
+    try {
+      ramBufferLock.lock();
+      if (this.compactionBuffers[rank] == s) {
+        this.compactionBuffers[rank] = null;
+      }
+    } finally {
+      ramBufferLock.unlock();
+    }
+    if (!s.isSealed()) {
+      save(s);
+    }
+  }
+
+  /**
+   * Allocate new data segment, must be called under RAM buffer lock
+   * @param rank rank
+   * @return segment or null (no free segments)
+   */
+  private Segment newSegment(int rank) {
+    int id = getAvailableId();
+    if (id < 0) {
+      return null;
+    }
+    Segment s;
+    if (this.dataSegments[id] == null) {
+      long ptr = this.bufferPool.allocate();
+      s = Segment.newSegment(ptr, (int) this.segmentSize, id, rank);
+      s.init(this.cacheName);
+      reportAllocation(this.segmentSize);
+      // Set data appender
+      s.setDataWriter(this.dataWriter);
+      this.dataSegments[id] = s;
+    } else {
+      s = this.dataSegments[id];
+      s.reuse(id, rank, System.currentTimeMillis());
+    }
+    return s;
+  }
+
   private void checkRank(int rank) {
-    if (rank < 0 || rank >= ramBuffers.length) {
+    if (rank < 0 || rank >= this.numRanks) {
       throw new IllegalArgumentException(String.format("Illegal rank value: %d", rank));
     }
   }
@@ -1503,6 +2025,7 @@ public abstract class IOEngine implements Persistent {
       s.load(dis);
       s.setDataWriter(this.dataWriter);
       this.dataSegments[s.getId()] = s;
+      segmentUpdated(s);
     }
     this.index.load(dis);
     this.recyclingSelector.load(dis);
@@ -1532,6 +2055,16 @@ public abstract class IOEngine implements Persistent {
     }
     // 2. dispose memory index
     this.index.dispose();
+    // 3. release pooled segment buffers
+    this.bufferPool.dispose();
+  }
+  
+  /**
+   * Get pool of free RAM segment buffers (statistics)
+   * @return segment buffer pool
+   */
+  public SegmentBufferPool getSegmentBufferPool() {
+    return this.bufferPool;
   }
 
   /**
@@ -0,0 +1,205 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.carrot.cache.io;
+
+import java.util.Arrays;
+
+/**
+ * LZ4 block format codec (fast single - pass compressor, no dependencies).
+ * Output is compatible with the reference LZ4 block format decoder. Preset dictionaries
+ * are not supported.
+ */
+public class LZ4BlockCodec extends BlockCodec {
+
+  private final static int MIN_MATCH = 4;
+
+  /* Last literals which can not be a part of a match */
+  private final static int LAST_LITERALS = 5;
+
+  /* Last match must start at least 12 bytes before end of a block */
+  private final static int MF_LIMIT = 12;
+
+  private final static int MAX_DISTANCE = 65535;
+
+  private final static int HASH_LOG = 12;
+
+  private final static int RUN_MASK = 15;
+
+  /* Hash tables (position + 1, 0 - empty) */
+  private static ThreadLocal<int[]> hashTables =
+      ThreadLocal.withInitial(() -> new int[1 << HASH_LOG]);
+
+  @Override
+  public String getName() {
+    return LZ4;
+  }
+
+  @Override
+  protected int doCompress(byte[] dict, byte[] src, int srcOffset, int len, byte[] dst,
+      int dstOffset, int capacity) {
+    int[] table = hashTables.get();
+    Arrays.fill(table, 0);
+    int srcEnd = srcOffset + len;
+    int dstEnd = dstOffset + capacity;
+    int matchLimit = srcEnd - LAST_LITERALS;
+    int mfLimit = srcEnd - MF_LIMIT;
+    int anchor = srcOffset;
+    int ip = srcOffset;
+    int op = dstOffset;
+
+    while (ip < mfLimit) {
+      int seq = readInt(src, ip);
+      int h = hash(seq);
+      int ref = table[h] - 1;
+      table[h] = ip + 1;
+      if (ref < 0 || ip - ref > MAX_DISTANCE || readInt(src, ref) != seq) {
+        ip++;
+        continue;
+      }
+      // Extend match backwards
+      while (ip > anchor && ref > srcOffset && src[ip - 1] == src[ref - 1]) {
+        ip--;
+        ref--;
+      }
+      // Extend match forward
+      int mIp = ip + MIN_MATCH;
+      int mRef = ref + MIN_MATCH;
+      while (mIp < matchLimit && src[mIp] == src[mRef]) {
+        mIp++;
+        mRef++;
+      }
+      int litLen = ip - anchor;
+      int matchLen = mIp - ip - MIN_MATCH;
+      if (op + 1 + litLen / 255 + 1 + litLen + 2 + matchLen / 255 + 1 > dstEnd) {
+        return -1;
+      }
+      int tokenPos = op++;
+      int token;
+      if (litLen >= RUN_MASK) {
+        token = RUN_MASK << 4;
+        op = writeLength(dst, op, litLen - RUN_MASK);
+      } else {
+        token = litLen << 4;
+      }
+      System.arraycopy(src, anchor, dst, op, litLen);
+      op += litLen;
+      int offset = ip - ref;
+      dst[op++] = (byte) offset;
+      dst[op++] = (byte) (offset >>> 8);
+      if (matchLen >= RUN_MASK) {
+        token |= RUN_MASK;
+        op = writeLength(dst, op, matchLen - RUN_MASK);
+      } else {
+        token |= matchLen;
+      }
+      dst[tokenPos] = (byte) token;
+      ip = mIp;
+      anchor = ip;
+    }
+    // Last literals
+    int litLen = srcEnd - anchor;
+    if (op + 1 + litLen / 255 + 1 + litLen > dstEnd) {
+      return -1;
+    }
+    if (litLen >= RUN_MASK) {
+      dst[op++] = (byte) (RUN_MASK << 4);
+      op = writeLength(dst, op, litLen - RUN_MASK);
+    } else {
+      dst[op++] = (byte) (litLen << 4);
+    }
+    System.arraycopy(src, anchor, dst, op, litLen);
+    op += litLen;
+    return op - dstOffset;
+  }
+
+  @Override
+  protected void doDecompress(byte[] dict, byte[] src, int srcOffset, int len, byte[] dst,
+      int dstOffset, int rawLen) {
+    int srcEnd = srcOffset + len;
+    int dstEnd = dstOffset + rawLen;
+    int ip = srcOffset;
+    int op = dstOffset;
+    while (true) {
+      int token = src[ip++] & 0xff;
+      // Literals
+      int litLen = token >>> 4;
+      if (litLen == RUN_MASK) {
+        int b;
+        do {
+          b = src[ip++] & 0xff;
+          litLen += b;
+        } while (b == 255);
+      }
+      if (ip + litLen > srcEnd || op + litLen > dstEnd) {
+        throw new IllegalArgumentException("Corrupted LZ4 block");
+      }
+      System.arraycopy(src, ip, dst, op, litLen);
+      ip += litLen;
+      op += litLen;
+      if (ip >= srcEnd) {
+        break;
+      }
+      // Match
+      int offset = (src[ip] & 0xff) | ((src[ip + 1] & 0xff) << 8);
+      ip += 2;
+      int ref = op - offset;
+      if (offset == 0 || ref < dstOffset) {
+        throw new IllegalArgumentException("Corrupted LZ4 block");
+      }
+      int matchLen = token & RUN_MASK;
+      if (matchLen == RUN_MASK) {
+        int b;
+        do {
+          b = src[ip++] & 0xff;
+          matchLen += b;
+        } while (b == 255);
+      }
+      matchLen += MIN_MATCH;
+      if (op + matchLen > dstEnd) {
+        throw new IllegalArgumentException("Corrupted LZ4 block");
+      }
+      if (offset >= matchLen) {
+        System.arraycopy(dst, ref, dst, op, matchLen);
+        op += matchLen;
+      } else {
+        // Overlapping copy
+        for (int i = 0; i < matchLen; i++) {
+          dst[op++] = dst[ref++];
+        }
+      }
+    }
+    if (op != dstEnd) {
+      throw new IllegalArgumentException("Corrupted LZ4 block");
+    }
+  }
+
+  private static int writeLength(byte[] dst, int op, int len) {
+    while (len >= 255) {
+      dst[op++] = (byte) 255;
+      len -= 255;
+    }
+    dst[op++] = (byte) len;
+    return op;
+  }
+
+  private static int readInt(byte[] buf, int off) {
+    return (buf[off] & 0xff) | ((buf[off + 1] & 0xff) << 8) | ((buf[off + 2] & 0xff) << 16)
+        | ((buf[off + 3] & 0xff) << 24);
+  }
+
+  private static int hash(int seq) {
+    return (seq * -1640531535) >>> (32 - HASH_LOG);
+  }
+}
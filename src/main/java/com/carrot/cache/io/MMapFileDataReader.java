@@ -0,0 +1,205 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.carrot.cache.io;
+
+import static com.carrot.cache.util.Utils.getItemSize;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import com.carrot.cache.io.FileIOEngine.MappedFile;
+import com.carrot.cache.util.UnsafeAccess;
+import com.carrot.cache.util.Utils;
+
+/**
+ * File data reader (for the BaseDataWriter format) which maps sealed data segment files
+ * into memory (read - only) and reads cached items directly from a mapping: item location and
+ * key comparison are done in place, only a found item is copied to a caller's buffer.
+ * Segment scanner works on a mapped memory as well.
+ *
+ * Mappings are created on a first access and released by FileIOEngine when a data segment
+ * is disposed. If memory mapping is not available, reader falls back to file reads.
+ */
+public class MMapFileDataReader extends BaseFileDataReader {
+
+  /* Minimum number of bytes between item and the end of a segment for in place access */
+  private final static int MIN_TAIL_SIZE = 8;
+
+  @Override
+  public int read(
+      IOEngine engine,
+      byte[] key,
+      int keyOffset,
+      int keySize,
+      int sid,
+      long offset,
+      int size,
+      byte[] buffer,
+      int bufOffset)
+      throws IOException {
+    MappedFile mf = getMappedFile(engine, sid, offset);
+    if (mf == null) {
+      return super.read(engine, key, keyOffset, keySize, sid, offset, size, buffer, bufOffset);
+    }
+    long ptr = mf.getDataAddress() + offset;
+    size = getItemSize(ptr);
+    if (offset + size > mf.getDataSize()) {
+      // Rare situation - wrong segment - hash collision
+      return IOEngine.NOT_FOUND;
+    }
+    if (Utils.compareTo(key, keyOffset, keySize, keyAddress(ptr), Utils.readUVInt(ptr)) != 0) {
+      return IOEngine.NOT_FOUND;
+    }
+    if (size > buffer.length - bufOffset) {
+      return size;
+    }
+    UnsafeAccess.copy(ptr, buffer, bufOffset, size);
+    return size;
+  }
+
+  @Override
+  public int read(
+      IOEngine engine,
+      byte[] key,
+      int keyOffset,
+      int keySize,
+      int sid,
+      long offset,
+      int size,
+      ByteBuffer buffer)
+      throws IOException {
+    MappedFile mf = getMappedFile(engine, sid, offset);
+    if (mf == null) {
+      return super.read(engine, key, keyOffset, keySize, sid, offset, size, buffer);
+    }
+    long ptr = mf.getDataAddress() + offset;
+    size = getItemSize(ptr);
+    if (offset + size > mf.getDataSize()) {
+      // Rare situation - wrong segment - hash collision
+      return IOEngine.NOT_FOUND;
+    }
+    if (Utils.compareTo(key, keyOffset, keySize, keyAddress(ptr), Utils.readUVInt(ptr)) != 0) {
+      return IOEngine.NOT_FOUND;
+    }
+    if (size > buffer.remaining()) {
+      return size;
+    }
+    int pos = buffer.position();
+    UnsafeAccess.copy(ptr, buffer, size);
+    buffer.position(pos);
+    return size;
+  }
+
+  @Override
+  public int read(
+      IOEngine engine,
+      long keyPtr,
+      int keySize,
+      int sid,
+      long offset,
+      int size,
+      byte[] buffer,
+      int bufOffset)
+      throws IOException {
+    MappedFile mf = getMappedFile(engine, sid, offset);
+    if (mf == null) {
+      return super.read(engine, keyPtr, keySize, sid, offset, size, buffer, bufOffset);
+    }
+    long ptr = mf.getDataAddress() + offset;
+    size = getItemSize(ptr);
+    if (offset + size > mf.getDataSize()) {
+      // Rare situation - wrong segment - hash collision
+      return IOEngine.NOT_FOUND;
+    }
+    if (Utils.compareTo(keyPtr, keySize, keyAddress(ptr), Utils.readUVInt(ptr)) != 0) {
+      return IOEngine.NOT_FOUND;
+    }
+    if (size > buffer.length - bufOffset) {
+      return size;
+    }
+    UnsafeAccess.copy(ptr, buffer, bufOffset, size);
+    return size;
+  }
+
+  @Override
+  public int read(
+      IOEngine engine, long keyPtr, int keySize, int sid, long offset, int size, ByteBuffer buffer)
+      throws IOException {
+    MappedFile mf = getMappedFile(engine, sid, offset);
+    if (mf == null) {
+      return super.read(engine, keyPtr, keySize, sid, offset, size, buffer);
+    }
+    long ptr = mf.getDataAddress() + offset;
+    size = getItemSize(ptr);
+    if (offset + size > mf.getDataSize()) {
+      // Rare situation - wrong segment - hash collision
+      return IOEngine.NOT_FOUND;
+    }
+    if (Utils.compareTo(keyPtr, keySize, keyAddress(ptr), Utils.readUVInt(ptr)) != 0) {
+      return IOEngine.NOT_FOUND;
+    }
+    if (size > buffer.remaining()) {
+      return size;
+    }
+    int pos = buffer.position();
+    UnsafeAccess.copy(ptr, buffer, size);
+    buffer.position(pos);
+    return size;
+  }
+
+  @Override
+  public SegmentScanner getSegmentScanner(IOEngine engine, Segment s) throws IOException {
+    s.readLock();
+    try {
+      MappedFile mf = ((FileIOEngine) engine).getMappedFile(s.getId());
+      if (mf == null) {
+        return super.getSegmentScanner(engine, s);
+      }
+      return new BaseMemorySegmentScanner(s, mf.getDataAddress());
+    } finally {
+      s.readUnlock();
+    }
+  }
+
+  /**
+   * Get mapping of a segment file for in place access of an item at a given offset.
+   * Segment read lock is already held by this thread
+   * @param engine I/O engine
+   * @param sid segment id
+   * @param offset item offset
+   * @return mapped file or null (use file reads)
+   * @throws IOException
+   */
+  private MappedFile getMappedFile(IOEngine engine, int sid, long offset) throws IOException {
+    MappedFile mf = ((FileIOEngine) engine).getMappedFile(sid);
+    if (mf == null || offset < 0 || offset + MIN_TAIL_SIZE > mf.getDataSize()) {
+      // Item sizes can not be safely decoded at the very end of a mapping
+      return null;
+    }
+    return mf;
+  }
+
+  /**
+   * Get key address of an item
+   * @param ptr item address
+   * @return key address
+   */
+  private static long keyAddress(long ptr) {
+    int kSize = Utils.readUVInt(ptr);
+    int off = Utils.sizeUVInt(kSize);
+    int vSize = Utils.readUVInt(ptr + off);
+    return ptr + off + Utils.sizeUVInt(vSize);
+  }
+}
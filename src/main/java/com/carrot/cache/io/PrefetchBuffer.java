@@ -18,13 +18,86 @@
 package com.carrot.cache.io;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.carrot.cache.util.IOUtils;
 import com.carrot.cache.util.Utils;
+
+/**
+ * Prefetch buffer for sequential scans of data segments in a file.
+ * 
+ * When read - ahead is enabled, the next chunks of a segment are read in the background
+ * (positional reads into pooled direct buffers) while the current buffer is being parsed,
+ * so scans overlap CPU and I/O. Chunk size adapts to the measured read throughput:
+ * a chunk is sized to be read in about TARGET_READ_TIME_NS.
+ */
 //FIXME: handling last sK-V in a file which is less than 6 bytes total
 public final class PrefetchBuffer {
+  
+  /* Minimum read - ahead chunk size */
+  static final int MIN_CHUNK_SIZE = 64 * 1024;
+  
+  /* Target time of a read - ahead chunk read in ns */
+  static final long TARGET_READ_TIME_NS = 10_000_000;
+  
+  /* Maximum number of pooled buffers per size */
+  private static final int MAX_POOLED_BUFFERS = 64;
+  
+  /* Pooled direct buffers by size */
+  private static final ConcurrentHashMap<Integer, Queue<ByteBuffer>> bufferPool = 
+      new ConcurrentHashMap<>();
+  
+  /* Measured read throughput in bytes per ms (0 - not measured yet) */
+  private static volatile double readThroughput;
+  
+  /* Read - ahead threads */
+  private static final ExecutorService readers = Executors.newCachedThreadPool(
+    new ReaderThreadFactory());
+  
+  /* Read - ahead thread factory (daemon threads) */
+  private static final class ReaderThreadFactory implements ThreadFactory {
+    private final AtomicInteger count = new AtomicInteger();
+    
+    @Override
+    public Thread newThread(Runnable r) {
+      Thread t = new Thread(r, "prefetch-reader-" + count.getAndIncrement());
+      t.setDaemon(true);
+      return t;
+    }
+  }
+  
+  /* Read - ahead chunk */
+  private static final class Chunk {
+    /* Chunk offset (relative to the segment's base offset) */
+    final long offset;
+    /* Chunk length */
+    final int length;
+    /* Data buffer */
+    final ByteBuffer buffer;
+    /* Number of bytes consumed */
+    int consumed;
+    /* Pending read */
+    Future<?> read;
+    
+    Chunk(long offset, int length, ByteBuffer buffer) {
+      this.offset = offset;
+      this.length = length;
+      this.buffer = buffer;
+    }
+  }
+  
   /*
    * File to prefetch - all operations on file must be 
    * synchronized
@@ -38,6 +111,10 @@ public final class PrefetchBuffer {
    * File length
    */
   private long fileLength = 0;
+  /*
+   * Segment's base offset in a file (segment slot in a shared storage file)
+   */
+  private long baseOffset = 0;
   /*
    * Prefetch buffer data
    */
@@ -59,6 +136,21 @@ public final class PrefetchBuffer {
   
   private int valueLength = -1;
   
+  /*
+   * Maximum number of read - ahead chunks (0 - read - ahead is disabled)
+   */
+  private int readAhead;
+  
+  /*
+   * Read - ahead chunks, ordered by offset
+   */
+  private ArrayDeque<Chunk> chunks;
+  
+  /*
+   * Offset of the end of the last read - ahead chunk
+   */
+  private long readAheadOffset;
+  
   /**
    * Constructor
    * @param file file 
@@ -66,13 +158,46 @@ public final class PrefetchBuffer {
    * @throws IOException
    */
   public PrefetchBuffer(RandomAccessFile file, int bufferSize) throws IOException {
+    this(file, 0, file.length(), bufferSize);
+  }
+  
+  /**
+   * Constructor for a segment which starts at a given offset in a file
+   * @param file file
+   * @param baseOffset segment's offset in a file
+   * @param length segment's length (including meta)
+   * @param bufferSize buffer size
+   * @throws IOException
+   */
+  public PrefetchBuffer(RandomAccessFile file, long baseOffset, long length, int bufferSize)
+      throws IOException {
+    this(file, baseOffset, length, bufferSize, 0);
+  }
+  
+  /**
+   * Constructor for a segment which starts at a given offset in a file
+   * @param file file
+   * @param baseOffset segment's offset in a file
+   * @param length segment's length (including meta)
+   * @param bufferSize buffer size
+   * @param readAhead maximum number of chunks read in the background (0 - disabled)
+   * @throws IOException
+   */
+  public PrefetchBuffer(RandomAccessFile file, long baseOffset, long length, int bufferSize,
+      int readAhead) throws IOException {
     this.file = file;
+    this.baseOffset = baseOffset;
     this.bufferSize = bufferSize;
     this.buffer = new byte[bufferSize];
-    this.fileLength = this.file.length();
-    this.bufferDataSize = (int) Math.min(bufferSize, file.length());
+    this.fileLength = length;
+    this.bufferDataSize = (int) Math.min(bufferSize, length);
     // we need this for prefetch
     this.bufferOffset = this.bufferDataSize;
+    this.readAhead = Math.max(0, readAhead);
+    if (this.readAhead > 0) {
+      this.chunks = new ArrayDeque<Chunk>(this.readAhead);
+      this.readAheadOffset = this.fileOffset;
+    }
     prefetch();
   }
   /**
@@ -137,16 +262,180 @@ public final class PrefetchBuffer {
   }
   
   private void prefetch() throws IOException {
+    int remaining = bufferDataSize - bufferOffset;
     int toRead = (int) Math.min(this.bufferOffset, 
-      this.fileLength - this.fileOffset - (bufferDataSize - bufferOffset)); 
-    System.arraycopy(buffer, bufferOffset, buffer, 0, bufferDataSize - bufferOffset);
-    
-    IOUtils.readFully(file, fileOffset + (bufferDataSize - bufferOffset), 
-      buffer, bufferDataSize - bufferOffset, toRead);
-    this.bufferDataSize = this.bufferSize - this.bufferOffset + toRead;
+      this.fileLength - this.fileOffset - remaining); 
+    System.arraycopy(buffer, bufferOffset, buffer, 0, remaining);
+    read(fileOffset + remaining, buffer, remaining, toRead);
+    this.bufferDataSize = remaining + toRead;
     this.bufferOffset = 0;
   }
   
+  /**
+   * Read data, which follows the data in the prefetch buffer. Data is taken from
+   * read - ahead chunks (if enabled), read - ahead is continued in the background
+   * @param offset offset (relative to the segment's base offset)
+   * @param buf buffer
+   * @param off offset in the buffer
+   * @param len number of bytes to read
+   * @throws IOException
+   */
+  private void read(long offset, byte[] buf, int off, int len) throws IOException {
+    if (len <= 0) {
+      return;
+    }
+    if (this.readAhead == 0) {
+      IOUtils.readFully(file, baseOffset + offset, buf, off, len);
+      return;
+    }
+    Chunk first = this.chunks.peekFirst();
+    long expected = first != null? first.offset + first.consumed: this.readAheadOffset;
+    if (expected != offset) {
+      // Not a sequential read, restart read - ahead
+      releaseChunks();
+      this.readAheadOffset = offset;
+    }
+    while (len > 0) {
+      if (this.chunks.isEmpty()) {
+        readAhead();
+      }
+      Chunk c = this.chunks.peekFirst();
+      waitFor(c);
+      int n = Math.min(len, c.length - c.consumed);
+      ByteBuffer b = c.buffer;
+      b.position(c.consumed);
+      b.get(buf, off, n);
+      c.consumed += n;
+      off += n;
+      len -= n;
+      if (c.consumed == c.length) {
+        this.chunks.pollFirst();
+        release(b);
+      }
+    }
+    readAhead();
+  }
+  
+  /**
+   * Start background reads of the next chunks
+   */
+  private void readAhead() {
+    while (this.chunks.size() < this.readAhead && this.readAheadOffset < this.fileLength) {
+      int size = (int) Math.min(getChunkSize(this.bufferSize), 
+        this.fileLength - this.readAheadOffset);
+      final Chunk c = new Chunk(this.readAheadOffset, size, allocate(size));
+      final long position = this.baseOffset + c.offset;
+      c.read = readers.submit(() -> {
+        long start = System.nanoTime();
+        IOUtils.readFully(this.file, position, c.buffer, c.length);
+        updateThroughput(c.length, System.nanoTime() - start);
+        return null;
+      });
+      this.chunks.addLast(c);
+      this.readAheadOffset += size;
+    }
+  }
+  
+  /**
+   * Wait for a chunk's background read
+   * @param c chunk
+   * @throws IOException
+   */
+  private void waitFor(Chunk c) throws IOException {
+    if (c.read == null) {
+      return;
+    }
+    try {
+      c.read.get();
+      c.read = null;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException();
+    } catch (ExecutionException e) {
+      Throwable t = e.getCause();
+      throw t instanceof IOException? (IOException) t: new IOException(t);
+    }
+  }
+  
+  /**
+   * Wait for background reads and release read - ahead chunks
+   */
+  private void releaseChunks() {
+    Chunk c;
+    while ((c = this.chunks.pollFirst()) != null) {
+      try {
+        waitFor(c);
+      } catch (IOException e) {
+        // Chunk is discarded
+      }
+      release(c.buffer);
+    }
+  }
+  
+  /**
+   * Close prefetch buffer: waits for background reads to complete
+   * (file can be closed after that) and releases read - ahead buffers
+   */
+  public void close() {
+    if (this.chunks != null) {
+      releaseChunks();
+      this.readAheadOffset = this.fileLength;
+    }
+  }
+  
+  /**
+   * Get read - ahead chunk size, which depends on a measured read throughput
+   * @param maxSize maximum chunk size
+   * @return chunk size (power of 2 or maximum size)
+   */
+  static int getChunkSize(int maxSize) {
+    double throughput = readThroughput;
+    if (throughput == 0) {
+      return Math.max(MIN_CHUNK_SIZE, maxSize);
+    }
+    long size = Math.max(MIN_CHUNK_SIZE, 
+      Long.highestOneBit((long) (throughput * TARGET_READ_TIME_NS / 1_000_000)));
+    return (int) Math.min(size, Math.max(MIN_CHUNK_SIZE, maxSize));
+  }
+  
+  /**
+   * Update measured read throughput (exponential moving average)
+   * @param bytes bytes read
+   * @param time read time in ns
+   */
+  static void updateThroughput(long bytes, long time) {
+    double t = (double) bytes * 1_000_000 / Math.max(1, time);
+    double current = readThroughput;
+    readThroughput = current == 0? t: 0.8 * current + 0.2 * t;
+  }
+  
+  /**
+   * Get measured read throughput
+   * @return throughput in bytes per ms (0 - not measured yet)
+   */
+  static double getReadThroughput() {
+    return readThroughput;
+  }
+  
+  private static ByteBuffer allocate(int size) {
+    Queue<ByteBuffer> pool = bufferPool.get(size);
+    ByteBuffer b = pool == null? null: pool.poll();
+    if (b == null) {
+      b = ByteBuffer.allocateDirect(size);
+    }
+    b.clear();
+    return b;
+  }
+  
+  private static void release(ByteBuffer b) {
+    Queue<ByteBuffer> pool = 
+        bufferPool.computeIfAbsent(b.capacity(), k -> new ConcurrentLinkedQueue<ByteBuffer>());
+    // Racy check is fine here
+    if (pool.size() < MAX_POOLED_BUFFERS) {
+      pool.offer(b);
+    }
+  }
+  
   /**
    * Get file offset
    * @return file offset
@@ -23,6 +23,8 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
@@ -31,6 +33,7 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import com.carrot.cache.util.CacheConfig;
+import com.carrot.cache.util.IOUtils;
 import com.carrot.cache.util.Persistent;
 import com.carrot.cache.util.RollingWindowCounter;
 import com.carrot.cache.util.UnsafeAccess;
@@ -105,6 +108,9 @@ public class Segment implements Persistent {
     /* Segment block data size - to support block - based writers*/
     private AtomicLong blockDataSize = new AtomicLong(0);
     
+    /* Compression dictionary id (0 - no dictionary) */
+    private volatile int dictionaryId;
+    
     /* Is this segment off-heap. Every segment starts as offheap, but FileIOEngine it will be converted to a file*/
     private volatile boolean offheap;
     
@@ -232,6 +238,22 @@ public class Segment implements Persistent {
       return this.blockDataSize.get();
     }
     
+    /**
+     * Get compression dictionary id
+     * @return dictionary id (0 - no dictionary)
+     */
+    public int getDictionaryId() {
+      return this.dictionaryId;
+    }
+    
+    /**
+     * Sets compression dictionary id
+     * @param id dictionary id
+     */
+    public void setDictionaryId(int id) {
+      this.dictionaryId = id;
+    }
+    
     /**
      * Sets segment block data size
      * @param size segment data size
@@ -326,6 +348,23 @@ public class Segment implements Persistent {
     public long incrementDataSize(int incr) {
       return this.dataSize.addAndGet(incr);
     }
+    
+    /**
+     * Reserve space for a new data atomically
+     * @param incr size to reserve
+     * @return offset of a reserved space or -1 (not enough space)
+     */
+    public long reserveDataSize(int incr) {
+      while (true) {
+        long current = this.dataSize.get();
+        if (current + incr > this.size) {
+          return -1;
+        }
+        if (this.dataSize.compareAndSet(current, current + incr)) {
+          return current;
+        }
+      }
+    }
      
     /**
      * Increment block data size
@@ -404,6 +443,8 @@ public class Segment implements Persistent {
         dos.writeBoolean(isOffheap());
         // Block data size
         dos.writeLong(this.blockDataSize.get());
+        // Compression dictionary id
+        dos.writeInt(this.dictionaryId);
         // Rolling Window Counter
         this.counter.save(dos);
         dos.flush();
@@ -424,6 +465,7 @@ public class Segment implements Persistent {
       this.totalEvictedItems.set(dis.readInt());
       this.offheap = dis.readBoolean();
       this.blockDataSize.set(dis.readLong());
+      this.dictionaryId = dis.readInt();
       this.counter = new RollingWindowCounter();
       this.counter.load(dis);
     }
@@ -445,7 +487,7 @@ public class Segment implements Persistent {
   
   /**
    * Write lock prevents multiple threads from appending data
-   * concurrently
+   * concurrently (for data writers which do not support lock - free appends)
    */
   private ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
   
@@ -455,9 +497,21 @@ public class Segment implements Persistent {
   /* Data writer */
   DataWriter dataWriter;
   
+  /* 
+   * Number of lock - free appends in progress, the sign bit is set
+   * when segment is closed for new lock - free appends
+   */
+  private final AtomicInteger appendsInProgress = new AtomicInteger();
+  
   /* Is valid segment */
   private volatile boolean valid = true;
   
+  /* Block table of a compressed segment, which is stored in a file (loaded on demand) */
+  private volatile int[] blockTable;
+  
+  /* Segment is claimed by a scavenger worker */
+  private volatile boolean recycling;
+  
   /* Save to file in progress - TESTs only*/
   private volatile boolean sip = false;
   
@@ -531,6 +585,41 @@ public class Segment implements Persistent {
    */
   public void reuse(int id, int rank, long creationTime) {
     this.info = new Info(id, rank, creationTime);
+    this.appendsInProgress.set(0);
+    this.blockTable = null;
+    this.recycling = false;
+  }
+  
+  /**
+   * Is segment claimed for recycling by a scavenger worker
+   * @return true or false
+   */
+  public boolean isRecycling() {
+    return this.recycling;
+  }
+  
+  /**
+   * Claim (or release) segment for recycling
+   * @param b true - claim, false - release
+   */
+  public void setRecycling(boolean b) {
+    this.recycling = b;
+  }
+  
+  /**
+   * Get block table of a compressed segment
+   * @return block table (block table entry per block) or null (not loaded yet)
+   */
+  public int[] getBlockTable() {
+    return this.blockTable;
+  }
+  
+  /**
+   * Set block table of a compressed segment
+   * @param table block table
+   */
+  public void setBlockTable(int[] table) {
+    this.blockTable = table;
   }
   
   /**
@@ -583,6 +672,15 @@ public class Segment implements Persistent {
   public long incrDataSize(int incr) {
     return this.info.incrementDataSize(incr);
   }
+  
+  /**
+   * Reserve space for a new entry (lock - free data writers)
+   * @param size size to reserve
+   * @return offset of a reserved space in this segment or -1 (segment is full)
+   */
+  public long reserveDataSize(int size) {
+    return this.info.reserveDataSize(size);
+  }
    
   /**
    * Increment block data size
@@ -663,9 +761,47 @@ public class Segment implements Persistent {
    * Seal segment
    */
   public void seal() {
+    closeAppends();
     this.info.setSealed(true);
   }
   
+  /**
+   * Close segment for new lock - free appends and wait until 
+   * all appends in progress complete
+   */
+  public void closeAppends() {
+    int v = this.appendsInProgress.get();
+    while (v >= 0 && !this.appendsInProgress.compareAndSet(v, v | Integer.MIN_VALUE)) {
+      v = this.appendsInProgress.get();
+    }
+    while (this.appendsInProgress.get() != Integer.MIN_VALUE) {
+      Thread.onSpinWait();
+    }
+  }
+  
+  /**
+   * Register new lock - free append
+   * @return true on success, false - segment is closed for appends
+   */
+  private boolean startAppend() {
+    while (true) {
+      int v = this.appendsInProgress.get();
+      if (v < 0) {
+        return false;
+      }
+      if (this.appendsInProgress.compareAndSet(v, v + 1)) {
+        return true;
+      }
+    }
+  }
+  
+  /**
+   * Unregister lock - free append
+   */
+  private void finishAppend() {
+    this.appendsInProgress.decrementAndGet();
+  }
+  
   /**
    * Get segment's address (if in memory)
    * @return segment address
@@ -710,6 +846,22 @@ public class Segment implements Persistent {
     return this.info.getSegmentBlockDataSize();
   }
   
+  /**
+   * Get compression dictionary id of this segment
+   * @return dictionary id (0 - no dictionary)
+   */
+  public int getDictionaryId() {
+    return this.info.getDictionaryId();
+  }
+  
+  /**
+   * Sets compression dictionary id of this segment
+   * @param id dictionary id
+   */
+  public void setDictionaryId(int id) {
+    this.info.setDictionaryId(id);
+  }
+  
   /**
    * Get total number of cached items in this segment 
    * @return number
@@ -810,6 +962,25 @@ public class Segment implements Persistent {
       //TODO: check return value
       return -1;
     }
+    if (this.dataWriter.isLockFreeAppendSupported()) {
+      // Space is reserved by data writer, copy data w/o locking
+      if (!startAppend()) {
+        return -1;
+      }
+      try {
+        if (isSealed()) {
+          return -1;
+        }
+        long offset = this.dataWriter.append(this, key, keyOffset, keySize, item, itemOffset, itemSize);
+        if (offset < 0) {
+          return -1;
+        }
+        updateStats(expire);
+        return offset;
+      } finally {
+        finishAppend();
+      }
+    }
     try {
       writeLock();
       if (isSealed()) {
@@ -819,11 +990,7 @@ public class Segment implements Persistent {
       if (offset < 0) {
         return -1;
       }
-      processExpire(expire);
-      incrNumEntries(1);
-      if (expire > 0) {
-        incrExpectedToExpire(1);
-      }
+      updateStats(expire);
       return offset/* offset in a segment*/;
     } finally {
       writeUnlock();
@@ -878,6 +1045,25 @@ public class Segment implements Persistent {
       //TODO: check return value
       return -1;
     }
+    if (this.dataWriter.isLockFreeAppendSupported()) {
+      // Space is reserved by data writer, copy data w/o locking
+      if (!startAppend()) {
+        return -1;
+      }
+      try {
+        if (isSealed()) {
+          return -1;
+        }
+        long offset = this.dataWriter.append(this, keyPtr, keySize, itemPtr, itemSize);
+        if (offset < 0) {
+          return -1;
+        }
+        updateStats(expire);
+        return offset;
+      } finally {
+        finishAppend();
+      }
+    }
     try {
       writeLock();
       if (isSealed()) {
@@ -887,17 +1073,25 @@ public class Segment implements Persistent {
       if (offset < 0) {
         return -1;
       }
-      processExpire(expire);
       // data writer MUST set dataSize in a segment
-      incrNumEntries(1);
-      if (expire > 0) {
-        incrExpectedToExpire(1);
-      }
+      updateStats(expire);
       return offset;
     } finally {
       writeUnlock();
     }
   }
+  
+  /**
+   * Update segment's statistics after a new item was appended
+   * @param expire item expiration time
+   */
+  private void updateStats(long expire) {
+    processExpire(expire);
+    incrNumEntries(1);
+    if (expire > 0) {
+      incrExpectedToExpire(1);
+    }
+  }
 
   /**
    * Update segment's statistics
@@ -966,6 +1160,53 @@ public class Segment implements Persistent {
     }
   }
 
+  /**
+   * Save segment to a file at a given position using positional writes. Format is the same
+   * as for {@link #save(RandomAccessFile)}, but data is padded with zeros up to 
+   * a multiple of alignment, so the method can be used with files opened for direct 
+   * I/O (O_DIRECT) as well
+   * @param fc file channel
+   * @param position file position (multiple of alignment)
+   * @param alignment I/O alignment (file system block size)
+   * @throws IOException
+   */
+  public void save(FileChannel fc, long position, int alignment) throws IOException {
+    try {
+      readLock();
+      long size = size();
+      long total = IOUtils.alignUp(size + META_SIZE, alignment);
+      ByteBuffer buffer = IOUtils.getAlignedBuffer((int) Math.min(total, 1 << 20), alignment);
+      int bufSize = buffer.capacity();
+      long bufPtr = UnsafeAccess.address(buffer);
+      long written = 0;
+      while (written < total) {
+        int toWrite = (int) Math.min(bufSize, total - written);
+        UnsafeAccess.setMemory(bufPtr, toWrite, (byte) 0);
+        int off = 0;
+        if (written == 0) {
+          // Write segment size (big endian as RandomAccessFile does)
+          buffer.putLong(0, size);
+          off = META_SIZE;
+        }
+        // Segment data offset and size to copy
+        long dataOffset = written + off - META_SIZE;
+        long toCopy = Math.max(0, Math.min(toWrite - off, size - dataOffset));
+        if (toCopy > 0) {
+          UnsafeAccess.copy(this.address + dataOffset, bufPtr + off, toCopy);
+        }
+        buffer.clear();
+        buffer.limit(toWrite);
+        long pos = position + written;
+        while (buffer.hasRemaining()) {
+          pos += fc.write(buffer, pos);
+        }
+        written += toWrite;
+      }
+    } finally {
+      readUnlock();
+    }
+  }
+
   public void save(RandomAccessFile file) throws IOException {
     try {
       readLock();
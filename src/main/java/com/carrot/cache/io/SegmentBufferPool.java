@@ -0,0 +1,158 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.carrot.cache.io;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.carrot.cache.util.UnsafeAccess;
+
+/**
+ * Bounded pool of segment - sized off-heap memory buffers. Buffers of flushed (or recycled)
+ * RAM segments are returned to the pool and reused for new RAM segments. Reused buffers
+ * are not cleared: data writers must not rely on a zeroed memory beyond
+ * the data they wrote.
+ *
+ * Only a new buffer (pool is empty) is allocated and cleared. Buffers which do not fit into
+ * the pool (maximum pooled memory is reached) are released.
+ */
+public class SegmentBufferPool {
+
+  /* Buffer size */
+  private final long bufferSize;
+
+  /* Pooled buffers (stack) */
+  private final long[] buffers;
+
+  /* Number of pooled buffers */
+  private int size;
+
+  /* Number of allocations served by the pool */
+  private final AtomicLong hits = new AtomicLong();
+
+  /* Number of allocations of new buffers */
+  private final AtomicLong misses = new AtomicLong();
+
+  /* Number of buffers released because the pool was full */
+  private final AtomicLong overflows = new AtomicLong();
+
+  /**
+   * Constructor
+   * @param bufferSize buffer (segment) size
+   * @param maxPoolSize maximum memory to keep in the pool (bytes)
+   */
+  public SegmentBufferPool(long bufferSize, long maxPoolSize) {
+    this.bufferSize = bufferSize;
+    this.buffers = new long[(int) Math.max(0, maxPoolSize / bufferSize)];
+  }
+
+  /**
+   * Get buffer from the pool or allocate a new one (zeroed)
+   * @return buffer address
+   */
+  public long allocate() {
+    synchronized (this) {
+      if (this.size > 0) {
+        long ptr = this.buffers[--this.size];
+        this.buffers[this.size] = 0;
+        this.hits.incrementAndGet();
+        return ptr;
+      }
+    }
+    this.misses.incrementAndGet();
+    return UnsafeAccess.mallocZeroed(this.bufferSize);
+  }
+
+  /**
+   * Return buffer to the pool, buffer is released if the pool is full
+   * @param ptr buffer address
+   */
+  public void release(long ptr) {
+    synchronized (this) {
+      if (this.size < this.buffers.length) {
+        this.buffers[this.size++] = ptr;
+        return;
+      }
+    }
+    this.overflows.incrementAndGet();
+    UnsafeAccess.free(ptr);
+  }
+
+  /**
+   * Release all pooled buffers
+   */
+  public synchronized void dispose() {
+    for (int i = 0; i < this.size; i++) {
+      UnsafeAccess.free(this.buffers[i]);
+      this.buffers[i] = 0;
+    }
+    this.size = 0;
+  }
+
+  /**
+   * Get buffer size
+   * @return buffer size
+   */
+  public long getBufferSize() {
+    return this.bufferSize;
+  }
+
+  /**
+   * Get maximum number of pooled buffers
+   * @return maximum number of pooled buffers
+   */
+  public int getMaxPooledBuffers() {
+    return this.buffers.length;
+  }
+
+  /**
+   * Get number of pooled buffers
+   * @return number of pooled buffers
+   */
+  public synchronized int getPooledBuffers() {
+    return this.size;
+  }
+
+  /**
+   * Get pooled memory size
+   * @return pooled memory size in bytes
+   */
+  public long getPooledSize() {
+    return getPooledBuffers() * this.bufferSize;
+  }
+
+  /**
+   * Get number of allocations served by the pool
+   * @return number of pool hits
+   */
+  public long getHits() {
+    return this.hits.get();
+  }
+
+  /**
+   * Get number of new buffer allocations
+   * @return number of pool misses
+   */
+  public long getMisses() {
+    return this.misses.get();
+  }
+
+  /**
+   * Get number of buffers released because the pool was full
+   * @return number of overflows
+   */
+  public long getOverflows() {
+    return this.overflows.get();
+  }
+}
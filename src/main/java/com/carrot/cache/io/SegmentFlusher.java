@@ -0,0 +1,307 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.carrot.cache.io;
+
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Segment flush pipeline: a fixed pool of flusher threads serving a bounded queue
+ * of sealed data segments. When the queue is full, producers (writers which seal segments)
+ * block until a flusher thread takes a segment from the queue (backpressure).
+ *
+ * Flusher collects metrics: queue depth, flush latency, bytes flushed (and throughput)
+ * and time producers spent blocked.
+ */
+public class SegmentFlusher {
+  /** Logger */
+  private static final Logger LOG = LogManager.getLogger(SegmentFlusher.class);
+
+  /**
+   * Flush function
+   */
+  public static interface Flush {
+    /**
+     * Flush data segment
+     * @param s data segment
+     * @return number of bytes written
+     * @throws IOException
+     */
+    public long flush(Segment s) throws IOException;
+  }
+
+  /* Poison pill - stops flusher thread */
+  private static final Segment STOP = new Segment();
+
+  /* Flush function */
+  private final Flush flush;
+
+  /* Queue of sealed segments */
+  private final BlockingQueue<Segment> queue;
+
+  /* Flusher threads */
+  private final Thread[] threads;
+
+  /* Number of submitted and not yet completed flushes */
+  private final AtomicLong pending = new AtomicLong();
+
+  /* Number of completed flushes */
+  private final AtomicLong flushes = new AtomicLong();
+
+  /* Number of failed flushes */
+  private final AtomicLong failedFlushes = new AtomicLong();
+
+  /* Total flush time in ns */
+  private final AtomicLong flushTime = new AtomicLong();
+
+  /* Maximum flush time in ns */
+  private final AtomicLong maxFlushTime = new AtomicLong();
+
+  /* Total bytes flushed */
+  private final AtomicLong bytesFlushed = new AtomicLong();
+
+  /* Total time producers spent blocked in ns */
+  private final AtomicLong blockedTime = new AtomicLong();
+
+  /* Number of times producers were blocked */
+  private final AtomicLong blockedCount = new AtomicLong();
+
+  /* Start time in ns */
+  private final long startTime = System.nanoTime();
+
+  /* Is shut down */
+  private volatile boolean shutdown;
+
+  /**
+   * Constructor
+   * @param name flusher name (used in thread names)
+   * @param numThreads number of flusher threads
+   * @param queueSize maximum number of segments waiting to be flushed
+   * @param flush flush function
+   */
+  public SegmentFlusher(String name, int numThreads, int queueSize, Flush flush) {
+    this.flush = flush;
+    this.queue = new ArrayBlockingQueue<Segment>(Math.max(1, queueSize));
+    this.threads = new Thread[Math.max(1, numThreads)];
+    for (int i = 0; i < this.threads.length; i++) {
+      this.threads[i] = new Thread(this::run, "segment-flusher-" + name + "-" + i);
+      this.threads[i].setDaemon(true);
+      this.threads[i].start();
+    }
+  }
+
+  /**
+   * Submit sealed segment for flush, blocks if the flush queue is full
+   * @param s data segment
+   */
+  public void submit(Segment s) {
+    if (this.shutdown) {
+      throw new IllegalStateException("Segment flusher is shut down");
+    }
+    this.pending.incrementAndGet();
+    if (this.queue.offer(s)) {
+      return;
+    }
+    // Backpressure
+    long start = System.nanoTime();
+    boolean interrupted = false;
+    while (true) {
+      try {
+        this.queue.put(s);
+        break;
+      } catch (InterruptedException e) {
+        interrupted = true;
+      }
+    }
+    this.blockedTime.addAndGet(System.nanoTime() - start);
+    this.blockedCount.incrementAndGet();
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Wait until all submitted segments are flushed
+   */
+  public void waitForCompletion() {
+    synchronized (this.pending) {
+      while (this.pending.get() > 0) {
+        try {
+          this.pending.wait(10);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          return;
+        }
+      }
+    }
+  }
+
+  /**
+   * Wait until all submitted segments are flushed and stop flusher threads
+   */
+  public void shutdown() {
+    if (this.shutdown) {
+      return;
+    }
+    waitForCompletion();
+    this.shutdown = true;
+    for (int i = 0; i < this.threads.length; i++) {
+      try {
+        this.queue.put(STOP);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        break;
+      }
+    }
+    for (Thread t: this.threads) {
+      try {
+        t.join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      }
+    }
+  }
+
+  /**
+   * Get number of flusher threads
+   * @return number of threads
+   */
+  public int getNumberOfThreads() {
+    return this.threads.length;
+  }
+
+  /**
+   * Get current flush queue depth
+   * @return number of segments waiting to be flushed
+   */
+  public int getQueueDepth() {
+    return this.queue.size();
+  }
+
+  /**
+   * Get number of submitted and not yet completed flushes
+   * @return number of pending flushes
+   */
+  public long getPendingFlushes() {
+    return this.pending.get();
+  }
+
+  /**
+   * Get number of completed flushes
+   * @return number of flushes
+   */
+  public long getFlushes() {
+    return this.flushes.get();
+  }
+
+  /**
+   * Get number of failed flushes
+   * @return number of failed flushes
+   */
+  public long getFailedFlushes() {
+    return this.failedFlushes.get();
+  }
+
+  /**
+   * Get average flush latency
+   * @return average latency in ns
+   */
+  public long getAverageFlushLatency() {
+    long n = this.flushes.get();
+    return n == 0? 0: this.flushTime.get() / n;
+  }
+
+  /**
+   * Get maximum flush latency
+   * @return maximum latency in ns
+   */
+  public long getMaxFlushLatency() {
+    return this.maxFlushTime.get();
+  }
+
+  /**
+   * Get total number of bytes flushed
+   * @return bytes flushed
+   */
+  public long getBytesFlushed() {
+    return this.bytesFlushed.get();
+  }
+
+  /**
+   * Get average flush throughput since flusher start
+   * @return bytes per second
+   */
+  public long getBytesPerSecond() {
+    long time = System.nanoTime() - this.startTime;
+    return time <= 0? 0: (long) (this.bytesFlushed.get() * 1e9 / time);
+  }
+
+  /**
+   * Get total time producers spent blocked on a full flush queue
+   * @return time in ns
+   */
+  public long getProducersBlockedTime() {
+    return this.blockedTime.get();
+  }
+
+  /**
+   * Get number of times producers were blocked on a full flush queue
+   * @return number of times
+   */
+  public long getProducersBlockedCount() {
+    return this.blockedCount.get();
+  }
+
+  private void run() {
+    while (true) {
+      Segment s;
+      try {
+        s = this.queue.take();
+      } catch (InterruptedException e) {
+        if (this.shutdown) {
+          return;
+        }
+        continue;
+      }
+      if (s == STOP) {
+        return;
+      }
+      long start = System.nanoTime();
+      try {
+        long bytes = this.flush.flush(s);
+        long time = System.nanoTime() - start;
+        this.bytesFlushed.addAndGet(bytes);
+        this.flushTime.addAndGet(time);
+        this.maxFlushTime.accumulateAndGet(time, Math::max);
+        this.flushes.incrementAndGet();
+      } catch (IOException | RuntimeException e) {
+        this.failedFlushes.incrementAndGet();
+        LOG.error("flush segmentId=" + s.getId() + " s=" + s, e);
+      } finally {
+        if (this.pending.decrementAndGet() == 0) {
+          synchronized (this.pending) {
+            this.pending.notifyAll();
+          }
+        }
+      }
+    }
+  }
+}
@@ -75,6 +75,9 @@ public class CacheConfig {
   /* File name for cache engine snapshot data */
   public final static String CACHE_ENGINE_SNAPSHOT_NAME = "engine.data";
   
+  /* File name for compression dictionaries snapshot data */
+  public final static String DICTIONARY_SNAPSHOT_NAME = "dict.data";
+  
   /* Default cache configuration file name */
   public final static String DEFAULT_CACHE_CONFIG_FILE_NAME = "cache.conf";
   
@@ -87,7 +90,8 @@ public class CacheConfig {
   /* Default cache snapshot directory name */
   public final static String DEFAULT_CACHE_SNAPSHOT_DIR_NAME = "snapshot";
   
-  /* Cache data directory - where to save cached data */
+  /* Cache data directory - where to save cached data, comma separated list of directories 
+   * (one per device) stripes data segments across them */
   public final static String CACHE_DATA_DIR_NAME_KEY = "data.dir.name";
   
   /* Default cache data directory name */
@@ -125,7 +129,7 @@ public class CacheConfig {
   /** Keep active data set fraction above this threshold */
   public static final String CACHE_MINIMUM_ACTIVE_DATA_SET_RATIO_KEY = 
       "cache.minimum.active.dataset.ratio"; 
-  /** IO storage pool size */
+  /** IO storage pool size (maximum number of sealed segments waiting to be flushed) */
   public static final String CACHE_IO_STORAGE_POOL_SIZE_KEY = "cache.storage.pool.size";
   
   /* New item insertion point for SLRU (segment number 1- based)*/
@@ -259,6 +263,66 @@ public class CacheConfig {
   public static final String CACHE_ROLLING_WINDOW_COUNTER_DURATION_KEY = "cache.rwc.window";
   
   
+  /* Optimistic (lock-free) index reads enabled */
+  public static final String INDEX_OPTIMISTIC_READS_ENABLED_KEY = "index.optimistic.reads.enabled";
+  
+  /* Keep one byte fingerprint per entry in index block header */
+  public static final String INDEX_FINGERPRINTS_ENABLED_KEY = "index.fingerprints.enabled";
+  
+  /* Index blocks slab allocator enabled */
+  public static final String INDEX_SLAB_ALLOCATOR_ENABLED_KEY = "index.slab.allocator.enabled";
+  
+  /* Index background rehash worker enabled */
+  public static final String INDEX_REHASH_WORKER_ENABLED_KEY = "index.rehash.worker.enabled";
+  
+  /* Index background rehash worker pace (slots per second) */
+  public static final String INDEX_REHASH_WORKER_SLOTS_PER_SEC_KEY = "index.rehash.worker.slots.per.sec";
+  
+  /* Number of segment flusher threads per data directory (file I/O engine) */
+  public static final String CACHE_IO_STORAGE_FLUSH_THREADS_KEY = "cache.storage.flush.threads";
+  
+  /* Direct I/O (O_DIRECT, bypasses OS page cache) for data segment files */
+  public static final String CACHE_FILE_DIRECT_IO_ENABLED_KEY = "cache.file.direct.io.enabled";
+  
+  /* Use single preallocated storage file with segment slots instead of a file per segment */
+  public static final String CACHE_FILE_STORAGE_PREALLOCATED_KEY = "cache.file.storage.preallocated";
+  
+  /* Maximum memory kept in a pool of free RAM segment buffers (bytes) */
+  public static final String CACHE_SEGMENT_BUFFER_POOL_MAX_SIZE_KEY = "cache.segment.buffer.pool.max.size";
+  
+  /* Number of write lanes (concurrently open RAM segments) per popularity rank */
+  public static final String CACHE_WRITE_LANES_KEY = "cache.write.lanes";
+  
+  /* Off-heap cache of file data blocks maximum size (0 - disabled) */
+  public static final String CACHE_FILE_BLOCK_CACHE_SIZE_KEY = "cache.file.block.cache.size";
+  
+  /* Block data writer: add hash directory to every data block */
+  public static final String CACHE_BLOCK_WRITER_DIRECTORY_ENABLED_KEY = "cache.block.writer.directory.enabled";
+  
+  /* Block writer compression codec: none, lz4, deflate */
+  public static final String CACHE_BLOCK_WRITER_COMPRESSION_CODEC_KEY = "cache.block.writer.compression.codec";
+  
+  /* Block writer compression dictionary enabled (trained dictionary, deflate codec only) */
+  public static final String CACHE_BLOCK_WRITER_DICTIONARY_ENABLED_KEY = "cache.block.writer.dictionary.enabled";
+  
+  /* Block writer compression dictionary size (maximum is 32KB) */
+  public static final String CACHE_BLOCK_WRITER_DICTIONARY_SIZE_KEY = "cache.block.writer.dictionary.size";
+  
+  /* Block writer compression dictionary training data size (data sampled before training) */
+  public static final String CACHE_BLOCK_WRITER_DICTIONARY_TRAINING_SIZE_KEY = "cache.block.writer.dictionary.training.size";
+  
+  /* Block writer compression dictionary retrain interval (bytes compressed with a dictionary, 0 - never) */
+  public static final String CACHE_BLOCK_WRITER_DICTIONARY_RETRAIN_INTERVAL_KEY = "cache.block.writer.dictionary.retrain.interval";
+  
+  /* Scavenger number of worker threads */
+  public static final String SCAVENGER_NUMBER_THREADS_KEY = "scavenger.number.threads";
+  
+  /* Scavenger index validation batch size (number of items) */
+  public static final String SCAVENGER_INDEX_BATCH_SIZE_KEY = "scavenger.index.batch.size";
+  
+  /* Number of file prefetch read - ahead buffers (0 - disabled) */
+  public static final String FILE_PREFETCH_READ_AHEAD_BUFFERS_KEY = "file.prefetch.read.ahead.buffers";
+  
   /* Defaults section */
   
   public static final long DEFAULT_CACHE_SEGMENT_SIZE = 4 * 1024 * 1024;
@@ -415,6 +479,66 @@ public class CacheConfig {
   /* Victim cache promotion on hit default value*/
   public final static boolean DEFAULT_CACHE_VICTIM_PROMOTION_ON_HIT = true;
   
+  /* Default index optimistic reads enabled */
+  public final static boolean DEFAULT_INDEX_OPTIMISTIC_READS_ENABLED = false;
+  
+  /* Default index fingerprints enabled */
+  public final static boolean DEFAULT_INDEX_FINGERPRINTS_ENABLED = false;
+  
+  /* Default index blocks slab allocator enabled */
+  public final static boolean DEFAULT_INDEX_SLAB_ALLOCATOR_ENABLED = true;
+  
+  /* Default index background rehash worker enabled */
+  public final static boolean DEFAULT_INDEX_REHASH_WORKER_ENABLED = false;
+  
+  /* Default index background rehash worker pace (slots per second) */
+  public final static int DEFAULT_INDEX_REHASH_WORKER_SLOTS_PER_SEC = 100000;
+  
+  /* Default number of segment flusher threads */
+  public final static int DEFAULT_CACHE_IO_STORAGE_FLUSH_THREADS = 4;
+  
+  /* Default direct I/O for data segment files enabled */
+  public final static boolean DEFAULT_CACHE_FILE_DIRECT_IO_ENABLED = false;
+  
+  /* Default single preallocated storage file mode enabled */
+  public final static boolean DEFAULT_CACHE_FILE_STORAGE_PREALLOCATED = false;
+  
+  /* Default maximum memory size of segment buffer pool */
+  public final static long DEFAULT_CACHE_SEGMENT_BUFFER_POOL_MAX_SIZE = 256 * 1024 * 1024L;
+  
+  /* Default number of write lanes per rank */
+  public final static int DEFAULT_CACHE_WRITE_LANES = 1;
+  
+  /* Default file block cache maximum size in bytes */
+  public final static long DEFAULT_CACHE_FILE_BLOCK_CACHE_SIZE = 0;
+  
+  /* Default block directory enabled */
+  public final static boolean DEFAULT_CACHE_BLOCK_WRITER_DIRECTORY_ENABLED = false;
+  
+  /* Default block writer compression codec */
+  public final static String DEFAULT_CACHE_BLOCK_WRITER_COMPRESSION_CODEC = "none";
+  
+  /* Default block writer compression dictionary enabled */
+  public final static boolean DEFAULT_CACHE_BLOCK_WRITER_DICTIONARY_ENABLED = false;
+  
+  /* Default block writer compression dictionary size */
+  public final static int DEFAULT_CACHE_BLOCK_WRITER_DICTIONARY_SIZE = 16384;
+  
+  /* Default block writer compression dictionary training data size */
+  public final static long DEFAULT_CACHE_BLOCK_WRITER_DICTIONARY_TRAINING_SIZE = 1024 * 1024;
+  
+  /* Default block writer compression dictionary retrain interval */
+  public final static long DEFAULT_CACHE_BLOCK_WRITER_DICTIONARY_RETRAIN_INTERVAL = 1024L * 1024 * 1024;
+  
+  /* Default scavenger number of worker threads */
+  public final static int DEFAULT_SCAVENGER_NUMBER_THREADS = 1;
+  
+  /* Default scavenger index validation batch size */
+  public final static int DEFAULT_SCAVENGER_INDEX_BATCH_SIZE = 64;
+  
+  /* Default number of file prefetch read - ahead buffers */
+  public final static int DEFAULT_FILE_PREFETCH_READ_AHEAD_BUFFERS = 2;
+  
   // Statics
   static CacheConfig instance;
 
@@ -905,6 +1029,28 @@ public class CacheConfig {
     props.setProperty(cacheName + "."+ CACHE_DATA_DIR_NAME_KEY, dir);
   }
   
+  /**
+   * Get data directories for a cache (data segments are striped across them)
+   * @param cacheName cache name
+   * @return data directories
+   */
+  public String[] getDataDirs(String cacheName) {
+    String[] dirs = getDataDir(cacheName).split(",");
+    for (int i = 0; i < dirs.length; i++) {
+      dirs[i] = dirs[i].trim();
+    }
+    return dirs;
+  }
+  
+  /**
+   * Set data directories for a cache
+   * @param cacheName cache name
+   * @param dirs data directories
+   */
+  public void setDataDirs(String cacheName, String[] dirs) {
+    setDataDir(cacheName, String.join(",", dirs));
+  }
+  
   /**
    * Get admission queue start size ratio for a given cache name
    * @param cacheName cache name
@@ -1683,7 +1829,8 @@ public class CacheConfig {
   
   
   /**
-   * Get I/O storage pool size
+   * Get I/O storage pool size - maximum number of sealed data segments 
+   * waiting to be flushed, writers are blocked when this limit is reached
    * @param cacheName cache name
    * @return size
    */
@@ -1753,4 +1900,484 @@ public class CacheConfig {
   public void setScavengerMaxSegmentsBeforeStall (String cacheName, int n) {
     props.setProperty(cacheName + "." + SCAVENGER_MAX_SEGMENTS_BEFORE_STALL_KEY, Integer.toString(n));
   }
+  
+  /**
+   * Get index optimistic reads enabled
+   * @param cacheName cache name
+   * @return index optimistic reads enabled
+   */
+  public boolean getIndexOptimisticReadsEnabled(String cacheName) {
+    String value = props.getProperty(cacheName + "." + INDEX_OPTIMISTIC_READS_ENABLED_KEY);
+    if (value == null) {
+      return getBooleanProperty(INDEX_OPTIMISTIC_READS_ENABLED_KEY, 
+        DEFAULT_INDEX_OPTIMISTIC_READS_ENABLED);
+    } else {
+      return Boolean.parseBoolean(value);
+    }
+  }
+  
+  /**
+   * Set index optimistic reads enabled
+   * @param cacheName cache name
+   * @param v index optimistic reads enabled
+   */
+  public void setIndexOptimisticReadsEnabled(String cacheName, boolean v) {
+    props.setProperty(cacheName + "." + INDEX_OPTIMISTIC_READS_ENABLED_KEY, Boolean.toString(v));
+  }
+  
+  /**
+   * Get index fingerprints enabled
+   * @param cacheName cache name
+   * @return index fingerprints enabled
+   */
+  public boolean getIndexFingerprintsEnabled(String cacheName) {
+    String value = props.getProperty(cacheName + "." + INDEX_FINGERPRINTS_ENABLED_KEY);
+    if (value == null) {
+      return getBooleanProperty(INDEX_FINGERPRINTS_ENABLED_KEY, 
+        DEFAULT_INDEX_FINGERPRINTS_ENABLED);
+    } else {
+      return Boolean.parseBoolean(value);
+    }
+  }
+  
+  /**
+   * Set index fingerprints enabled
+   * @param cacheName cache name
+   * @param v index fingerprints enabled
+   */
+  public void setIndexFingerprintsEnabled(String cacheName, boolean v) {
+    props.setProperty(cacheName + "." + INDEX_FINGERPRINTS_ENABLED_KEY, Boolean.toString(v));
+  }
+  
+  /**
+   * Get index blocks slab allocator enabled
+   * @param cacheName cache name
+   * @return index blocks slab allocator enabled
+   */
+  public boolean getIndexSlabAllocatorEnabled(String cacheName) {
+    String value = props.getProperty(cacheName + "." + INDEX_SLAB_ALLOCATOR_ENABLED_KEY);
+    if (value == null) {
+      return getBooleanProperty(INDEX_SLAB_ALLOCATOR_ENABLED_KEY, 
+        DEFAULT_INDEX_SLAB_ALLOCATOR_ENABLED);
+    } else {
+      return Boolean.parseBoolean(value);
+    }
+  }
+  
+  /**
+   * Set index blocks slab allocator enabled
+   * @param cacheName cache name
+   * @param v index blocks slab allocator enabled
+   */
+  public void setIndexSlabAllocatorEnabled(String cacheName, boolean v) {
+    props.setProperty(cacheName + "." + INDEX_SLAB_ALLOCATOR_ENABLED_KEY, Boolean.toString(v));
+  }
+  
+  /**
+   * Get index background rehash worker enabled
+   * @param cacheName cache name
+   * @return index background rehash worker enabled
+   */
+  public boolean getIndexRehashWorkerEnabled(String cacheName) {
+    String value = props.getProperty(cacheName + "." + INDEX_REHASH_WORKER_ENABLED_KEY);
+    if (value == null) {
+      return getBooleanProperty(INDEX_REHASH_WORKER_ENABLED_KEY, 
+        DEFAULT_INDEX_REHASH_WORKER_ENABLED);
+    } else {
+      return Boolean.parseBoolean(value);
+    }
+  }
+  
+  /**
+   * Set index background rehash worker enabled
+   * @param cacheName cache name
+   * @param v index background rehash worker enabled
+   */
+  public void setIndexRehashWorkerEnabled(String cacheName, boolean v) {
+    props.setProperty(cacheName + "." + INDEX_REHASH_WORKER_ENABLED_KEY, Boolean.toString(v));
+  }
+  
+  /**
+   * Get index background rehash worker pace (slots per second)
+   * @param cacheName cache name
+   * @return index background rehash worker pace (slots per second)
+   */
+  public int getIndexRehashWorkerSlotsPerSecond(String cacheName) {
+    String value = props.getProperty(cacheName + "." + INDEX_REHASH_WORKER_SLOTS_PER_SEC_KEY);
+    if (value == null) {
+      return (int) getLongProperty(INDEX_REHASH_WORKER_SLOTS_PER_SEC_KEY, 
+        DEFAULT_INDEX_REHASH_WORKER_SLOTS_PER_SEC);
+    } else {
+      return Integer.parseInt(value);
+    }
+  }
+  
+  /**
+   * Set index background rehash worker pace (slots per second)
+   * @param cacheName cache name
+   * @param v index background rehash worker pace (slots per second)
+   */
+  public void setIndexRehashWorkerSlotsPerSecond(String cacheName, int v) {
+    props.setProperty(cacheName + "." + INDEX_REHASH_WORKER_SLOTS_PER_SEC_KEY, Integer.toString(v));
+  }
+  
+  /**
+   * Get number of segment flusher threads per data directory
+   * @param cacheName cache name
+   * @return number of segment flusher threads
+   */
+  public int getIOStorageFlushThreads(String cacheName) {
+    String value = props.getProperty(cacheName + "." + CACHE_IO_STORAGE_FLUSH_THREADS_KEY);
+    if (value == null) {
+      return (int) getLongProperty(CACHE_IO_STORAGE_FLUSH_THREADS_KEY, 
+        DEFAULT_CACHE_IO_STORAGE_FLUSH_THREADS);
+    } else {
+      return Integer.parseInt(value);
+    }
+  }
+  
+  /**
+   * Set number of segment flusher threads
+   * @param cacheName cache name
+   * @param v number of segment flusher threads
+   */
+  public void setIOStorageFlushThreads(String cacheName, int v) {
+    props.setProperty(cacheName + "." + CACHE_IO_STORAGE_FLUSH_THREADS_KEY, Integer.toString(v));
+  }
+  
+  /**
+   * Get direct I/O for data segment files enabled
+   * @param cacheName cache name
+   * @return direct I/O for data segment files enabled
+   */
+  public boolean getFileDirectIOEnabled(String cacheName) {
+    String value = props.getProperty(cacheName + "." + CACHE_FILE_DIRECT_IO_ENABLED_KEY);
+    if (value == null) {
+      return getBooleanProperty(CACHE_FILE_DIRECT_IO_ENABLED_KEY, 
+        DEFAULT_CACHE_FILE_DIRECT_IO_ENABLED);
+    } else {
+      return Boolean.parseBoolean(value);
+    }
+  }
+  
+  /**
+   * Set direct I/O for data segment files enabled
+   * @param cacheName cache name
+   * @param v direct I/O for data segment files enabled
+   */
+  public void setFileDirectIOEnabled(String cacheName, boolean v) {
+    props.setProperty(cacheName + "." + CACHE_FILE_DIRECT_IO_ENABLED_KEY, Boolean.toString(v));
+  }
+  
+  /**
+   * Get single preallocated storage file mode enabled
+   * @param cacheName cache name
+   * @return single preallocated storage file mode enabled
+   */
+  public boolean getFileStoragePreallocated(String cacheName) {
+    String value = props.getProperty(cacheName + "." + CACHE_FILE_STORAGE_PREALLOCATED_KEY);
+    if (value == null) {
+      return getBooleanProperty(CACHE_FILE_STORAGE_PREALLOCATED_KEY, 
+        DEFAULT_CACHE_FILE_STORAGE_PREALLOCATED);
+    } else {
+      return Boolean.parseBoolean(value);
+    }
+  }
+  
+  /**
+   * Set single preallocated storage file mode enabled
+   * @param cacheName cache name
+   * @param v single preallocated storage file mode enabled
+   */
+  public void setFileStoragePreallocated(String cacheName, boolean v) {
+    props.setProperty(cacheName + "." + CACHE_FILE_STORAGE_PREALLOCATED_KEY, Boolean.toString(v));
+  }
+  
+  /**
+   * Get maximum memory size of segment buffer pool
+   * @param cacheName cache name
+   * @return maximum memory size of segment buffer pool
+   */
+  public long getSegmentBufferPoolMaxSize(String cacheName) {
+    String value = props.getProperty(cacheName + "." + CACHE_SEGMENT_BUFFER_POOL_MAX_SIZE_KEY);
+    if (value == null) {
+      return getLongProperty(CACHE_SEGMENT_BUFFER_POOL_MAX_SIZE_KEY, 
+        DEFAULT_CACHE_SEGMENT_BUFFER_POOL_MAX_SIZE);
+    } else {
+      return Long.parseLong(value);
+    }
+  }
+  
+  /**
+   * Set maximum memory size of segment buffer pool
+   * @param cacheName cache name
+   * @param v maximum memory size of segment buffer pool
+   */
+  public void setSegmentBufferPoolMaxSize(String cacheName, long v) {
+    props.setProperty(cacheName + "." + CACHE_SEGMENT_BUFFER_POOL_MAX_SIZE_KEY, Long.toString(v));
+  }
+  
+  /**
+   * Get number of write lanes per rank
+   * @param cacheName cache name
+   * @return number of write lanes per rank
+   */
+  public int getWriteLanes(String cacheName) {
+    String value = props.getProperty(cacheName + "." + CACHE_WRITE_LANES_KEY);
+    if (value == null) {
+      return (int) getLongProperty(CACHE_WRITE_LANES_KEY, 
+        DEFAULT_CACHE_WRITE_LANES);
+    } else {
+      return Integer.parseInt(value);
+    }
+  }
+  
+  /**
+   * Set number of write lanes per rank
+   * @param cacheName cache name
+   * @param v number of write lanes per rank
+   */
+  public void setWriteLanes(String cacheName, int v) {
+    props.setProperty(cacheName + "." + CACHE_WRITE_LANES_KEY, Integer.toString(v));
+  }
+  
+  /**
+   * Get file block cache maximum size in bytes
+   * @param cacheName cache name
+   * @return file block cache maximum size in bytes
+   */
+  public long getFileBlockCacheSize(String cacheName) {
+    String value = props.getProperty(cacheName + "." + CACHE_FILE_BLOCK_CACHE_SIZE_KEY);
+    if (value == null) {
+      return getLongProperty(CACHE_FILE_BLOCK_CACHE_SIZE_KEY, 
+        DEFAULT_CACHE_FILE_BLOCK_CACHE_SIZE);
+    } else {
+      return Long.parseLong(value);
+    }
+  }
+  
+  /**
+   * Set file block cache maximum size in bytes
+   * @param cacheName cache name
+   * @param v file block cache maximum size in bytes
+   */
+  public void setFileBlockCacheSize(String cacheName, long v) {
+    props.setProperty(cacheName + "." + CACHE_FILE_BLOCK_CACHE_SIZE_KEY, Long.toString(v));
+  }
+  
+  /**
+   * Get block directory enabled
+   * @param cacheName cache name
+   * @return block directory enabled
+   */
+  public boolean getBlockWriterDirectoryEnabled(String cacheName) {
+    String value = props.getProperty(cacheName + "." + CACHE_BLOCK_WRITER_DIRECTORY_ENABLED_KEY);
+    if (value == null) {
+      return getBooleanProperty(CACHE_BLOCK_WRITER_DIRECTORY_ENABLED_KEY, 
+        DEFAULT_CACHE_BLOCK_WRITER_DIRECTORY_ENABLED);
+    } else {
+      return Boolean.parseBoolean(value);
+    }
+  }
+  
+  /**
+   * Set block directory enabled
+   * @param cacheName cache name
+   * @param v block directory enabled
+   */
+  public void setBlockWriterDirectoryEnabled(String cacheName, boolean v) {
+    props.setProperty(cacheName + "." + CACHE_BLOCK_WRITER_DIRECTORY_ENABLED_KEY, Boolean.toString(v));
+  }
+  
+  /**
+   * Get block writer compression codec
+   * @param cacheName cache name
+   * @return block writer compression codec
+   */
+  public String getBlockWriterCompressionCodec(String cacheName) {
+    String value = props.getProperty(cacheName + "." + CACHE_BLOCK_WRITER_COMPRESSION_CODEC_KEY);
+    if (value == null) {
+      return getProperty(CACHE_BLOCK_WRITER_COMPRESSION_CODEC_KEY, 
+        DEFAULT_CACHE_BLOCK_WRITER_COMPRESSION_CODEC);
+    } else {
+      return value;
+    }
+  }
+  
+  /**
+   * Set block writer compression codec
+   * @param cacheName cache name
+   * @param v block writer compression codec
+   */
+  public void setBlockWriterCompressionCodec(String cacheName, String v) {
+    props.setProperty(cacheName + "." + CACHE_BLOCK_WRITER_COMPRESSION_CODEC_KEY, v);
+  }
+  
+  /**
+   * Get block writer compression dictionary enabled
+   * @param cacheName cache name
+   * @return block writer compression dictionary enabled
+   */
+  public boolean getBlockWriterDictionaryEnabled(String cacheName) {
+    String value = props.getProperty(cacheName + "." + CACHE_BLOCK_WRITER_DICTIONARY_ENABLED_KEY);
+    if (value == null) {
+      return getBooleanProperty(CACHE_BLOCK_WRITER_DICTIONARY_ENABLED_KEY, 
+        DEFAULT_CACHE_BLOCK_WRITER_DICTIONARY_ENABLED);
+    } else {
+      return Boolean.parseBoolean(value);
+    }
+  }
+  
+  /**
+   * Set block writer compression dictionary enabled
+   * @param cacheName cache name
+   * @param v block writer compression dictionary enabled
+   */
+  public void setBlockWriterDictionaryEnabled(String cacheName, boolean v) {
+    props.setProperty(cacheName + "." + CACHE_BLOCK_WRITER_DICTIONARY_ENABLED_KEY, Boolean.toString(v));
+  }
+  
+  /**
+   * Get block writer compression dictionary size
+   * @param cacheName cache name
+   * @return block writer compression dictionary size
+   */
+  public int getBlockWriterDictionarySize(String cacheName) {
+    String value = props.getProperty(cacheName + "." + CACHE_BLOCK_WRITER_DICTIONARY_SIZE_KEY);
+    if (value == null) {
+      return (int) getLongProperty(CACHE_BLOCK_WRITER_DICTIONARY_SIZE_KEY, 
+        DEFAULT_CACHE_BLOCK_WRITER_DICTIONARY_SIZE);
+    } else {
+      return Integer.parseInt(value);
+    }
+  }
+  
+  /**
+   * Set block writer compression dictionary size
+   * @param cacheName cache name
+   * @param v block writer compression dictionary size
+   */
+  public void setBlockWriterDictionarySize(String cacheName, int v) {
+    props.setProperty(cacheName + "." + CACHE_BLOCK_WRITER_DICTIONARY_SIZE_KEY, Integer.toString(v));
+  }
+  
+  /**
+   * Get block writer compression dictionary training data size
+   * @param cacheName cache name
+   * @return block writer compression dictionary training data size
+   */
+  public long getBlockWriterDictionaryTrainingSize(String cacheName) {
+    String value = props.getProperty(cacheName + "." + CACHE_BLOCK_WRITER_DICTIONARY_TRAINING_SIZE_KEY);
+    if (value == null) {
+      return getLongProperty(CACHE_BLOCK_WRITER_DICTIONARY_TRAINING_SIZE_KEY, 
+        DEFAULT_CACHE_BLOCK_WRITER_DICTIONARY_TRAINING_SIZE);
+    } else {
+      return Long.parseLong(value);
+    }
+  }
+  
+  /**
+   * Set block writer compression dictionary training data size
+   * @param cacheName cache name
+   * @param v block writer compression dictionary training data size
+   */
+  public void setBlockWriterDictionaryTrainingSize(String cacheName, long v) {
+    props.setProperty(cacheName + "." + CACHE_BLOCK_WRITER_DICTIONARY_TRAINING_SIZE_KEY, Long.toString(v));
+  }
+  
+  /**
+   * Get block writer compression dictionary retrain interval
+   * @param cacheName cache name
+   * @return block writer compression dictionary retrain interval
+   */
+  public long getBlockWriterDictionaryRetrainInterval(String cacheName) {
+    String value = props.getProperty(cacheName + "." + CACHE_BLOCK_WRITER_DICTIONARY_RETRAIN_INTERVAL_KEY);
+    if (value == null) {
+      return getLongProperty(CACHE_BLOCK_WRITER_DICTIONARY_RETRAIN_INTERVAL_KEY, 
+        DEFAULT_CACHE_BLOCK_WRITER_DICTIONARY_RETRAIN_INTERVAL);
+    } else {
+      return Long.parseLong(value);
+    }
+  }
+  
+  /**
+   * Set block writer compression dictionary retrain interval
+   * @param cacheName cache name
+   * @param v block writer compression dictionary retrain interval
+   */
+  public void setBlockWriterDictionaryRetrainInterval(String cacheName, long v) {
+    props.setProperty(cacheName + "." + CACHE_BLOCK_WRITER_DICTIONARY_RETRAIN_INTERVAL_KEY, Long.toString(v));
+  }
+  
+  /**
+   * Get scavenger number of worker threads
+   * @param cacheName cache name
+   * @return scavenger number of worker threads
+   */
+  public int getScavengerNumberOfThreads(String cacheName) {
+    String value = props.getProperty(cacheName + "." + SCAVENGER_NUMBER_THREADS_KEY);
+    if (value == null) {
+      return (int) getLongProperty(SCAVENGER_NUMBER_THREADS_KEY, 
+        DEFAULT_SCAVENGER_NUMBER_THREADS);
+    } else {
+      return Integer.parseInt(value);
+    }
+  }
+  
+  /**
+   * Set scavenger number of worker threads
+   * @param cacheName cache name
+   * @param v scavenger number of worker threads
+   */
+  public void setScavengerNumberOfThreads(String cacheName, int v) {
+    props.setProperty(cacheName + "." + SCAVENGER_NUMBER_THREADS_KEY, Integer.toString(v));
+  }
+  
+  /**
+   * Get scavenger index validation batch size
+   * @param cacheName cache name
+   * @return scavenger index validation batch size
+   */
+  public int getScavengerIndexBatchSize(String cacheName) {
+    String value = props.getProperty(cacheName + "." + SCAVENGER_INDEX_BATCH_SIZE_KEY);
+    if (value == null) {
+      return (int) getLongProperty(SCAVENGER_INDEX_BATCH_SIZE_KEY, 
+        DEFAULT_SCAVENGER_INDEX_BATCH_SIZE);
+    } else {
+      return Integer.parseInt(value);
+    }
+  }
+  
+  /**
+   * Set scavenger index validation batch size
+   * @param cacheName cache name
+   * @param v scavenger index validation batch size
+   */
+  public void setScavengerIndexBatchSize(String cacheName, int v) {
+    props.setProperty(cacheName + "." + SCAVENGER_INDEX_BATCH_SIZE_KEY, Integer.toString(v));
+  }
+  
+  /**
+   * Get number of file prefetch read - ahead buffers
+   * @param cacheName cache name
+   * @return number of file prefetch read - ahead buffers
+   */
+  public int getFilePrefetchReadAheadBuffers(String cacheName) {
+    String value = props.getProperty(cacheName + "." + FILE_PREFETCH_READ_AHEAD_BUFFERS_KEY);
+    if (value == null) {
+      return (int) getLongProperty(FILE_PREFETCH_READ_AHEAD_BUFFERS_KEY, 
+        DEFAULT_FILE_PREFETCH_READ_AHEAD_BUFFERS);
+    } else {
+      return Integer.parseInt(value);
+    }
+  }
+  
+  /**
+   * Set number of file prefetch read - ahead buffers
+   * @param cacheName cache name
+   * @param v number of file prefetch read - ahead buffers
+   */
+  public void setFilePrefetchReadAheadBuffers(String cacheName, int v) {
+    props.setProperty(cacheName + "." + FILE_PREFETCH_READ_AHEAD_BUFFERS_KEY, Integer.toString(v));
+  }
 }
@@ -14,6 +14,7 @@
  */
 package com.carrot.cache.util;
 
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
@@ -21,6 +22,18 @@ import java.nio.channels.FileChannel;
 /** Utility class for network and file I/O related code */
 public class IOUtils {
 
+  /* Minimum size of a per - thread read buffer */
+  static final int MIN_READ_BUFFER_SIZE = 64 * 1024;
+  
+  /* Maximum size of a per - thread read buffer */
+  static final int MAX_READ_BUFFER_SIZE = 1 << 20;
+  
+  /* Per - thread direct buffers for positional reads into byte arrays */
+  private static ThreadLocal<ByteBuffer> readBuffers = new ThreadLocal<ByteBuffer>();
+  
+  /* Per - thread aligned direct buffers for direct I/O */
+  private static ThreadLocal<ByteBuffer> alignedReadBuffers = new ThreadLocal<ByteBuffer>();
+
   /**
    * Drain byte buffer to a file channel
    *
@@ -81,7 +94,9 @@ public class IOUtils {
     return avail;
   }
   /**
-   * Reads data from a file into a buffer under lock
+   * Reads data from a file into a buffer. Uses positional reads, so concurrent
+   * readers of the same file do not contend with each other. Data is read into 
+   * a per - thread direct buffer and then copied to a destination array
    * @param file file
    * @param fileOffset offset at a file
    * @param buffer buffer to read into
@@ -91,14 +106,24 @@ public class IOUtils {
    */
   public static void readFully(RandomAccessFile file, long fileOffset, byte[] buffer, int bufOffset, int len) 
       throws IOException {
-    synchronized (file) {
-      file.seek(fileOffset);
-      file.readFully(buffer, bufOffset, len);
+    FileChannel fc = file.getChannel();
+    ByteBuffer buf = getReadBuffer(len);
+    int read = 0;
+    while (read < len) {
+      int toRead = Math.min(len - read, buf.capacity());
+      buf.clear();
+      buf.limit(toRead);
+      readFully(fc, fileOffset + read, buf);
+      buf.flip();
+      buf.get(buffer, bufOffset + read, toRead);
+      read += toRead;
     }
   }
 
   /**
-   * Reads data from a file into a buffer under lock
+   * Reads data from a file directly into a buffer starting at buffer's current position.
+   * Uses positional reads, so concurrent readers of the same file do not contend with 
+   * each other. Buffer's position is not changed.
    *
    * @param file file
    * @param fileOffset offset at a file
@@ -108,21 +133,137 @@ public class IOUtils {
    */
   public static void readFully(RandomAccessFile file, long fileOffset, ByteBuffer buffer, int len)
       throws IOException {
-    synchronized (file) {
-      if (buffer.hasArray()) {
-        int pos = buffer.position();
-        byte[] arr = buffer.array();
-        readFully(file, fileOffset, arr, pos, len);
-      } else {
-        FileChannel fc = file.getChannel();
-        fc.position(fileOffset);
-        int read = 0;
-        while (read < len) {
-          read += fc.read(buffer);
+    FileChannel fc = file.getChannel();
+    int pos = buffer.position();
+    int limit = buffer.limit();
+    buffer.limit(pos + len);
+    try {
+      readFully(fc, fileOffset, buffer);
+    } finally {
+      buffer.limit(limit);
+      buffer.position(pos);
+    }
+  }
+
+  /**
+   * Reads data from a file channel at a given position until buffer is full
+   * @param fc file channel
+   * @param position position in a file
+   * @param buffer buffer to read into
+   * @throws IOException
+   */
+  public static void readFully(FileChannel fc, long position, ByteBuffer buffer) 
+      throws IOException {
+    while (buffer.hasRemaining()) {
+      int n = fc.read(buffer, position);
+      if (n < 0) {
+        throw new EOFException();
+      }
+      position += n;
+    }
+  }
+
+  /**
+   * Reads data from a file opened for direct I/O (O_DIRECT). File offset, length 
+   * and memory address of a read must be aligned, therefore the aligned range
+   * which covers requested data is read into a per - thread aligned buffer 
+   * and then requested data is copied to a destination array
+   * @param fc file channel (opened with O_DIRECT)
+   * @param fileOffset offset at a file
+   * @param buffer buffer to read into
+   * @param bufOffset offset at a buffer
+   * @param len how many bytes to read
+   * @param alignment I/O alignment (file system block size)
+   * @throws IOException
+   */
+  public static void readFullyDirect(FileChannel fc, long fileOffset, byte[] buffer, 
+      int bufOffset, int len, int alignment) throws IOException {
+    long start = fileOffset - fileOffset % alignment;
+    long end = alignUp(fileOffset + len, alignment);
+    ByteBuffer buf = getAlignedBuffer((int) (end - start), alignment);
+    int read = 0;
+    while (read < len) {
+      // Aligned chunk
+      int toRead = (int) Math.min(end - start, buf.capacity());
+      buf.clear();
+      buf.limit(toRead);
+      long pos = start;
+      while (buf.hasRemaining()) {
+        int n = fc.read(buf, pos);
+        if (n <= 0) {
+          // End of file: it is aligned for segment files 
+          break;
         }
+        pos += n;
       }
+      int skip = (int) (fileOffset + read - start);
+      int available = buf.position() - skip;
+      int toCopy = Math.min(len - read, toRead - skip);
+      if (available < toCopy) {
+        throw new EOFException();
+      }
+      buf.position(skip);
+      buf.get(buffer, bufOffset + read, toCopy);
+      read += toCopy;
+      start += toRead;
     }
   }
-}
+
+  /**
+   * Round up value to a multiple of alignment
+   * @param v value
+   * @param alignment alignment
+   * @return aligned value
+   */
+  public static long alignUp(long v, int alignment) {
+    return (v + alignment - 1) / alignment * alignment;
+  }
   
-    
+  /**
+   * Allocate aligned direct buffer
+   * @param size buffer size (multiple of alignment)
+   * @param alignment alignment
+   * @return buffer
+   */
+  public static ByteBuffer allocateAligned(int size, int alignment) {
+    ByteBuffer buf = ByteBuffer.allocateDirect(size + alignment);
+    buf = buf.alignedSlice(alignment);
+    buf.limit(size);
+    return buf.slice();
+  }
+  
+  /**
+   * Get per - thread aligned direct buffer for direct I/O (reads and writes)
+   * @param size required size
+   * @param alignment alignment
+   * @return buffer (capacity can be less than required size for large requests)
+   */
+  public static ByteBuffer getAlignedBuffer(int size, int alignment) {
+    ByteBuffer buf = alignedReadBuffers.get();
+    if (buf == null || (buf.capacity() < size && buf.capacity() < MAX_READ_BUFFER_SIZE)
+        || buf.capacity() % alignment != 0) {
+      int capacity = Math.min(MAX_READ_BUFFER_SIZE, 
+        Math.max(size, buf == null? MIN_READ_BUFFER_SIZE: 2 * buf.capacity()));
+      capacity = (int) alignUp(capacity, alignment);
+      buf = allocateAligned(capacity, alignment);
+      alignedReadBuffers.set(buf);
+    }
+    return buf;
+  }
+
+  /**
+   * Get per - thread direct buffer for file reads
+   * @param size required size
+   * @return buffer (capacity can be less than required size for large reads)
+   */
+  private static ByteBuffer getReadBuffer(int size) {
+    ByteBuffer buf = readBuffers.get();
+    if (buf == null || (buf.capacity() < size && buf.capacity() < MAX_READ_BUFFER_SIZE)) {
+      int capacity = Math.min(MAX_READ_BUFFER_SIZE, 
+        Math.max(size, buf == null? MIN_READ_BUFFER_SIZE: 2 * buf.capacity()));
+      buf = ByteBuffer.allocateDirect(capacity);
+      readBuffers.set(buf);
+    }
+    return buf;
+  }
+}
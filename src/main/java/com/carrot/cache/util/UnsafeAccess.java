@@ -359,6 +359,9 @@ public final class UnsafeAccess {
   /** Method handler for DirectByteBuffer::address method */
   static Method addressMethod;
 
+  /** Offset of java.nio.Buffer::address field (0 - not initialized, -1 - not accessible) */
+  static long bufferAddressOffset;
+
   /** Private constructor */
   private UnsafeAccess() {}
 
@@ -446,6 +449,17 @@ public final class UnsafeAccess {
     if (!buf.isDirect()) {
       return -1;
     }
+    if (bufferAddressOffset == 0) {
+      try {
+        bufferAddressOffset = 
+            theUnsafe.objectFieldOffset(java.nio.Buffer.class.getDeclaredField("address"));
+      } catch (Throwable e) {
+        bufferAddressOffset = -1;
+      }
+    }
+    if (bufferAddressOffset > 0) {
+      return theUnsafe.getLong(buf, bufferAddressOffset);
+    }
 
     try {
       if (addressMethod == null) {
@@ -466,6 +480,19 @@ public final class UnsafeAccess {
     return -1;
   }
 
+  /**
+   * Release memory of a direct or memory mapped byte buffer (unmaps a file).
+   * Buffer must not be accessed after this call
+   *
+   * @param buf direct byte buffer
+   */
+  public static void invokeCleaner(ByteBuffer buf) {
+    if (!buf.isDirect()) {
+      return;
+    }
+    theUnsafe.invokeCleaner(buf);
+  }
+
   // APIs to read primitive data from a byte[] using Unsafe way
   /**
    * Converts a byte array to a short value considering it was written in big-endian format.
@@ -40,6 +40,7 @@ public abstract class TestCacheBase extends IOTestBase {
   long expireTime;
   double scavDumpBelowRatio = 0.5;
   double minActiveRatio = 0.90;
+  int numDataDirs = 1;
       
   @Before
   public void setUp() throws IOException {
@@ -51,14 +52,17 @@ public abstract class TestCacheBase extends IOTestBase {
   
   protected Cache createCache() throws IOException {
     String cacheName = "cache";
-    // Data directory
-    Path path = Files.createTempDirectory(null);
-    File  dir = path.toFile();
-    dir.deleteOnExit();
-    String dataDir = dir.getAbsolutePath();
+    // Data directories
+    String[] dataDirs = new String[numDataDirs];
+    for (int i = 0; i < numDataDirs; i++) {
+      Path path = Files.createTempDirectory(null);
+      File  dir = path.toFile();
+      dir.deleteOnExit();
+      dataDirs[i] = dir.getAbsolutePath();
+    }
     
-    path = Files.createTempDirectory(null);
-    dir = path.toFile();
+    Path path = Files.createTempDirectory(null);
+    File dir = path.toFile();
     dir.deleteOnExit();
     String snapshotDir = dir.getAbsolutePath();
     
@@ -76,7 +80,7 @@ public abstract class TestCacheBase extends IOTestBase {
       .withFileDataReader(BlockFileDataReader.class.getName())
       .withMainQueueIndexFormat(CompactBlockWithExpireIndexFormat.class.getName())
       .withSnapshotDir(snapshotDir)
-      .withDataDir(dataDir)
+      .withDataDirs(dataDirs)
       .withMinimumActiveDatasetRatio(minActiveRatio)
       .withEvictionDisabledMode(true);
     
@@ -296,6 +300,20 @@ public abstract class TestCacheBase extends IOTestBase {
       allocated, used, size, activeSize));
   }
   
+  @Test
+  public void testGetAllBytes() throws IOException {
+    System.out.println("Test get all - bytes");
+    Scavenger.clear();
+    // Create cache
+    this.cache = createCache();
+    
+    this.expireTime = 1000000; 
+    prepareData(150000);
+    int loaded = loadBytesCache(cache);
+    System.out.println("loaded=" + loaded);
+    verifyBytesCacheGetAll(cache, loaded, 200);
+  }
+  
   @Test
   public void testSaveLoad() throws IOException {
     System.out.println("Test save load");
@@ -38,6 +38,8 @@ public abstract class TestCacheMultithreadedBase extends TestIOMultithreadedBase
   
   protected long maxCacheSize = 100L * segmentSize;
   
+  protected int writeLanes = 1;
+  
   int scavengerInterval = 10000; // seconds - disable for test
     
   double scavDumpBelowRatio = 0.5;
@@ -80,7 +82,8 @@ public abstract class TestCacheMultithreadedBase extends TestIOMultithreadedBase
       .withSnapshotDir(snapshotDir)
       .withDataDir(dataDir)
       .withMinimumActiveDatasetRatio(minActiveRatio)
-      .withEvictionDisabledMode(evictionDisabled);
+      .withEvictionDisabledMode(evictionDisabled)
+      .withWriteLanes(writeLanes);
     
     if (offheap) {
       return builder.buildMemoryCache();
@@ -0,0 +1,128 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.carrot.cache;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Test;
+
+import com.carrot.cache.controllers.MinAliveRecyclingSelector;
+import com.carrot.cache.util.UnsafeAccess;
+
+/**
+ * Put scaling benchmark: compares a single write lane per rank and multiple 
+ * write lanes per rank for a different number of writer threads
+ */
+public class TestCachePutScalingStress {
+  static int[] THREADS = new int[] {1, 2, 4, 8, 16, 32, 64};
+  
+  static int[] LANES = new int[] {1, 16};
+
+  int totalPuts = 4000000;
+  
+  int keySize = 16;
+  
+  int valueSize = 64;
+  
+  int segmentSize = 16 * 1024 * 1024;
+  
+  @Test
+  public void testPutScaling() throws IOException, InterruptedException {
+    UnsafeAccess.debug = false;
+    int run = 0;
+    for (int n : THREADS) {
+      StringBuilder sb = new StringBuilder();
+      sb.append(String.format("threads=%d", n));
+      for (int lanes: LANES) {
+        Cache cache = createCache("cache-" + run++, lanes);
+        long pps = runWriters(cache, n);
+        cache.dispose();
+        sb.append(String.format(" lanes=%d PPS=%d", lanes, pps));
+      }
+      System.out.println(sb);
+    }
+  }
+  
+  /**
+   * Run writers
+   * @param cache cache
+   * @param numThreads number of writer threads
+   * @return total puts per second
+   */
+  private long runWriters(Cache cache, int numThreads) throws InterruptedException {
+    Thread[] workers = new Thread[numThreads];
+    int[] failed = new int[numThreads];
+    int numPuts = totalPuts / numThreads;
+    for (int i = 0; i < numThreads; i++) {
+      final int id = i;
+      workers[i] = new Thread(() -> {
+        byte[] key = new byte[keySize];
+        byte[] value = new byte[valueSize];
+        UnsafeAccess.putInt(key, 0, id);
+        try {
+          for (int k = 0; k < numPuts; k++) {
+            UnsafeAccess.putInt(key, 4, k);
+            if (!cache.put(key, value, 0)) {
+              failed[id]++;
+            }
+          }
+        } catch (IOException e) {
+          failed[id]++;
+        }
+      });
+    }
+    long start = System.nanoTime();
+    for (Thread t : workers) {
+      t.start();
+    }
+    for (Thread t : workers) {
+      t.join();
+    }
+    long end = System.nanoTime();
+    for (int f : failed) {
+      assertEquals(0, f);
+    }
+    return (long) numThreads * numPuts * 1000000000L / (end - start);
+  }
+  
+  private Cache createCache(String cacheName, int lanes) throws IOException {
+    Path path = Files.createTempDirectory(null);
+    File  dir = path.toFile();
+    dir.deleteOnExit();
+    String dataDir = dir.getAbsolutePath();
+
+    path = Files.createTempDirectory(null);
+    dir = path.toFile();
+    dir.deleteOnExit();
+    String snapshotDir = dir.getAbsolutePath();
+
+    Cache.Builder builder = new Cache.Builder(cacheName);
+    builder
+      .withCacheDataSegmentSize(segmentSize)
+      .withCacheMaximumSize(2L * totalPuts * (keySize + valueSize + 4))
+      .withScavengerRunInterval(10000)
+      .withRecyclingSelector(MinAliveRecyclingSelector.class.getName())
+      .withSnapshotDir(snapshotDir)
+      .withDataDir(dataDir)
+      .withEvictionDisabledMode(true)
+      .withWriteLanes(lanes);
+    return builder.buildMemoryCache();
+  }
+}
@@ -0,0 +1,67 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.carrot.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.carrot.cache.io.BlockCache;
+import com.carrot.cache.io.FileIOEngine;
+import com.carrot.cache.util.CacheConfig;
+
+public class TestFileCacheBlockCache extends TestFileCache {
+
+  @Before
+  public void setUp() throws IOException {
+    super.setUp();
+    CacheConfig.getInstance().setFileBlockCacheSize("cache", 64 * 1024 * 1024);
+  }
+
+  @After
+  public void tearDown() {
+    super.tearDown();
+    CacheConfig.getInstance().setFileBlockCacheSize("cache", 0);
+  }
+
+  @Test
+  public void testBlockCacheHits() throws IOException {
+    this.cache = createCache();
+    FileIOEngine engine = (FileIOEngine) cache.getEngine();
+    BlockCache blockCache = engine.getBlockCache();
+    assertNotNull(blockCache);
+    this.expireTime = 1000000;
+    prepareData(100000);
+    int loaded = loadBytesCache(cache);
+    engine.waitForFlushes();
+    verifyBytesCache(cache, loaded);
+    assertTrue(blockCache.getMisses() > 0);
+    // Hot data set which fits the block cache
+    int hot = 1000;
+    verifyBytesCache(cache, hot);
+    long misses = blockCache.getMisses();
+    long hits = blockCache.getHits();
+    // Second pass is served from the block cache
+    verifyBytesCache(cache, hot);
+    assertEquals(misses, blockCache.getMisses());
+    assertTrue(blockCache.getHits() > hits);
+  }
+}
@@ -0,0 +1,53 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.carrot.cache;
+
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.carrot.cache.io.FileIOEngine;
+import com.carrot.cache.util.CacheConfig;
+
+public class TestFileCacheDirectIO extends TestFileCache {
+
+  @Before
+  public void setUp() throws IOException {
+    super.setUp();
+    CacheConfig.getInstance().setFileDirectIOEnabled("cache", true);
+  }
+
+  @After
+  public void tearDown() {
+    super.tearDown();
+    CacheConfig.getInstance().setFileDirectIOEnabled("cache", false);
+  }
+
+  @Test
+  public void testDirectIOEnabled() throws IOException {
+    this.cache = createCache();
+    this.expireTime = 1000000;
+    prepareData(100000);
+    int loaded = loadBytesCache(cache);
+    verifyBytesCache(cache, loaded);
+    FileIOEngine engine = (FileIOEngine) cache.getEngine();
+    // File system of a temporary directory must support O_DIRECT
+    assertTrue(engine.isDirectIOEnabled());
+  }
+}
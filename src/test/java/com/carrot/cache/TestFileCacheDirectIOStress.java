@@ -0,0 +1,144 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.carrot.cache;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.carrot.cache.controllers.MinAliveRecyclingSelector;
+import com.carrot.cache.index.CompactBlockWithExpireIndexFormat;
+import com.carrot.cache.io.BlockDataWriter;
+import com.carrot.cache.io.BlockFileDataReader;
+import com.carrot.cache.io.BlockMemoryDataReader;
+import com.carrot.cache.io.FileIOEngine;
+
+/**
+ * Benchmark: buffered vs direct (O_DIRECT) I/O modes of a file cache. Loads the same
+ * data set into a cache in both modes and runs random reads with a different number
+ * of reader threads. Buffered mode reads are served from the OS page cache when data
+ * fits into it, direct mode reads always go to the device
+ */
+public class TestFileCacheDirectIOStress {
+  static int[] THREADS = new int[] {1, 4, 16};
+
+  int segmentSize = 64 * 1024 * 1024;
+
+  int numRecords = 300000;
+
+  int keySize = 16;
+
+  int valueSize = 1000;
+
+  int numReadsPerThread = 200000;
+
+  byte[][] keys;
+
+  @Test
+  public void testBufferedVsDirect() throws IOException, InterruptedException {
+    Random r = new Random(1);
+    keys = new byte[numRecords][];
+    for (int i = 0; i < numRecords; i++) {
+      keys[i] = new byte[keySize];
+      r.nextBytes(keys[i]);
+    }
+    byte[] value = new byte[valueSize];
+    r.nextBytes(value);
+    for (boolean direct: new boolean[] {false, true}) {
+      Cache cache = createCache("cache-" + direct, direct);
+      long start = System.nanoTime();
+      for (int i = 0; i < numRecords; i++) {
+        cache.put(keys[i], value, 0);
+      }
+      long loadTime = System.nanoTime() - start;
+      boolean enabled = ((FileIOEngine) cache.getEngine()).isDirectIOEnabled();
+      System.out.printf("direct=%s (enabled=%s) load: %d items in %d ms\n", direct, enabled,
+        numRecords, loadTime / 1000000);
+      for (int n: THREADS) {
+        long rps = runReaders(cache, n);
+        System.out.printf("direct=%s threads=%d RPS=%d\n", direct, n, rps);
+      }
+      cache.dispose();
+    }
+  }
+
+  private long runReaders(Cache cache, int numThreads) throws InterruptedException {
+    Thread[] workers = new Thread[numThreads];
+    int[] failed = new int[numThreads];
+    for (int i = 0; i < numThreads; i++) {
+      final int id = i;
+      workers[i] = new Thread(() -> {
+        Random r = new Random(id);
+        byte[] buffer = new byte[2 * valueSize + 64 * 1024];
+        for (int k = 0; k < numReadsPerThread; k++) {
+          byte[] key = keys[r.nextInt(numRecords)];
+          try {
+            if (cache.get(key, 0, key.length, false, buffer, 0) < 0) {
+              failed[id]++;
+            }
+          } catch (IOException e) {
+            failed[id]++;
+          }
+        }
+      });
+    }
+    long start = System.nanoTime();
+    for (Thread t : workers) {
+      t.start();
+    }
+    for (Thread t : workers) {
+      t.join();
+    }
+    long end = System.nanoTime();
+    for (int f : failed) {
+      assertEquals(0, f);
+    }
+    return (long) numThreads * numReadsPerThread * 1000000000L / (end - start);
+  }
+
+  private Cache createCache(String cacheName, boolean direct) throws IOException {
+    Path path = Files.createTempDirectory(null);
+    File  dir = path.toFile();
+    dir.deleteOnExit();
+    String dataDir = dir.getAbsolutePath();
+
+    path = Files.createTempDirectory(null);
+    dir = path.toFile();
+    dir.deleteOnExit();
+    String snapshotDir = dir.getAbsolutePath();
+
+    Cache.Builder builder = new Cache.Builder(cacheName);
+    builder
+      .withCacheDataSegmentSize(segmentSize)
+      .withCacheMaximumSize(4L * numRecords * valueSize)
+      .withScavengerRunInterval(10000)
+      .withRecyclingSelector(MinAliveRecyclingSelector.class.getName())
+      .withDataWriter(BlockDataWriter.class.getName())
+      .withMemoryDataReader(BlockMemoryDataReader.class.getName())
+      .withFileDataReader(BlockFileDataReader.class.getName())
+      .withMainQueueIndexFormat(CompactBlockWithExpireIndexFormat.class.getName())
+      .withSnapshotDir(snapshotDir)
+      .withDataDir(dataDir)
+      .withEvictionDisabledMode(true)
+      .withFileDirectIOEnabled(direct);
+    return builder.buildDiskCache();
+  }
+}
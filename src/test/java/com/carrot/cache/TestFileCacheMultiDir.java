@@ -0,0 +1,69 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.carrot.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.carrot.cache.io.FileIOEngine;
+import com.carrot.cache.util.CacheConfig;
+
+public class TestFileCacheMultiDir extends TestFileCache {
+
+  @Before
+  public void setUp() throws IOException {
+    super.setUp();
+    this.numDataDirs = 3;
+  }
+
+  @Test
+  public void testStriping() throws IOException {
+    this.cache = createCache();
+    FileIOEngine engine = (FileIOEngine) cache.getEngine();
+    assertEquals(numDataDirs, engine.getNumberOfDataDirs());
+    this.expireTime = 1000000;
+    prepareData(150000);
+    int loaded = loadBytesCache(cache);
+    engine.waitForFlushes();
+    verifyBytesCache(cache, loaded);
+
+    String[] dirs = CacheConfig.getInstance().getDataDirs(cache.getName());
+    assertEquals(numDataDirs, dirs.length);
+    int total = 0;
+    for (int i = 0; i < numDataDirs; i++) {
+      int segments = engine.getDataDirSegments(i);
+      // All directories are used
+      assertTrue(segments > 0);
+      assertEquals(segments, new File(dirs[i]).listFiles().length);
+      assertTrue(engine.getSegmentFlusher(i).getBytesFlushed() > 0);
+      assertTrue(engine.getDataDirBytesRead(i) > 0);
+      total += segments;
+    }
+    for (int id = 0; id < engine.getNumberOfSegments(); id++) {
+      if (engine.getFileFor(id) != null) {
+        int dir = engine.getDataDirFor(id);
+        assertTrue(dir >= 0 && dir < numDataDirs);
+        total--;
+      }
+    }
+    assertEquals(0, total);
+  }
+}
@@ -14,16 +14,95 @@
  */
 package com.carrot.cache;
 
+import static org.junit.Assert.assertEquals;
+
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
 
 import org.junit.Before;
+import org.junit.Test;
+
+import com.carrot.cache.util.UnsafeAccess;
 
 public class TestOffheapCache extends TestCacheBase {
-  
+
   @Before
   public void setUp() throws IOException {
     super.setUp();
     this.offheap = true;
   }
-}
 
+  @Test
+  public void testGetAllocationFree() throws IOException {
+    System.out.println("Test get allocation free");
+    Scavenger.clear();
+    // Create cache
+    this.cache = createCache();
+
+    this.expireTime = 1000000;
+    prepareData(10000);
+    int loaded = loadBytesCache(cache);
+    System.out.println("loaded=" + loaded);
+
+    byte[] buffer = newSafeBuffer();
+    // Warm up: thread local buffers, JIT
+    for (int k = 0; k < 20; k++) {
+      getBytesCache(cache, loaded, buffer);
+    }
+
+    com.sun.management.ThreadMXBean bean =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    long threadId = Thread.currentThread().getId();
+    int numGets = 0;
+    long allocated = Long.MAX_VALUE;
+    // Allow a few runs for JIT to settle down
+    for (int k = 0; k < 5 && allocated > 0; k++) {
+      long start = bean.getThreadAllocatedBytes(threadId);
+      numGets = getBytesCache(cache, loaded, buffer);
+      allocated = bean.getThreadAllocatedBytes(threadId) - start;
+    }
+    System.out.println(String.format("gets=%d heap allocated=%d", numGets, allocated));
+    assertEquals(loaded, numGets);
+    assertEquals(0, allocated);
+
+  }
+
+  @Test
+  public void testGetNativeAllocationFree() throws IOException, InterruptedException {
+    System.out.println("Test get native allocation free");
+    // Memory access checks require all memory to be allocated in a debug mode
+    UnsafeAccess.setMallocDebugEnabled(true);
+    try {
+      Scavenger.clear();
+      // Create cache
+      this.cache = createCache();
+
+      this.expireTime = 1000000;
+      prepareData(10000);
+      int loaded = loadBytesCache(cache);
+      System.out.println("loaded=" + loaded);
+
+      // Run in a new thread: thread local buffers must be allocated in a debug mode
+      long[] result = new long[2];
+      Thread t = new Thread(() -> {
+        try {
+          byte[] buffer = newSafeBuffer();
+          // Warm up: thread local buffers
+          getBytesCache(cache, loaded, buffer);
+          long events = UnsafeAccess.mallocStats.getAllocEventNumber();
+          result[0] = getBytesCache(cache, loaded, buffer);
+          result[1] = UnsafeAccess.mallocStats.getAllocEventNumber() - events;
+        } catch (IOException e) {
+          result[0] = -1;
+        }
+      });
+      t.start();
+      t.join();
+      System.out.println(String.format("gets=%d native allocations=%d", result[0], result[1]));
+      assertEquals(loaded, result[0]);
+      assertEquals(0, result[1]);
+    } finally {
+      UnsafeAccess.setMallocDebugEnabled(false);
+    }
+  }
+}
@@ -0,0 +1,63 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.carrot.cache;
+
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.carrot.cache.io.BlockCodec;
+import com.carrot.cache.util.CacheConfig;
+
+public class TestOffheapCacheBlockCompression extends TestOffheapCache {
+
+  @Before
+  public void setUp() throws IOException {
+    super.setUp();
+    CacheConfig.getInstance().setBlockWriterCompressionCodec("cache", BlockCodec.DEFLATE);
+  }
+
+  @After
+  public void tearDown() {
+    super.tearDown();
+    CacheConfig.getInstance().setBlockWriterCompressionCodec("cache", BlockCodec.NONE);
+  }
+  
+  @Override
+  protected void prepareData(int numRecords) {
+    super.prepareData(numRecords);
+    makeValuesCompressible();
+  }
+  
+  @Test
+  public void testCompressionRatio() throws IOException {
+    System.out.println("Test compression ratio");
+    Scavenger.clear();
+    this.cache = createCache();
+    this.expireTime = 1000000; 
+    prepareData(150000);
+    int loaded = loadBytesCache(cache);
+    System.out.println("loaded=" + loaded);
+    verifyBytesCache(cache, loaded);
+    double ratio = cache.getCompressionRatio();
+    System.out.printf("compression ratio=%f compression time=%dns decompression time=%dns\n",
+      ratio, cache.getCompressionTime(), cache.getDecompressionTime());
+    assertTrue(ratio > 1.0);
+  }
+}
@@ -0,0 +1,71 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.carrot.cache;
+
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.carrot.cache.io.BlockCodec;
+import com.carrot.cache.io.IOEngine;
+import com.carrot.cache.io.Segment;
+import com.carrot.cache.util.CacheConfig;
+
+public class TestOffheapCacheBlockDictionary extends TestOffheapCacheBlockCompression {
+
+  @Before
+  public void setUp() throws IOException {
+    super.setUp();
+    CacheConfig conf = CacheConfig.getInstance();
+    conf.setBlockWriterDictionaryEnabled("cache", true);
+    conf.setBlockWriterDictionaryTrainingSize("cache", 256 * 1024);
+    conf.setBlockWriterDictionaryRetrainInterval("cache", 32 * 1024 * 1024);
+  }
+
+  @After
+  public void tearDown() {
+    super.tearDown();
+    CacheConfig.getInstance().setBlockWriterDictionaryEnabled("cache", false);
+  }
+  
+  @Test
+  public void testDictionaries() throws IOException {
+    System.out.println("Test dictionaries");
+    Scavenger.clear();
+    this.cache = createCache();
+    this.expireTime = 1000000; 
+    prepareData(150000);
+    int loaded = loadBytesCache(cache);
+    System.out.println("loaded=" + loaded);
+    verifyBytesCache(cache, loaded);
+    BlockCodec codec = BlockCodec.getCodec(cache.getName());
+    System.out.printf("dictionaries=%d current=%d\n", codec.getNumberOfDictionaries(),
+      codec.getDictionaryId());
+    assertTrue(codec.getDictionaryId() > 1);
+    IOEngine engine = cache.getEngine();
+    int withDictionary = 0;
+    for (int i = 0; i < engine.getNumberOfSegments(); i++) {
+      Segment s = engine.getSegmentById(i);
+      if (s != null && s.getDictionaryId() > 0) {
+        withDictionary++;
+      }
+    }
+    assertTrue(withDictionary > 0);
+  }
+}
@@ -0,0 +1,68 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.carrot.cache;
+
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.carrot.cache.io.IOEngine;
+import com.carrot.cache.io.Segment;
+import com.carrot.cache.util.CacheConfig;
+
+public class TestScavengerMemoryCacheMultithreaded extends TestScavengerBase {
+  
+  @Before
+  public void setUp() throws IOException {
+    super.setUp();
+    this.offheap = true;
+    CacheConfig.getInstance().setScavengerNumberOfThreads("cache", 4);
+  }
+  
+  @After
+  public void tearDown() {
+    super.tearDown();
+    CacheConfig.getInstance().setScavengerNumberOfThreads("cache", 1);
+  }
+  
+  @Test
+  public void testDistinctSegmentsForRecycling() throws IOException {
+    System.out.println("Test distinct segments for recycling");
+    Scavenger.clear();
+    this.cache = createCache();
+    this.expireTime = 1000000;
+    prepareData(100000);
+    int loaded = loadBytesCache(cache);
+    System.out.println("loaded=" + loaded);
+    IOEngine engine = cache.getEngine();
+    Set<Segment> claimed = new HashSet<Segment>();
+    Segment s;
+    while ((s = engine.getSegmentForRecycling()) != null) {
+      assertTrue(s.isSealed() && s.isRecycling());
+      assertTrue(claimed.add(s));
+    }
+    assertTrue(claimed.size() > 1);
+    // Released segment can be claimed again
+    Segment first = claimed.iterator().next();
+    engine.releaseSegmentForRecycling(first);
+    assertTrue(engine.getSegmentForRecycling() == first);
+  }
+}
@@ -0,0 +1,114 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.carrot.cache;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Test;
+
+import com.carrot.cache.Scavenger.Stats;
+import com.carrot.cache.controllers.MinAliveRecyclingSelector;
+import com.carrot.cache.util.UnsafeAccess;
+
+/**
+ * Scavenger scaling benchmark: reclaim rate (MB/s) for a different number of scavenger 
+ * worker threads. Cache is filled, half of the items are deleted, then scavenger
+ * runs until all sealed segments are recycled.
+ */
+public class TestScavengerScalingStress {
+  static int[] THREADS = new int[] {1, 2, 4, 8};
+
+  int numItems = 2000000;
+  
+  int keySize = 16;
+  
+  int valueSize = 400;
+  
+  int segmentSize = 16 * 1024 * 1024;
+  
+  boolean offheap = false;
+  
+  @Test
+  public void testScavengerScaling() throws IOException {
+    UnsafeAccess.debug = false;
+    int run = 0;
+    for (int n : THREADS) {
+      String cacheName = "cache-" + run++;
+      Cache cache = createCache(cacheName, n);
+      loadAndDelete(cache);
+      long allocated = cache.getStorageAllocated();
+      Scavenger scavenger = new Scavenger(cache);
+      long start = System.nanoTime();
+      scavenger.run();
+      long end = System.nanoTime();
+      Stats stats = Scavenger.getStatisticsForCache(cacheName);
+      double secs = (end - start) / 1e9;
+      System.out.printf(
+        "workers=%d allocated=%dMB scanned=%dMB freed=%dMB time=%.2fs reclaim=%.1fMB/s scan=%.1fMB/s\n",
+        n, allocated >> 20, stats.getTotalBytesScanned() >> 20, stats.getTotalBytesFreed() >> 20,
+        secs, stats.getTotalBytesFreed() / secs / (1 << 20), 
+        stats.getTotalBytesScanned() / secs / (1 << 20));
+      cache.dispose();
+    }
+  }
+  
+  /**
+   * Fill the cache and delete every other item
+   * @param cache cache
+   * @throws IOException
+   */
+  private void loadAndDelete(Cache cache) throws IOException {
+    byte[] key = new byte[keySize];
+    byte[] value = new byte[valueSize];
+    for (int i = 0; i < numItems; i++) {
+      UnsafeAccess.putInt(key, 0, i);
+      UnsafeAccess.putInt(value, 0, i);
+      cache.put(key, value, 0);
+    }
+    for (int i = 0; i < numItems; i += 2) {
+      UnsafeAccess.putInt(key, 0, i);
+      cache.delete(key);
+    }
+  }
+  
+  private Cache createCache(String cacheName, int threads) throws IOException {
+    Path path = Files.createTempDirectory(null);
+    File  dir = path.toFile();
+    dir.deleteOnExit();
+    String dataDir = dir.getAbsolutePath();
+
+    path = Files.createTempDirectory(null);
+    dir = path.toFile();
+    dir.deleteOnExit();
+    String snapshotDir = dir.getAbsolutePath();
+
+    Cache.Builder builder = new Cache.Builder(cacheName);
+    builder
+      .withCacheDataSegmentSize(segmentSize)
+      .withCacheMaximumSize(2L * numItems * (keySize + valueSize + 4))
+      .withScavengerRunInterval(10000)
+      .withScavengerDumpEntryBelowStart(0.1)
+      .withMinimumActiveDatasetRatio(0.9)
+      .withRecyclingSelector(MinAliveRecyclingSelector.class.getName())
+      .withSnapshotDir(snapshotDir)
+      .withDataDir(dataDir)
+      .withEvictionDisabledMode(true)
+      .withScavengerNumberOfThreads(threads);
+    return offheap? builder.buildMemoryCache(): builder.buildDiskCache();
+  }
+}
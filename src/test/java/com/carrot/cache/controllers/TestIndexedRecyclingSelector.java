@@ -0,0 +1,231 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.carrot.cache.controllers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.carrot.cache.io.Segment;
+
+public class TestIndexedRecyclingSelector {
+
+  int numSegments = 1000;
+
+  Segment[] segments;
+
+  Random r;
+
+  @Before
+  public void setUp() {
+    r = new Random();
+    long seed = System.currentTimeMillis();
+    r.setSeed(seed);
+    System.out.println("r.seed=" + seed);
+    segments = new Segment[numSegments];
+    long time = System.currentTimeMillis() - numSegments;
+    for (int i = 0; i < numSegments; i++) {
+      // Some slots are free
+      if (r.nextInt(10) == 0) {
+        continue;
+      }
+      Segment s = Segment.newSegment(0, 1024, i, 0);
+      Segment.Info info = s.getInfo();
+      info.setCreationTime(time + r.nextInt(numSegments));
+      info.setTotalItems(100);
+      info.updateEvictedDeleted(r.nextInt(100));
+      // Some segments are not sealed yet
+      if (r.nextInt(20) != 0) {
+        s.seal();
+      }
+      segments[i] = s;
+    }
+  }
+
+  @Test
+  public void testSegmentHeap() {
+    SegmentHeap heap = new SegmentHeap(numSegments);
+    double[] keys = new double[numSegments];
+    boolean[] present = new boolean[numSegments];
+    for (int i = 0; i < 100000; i++) {
+      int id = r.nextInt(numSegments);
+      if (segments[id] == null) {
+        continue;
+      }
+      if (r.nextInt(4) == 0) {
+        heap.remove(id);
+        present[id] = false;
+      } else {
+        keys[id] = r.nextInt(1000);
+        heap.update(segments[id], keys[id], id);
+        present[id] = true;
+      }
+      if (i % 100 == 0) {
+        int min = -1, size = 0;
+        for (int j = 0; j < numSegments; j++) {
+          if (!present[j]) {
+            continue;
+          }
+          size++;
+          if (min < 0 || keys[j] < keys[min]) {
+            min = j;
+          }
+        }
+        assertEquals(size, heap.size());
+        if (min >= 0) {
+          assertSame(segments[min], heap.peek());
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testMinAliveRecyclingSelector() {
+    verifySelector(new MinAliveRecyclingSelector(), new ScanSelector() {
+      @Override
+      double score(Segment.Info info) {
+        double r = (double) info.getTotalActiveItems() / info.getTotalItems();
+        return r < 0.99? r: 1.0;
+      }
+    });
+  }
+
+  @Test
+  public void testLRCRecyclingSelector() {
+    verifySelector(new LRCRecyclingSelector(), new ScanSelector() {
+      @Override
+      double score(Segment.Info info) {
+        return info.getTotalActiveItems() == 0? -1: info.getCreationTime();
+      }
+    });
+  }
+
+  @Test
+  public void testMRCRecyclingSelector() {
+    verifySelector(new MRCRecyclingSelector(), new ScanSelector() {
+      @Override
+      double score(Segment.Info info) {
+        return info.getTotalActiveItems() == 0? -Double.MAX_VALUE: -info.getCreationTime();
+      }
+    });
+  }
+
+  @Test
+  public void testExpiredFirst() {
+    IndexedRecyclingSelector selector = new MinAliveRecyclingSelector();
+    selector.selectForRecycling(segments);
+    Segment s = anySealed();
+    s.getInfo().setMaxExpireAt(0, System.currentTimeMillis() - 1);
+    selector.segmentUpdated(s);
+    assertSame(s, selector.selectForRecycling(segments));
+  }
+
+  @Test
+  public void testFilter() {
+    IndexedRecyclingSelector selector = new LRCRecyclingSelector();
+    selector.selectForRecycling(segments);
+    int size = selector.size();
+    Segment s = selector.selectForRecycling(segments, x -> x.getId() % 2 == 1);
+    assertTrue(s.getId() % 2 == 1);
+    for (Segment seg: segments) {
+      if (seg != null && seg.isSealed() && seg.getId() % 2 == 1) {
+        assertTrue(seg.getInfo().getCreationTime() >= s.getInfo().getCreationTime()
+          || seg.getInfo().getTotalActiveItems() == 0);
+      }
+    }
+    // Skipped segments are returned back
+    assertEquals(size, selector.size());
+  }
+
+  private Segment anySealed() {
+    while (true) {
+      Segment s = segments[r.nextInt(numSegments)];
+      if (s != null && s.isSealed()) {
+        return s;
+      }
+    }
+  }
+
+  private void verifySelector(IndexedRecyclingSelector selector, ScanSelector expected) {
+    for (int i = 0; i < 10000; i++) {
+      Segment s = selector.selectForRecycling(segments);
+      Segment e = expected.select(segments);
+      if (e == null) {
+        assertNull(s);
+        break;
+      }
+      assertEquals(expected.score(e.getInfo()), expected.score(s.getInfo()), 0.0);
+      switch (r.nextInt(4)) {
+        case 0:
+          // Recycled
+          segments[s.getId()] = null;
+          break;
+        case 1:
+          // Claimed for recycling
+          s.setRecycling(true);
+          break;
+        case 2:
+          // Claimed and released
+          s.setRecycling(true);
+          s.setRecycling(false);
+          selector.segmentUpdated(s);
+          break;
+        default:
+          // Items deleted
+          Segment u = anySealed();
+          u.getInfo().updateEvictedDeleted(Math.min(10, u.getInfo().getTotalActiveItems()));
+          selector.segmentUpdated(u);
+      }
+      if (r.nextInt(10) == 0) {
+        // New segment is sealed
+        int id = r.nextInt(numSegments);
+        if (segments[id] != null && !segments[id].isSealed()) {
+          segments[id].seal();
+          selector.segmentUpdated(segments[id]);
+        }
+      }
+    }
+  }
+
+  /**
+   * Reference selector (full scan)
+   */
+  static abstract class ScanSelector {
+
+    abstract double score(Segment.Info info);
+
+    Segment select(Segment[] segments) {
+      Segment selection = null;
+      double min = Double.MAX_VALUE;
+      for (Segment s: segments) {
+        if (s == null || !s.isSealed() || s.isRecycling()) {
+          continue;
+        }
+        double score = score(s.getInfo());
+        if (selection == null || score < min) {
+          min = score;
+          selection = s;
+        }
+      }
+      return selection;
+    }
+  }
+}
@@ -0,0 +1,157 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.carrot.cache.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.carrot.cache.util.UnsafeAccess;
+
+public class TestIndexBlockAllocator {
+
+  IndexBlockAllocator allocator;
+
+  @After
+  public void tearDown() {
+    if (allocator != null) {
+      allocator.dispose();
+    }
+  }
+
+  @Test
+  public void testAllocateFree() {
+    allocator = new IndexBlockAllocator(true);
+    int size = MemoryIndex.getMinimumBlockSize();
+    long ptr = allocator.allocate(size);
+    assertEquals(size, allocator.getUsedMemory());
+    assertEquals(1, allocator.getNumberOfSlabs());
+    assertEquals(IndexBlockAllocator.SLAB_SIZE, allocator.getReservedMemory());
+    UnsafeAccess.setMemory(ptr, size, (byte) 0xff);
+    allocator.free(ptr, size);
+    assertEquals(0, allocator.getUsedMemory());
+    // Block must be reused and zeroed
+    long $ptr = allocator.allocate(size);
+    assertEquals(ptr, $ptr);
+    for (int i = 0; i < size; i++) {
+      assertEquals(0, UnsafeAccess.toByte($ptr + i));
+    }
+    allocator.free($ptr, size);
+  }
+
+  @Test
+  public void testSizeClasses() {
+    allocator = new IndexBlockAllocator(true);
+    List<Long> ptrs = new ArrayList<Long>();
+    List<Integer> sizes = new ArrayList<Integer>();
+    long expectedUsed = 0;
+    for (int m: MemoryIndex.BASE_MULTIPLIERS) {
+      int size = m * MemoryIndex.BASE_SIZE;
+      for (int i = 0; i < 10; i++) {
+        ptrs.add(allocator.allocate(size));
+        sizes.add(size);
+        expectedUsed += size;
+      }
+    }
+    assertEquals(expectedUsed, allocator.getUsedMemory());
+    assertTrue(allocator.getReservedMemory() >= allocator.getUsedMemory());
+    long reserved = allocator.getReservedMemory();
+    for (int i = 0; i < ptrs.size(); i++) {
+      allocator.free(ptrs.get(i), sizes.get(i));
+    }
+    assertEquals(0, allocator.getUsedMemory());
+    // Slabs are kept
+    assertEquals(reserved, allocator.getReservedMemory());
+  }
+
+  @Test
+  public void testNonStandardSize() {
+    allocator = new IndexBlockAllocator(true);
+    int size = MemoryIndex.BASE_SIZE + 1;
+    long ptr = allocator.allocate(size);
+    assertEquals(size, allocator.getUsedMemory());
+    assertEquals(size, allocator.getReservedMemory());
+    assertEquals(0, allocator.getNumberOfSlabs());
+    allocator.free(ptr, size);
+    assertEquals(0, allocator.getUsedMemory());
+    assertEquals(0, allocator.getReservedMemory());
+  }
+
+  @Test
+  public void testDisabled() {
+    allocator = new IndexBlockAllocator(false);
+    int size = MemoryIndex.getMinimumBlockSize();
+    long ptr = allocator.allocate(size);
+    assertEquals(size, allocator.getUsedMemory());
+    assertEquals(size, allocator.getReservedMemory());
+    assertEquals(0, allocator.getNumberOfSlabs());
+    allocator.free(ptr, size);
+    assertEquals(0, allocator.getReservedMemory());
+  }
+
+  @Test
+  public void testMultithreaded() throws InterruptedException {
+    allocator = new IndexBlockAllocator(true);
+    int numThreads = 4;
+    int numIterations = 100000;
+    AtomicBoolean failed = new AtomicBoolean();
+    Runnable r = () -> {
+      Random r1 = new Random(Thread.currentThread().getId());
+      byte id = (byte) Thread.currentThread().getId();
+      long[] ptrs = new long[64];
+      int[] sizes = new int[64];
+      for (int i = 0; i < numIterations; i++) {
+        int n = r1.nextInt(ptrs.length);
+        if (ptrs[n] != 0) {
+          // Verify that nobody else has used this block
+          for (int k = 0; k < sizes[n]; k += 64) {
+            if (UnsafeAccess.toByte(ptrs[n] + k) != id) {
+              failed.set(true);
+            }
+          }
+          allocator.free(ptrs[n], sizes[n]);
+          ptrs[n] = 0;
+        } else {
+          int m = MemoryIndex.BASE_MULTIPLIERS[r1.nextInt(8)];
+          sizes[n] = m * MemoryIndex.BASE_SIZE;
+          ptrs[n] = allocator.allocate(sizes[n]);
+          UnsafeAccess.setMemory(ptrs[n], sizes[n], id);
+        }
+      }
+      for (int n = 0; n < ptrs.length; n++) {
+        if (ptrs[n] != 0) {
+          allocator.free(ptrs[n], sizes[n]);
+        }
+      }
+    };
+    Thread[] threads = new Thread[numThreads];
+    for (int i = 0; i < numThreads; i++) {
+      threads[i] = new Thread(r);
+      threads[i].start();
+    }
+    for (int i = 0; i < numThreads; i++) {
+      threads[i].join();
+    }
+    assertTrue(!failed.get());
+    assertEquals(0, allocator.getUsedMemory());
+  }
+}
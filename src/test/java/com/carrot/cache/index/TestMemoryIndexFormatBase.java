@@ -15,12 +15,15 @@
 package com.carrot.cache.index;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.util.Random;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -28,7 +31,10 @@ import org.junit.Before;
 import org.junit.Test;
 
 import com.carrot.cache.index.MemoryIndex.MutationResult;
+import com.carrot.cache.index.MemoryIndex.Result;
+import com.carrot.cache.index.MemoryIndex.ResultWithRankAndExpire;
 import com.carrot.cache.util.UnsafeAccess;
+import com.carrot.cache.util.Utils;
 
 public abstract class TestMemoryIndexFormatBase extends TestMemoryIndexBase{
   /** Logger */
@@ -393,6 +399,91 @@ public abstract class TestMemoryIndexFormatBase extends TestMemoryIndexBase{
 
   }
   
+  @Test
+  public void testRelocateMemory() {
+    System.out.println("Test relocate");
+    int loaded = loadReadMemory(100000);
+    // Record hits
+    verifyIndexMemory(true, loaded);
+    IndexFormat format = memoryIndex.getIndexFormat();
+    Random r = new Random();
+    for (int i = 0; i < numRecords; i++) {
+      long hash = Utils.hash64(mKeys[i], keySize);
+      short sid = (short) ((sids[i] + 1) % 32000);
+      int offset = nextOffset(r, 100000000);
+      if (memoryIndex.getSegmentId(mKeys[i], keySize) != sids[i]) {
+        // Hash collision
+        continue;
+      }
+      // Wrong old segment id
+      assertFalse(memoryIndex.relocate(hash, sid, sid, offset));
+      assertTrue(memoryIndex.relocate(hash, sids[i], sid, offset));
+      sids[i] = sid;
+      offsets[i] = offset;
+    }
+    verifyIndexMemory(loaded);
+    long size = memoryIndex.size();
+    assertEquals(loaded, (int) size);
+    // Hit counts are preserved
+    int entrySize = format.indexEntrySize();
+    long buf = UnsafeAccess.mallocZeroed(entrySize);
+    for (int i = 0; i < numRecords; i++) {
+      if (memoryIndex.find(mKeys[i], keySize, false, buf, entrySize) > 0) {
+        assertEquals(1, format.getHitCount(buf));
+      }
+    }
+    UnsafeAccess.free(buf);
+  }
+
+  @Test
+  public void testCheckDeleteKeysForScavenger() {
+    System.out.println("Test check delete keys for scavenger");
+    int loaded = loadReadMemory(100000);
+    int batchSize = 64;
+    long[] hashes = new long[batchSize];
+    ResultWithRankAndExpire[] results = new ResultWithRankAndExpire[batchSize];
+    for (int i = 0; i < batchSize; i++) {
+      results[i] = new ResultWithRankAndExpire();
+    }
+    // Nothing is deleted, except expired items
+    int expired = checkDeleteKeys(hashes, results, 0, Result.OK);
+    assertEquals(loaded - expired, (int) memoryIndex.size());
+    // Unknown keys
+    Random r = new Random();
+    for (int i = 0; i < batchSize; i++) {
+      hashes[i] = r.nextLong();
+    }
+    memoryIndex.checkDeleteKeysForScavenger(hashes, batchSize, results, 0);
+    for (int i = 0; i < batchSize; i++) {
+      assertEquals(Result.NOT_FOUND, results[i].getResult());
+    }
+    // Every item has low popularity
+    checkDeleteKeys(hashes, results, 1.0, Result.DELETED);
+    assertEquals(0, (int) memoryIndex.size());
+  }
+
+  private int checkDeleteKeys(long[] hashes, ResultWithRankAndExpire[] results, double ratio,
+      Result expected) {
+    int expired = 0;
+    for (int start = 0; start < numRecords; start += hashes.length) {
+      int num = Math.min(hashes.length, numRecords - start);
+      for (int i = 0; i < num; i++) {
+        hashes[i] = Utils.hash64(mKeys[start + i], keySize);
+      }
+      memoryIndex.checkDeleteKeysForScavenger(hashes, num, results, ratio);
+      for (int i = 0; i < num; i++) {
+        Result res = results[i].getResult();
+        if (res == Result.EXPIRED) {
+          expired++;
+        } else if (res != Result.NOT_FOUND) {
+          // Item can be not loaded or deleted already by a previous check (hash collision)
+          assertEquals(expected, res);
+        }
+      }
+    }
+    return expired;
+  }
+
   protected int loadReadBytes(int num) {
     prepareData(num);
     System.out.println("prepare done");
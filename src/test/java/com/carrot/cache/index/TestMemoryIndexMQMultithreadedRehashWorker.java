@@ -0,0 +1,35 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.carrot.cache.index;
+
+import org.junit.Before;
+
+import com.carrot.cache.util.UnsafeAccess;
+
+/**
+ * Runs all MQ multithreaded tests with background rehash worker enabled
+ */
+public class TestMemoryIndexMQMultithreadedRehashWorker extends TestMemoryIndexMQMultithreaded {
+  
+  @Before
+  @Override
+  public void setUp() {
+    UnsafeAccess.debug = false;
+    UnsafeAccess.mallocStats.clear();
+    memoryIndex = new MemoryIndex("default", MemoryIndex.Type.MQ);
+    memoryIndex.setRehashWorkerEnabled(true);
+    numThreads = 4;
+  }
+}
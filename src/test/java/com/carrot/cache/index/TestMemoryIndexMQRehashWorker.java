@@ -0,0 +1,68 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.carrot.cache.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.carrot.cache.index.MemoryIndex.MutationResult;
+import com.carrot.cache.index.MemoryIndex.Type;
+
+/**
+ * Runs all MQ tests with background rehash worker enabled
+ */
+public class TestMemoryIndexMQRehashWorker extends TestMemoryIndexMQ {
+
+  @Override
+  protected MemoryIndex getMemoryIndex() {
+    MemoryIndex index = new MemoryIndex("default", Type.MQ);
+    index.setRehashWorkerEnabled(true);
+    return index;
+  }
+  
+  @Test
+  public void testBackgroundRehashCompletes() throws InterruptedException {
+    prepareData(1000000);
+    int loaded = 0;
+    // Load until rehashing starts, worker must complete it without foreground help
+    for (int i = 0; i < numRecords; i++) {
+      MutationResult res = memoryIndex.insert(mKeys[i], keySize, mValues[i], valueSize, 
+        sids[i], offsets[i], expires[i]);
+      if (res == MutationResult.INSERTED) {
+        loaded++;
+      }
+      if (memoryIndex.isRehashingInProgress()) {
+        break;
+      }
+    }
+    assertTrue(memoryIndex.isRehashingInProgress());
+    assertTrue(memoryIndex.getRehashTotalSlots() > 0);
+    long start = System.currentTimeMillis();
+    while (memoryIndex.isRehashingInProgress() && System.currentTimeMillis() - start < 60000) {
+      Thread.sleep(10);
+    }
+    assertFalse(memoryIndex.isRehashingInProgress());
+    assertEquals(0, memoryIndex.getRehashedSlots());
+    assertTrue(memoryIndex.getRehashWorker().getMigratedSlots() > 0);
+    assertTrue(memoryIndex.getRehashTime() > 0);
+    System.out.printf("Rehash worker: migrated slots=%d time=%dms\n", 
+      memoryIndex.getRehashWorker().getMigratedSlots(), 
+      memoryIndex.getRehashWorker().getMigrationTime() / 1000000);
+    verifyIndexMemory(loaded);
+  }
+}
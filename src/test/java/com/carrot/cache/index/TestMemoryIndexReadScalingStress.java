@@ -0,0 +1,148 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.carrot.cache.index;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.apache.commons.math3.distribution.ZipfDistribution;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.carrot.cache.index.MemoryIndex.MutationResult;
+import com.carrot.cache.util.TestUtils;
+import com.carrot.cache.util.UnsafeAccess;
+
+/**
+ * Read scaling benchmark: compares locked and optimistic (lock - free) 
+ * index reads for a different number of reader threads on a Zipf workload
+ */
+public class TestMemoryIndexReadScalingStress {
+  static int[] THREADS = new int[] {1, 2, 4, 8, 16, 32, 64};
+  
+  MemoryIndex memoryIndex;
+  
+  int numRecords = 1000000;
+  
+  int numReadsPerThread = 1000000;
+  
+  double zipfAlpha = 0.9;
+  
+  int keySize = 16;
+  
+  byte[][] keys;
+  
+  @Before
+  public void setUp() {
+    UnsafeAccess.debug = false;
+    UnsafeAccess.mallocStats.clear();
+    memoryIndex = new MemoryIndex("default", MemoryIndex.Type.MQ);
+    loadIndex();
+  }
+  
+  @After
+  public void tearDown() {
+    memoryIndex.dispose();
+  }
+  
+  private void loadIndex() {
+    IndexFormat format = memoryIndex.getIndexFormat();
+    int entrySize = format.indexEntrySize();
+    long buf = UnsafeAccess.mallocZeroed(entrySize);
+    Random r = new Random(1);
+    keys = new byte[numRecords][];
+    for (int i = 0; i < numRecords; i++) {
+      keys[i] = TestUtils.randomBytes(keySize, r);
+      byte[] value = TestUtils.randomBytes(keySize, r);
+      format.writeIndex(0L, buf, keys[i], 0, keySize, value, 0, value.length, 
+        (short) r.nextInt(1000), r.nextInt(100000), r.nextInt(10000), 0);
+      MutationResult result = memoryIndex.insert(keys[i], 0, keySize, buf, entrySize);
+      assertEquals(MutationResult.INSERTED, result);
+    }
+    UnsafeAccess.free(buf);
+  }
+  
+  @Test
+  public void testReadScalingNoHit() throws InterruptedException {
+    runAll(false);
+  }
+  
+  @Test
+  public void testReadScalingWithHit() throws InterruptedException {
+    runAll(true);
+  }
+  
+  private void runAll(boolean hit) throws InterruptedException {
+    for (int n : THREADS) {
+      memoryIndex.setOptimisticReadsEnabled(false);
+      long locked = runReaders(n, hit);
+      memoryIndex.setOptimisticReadsEnabled(true);
+      long failures = memoryIndex.getOptimisticReadFailures();
+      long optimistic = runReaders(n, hit);
+      failures = memoryIndex.getOptimisticReadFailures() - failures;
+      System.out.printf("threads=%d hit=%s locked RPS=%d optimistic RPS=%d retries=%d\n", n, hit, 
+        locked, optimistic, failures);
+    }
+  }
+  
+  /**
+   * Run readers
+   * @param numThreads number of reader threads
+   * @param hit promote on hit
+   * @return total reads per second
+   */
+  private long runReaders(int numThreads, boolean hit) throws InterruptedException {
+    Thread[] workers = new Thread[numThreads];
+    int[] failed = new int[numThreads];
+    for (int i = 0; i < numThreads; i++) {
+      final int id = i;
+      workers[i] = new Thread(() -> {
+        failed[id] = read(id, hit);
+      });
+    }
+    long start = System.nanoTime();
+    for (Thread t : workers) {
+      t.start();
+    }
+    for (Thread t : workers) {
+      t.join();
+    }
+    long end = System.nanoTime();
+    for (int f : failed) {
+      assertEquals(0, f);
+    }
+    return (long) numThreads * numReadsPerThread * 1000000000L / (end - start);
+  }
+  
+  private int read(int id, boolean hit) {
+    int entrySize = memoryIndex.getIndexFormat().indexEntrySize();
+    long buf = UnsafeAccess.mallocZeroed(entrySize);
+    ZipfDistribution dist = new ZipfDistribution(numRecords, zipfAlpha);
+    dist.reseedRandomGenerator(id);
+    int[] sample = dist.sample(1 << 16);
+    int failed = 0;
+    for (int i = 0; i < numReadsPerThread; i++) {
+      byte[] key = keys[sample[i & 0xffff] - 1];
+      int result = memoryIndex.find(key, 0, keySize, hit, buf, entrySize);
+      if (result != entrySize) {
+        failed++;
+      }
+    }
+    UnsafeAccess.free(buf);
+    return failed;
+  }
+}
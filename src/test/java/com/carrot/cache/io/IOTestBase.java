@@ -93,6 +93,25 @@ public abstract class IOTestBase {
     }  
   }
   
+  /**
+   * Makes values compressible: every value repeats its first quarter
+   */
+  protected void makeValuesCompressible() {
+    for (int i = 0; i < numRecords; i++) {
+      byte[] value = values[i];
+      int len = Math.max(1, value.length / 4);
+      for (int k = len; k < value.length; k++) {
+        value[k] = value[k % len];
+      }
+      byte[] mValue = new byte[value.length];
+      UnsafeAccess.copy(mValues[i], mValue, 0, mValue.length);
+      for (int k = len; k < mValue.length; k++) {
+        mValue[k] = mValue[k % len];
+      }
+      UnsafeAccess.copy(mValue, 0, mValues[i], mValue.length);
+    }
+  }
+  
   protected long getExpire(int n) {
     return System.currentTimeMillis() + n * 100000;
   }
@@ -393,6 +412,79 @@ public abstract class IOTestBase {
     System.out.println("verification failed=" + failed);
   }
   
+  /**
+   * Allocate buffer large enough for any key - value pair of a test data set
+   * @return buffer
+   */
+  protected byte[] newSafeBuffer() {
+    return new byte[safeBufferSize()];
+  }
+
+  /**
+   * Reads first num keys from a cache into a given buffer, does not allocate 
+   * any memory by itself
+   * @param cache cache
+   * @param num number of keys
+   * @param buffer buffer
+   * @return number of keys found
+   * @throws IOException
+   */
+  protected int getBytesCache(Cache cache, int num, byte[] buffer) throws IOException {
+    int found = 0;
+    for (int i = 0; i < num; i++) {
+      byte[] key = keys[i];
+      long size = cache.get(key, 0, key.length, false, buffer, 0);
+      assertTrue(size <= buffer.length);
+      if (size > 0) {
+        found++;
+      }
+    }
+    return found;
+  }
+  
+  protected void verifyBytesCacheGetAll(Cache cache, int num, int batchSize) throws IOException {
+    byte[] buffer = new byte[batchSize * safeBufferSize()];
+    // Every other key in a batch is absent
+    byte[][] batch = new byte[batchSize][];
+    int[] offsets = new int[batchSize];
+    int[] sizes = new int[batchSize];
+    for (int start = 0; start < num; start += batchSize / 2) {
+      int n = Math.min(batchSize / 2, num - start);
+      for (int j = 0; j < n; j++) {
+        batch[2 * j] = keys[start + j];
+        batch[2 * j + 1] = TestUtils.randomBytes(keys[start + j].length, r);
+      }
+      byte[][] keyBatch = n * 2 == batchSize? batch: Arrays.copyOf(batch, 2 * n);
+      int found = cache.getAll(keyBatch, false, buffer, 0, offsets, sizes);
+      assertEquals(n, found);
+      for (int j = 0; j < n; j++) {
+        byte[] key = keys[start + j];
+        byte[] value = values[start + j];
+        assertEquals(-1, offsets[2 * j + 1]);
+        assertEquals(-1, sizes[2 * j + 1]);
+        assertEquals(Utils.kvSize(key.length, value.length), sizes[2 * j]);
+        int off = offsets[2 * j];
+        int kSize = Utils.readUVInt(buffer, off);
+        assertEquals(key.length, kSize);
+        int kSizeSize = Utils.sizeUVInt(kSize);
+        int vSize = Utils.readUVInt(buffer, off + kSizeSize);
+        assertEquals(value.length, vSize);
+        off += kSizeSize + Utils.sizeUVInt(vSize);
+        assertTrue( Utils.compareTo(buffer, off, kSize, key, 0, key.length) == 0);
+        off += kSize;
+        assertTrue( Utils.compareTo(buffer, off, vSize, value, 0, value.length) == 0);
+      }
+    }
+    // Buffer is too small - sizes must be reported back
+    batch = new byte[][] {keys[0], keys[1]};
+    int found = cache.getAll(batch, false, new byte[1], 0, offsets, sizes);
+    assertEquals(0, found);
+    for (int i = 0; i < batch.length; i++) {
+      assertEquals(-1, offsets[i]);
+      assertTrue(sizes[i] > 1);
+    }
+  }
+  
   protected void verifyBytesCacheByteBuffer(Cache cache, int num) throws IOException {
     int bufferSize = safeBufferSize();
     ByteBuffer buffer = ByteBuffer.allocate(bufferSize);
@@ -891,6 +983,58 @@ public abstract class IOTestBase {
     }
   }
 
+  /**
+   * Verify items of a compressed segment
+   * @param num number of items
+   * @param memory items were loaded from memory
+   * @return number of compressed blocks
+   */
+  protected int verifyCompressedBlocks(int num, boolean memory) {
+    long ptr = segment.getAddress();
+    long size = segment.size();
+    BlockCodec codec = BlockCodec.getCodec("default");
+    int numBlocks = BlockReaderWriterSupport.getNumberOfBlocks(ptr, size);
+    int compressed = 0;
+    int i = 0;
+    for (int n = 0; n < numBlocks; n++) {
+      int entry = BlockReaderWriterSupport.getBlockTableEntry(ptr, size, n);
+      long blockPtr = ptr + BlockReaderWriterSupport.getBlockOffset(entry);
+      long block = 0;
+      if (BlockReaderWriterSupport.isCompressedBlock(entry)) {
+        byte[] raw = BlockReaderWriterSupport.decompressBlock(codec, 
+          segment.getDictionaryId(), blockPtr, null);
+        block = UnsafeAccess.allocAndCopy(raw, 0, raw.length);
+        blockPtr = block;
+        compressed++;
+      }
+      int blockDataSize = UnsafeAccess.toInt(blockPtr);
+      long $ptr = blockPtr + META_SIZE;
+      while ($ptr < blockPtr + blockDataSize + META_SIZE) {
+        int kSize = Utils.readUVInt($ptr);
+        int kSizeSize = Utils.sizeUVInt(kSize);
+        int vSize = Utils.readUVInt($ptr + kSizeSize);
+        int vSizeSize = Utils.sizeUVInt(vSize);
+        assertEquals(keys[i].length, kSize);
+        assertEquals(values[i].length, vSize);
+        long kPtr = $ptr + kSizeSize + vSizeSize;
+        if (memory) {
+          assertTrue(Utils.compareTo(mKeys[i], kSize, kPtr, kSize) == 0);
+          assertTrue(Utils.compareTo(mValues[i], vSize, kPtr + kSize, vSize) == 0);
+        } else {
+          assertTrue(Utils.compareTo(keys[i], 0, kSize, kPtr, kSize) == 0);
+          assertTrue(Utils.compareTo(values[i], 0, vSize, kPtr + kSize, vSize) == 0);
+        }
+        $ptr += kSize + vSize + kSizeSize + vSizeSize;
+        i++;
+      }
+      if (block != 0) {
+        UnsafeAccess.free(block);
+      }
+    }
+    assertEquals(num, i);
+    return compressed;
+  }
+  
   protected int nextKeySize() {
     int size = this.maxKeySize / 2 + r.nextInt(this.maxKeySize / 2);
     return size;
@@ -0,0 +1,79 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.carrot.cache.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class TestBlockCache {
+
+  int blockSize = 4096;
+
+  @Test
+  public void testGetPutInvalidate() {
+    BlockCache cache = new BlockCache(64 * blockSize, blockSize, 10);
+    assertEquals(64, cache.getCapacity());
+    Random r = new Random();
+    byte[] block = new byte[blockSize];
+    r.nextBytes(block);
+    byte[] buffer = new byte[2 * blockSize];
+
+    long key = cache.getKey(1, blockSize);
+    assertFalse(cache.get(key, buffer, 0));
+    cache.put(key, block, 0);
+    assertTrue(cache.get(key, buffer, blockSize));
+    byte[] copy = new byte[blockSize];
+    System.arraycopy(buffer, blockSize, copy, 0, blockSize);
+    assertArrayEquals(block, copy);
+    // Other blocks and segments are not affected
+    assertFalse(cache.get(cache.getKey(1, 0), buffer, 0));
+    assertFalse(cache.get(cache.getKey(2, blockSize), buffer, 0));
+    assertEquals(1, cache.getHits());
+    assertEquals(3, cache.getMisses());
+    // Disposed segment
+    cache.invalidate(1);
+    assertFalse(cache.get(cache.getKey(1, blockSize), buffer, 0));
+    assertTrue(key != cache.getKey(1, blockSize));
+    cache.dispose();
+  }
+
+  @Test
+  public void testBoundedSize() {
+    int capacity = 256;
+    BlockCache cache = new BlockCache((long) capacity * blockSize, blockSize, 10);
+    byte[] block = new byte[blockSize];
+    int numBlocks = 10 * capacity;
+    for (int i = 0; i < numBlocks; i++) {
+      block[0] = (byte) i;
+      cache.put(cache.getKey(i % 10, i * blockSize), block, 0);
+    }
+    int cached = 0;
+    for (int i = 0; i < numBlocks; i++) {
+      if (cache.get(cache.getKey(i % 10, i * blockSize), block, 0)) {
+        assertEquals((byte) i, block[0]);
+        cached++;
+      }
+    }
+    assertTrue(cached > 0);
+    assertTrue(cached <= capacity);
+    cache.dispose();
+  }
+}
@@ -0,0 +1,174 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.carrot.cache.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.carrot.cache.util.CacheConfig;
+
+public class TestBlockCodec {
+
+  @Test
+  public void testLZ4() {
+    verifyCodec(BlockCodec.newCodec(BlockCodec.LZ4));
+  }
+
+  @Test
+  public void testDeflate() {
+    verifyCodec(BlockCodec.newCodec(BlockCodec.DEFLATE));
+  }
+
+  @Test
+  public void testDictionary() throws IOException {
+    Random r = new Random();
+    long seed = System.currentTimeMillis();
+    r.setSeed(seed);
+    System.out.println("r.seed=" + seed);
+    String cacheName = "dictionary";
+    CacheConfig conf = CacheConfig.getInstance();
+    conf.setBlockWriterCompressionCodec(cacheName, BlockCodec.DEFLATE);
+    conf.setBlockWriterDictionaryEnabled(cacheName, true);
+    conf.setBlockWriterDictionarySize(cacheName, 4096);
+    conf.setBlockWriterDictionaryTrainingSize(cacheName, 64 * 1024);
+    conf.setBlockWriterDictionaryRetrainInterval(cacheName, 128 * 1024);
+    BlockCodec codec = BlockCodec.getCodec(cacheName);
+    try {
+      assertTrue(codec.isDictionaryEnabled());
+      int sampled = trainDictionary(codec, r);
+      assertEquals(1, codec.getDictionaryId());
+      assertTrue(sampled >= 64 * 1024);
+      byte[] dict = codec.getDictionary(1);
+      assertTrue(dict.length > 0 && dict.length <= 4096);
+      
+      // Dictionary is persistent
+      ByteArrayOutputStream baos = new ByteArrayOutputStream();
+      codec.save(baos);
+      BlockCodec loaded = BlockCodec.newCodec(BlockCodec.DEFLATE);
+      loaded.load(new ByteArrayInputStream(baos.toByteArray()));
+      assertEquals(1, loaded.getDictionaryId());
+      assertArrayEquals(dict, loaded.getDictionary(1));
+      
+      // Small records compress better with a dictionary
+      long withDict = 0, noDict = 0;
+      byte[] compressed = new byte[1024];
+      for (int i = 0; i < 1000; i++) {
+        byte[] record = nextRecord(r);
+        int len = codec.compress(0, record, 0, record.length, compressed, 0, compressed.length);
+        noDict += len;
+        len = codec.compress(1, record, 0, record.length, compressed, 0, compressed.length);
+        withDict += len;
+        byte[] result = new byte[record.length];
+        loaded.decompress(1, compressed, 0, len, result, 0, record.length);
+        assertArrayEquals(record, result);
+      }
+      System.out.printf("compressed size: no dictionary=%d dictionary=%d\n", noDict, withDict);
+      assertTrue(withDict < noDict * 3 / 4);
+      
+      // Retrain after retrain interval
+      sampled = trainDictionary(codec, r);
+      assertEquals(2, codec.getDictionaryId());
+      assertTrue(sampled >= (128 + 64) * 1024);
+      trainDictionary(codec, r);
+      assertEquals(3, codec.getDictionaryId());
+      
+      // Unused dictionaries are released, current and previous are kept
+      codec.retainDictionaries(new HashSet<Integer>());
+      assertNull(codec.getDictionary(1));
+      assertNotNull(codec.getDictionary(2));
+      assertNotNull(codec.getDictionary(3));
+    } finally {
+      BlockCodec.removeCodec(cacheName);
+      conf.setBlockWriterCompressionCodec(cacheName, BlockCodec.NONE);
+    }
+  }
+  
+  private int trainDictionary(BlockCodec codec, Random r) {
+    int id = codec.getDictionaryId();
+    int sampled = 0;
+    while (codec.getDictionaryId() == id) {
+      byte[] record = nextRecord(r);
+      codec.addSample(record, 0, record.length);
+      sampled += record.length;
+    }
+    return sampled;
+  }
+  
+  private byte[] nextRecord(Random r) {
+    int id = r.nextInt(1000000);
+    String[] statuses = new String[] {"active", "suspended", "pending", "deleted"};
+    String record = String.format("{\"user_id\":%d,\"name\":\"user_%d\",\"email\":"
+        + "\"user_%d@example.com\",\"status\":\"%s\",\"created_at\":\"2022-%02d-%02dT10:%02d:00Z\","
+        + "\"preferences\":{\"language\":\"en_US\",\"timezone\":\"America/Los_Angeles\","
+        + "\"notifications\":{\"email\":true,\"sms\":false,\"push\":true}},"
+        + "\"score\":%d}", id, id, id, statuses[r.nextInt(4)], 1 + r.nextInt(12), 
+        1 + r.nextInt(28), r.nextInt(60), r.nextInt(10000));
+    return record.getBytes();
+  }
+
+  private void verifyCodec(BlockCodec codec) {
+    Random r = new Random();
+    long seed = System.currentTimeMillis();
+    r.setSeed(seed);
+    System.out.println("r.seed=" + seed);
+    int[] sizes = new int[] {0, 1, 5, 12, 13, 100, 4096, 65536, 200000};
+    for (int size : sizes) {
+      // Random data, repeated sequences and a long run of one byte
+      for (int type = 0; type < 3; type++) {
+        byte[] data = new byte[size];
+        r.nextBytes(data);
+        if (type == 1) {
+          int period = 1 + r.nextInt(100);
+          for (int i = period; i < size; i++) {
+            data[i] = data[i - period];
+          }
+        } else if (type == 2) {
+          Arrays.fill(data, (byte) 7);
+        }
+        byte[] compressed = new byte[2 * size + 64];
+        int off = 3;
+        int len = codec.compress(data, 0, size, compressed, off, compressed.length - off);
+        assertTrue(len > 0);
+        if (type > 0 && size >= 4096) {
+          assertTrue(len < size / 4);
+        }
+        byte[] result = new byte[size + 5];
+        codec.decompress(compressed, off, len, result, 5, size);
+        assertArrayEquals(data, Arrays.copyOfRange(result, 5, size + 5));
+      }
+    }
+    // Output does not fit
+    byte[] data = new byte[4096];
+    r.nextBytes(data);
+    byte[] compressed = new byte[4096];
+    assertEquals(-1, codec.compress(data, 0, data.length, compressed, 0, data.length / 2));
+    assertTrue(codec.getRawBytes() > 0);
+    assertTrue(codec.getCompressionRatio() > 1.0);
+    assertTrue(codec.getCompressionTime() > 0);
+    assertTrue(codec.getDecompressedBlocks() > 0);
+  }
+}
@@ -14,6 +14,8 @@
  */
 package com.carrot.cache.io;
 
+import static org.junit.Assert.assertTrue;
+
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
@@ -114,6 +116,20 @@ public class TestFileIOEngine extends IOTestBase{
     verifyMemoryEngineWithDeletes(engine, loaded, loaded / 2);
   }
   
+  @Test
+  public void testSegmentBufferReuse() throws IOException {
+    /*DEBUG*/ System.out.println("testSegmentBufferReuse");
+    createEngine(4 * 1024 * 1024, 20 * 4 * 1024 * 1024);
+    prepareData(100000);
+    int loaded = loadBytesEngine(engine);
+    engine.waitForFlushes();
+    SegmentBufferPool pool = engine.getSegmentBufferPool();
+    // Buffers of flushed segments are reused for new RAM segments
+    assertTrue(pool.getHits() > 0);
+    assertTrue(pool.getPooledBuffers() <= pool.getMaxPooledBuffers());
+    verifyBytesEngine(engine, loaded);
+  }
+  
   @Test
   public void testLoadSave() throws IOException {
     /*DEBUG*/ System.out.println("testLoadSave");
@@ -140,10 +156,11 @@ public class TestFileIOEngine extends IOTestBase{
     verifyMemoryEngine(engine, loaded);
   }
   
-  private void createEngine(long segmentSize, long cacheSize) throws IOException {
+  protected void createEngine(long segmentSize, long cacheSize) throws IOException {
     this.segmentSize = (int) segmentSize;
     this.cacheSize = cacheSize;
     CacheConfig conf = TestUtils.mockConfigForTests(this.segmentSize, this.cacheSize);
+    configure(conf);
     this.engine = new FileIOEngine(conf);
   }
   
@@ -151,6 +168,14 @@ public class TestFileIOEngine extends IOTestBase{
     this.segmentSize = (int) segmentSize;
     this.cacheSize = cacheSize;
     CacheConfig conf = TestUtils.mockConfigForTests(this.segmentSize, this.cacheSize, dataDir);
+    configure(conf);
     this.engine = new FileIOEngine(conf);
   }
+  
+  /**
+   * Subclasses can override engine configuration
+   * @param conf configuration
+   */
+  protected void configure(CacheConfig conf) {
+  }
 }
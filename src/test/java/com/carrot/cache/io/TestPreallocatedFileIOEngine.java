@@ -0,0 +1,60 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.carrot.cache.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import com.carrot.cache.util.CacheConfig;
+
+public class TestPreallocatedFileIOEngine extends TestFileIOEngine {
+
+  @Override
+  protected void configure(CacheConfig conf) {
+    Mockito.doReturn(true).when(conf).getFileStoragePreallocated(Mockito.anyString());
+  }
+
+  @Test
+  public void testScanSegments() throws IOException {
+    createEngine(4 * 1024 * 1024, 20 * 4 * 1024 * 1024);
+    assertTrue(engine.isStoragePreallocated());
+    prepareData(100000);
+    int loaded = loadBytesEngine(engine);
+    engine.waitForFlushes();
+    int scanned = 0;
+    for (int id = 0; id < engine.getNumberOfSegments(); id++) {
+      Segment s = engine.getSegmentById(id);
+      if (s == null || s.isOffheap()) {
+        continue;
+      }
+      assertTrue(engine.getFileOffsetFor(id) > 0);
+      SegmentScanner scanner = engine.getScanner(s);
+      int count = 0;
+      while (scanner.hasNext()) {
+        assertTrue(scanner.keyLength() > 0);
+        count++;
+        scanner.next();
+      }
+      assertEquals(s.getTotalItems(), count);
+      scanned += count;
+    }
+    assertTrue(scanned > 0 && scanned <= loaded);
+  }
+}
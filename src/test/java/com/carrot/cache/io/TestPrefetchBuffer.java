@@ -60,6 +60,27 @@ public class TestPrefetchBuffer extends IOTestBase {
     int n = loadBytes();
     RandomAccessFile raf = TestUtils.saveToFile(segment);
     PrefetchBuffer pbuf = new PrefetchBuffer(raf, 256 * 1024);
+    verifyBaseSegment(pbuf, n);
+    raf.close();
+  }
+  
+  @Test
+  public void testPrefetchBufferWithBaseWriterReadAhead() throws IOException {
+    segment.setDataWriter(new BaseDataWriter());
+    int n = loadBytes();
+    RandomAccessFile raf = TestUtils.saveToFile(segment);
+    for (int readAhead = 1; readAhead <= 3; readAhead++) {
+      PrefetchBuffer pbuf = new PrefetchBuffer(raf, 0, raf.length(), 256 * 1024, readAhead);
+      verifyBaseSegment(pbuf, n);
+      pbuf.close();
+    }
+    assertTrue(PrefetchBuffer.getReadThroughput() > 0);
+    int chunkSize = PrefetchBuffer.getChunkSize(256 * 1024);
+    assertTrue(chunkSize >= PrefetchBuffer.MIN_CHUNK_SIZE && chunkSize <= 256 * 1024);
+    raf.close();
+  }
+  
+  private void verifyBaseSegment(PrefetchBuffer pbuf, int n) throws IOException {
     int count = 0;
     while (count < n) {
       byte[] key = keys[count];
@@ -80,7 +101,6 @@ public class TestPrefetchBuffer extends IOTestBase {
       assertTrue(result);
       count++;
     }
-    raf.close();
   }
   
   @Test
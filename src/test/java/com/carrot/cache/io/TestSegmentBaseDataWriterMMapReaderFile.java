@@ -0,0 +1,125 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.carrot.cache.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import com.carrot.cache.index.MemoryIndex;
+import com.carrot.cache.index.MemoryIndex.Type;
+import com.carrot.cache.io.FileIOEngine.MappedFile;
+import com.carrot.cache.util.TestUtils;
+import com.carrot.cache.util.UnsafeAccess;
+
+public class TestSegmentBaseDataWriterMMapReaderFile extends IOTestBase {
+
+  MappedByteBuffer mapped;
+
+  @Before
+  public void setUp() {
+    this.index = new MemoryIndex("default", Type.MQ);
+    this.segmentSize = 4 * 1024 * 1024;
+    this.numRecords = 10000;
+    this.r = new Random();
+    long seed = System.currentTimeMillis();
+    r.setSeed(seed);
+    /*DEBUG*/ System.out.println("r.seed="+ seed);
+    segment = Segment.newSegment(this.segmentSize, 1, 1);
+    segment.init("default");
+    prepareData(this.numRecords);
+    segment.setDataWriter(new BaseDataWriter());
+  }
+
+  @After
+  public void tearDown() {
+    super.tearDown();
+    this.segment.dispose();
+    if (this.mapped != null) {
+      UnsafeAccess.invokeCleaner(this.mapped);
+    }
+  }
+
+  private FileIOEngine mockEngine(RandomAccessFile file) throws IOException {
+    FileChannel fc = file.getChannel();
+    this.mapped = fc.map(FileChannel.MapMode.READ_ONLY, 0, fc.size());
+    long address = UnsafeAccess.address(this.mapped);
+    assertTrue(address > 0);
+    MappedFile mf = new MappedFile(this.mapped, address);
+    FileIOEngine engine  = Mockito.mock(FileIOEngine.class);
+    Mockito.when(engine.getSegmentById(Mockito.anyInt())).thenReturn(segment);
+    Mockito.when(engine.getFileFor(Mockito.anyInt())).thenReturn(file);
+    Mockito.when(engine.getMappedFile(Mockito.anyInt())).thenReturn(mf);
+    return engine;
+  }
+
+  @Test
+  public void testWritesBytes() throws IOException {
+    int count = loadBytes();
+    RandomAccessFile file = TestUtils.saveToFile(segment);
+    FileIOEngine engine = mockEngine(file);
+    DataReader reader = new MMapFileDataReader();
+    verifyBytesWithReader(count, reader, engine);
+    verifyBytesWithReaderByteBuffer(count, reader, engine);
+  }
+
+  @Test
+  public void testWritesMemory() throws IOException {
+    int count = loadMemory();
+    RandomAccessFile file = TestUtils.saveToFile(segment);
+    FileIOEngine engine = mockEngine(file);
+    DataReader reader = new MMapFileDataReader();
+    verifyMemoryWithReader(count, reader, engine);
+    verifyMemoryWithReaderByteBuffer(count, reader, engine);
+  }
+
+  @Test
+  public void testReadWrongOffset() throws IOException {
+    int count = loadBytes();
+    RandomAccessFile file = TestUtils.saveToFile(segment);
+    FileIOEngine engine = mockEngine(file);
+    DataReader reader = new MMapFileDataReader();
+    byte[] buffer = new byte[segmentSize];
+    byte[] key = keys[count - 1];
+    // Offset beyond the end of a segment
+    int result = reader.read(engine, key, 0, key.length, 1, file.length(), -1, buffer, 0);
+    assertEquals(IOEngine.NOT_FOUND, result);
+    // Offset of another item
+    result = reader.read(engine, key, 0, key.length, 1, 0, -1, buffer, 0);
+    assertEquals(IOEngine.NOT_FOUND, result);
+  }
+
+  @Test
+  public void testSegmentScanner() throws IOException {
+    int count = loadBytes();
+    RandomAccessFile file = TestUtils.saveToFile(segment);
+    FileIOEngine engine = mockEngine(file);
+    DataReader reader = new MMapFileDataReader();
+    // Seal the segment
+    segment.seal();
+    SegmentScanner scanner = reader.getSegmentScanner(engine, segment);
+    verifyScanner(scanner, count);
+  }
+}
@@ -15,6 +15,7 @@
 package com.carrot.cache.io;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
@@ -30,6 +31,7 @@ import org.mockito.Mockito;
 
 import com.carrot.cache.index.MemoryIndex;
 import com.carrot.cache.index.MemoryIndex.Type;
+import com.carrot.cache.util.Utils;
 
 public class TestSegmentBaseDataWriterReaderMemory extends IOTestBase{
   
@@ -118,4 +120,52 @@ public class TestSegmentBaseDataWriterReaderMemory extends IOTestBase{
     verifyBytesWithReader(count, reader, engine);
   }
   
+  @Test
+  public void testConcurrentAppends() throws InterruptedException {
+    int numThreads = 4;
+    long[] offsets = new long[numRecords];
+    Thread[] workers = new Thread[numThreads];
+    for (int i = 0; i < numThreads; i++) {
+      final int id = i;
+      workers[i] = new Thread(() -> {
+        for (int k = id; k < numRecords; k += numThreads) {
+          offsets[k] = segment.append(keys[k], values[k], expires[k]);
+        }
+      });
+      workers[i].start();
+    }
+    for (Thread t: workers) {
+      t.join();
+    }
+    long dataSize = 0;
+    int count = 0;
+    long ptr = segment.getAddress();
+    for (int i = 0; i < numRecords; i++) {
+      if (offsets[i] < 0) {
+        // segment is full
+        continue;
+      }
+      count++;
+      byte[] key = keys[i];
+      byte[] value = values[i];
+      long addr = ptr + offsets[i];
+      int kSize = Utils.readUVInt(addr);
+      int kSizeSize = Utils.sizeUVInt(kSize);
+      int vSize = Utils.readUVInt(addr + kSizeSize);
+      int vSizeSize = Utils.sizeUVInt(vSize);
+      assertEquals(key.length, kSize);
+      assertEquals(value.length, vSize);
+      addr += kSizeSize + vSizeSize;
+      assertTrue(Utils.compareTo(key, 0, key.length, addr, kSize) == 0);
+      assertTrue(Utils.compareTo(value, 0, value.length, addr + kSize, vSize) == 0);
+      dataSize += Utils.requiredSize(key.length, value.length);
+    }
+    assertTrue(count > 0);
+    assertEquals(count, segment.getTotalItems());
+    assertEquals(dataSize, segment.getSegmentDataSize());
+    // Sealed segment does not accept new items
+    segment.seal();
+    assertEquals(-1, segment.append(keys[0], values[0], expires[0]));
+    assertEquals(dataSize, segment.getSegmentDataSize());
+  }
 }
@@ -0,0 +1,59 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.carrot.cache.io;
+
+import org.junit.After;
+import org.junit.Before;
+
+import com.carrot.cache.util.CacheConfig;
+
+/**
+ * Block data writer and file reader with block compression enabled
+ */
+public class TestSegmentBlockCompressedWriterReaderFile 
+    extends TestSegmentBlockDataWriterReaderFile {
+
+  @Before
+  public void setUp() {
+    CacheConfig.getInstance().setBlockWriterCompressionCodec("default", BlockCodec.DEFLATE);
+    super.setUp();
+    BlockDataWriter bdw = new BlockDataWriter();
+    bdw.setBlockSize(blockSize);
+    bdw.setCodec(BlockCodec.getCodec("default"));
+    segment.setDataWriter(bdw);
+  }
+
+  @After
+  public void tearDown() {
+    super.tearDown();
+    CacheConfig.getInstance().setBlockWriterCompressionCodec("default", BlockCodec.NONE);
+  }
+  
+  @Override
+  protected void prepareData(int numRecords) {
+    super.prepareData(numRecords);
+    makeValuesCompressible();
+  }
+  
+  @Override
+  protected void verifyBytesBlock(int num, int blockSize) {
+    verifyCompressedBlocks(num, false);
+  }
+  
+  @Override
+  protected void verifyMemoryBlock(int num, int blockSize) {
+    verifyCompressedBlocks(num, true);
+  }
+}
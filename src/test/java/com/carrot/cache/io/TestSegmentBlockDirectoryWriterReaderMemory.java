@@ -0,0 +1,74 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.carrot.cache.io;
+
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.carrot.cache.util.CacheConfig;
+
+/**
+ * Block data writer and readers with block directories enabled
+ */
+public class TestSegmentBlockDirectoryWriterReaderMemory 
+    extends TestSegmentBlockDataWriterReaderMemory {
+
+  @Before
+  public void setUp() {
+    CacheConfig.getInstance().setBlockWriterDirectoryEnabled("default", true);
+    super.setUp();
+    BlockDataWriter bdw = new BlockDataWriter();
+    bdw.setBlockSize(blockSize);
+    bdw.setDirectoryEnabled(true);
+    segment.setDataWriter(bdw);
+  }
+
+  @After
+  public void tearDown() {
+    super.tearDown();
+    CacheConfig.getInstance().setBlockWriterDirectoryEnabled("default", false);
+  }
+
+  @Test
+  public void testDirectory() {
+    int count = loadBytes();
+    assertTrue(count > 0);
+    // Every block with more than one item has a directory entry per item
+    long ptr = segment.getAddress();
+    long end = ptr + BlockReaderWriterSupport.getFullDataSize(segment, blockSize);
+    int total = 0;
+    int dirBlocks = 0;
+    while (ptr < end) {
+      int dataSize = BlockReaderWriterSupport.getBlockDataSize(ptr);
+      if (BlockReaderWriterSupport.hasDirectory(dataSize, blockSize)) {
+        int n = BlockReaderWriterSupport.getDirectorySize(ptr, blockSize);
+        assertTrue(n > 0);
+        assertTrue(BlockReaderWriterSupport.META_SIZE + dataSize + 
+          n * BlockReaderWriterSupport.DIR_ENTRY_SIZE + BlockReaderWriterSupport.DIR_COUNT_SIZE 
+          <= blockSize);
+        total += n;
+        dirBlocks++;
+      } else {
+        total++;
+      }
+      ptr += ((dataSize + BlockReaderWriterSupport.META_SIZE - 1) / blockSize + 1) * blockSize;
+    }
+    assertTrue(dirBlocks > 0);
+    assertTrue(total <= count);
+  }
+}
@@ -0,0 +1,61 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.carrot.cache.io;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class TestSegmentBufferPool {
+
+  @Test
+  public void testReuse() {
+    int size = 1024 * 1024;
+    SegmentBufferPool pool = new SegmentBufferPool(size, 2L * size);
+    assertEquals(2, pool.getMaxPooledBuffers());
+    long ptr1 = pool.allocate();
+    long ptr2 = pool.allocate();
+    long ptr3 = pool.allocate();
+    assertEquals(3, pool.getMisses());
+    assertEquals(0, pool.getHits());
+    pool.release(ptr1);
+    pool.release(ptr2);
+    // Pool is full - buffer is released
+    pool.release(ptr3);
+    assertEquals(1, pool.getOverflows());
+    assertEquals(2, pool.getPooledBuffers());
+    assertEquals(2L * size, pool.getPooledSize());
+    // LIFO reuse
+    assertEquals(ptr2, pool.allocate());
+    assertEquals(ptr1, pool.allocate());
+    assertEquals(2, pool.getHits());
+    assertEquals(0, pool.getPooledBuffers());
+    pool.release(ptr1);
+    pool.release(ptr2);
+    pool.dispose();
+    assertEquals(0, pool.getPooledBuffers());
+  }
+
+  @Test
+  public void testDisabled() {
+    int size = 1024 * 1024;
+    SegmentBufferPool pool = new SegmentBufferPool(size, size - 1);
+    assertEquals(0, pool.getMaxPooledBuffers());
+    long ptr = pool.allocate();
+    pool.release(ptr);
+    assertEquals(1, pool.getOverflows());
+    assertEquals(0, pool.getPooledBuffers());
+  }
+}
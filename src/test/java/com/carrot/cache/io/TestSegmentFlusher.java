@@ -0,0 +1,88 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.carrot.cache.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class TestSegmentFlusher {
+
+  @Test
+  public void testFlushAll() {
+    AtomicInteger flushed = new AtomicInteger();
+    SegmentFlusher flusher = new SegmentFlusher("test", 4, 8, s -> {
+      flushed.incrementAndGet();
+      return 1000;
+    });
+    int num = 1000;
+    for (int i = 0; i < num; i++) {
+      flusher.submit(new Segment());
+    }
+    flusher.waitForCompletion();
+    assertEquals(num, flushed.get());
+    assertEquals(num, flusher.getFlushes());
+    assertEquals(0, flusher.getPendingFlushes());
+    assertEquals(0, flusher.getQueueDepth());
+    assertEquals(num * 1000L, flusher.getBytesFlushed());
+    assertTrue(flusher.getBytesPerSecond() > 0);
+    flusher.shutdown();
+  }
+
+  @Test
+  public void testBackpressure() {
+    int queueSize = 2;
+    int sleep = 20;
+    SegmentFlusher flusher = new SegmentFlusher("test", 1, queueSize, s -> {
+      try {
+        Thread.sleep(sleep);
+      } catch (InterruptedException e) {
+      }
+      return 0;
+    });
+    int num = 10;
+    long start = System.currentTimeMillis();
+    for (int i = 0; i < num; i++) {
+      flusher.submit(new Segment());
+      assertTrue(flusher.getQueueDepth() <= queueSize);
+    }
+    long submitTime = System.currentTimeMillis() - start;
+    // Producer must have been blocked until most of segments were flushed
+    assertTrue(submitTime >= (num - queueSize - 1) * sleep);
+    assertTrue(flusher.getProducersBlockedCount() > 0);
+    assertTrue(flusher.getProducersBlockedTime() > 0);
+    flusher.shutdown();
+    assertEquals(num, flusher.getFlushes());
+    assertTrue(flusher.getMaxFlushLatency() >= sleep * 1000000L);
+    assertTrue(flusher.getAverageFlushLatency() > 0);
+  }
+
+  @Test
+  public void testFailedFlush() {
+    SegmentFlusher flusher = new SegmentFlusher("test", 2, 4, s -> {
+      throw new IOException("test");
+    });
+    flusher.submit(new Segment());
+    flusher.submit(new Segment());
+    flusher.waitForCompletion();
+    assertEquals(2, flusher.getFailedFlushes());
+    assertEquals(0, flusher.getFlushes());
+    flusher.shutdown();
+  }
+}
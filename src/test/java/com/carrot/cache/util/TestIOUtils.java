@@ -0,0 +1,116 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.carrot.cache.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestIOUtils {
+
+  File f;
+  RandomAccessFile file;
+  byte[] data;
+
+  @Before
+  public void setUp() throws IOException {
+    f = File.createTempFile("test-io-utils", null);
+    f.deleteOnExit();
+    data = new byte[4 * 1024 * 1024];
+    new Random(1).nextBytes(data);
+    file = new RandomAccessFile(f, "rw");
+    file.write(data);
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    file.close();
+    f.delete();
+  }
+
+  @Test
+  public void testReadByteArray() throws IOException {
+    // Larger than maximum per - thread read buffer
+    int len = IOUtils.MAX_READ_BUFFER_SIZE + 1000;
+    byte[] buf = new byte[len + 10];
+    IOUtils.readFully(file, 100, buf, 10, len);
+    assertEquals(0, Utils.compareTo(buf, 10, len, data, 100, len));
+  }
+
+  @Test
+  public void testReadByteBuffer() throws IOException {
+    ByteBuffer[] buffers =
+        new ByteBuffer[] {ByteBuffer.allocate(10000), ByteBuffer.allocateDirect(10000)};
+    for (ByteBuffer buf: buffers) {
+      buf.position(100);
+      IOUtils.readFully(file, 1000, buf, 5000);
+      // Position and limit must not change
+      assertEquals(100, buf.position());
+      assertEquals(10000, buf.limit());
+      for (int i = 0; i < 5000; i++) {
+        assertEquals(data[1000 + i], buf.get(100 + i));
+      }
+    }
+  }
+
+  @Test(expected = EOFException.class)
+  public void testReadPastEOF() throws IOException {
+    byte[] buf = new byte[100];
+    IOUtils.readFully(file, data.length - 10, buf, 0, 100);
+  }
+
+  @Test
+  public void testConcurrentReads() throws InterruptedException {
+    int numThreads = 4;
+    int numReads = 10000;
+    AtomicBoolean failed = new AtomicBoolean();
+    Runnable r = () -> {
+      Random rnd = new Random(Thread.currentThread().getId());
+      byte[] buf = new byte[4096];
+      try {
+        for (int i = 0; i < numReads; i++) {
+          int len = rnd.nextInt(buf.length) + 1;
+          int off = rnd.nextInt(data.length - len);
+          IOUtils.readFully(file, off, buf, 0, len);
+          if (Utils.compareTo(buf, 0, len, data, off, len) != 0) {
+            failed.set(true);
+          }
+        }
+      } catch (IOException e) {
+        failed.set(true);
+      }
+    };
+    Thread[] threads = new Thread[numThreads];
+    for (int i = 0; i < numThreads; i++) {
+      threads[i] = new Thread(r);
+      threads[i].start();
+    }
+    for (int i = 0; i < numThreads; i++) {
+      threads[i].join();
+    }
+    assertTrue(!failed.get());
+  }
+}